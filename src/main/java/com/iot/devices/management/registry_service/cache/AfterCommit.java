@@ -0,0 +1,25 @@
+package com.iot.devices.management.registry_service.cache;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+//cache entries are dropped once the change is visible to other transactions, evicted earlier they could be put back
+//by a concurrent lookup reading the old state. Outside of a transaction the action runs immediately
+public class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    public static void run(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+}
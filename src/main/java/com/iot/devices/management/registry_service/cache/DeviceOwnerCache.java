@@ -0,0 +1,56 @@
+package com.iot.devices.management.registry_service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.iot.devices.management.registry_service.persistence.model.DeviceOwner;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+//deviceId -> owner for permission checks, only existing devices are cached.
+//Entries are evicted after commit, an old owner put back by a lookup racing with the commit lives until expiration
+@Slf4j
+@Component
+public class DeviceOwnerCache {
+
+    public static final String DEVICE_OWNER_CACHE = "deviceOwnerCache";
+    private static final String PROPERTIES_PREFIX = "cache.device.owner";
+
+    private final Cache<UUID, DeviceOwner> cache;
+
+    public DeviceOwnerCache(@Value("${" + PROPERTIES_PREFIX + ".max.size}") int maxSize,
+                            @Value("${" + PROPERTIES_PREFIX + ".expiration.time.min}") int expirationTimeMin,
+                            MeterRegistry meterRegistry) {
+        log.info("Creating device owner cache with maxSize={}, expirationTimeMin={}", maxSize, expirationTimeMin);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(expirationTimeMin, MINUTES)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, DEVICE_OWNER_CACHE);
+    }
+
+    public Optional<DeviceOwner> get(UUID deviceId) {
+        return Optional.ofNullable(cache.getIfPresent(deviceId));
+    }
+
+    public void put(DeviceOwner deviceOwner) {
+        cache.put(deviceOwner.getDeviceId(), deviceOwner);
+    }
+
+    public void evictAfterCommit(UUID deviceId) {
+        AfterCommit.run(() -> cache.invalidate(deviceId));
+    }
+
+    //devices of a removed user lose their owner in the database, the cache is scanned for them
+    public void evictOwnerAfterCommit(UUID ownerId) {
+        AfterCommit.run(() -> cache.asMap().values().removeIf(deviceOwner -> ownerId.equals(deviceOwner.getOwnerId())));
+    }
+}
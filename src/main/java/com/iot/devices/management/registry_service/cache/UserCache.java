@@ -0,0 +1,162 @@
+package com.iot.devices.management.registry_service.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+//one cached user per id, email and username only point to the id. A user found by email or username is checked
+//to still have it, so invalidating the id drops all keys at once, also the old ones of a changed email or username.
+//A lookup which started loading before an invalidation of the loaded user does not put it, it could be the state before
+//the change. Every invalidation gets the next number, a loaded user is put only if its id has no number newer than
+//the one seen before loading. Numbers of ids are dropped once no lookup is loading
+@Slf4j
+@Component
+public class UserCache {
+
+    public static final String USERS_CACHE = "usersCache";
+    private static final String PROPERTIES_PREFIX = "cache.user";
+
+    private enum KeyType {ID, EMAIL, USERNAME}
+
+    private final Cache<UUID, User> usersById;
+    private final Map<String, UUID> idsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, UUID> idsByUsername = new ConcurrentHashMap<>();
+    private final Map<KeyType, Counter> hits = new EnumMap<>(KeyType.class);
+    private final Map<KeyType, Counter> misses = new EnumMap<>(KeyType.class);
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Map<UUID, Long> invalidationsById = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    public UserCache(@Value("${" + PROPERTIES_PREFIX + ".initial.capacity}") int initialCapacity,
+                     @Value("${" + PROPERTIES_PREFIX + ".max.size}") int maxSize,
+                     @Value("${" + PROPERTIES_PREFIX + ".expiration.time.min}") int expirationTimeMin,
+                     MeterRegistry meterRegistry) {
+        log.info("Creating user cache with initialCapacity={}, maxSize={}, expirationTimeMin={}",
+                initialCapacity, maxSize, expirationTimeMin);
+        this.usersById = Caffeine.newBuilder()
+                .initialCapacity(initialCapacity)
+                .maximumSize(maxSize)
+                .expireAfterWrite(expirationTimeMin, MINUTES)
+                .executor(Runnable::run)
+                .removalListener(this::removeKeys)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, usersById, USERS_CACHE);
+        for (KeyType keyType : KeyType.values()) {
+            hits.put(keyType, lookupsCounter(meterRegistry, keyType, "hit"));
+            misses.put(keyType, lookupsCounter(meterRegistry, keyType, "miss"));
+        }
+    }
+
+    public Optional<User> getById(UUID id, Function<UUID, Optional<User>> loader) {
+        return get(KeyType.ID, id, usersById.getIfPresent(id), loader);
+    }
+
+    public Optional<User> getByEmail(String email, Function<String, Optional<User>> loader) {
+        final User user = lookup(idsByEmail, email, User::getEmail);
+        return get(KeyType.EMAIL, email, user, loader);
+    }
+
+    public Optional<User> getByUsername(String username, Function<String, Optional<User>> loader) {
+        final User user = lookup(idsByUsername, username, User::getUsername);
+        return get(KeyType.USERNAME, username, user, loader);
+    }
+
+    //invalidated right away, so a user changed by a rolled back transaction is not served,
+    //and once more after commit for lookups which loaded the old state meanwhile
+    public void invalidateAfterCommit(UUID id) {
+        invalidate(id);
+        AfterCommit.run(() -> invalidate(id));
+    }
+
+    private <K> Optional<User> get(KeyType keyType, K key, User cached, Function<K, Optional<User>> loader) {
+        if (cached != null) {
+            hits.get(keyType).increment();
+            return Optional.of(cached);
+        }
+        misses.get(keyType).increment();
+        loads.incrementAndGet();
+        try {
+            final long invalidationsBeforeLoad = invalidations.get();
+            final Optional<User> loaded = loader.apply(key);
+            loaded.ifPresent(user -> putIfNotInvalidated(user, invalidationsBeforeLoad));
+            return loaded;
+        } finally {
+            //read while this lookup is still loading, a lookup starting after the decrement sees at least this number
+            //before loading, so only invalidations up to it are dropped
+            final long lastInvalidation = invalidations.get();
+            if (loads.decrementAndGet() == 0) {
+                invalidationsById.values().removeIf(invalidation -> invalidation <= lastInvalidation);
+            }
+        }
+    }
+
+    private User lookup(Map<String, UUID> ids, String key, Function<User, String> keyOfUser) {
+        final UUID id = ids.get(key);
+        if (id == null) {
+            return null;
+        }
+        final User user = usersById.getIfPresent(id);
+        if (user == null || !Objects.equals(key, keyOfUser.apply(user))) {
+            ids.remove(key, id);
+            return null;
+        }
+        return user;
+    }
+
+    //runs under the lock of the id in invalidationsById, so an invalidation of the same id is before or after the put
+    private void putIfNotInvalidated(User user, long invalidationsBeforeLoad) {
+        invalidationsById.compute(user.getId(), (id, invalidation) -> {
+            if (invalidation == null || invalidation <= invalidationsBeforeLoad) {
+                //replacing the user removes the keys of the previous one first
+                usersById.put(id, user);
+                idsByEmail.put(user.getEmail(), id);
+                idsByUsername.put(user.getUsername(), id);
+            }
+            return invalidation;
+        });
+    }
+
+    private void invalidate(UUID id) {
+        invalidationsById.compute(id, (key, invalidation) -> {
+            usersById.invalidate(id);
+            return invalidations.incrementAndGet();
+        });
+    }
+
+    private void removeKeys(UUID id, User user, RemovalCause cause) {
+        if (id == null || user == null) {
+            return;
+        }
+        idsByEmail.remove(user.getEmail(), id);
+        idsByUsername.remove(user.getUsername(), id);
+    }
+
+    private static Counter lookupsCounter(MeterRegistry meterRegistry, KeyType keyType, String result) {
+        return Counter.builder("rs_user_cache_lookups_count")
+                .description("The number of user cache lookups by key type and result")
+                .tag("key", keyType.name().toLowerCase())
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -8,6 +8,8 @@ import com.iot.devices.management.registry_service.open.api.custom.annotations.a
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.services.UserService;
 import com.iot.devices.management.registry_service.security.JwtService;
+import com.iot.devices.management.registry_service.security.LastLoginBuffer;
+import com.iot.devices.management.registry_service.security.PasswordRehasher;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -24,12 +26,12 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.IOException;
-import java.time.OffsetDateTime;
 import java.util.Optional;
 
 import static com.iot.devices.management.registry_service.controller.errors.UserExceptions.*;
 import static com.iot.devices.management.registry_service.security.JwtAuthentificationFilter.TOKEN_BEGIN_INDEX;
 import static com.iot.devices.management.registry_service.security.JwtAuthentificationFilter.TOKEN_PREFIX;
+import static java.lang.System.currentTimeMillis;
 
 @Slf4j
 @RestController
@@ -41,6 +43,8 @@ public class AuthenticationController {
     private final AuthenticationManager authenticationManager;
     private final JwtService jwtService;
     private final UserService userService;
+    private final LastLoginBuffer lastLoginBuffer;
+    private final PasswordRehasher passwordRehasher;
 
     @PostMapping("/login")
     @LoginOpenApi
@@ -52,12 +56,8 @@ public class AuthenticationController {
             throw new UserNotFoundException(request.username());
         }
         final AuthenticationResponse authenticationResponse = jwtService.generateTokens(user.get());
-        int rows = userService.updateLastLoginTime(user.get().getId(), OffsetDateTime.now());
-        if (rows == 1) {
-            log.info("Updated login time to user: {}, id: {}", user.get().getUsername(), user.get().getId());
-        } else {
-            log.warn("Login time was updated to {} users, user: {}, id: {}", rows, user.get().getUsername(), user.get().getId());
-        }
+        lastLoginBuffer.record(user.get().getId(), currentTimeMillis());
+        passwordRehasher.rehashIfNeeded(user.get(), request.password());
         return ResponseEntity.ok(authenticationResponse);
     }
 
@@ -1,19 +1,36 @@
 package com.iot.devices.management.registry_service.controller;
 
+import com.iot.devices.management.registry_service.controller.dto.BulkCreateDevicesDto;
+import com.iot.devices.management.registry_service.controller.dto.BulkDeviceResultDto;
 import com.iot.devices.management.registry_service.controller.dto.DeviceDto;
+import com.iot.devices.management.registry_service.controller.dto.DevicePageDto;
+import com.iot.devices.management.registry_service.controller.util.BulkCreateDevicesRequest;
 import com.iot.devices.management.registry_service.controller.util.CreateDeviceRequest;
+import com.iot.devices.management.registry_service.controller.util.DeviceListRequest;
 import com.iot.devices.management.registry_service.controller.util.PermissionToDeviceResponse;
 import com.iot.devices.management.registry_service.controller.util.PatchDeviceRequest;
 import com.iot.devices.management.registry_service.controller.util.Utils;
 import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.CreateDeviceOpenApi;
+import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.CreateDevicesBulkOpenApi;
 import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.GetDeviceByIdOpenApi;
+import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.GetDeviceTelemetryOpenApi;
+import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.GetDevicesOpenApi;
 import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.RemoveDeviceByIdOpenApi;
 import com.iot.devices.management.registry_service.open.api.custom.annotations.devices.UpdateDeviceOpenApi;
+import com.iot.devices.management.registry_service.persistence.model.BulkDeviceRegistration;
+import com.iot.devices.management.registry_service.persistence.model.BulkRegistrationResult;
 import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceCursor;
+import com.iot.devices.management.registry_service.persistence.model.DeviceFilter;
+import com.iot.devices.management.registry_service.persistence.model.DeviceOwner;
+import com.iot.devices.management.registry_service.persistence.model.DevicePage;
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.model.UserProjection;
+import com.iot.devices.management.registry_service.persistence.model.enums.BulkRegistrationStatus;
 import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.services.TelemetryHistoryService;
 import com.iot.devices.management.registry_service.persistence.services.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.resilience4j.ratelimiter.RequestNotPermitted;
 import io.github.resilience4j.ratelimiter.annotation.RateLimiter;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -21,17 +38,31 @@ import jakarta.validation.Valid;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.Optional;
-import java.util.UUID;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.*;
 import static com.iot.devices.management.registry_service.controller.util.Utils.*;
 import static java.util.Optional.ofNullable;
+import static java.util.function.Function.identity;
+import static java.util.stream.Collectors.toMap;
+import static java.util.stream.Collectors.toSet;
+import static org.springframework.format.annotation.DateTimeFormat.ISO.DATE_TIME;
 import static com.iot.devices.management.registry_service.controller.errors.UserExceptions.PermissionDeniedException;
 
 @Slf4j
@@ -41,8 +72,12 @@ import static com.iot.devices.management.registry_service.controller.errors.User
 @Tag(name = "Devices", description = "CRUD operations for Devices")
 public class DeviceController {
 
+    private static final int DEFAULT_PAGE_SIZE = 100;
+
     private final DeviceService deviceService;
     private final UserService userService;
+    private final TelemetryHistoryService telemetryHistoryService;
+    private final ObjectMapper objectMapper;
 
     @PostMapping
     @CreateDeviceOpenApi
@@ -60,6 +95,37 @@ public class DeviceController {
                 .body(mapDevice(saved));
     }
 
+    //owners are loaded with one query, items without permission to their owner are rejected, the rest is created at once
+    @PostMapping("bulk")
+    @CreateDevicesBulkOpenApi
+    public ResponseEntity<BulkCreateDevicesDto> createDevices(@RequestBody @Valid BulkCreateDevicesRequest request, Authentication auth) {
+        final Set<UUID> ownerIds = request.devices().stream()
+                .map(CreateDeviceRequest::ownerId)
+                .filter(Objects::nonNull)
+                .collect(toSet());
+        final Map<UUID, User> owners = ownerIds.isEmpty() ? Map.of() : userService.findAllByUserIds(ownerIds).stream()
+                .collect(toMap(User::getId, identity()));
+        final List<BulkRegistrationResult> results = new ArrayList<>(request.devices().size());
+        final List<BulkDeviceRegistration> registrations = new ArrayList<>(request.devices().size());
+        for (int i = 0; i < request.devices().size(); i++) {
+            final CreateDeviceRequest deviceRequest = request.devices().get(i);
+            final Optional<User> owner = ofNullable(deviceRequest.ownerId()).map(owners::get);
+            if (hasPermission(auth, owner)) {
+                registrations.add(new BulkDeviceRegistration(i, deviceRequest, owner.orElse(null)));
+            } else {
+                results.add(BulkRegistrationResult.rejected(i, deviceRequest.serialNumber(), BulkRegistrationStatus.FORBIDDEN,
+                        "Permission denied for " + auth.getName()));
+            }
+        }
+        if (!registrations.isEmpty()) {
+            results.addAll(deviceService.saveAllAndSendMessage(registrations));
+        }
+        results.sort(Comparator.comparingInt(BulkRegistrationResult::getIndex));
+        final int created = (int) results.stream().filter(r -> r.getStatus() == BulkRegistrationStatus.CREATED).count();
+        return ResponseEntity.ok(new BulkCreateDevicesDto(created, results.size() - created,
+                results.stream().map(Utils::mapBulkResult).toList()));
+    }
+
     @PatchMapping
     @UpdateDeviceOpenApi
     public ResponseEntity<DeviceDto> patchDevice(@RequestBody @Valid PatchDeviceRequest request, Authentication auth) {
@@ -71,12 +137,40 @@ public class DeviceController {
         return ResponseEntity.ok(mapDevice(patched));
     }
 
+    @GetMapping
+    @GetDevicesOpenApi
+    public ResponseEntity<DevicePageDto> getDevices(@ModelAttribute DeviceListRequest request, Authentication auth) {
+        final int limit = ofNullable(request.limit()).orElse(DEFAULT_PAGE_SIZE);
+        if (limit < 1) {
+            throw new InvalidDeviceFilterException("'limit' has to be positive");
+        }
+        final DevicePage page = deviceService.findDevices(toDeviceFilter(request, auth), toCursor(request), limit);
+        return ResponseEntity.ok(new DevicePageDto(
+                page.getDevices().stream().map(Utils::mapDevice).toList(),
+                ofNullable(page.getNextCursor()).map(Utils::encodeCursor).orElse(null)));
+    }
+
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamDevices(@ModelAttribute DeviceListRequest request, Authentication auth) {
+        final DeviceFilter filter = toDeviceFilter(request, auth);
+        final DeviceCursor cursor = toCursor(request);
+        final StreamingResponseBody body = outputStream -> {
+            deviceService.streamDevices(filter, cursor, ndjsonWriter(outputStream, Utils::mapDevice));
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @GetMapping("{deviceId}")
     @GetDeviceByIdOpenApi
     @RateLimiter(name = "get_device_limiter", fallbackMethod = "rateLimitFallback")
     public ResponseEntity<DeviceDto> getDevice(@PathVariable @NonNull UUID deviceId, Authentication auth) {
-        final Optional<Device> device = deviceService.findByDeviceId(deviceId);
-        final Optional<UserProjection> owner = userService.getUserProjectionByDevice(deviceId);
+        final Optional<Device> device = deviceService.findByDeviceIdWithOwner(deviceId);
+        final Optional<UserProjection> owner = device
+                .flatMap(d -> deviceService.findDeviceOwner(deviceId))
+                .flatMap(DeviceOwner::getOwner);
         if (!hasPermission(auth, owner)) {
             throw new PermissionDeniedException(auth.getName());
         }
@@ -85,14 +179,36 @@ public class DeviceController {
                 .orElseThrow(() -> new DeviceNotFoundException(deviceId));
     }
 
+    @GetMapping("{deviceId}/telemetry")
+    @GetDeviceTelemetryOpenApi
+    public ResponseEntity<StreamingResponseBody> getTelemetryHistory(@PathVariable @NonNull UUID deviceId,
+                                                                     @RequestParam @DateTimeFormat(iso = DATE_TIME) OffsetDateTime from,
+                                                                     @RequestParam @DateTimeFormat(iso = DATE_TIME) OffsetDateTime to,
+                                                                     @RequestParam String step, Authentication auth) {
+        final Optional<UserProjection> owner = deviceService.findDeviceOwner(deviceId)
+                .orElseThrow(() -> new DeviceNotFoundException(deviceId))
+                .getOwner();
+        if (!hasPermission(auth, owner)) {
+            throw new PermissionDeniedException(auth.getName());
+        }
+        final Duration stepDuration = parseStep(step);
+        telemetryHistoryService.validateRange(from, to, stepDuration);
+        //points are written as they are fetched by the cursor, so the whole range is never held in memory
+        final StreamingResponseBody body = outputStream -> {
+            telemetryHistoryService.streamDownsampled(deviceId, from, to, stepDuration, ndjsonWriter(outputStream, Utils::mapTelemetryPoint));
+            outputStream.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @DeleteMapping("{deviceId}")
     @RemoveDeviceByIdOpenApi
     public ResponseEntity<Void> deleteDevice(@PathVariable @NonNull UUID deviceId, Authentication auth) {
-        final Optional<Device> device = deviceService.findByDeviceId(deviceId);
-        if (device.isEmpty()) {
-            throw new DeviceNotFoundException(deviceId);
-        }
-        final Optional<UserProjection> owner = userService.getUserProjectionByDevice(deviceId);
+        final Optional<UserProjection> owner = deviceService.findDeviceOwner(deviceId)
+                .orElseThrow(() -> new DeviceNotFoundException(deviceId))
+                .getOwner();
         if (!hasPermission(auth, owner)) {
             throw new PermissionDeniedException(auth.getName());
         }
@@ -102,11 +218,9 @@ public class DeviceController {
 
     @GetMapping("permission/{deviceId}")
     public ResponseEntity<PermissionToDeviceResponse> checkPermissionToDevice(@PathVariable @NonNull UUID deviceId, Authentication auth) {
-        final Optional<Device> device = deviceService.findByDeviceId(deviceId);
-        if (device.isEmpty()) {
-            throw new DeviceNotFoundException(deviceId);
-        }
-        final Optional<UserProjection> owner = userService.getUserProjectionByDevice(deviceId);
+        final Optional<UserProjection> owner = deviceService.findDeviceOwner(deviceId)
+                .orElseThrow(() -> new DeviceNotFoundException(deviceId))
+                .getOwner();
         return ResponseEntity.ok(new PermissionToDeviceResponse(hasPermission(auth, owner)));
     }
 
@@ -119,6 +233,50 @@ public class DeviceController {
         throw t;
     }
 
+    //users only list their own devices, admins may filter by any owner
+    private DeviceFilter toDeviceFilter(DeviceListRequest request, Authentication auth) {
+        UUID ownerId = request.ownerId();
+        if (isRegularUser(auth)) {
+            final UUID userId = userService.findByUsername(auth.getName())
+                    .map(User::getId)
+                    .orElseThrow(() -> new PermissionDeniedException(auth.getName()));
+            if (ownerId != null && !ownerId.equals(userId)) {
+                throw new PermissionDeniedException(auth.getName());
+            }
+            ownerId = userId;
+        }
+        if (request.lastActiveFrom() != null && request.lastActiveTo() != null
+                && !request.lastActiveFrom().isBefore(request.lastActiveTo())) {
+            throw new InvalidDeviceFilterException("'lastActiveFrom' has to be before 'lastActiveTo'");
+        }
+        return new DeviceFilter(request.deviceType(), request.status(), request.manufacturer(), ownerId,
+                request.lastActiveFrom(), request.lastActiveTo());
+    }
+
+    private static DeviceCursor toCursor(DeviceListRequest request) {
+        return ofNullable(request.cursor()).map(Utils::decodeCursor).orElse(null);
+    }
+
+    //one json object per line, written as soon as it is read from the database cursor
+    private <T> Consumer<T> ndjsonWriter(OutputStream outputStream, Function<T, ?> mapper) {
+        return item -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(mapper.apply(item)));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static Duration parseStep(String step) {
+        try {
+            return DurationStyle.detectAndParse(step);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidTelemetryRangeException("'step' " + step + " is not a valid duration");
+        }
+    }
+
     private Optional<User> loadUser(UUID userId) {
         return ofNullable(userId).flatMap(userService::findByUserId);
     }
@@ -11,5 +11,6 @@ public record AlertRuleDto(UUID ruleId,
                            ThresholdType thresholdType,
                            Float thresholdValue,
                            SeverityLevel severity,
-                           boolean isEnabled) {
+                           boolean isEnabled,
+                           Long version) {
 }
@@ -0,0 +1,9 @@
+package com.iot.devices.management.registry_service.controller.dto;
+
+import java.util.List;
+
+public record BulkCreateDevicesDto(
+        int created,
+        int rejected,
+        List<BulkDeviceResultDto> results) {
+}
@@ -0,0 +1,15 @@
+package com.iot.devices.management.registry_service.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.iot.devices.management.registry_service.persistence.model.enums.BulkRegistrationStatus;
+
+import java.util.UUID;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BulkDeviceResultDto(
+        int index,
+        String serialNumber,
+        BulkRegistrationStatus status,
+        UUID deviceId,
+        String error) {
+}
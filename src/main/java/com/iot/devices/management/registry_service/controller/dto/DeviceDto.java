@@ -24,5 +24,6 @@ public record DeviceDto(
         String firmwareVersion,
         OffsetDateTime createdAt,
         OffsetDateTime updatedAt,
-        String telemetry) {
+        String telemetry,
+        Long version) {
 }
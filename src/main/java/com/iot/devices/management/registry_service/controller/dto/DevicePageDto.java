@@ -0,0 +1,8 @@
+package com.iot.devices.management.registry_service.controller.dto;
+
+import java.util.List;
+
+public record DevicePageDto(
+        List<DeviceDto> devices,
+        String nextCursor) {
+}
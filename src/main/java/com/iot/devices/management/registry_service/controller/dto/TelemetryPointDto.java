@@ -0,0 +1,11 @@
+package com.iot.devices.management.registry_service.controller.dto;
+
+import com.fasterxml.jackson.annotation.JsonRawValue;
+
+import java.time.OffsetDateTime;
+
+public record TelemetryPointDto(
+        OffsetDateTime bucket,
+        long samples,
+        @JsonRawValue String telemetry) {
+}
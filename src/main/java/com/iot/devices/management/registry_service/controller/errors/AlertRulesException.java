@@ -1,5 +1,8 @@
 package com.iot.devices.management.registry_service.controller.errors;
 
+import com.iot.devices.management.registry_service.persistence.model.AlertRule;
+import lombok.Getter;
+
 import java.util.Set;
 import java.util.UUID;
 
@@ -29,4 +32,14 @@ public class AlertRulesException {
             super(msg, e);
         }
     }
+
+    @Getter
+    public static class AlertRuleVersionConflictException extends RuntimeException {
+        private final AlertRule current;
+
+        public AlertRuleVersionConflictException(AlertRule current) {
+            super("Alert rule with ruleId=" + current.getRuleId() + " was modified concurrently, current version: " + current.getVersion());
+            this.current = current;
+        }
+    }
 }
@@ -1,5 +1,8 @@
 package com.iot.devices.management.registry_service.controller.errors;
 
+import com.iot.devices.management.registry_service.persistence.model.Device;
+import lombok.Getter;
+
 import java.util.UUID;
 
 public class DeviceExceptions {
@@ -37,4 +40,26 @@ public class DeviceExceptions {
             super(msg, e);
         }
     }
+
+    public static class InvalidTelemetryRangeException extends RuntimeException {
+        public InvalidTelemetryRangeException(String msg) {
+            super(msg);
+        }
+    }
+
+    public static class InvalidDeviceFilterException extends RuntimeException {
+        public InvalidDeviceFilterException(String msg) {
+            super(msg);
+        }
+    }
+
+    @Getter
+    public static class DeviceVersionConflictException extends RuntimeException {
+        private final Device current;
+
+        public DeviceVersionConflictException(Device current) {
+            super("Device with id: " + current.getId() + " was modified concurrently, current version: " + current.getVersion());
+            this.current = current;
+        }
+    }
 }
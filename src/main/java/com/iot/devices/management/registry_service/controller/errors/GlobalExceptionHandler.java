@@ -1,6 +1,9 @@
 package com.iot.devices.management.registry_service.controller.errors;
 
+import com.iot.devices.management.registry_service.controller.dto.AlertRuleDto;
+import com.iot.devices.management.registry_service.controller.dto.DeviceDto;
 import com.iot.devices.management.registry_service.controller.util.ErrorResponse;
+import com.iot.devices.management.registry_service.controller.util.VersionConflictResponse;
 import io.github.resilience4j.ratelimiter.RequestNotPermitted;
 import lombok.NonNull;
 import org.springframework.http.HttpHeaders;
@@ -20,6 +23,8 @@ import java.util.Map;
 
 import static com.iot.devices.management.registry_service.controller.errors.UserExceptions.*;
 import static com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.*;
+import static com.iot.devices.management.registry_service.controller.util.Utils.mapAlertRuleToDto;
+import static com.iot.devices.management.registry_service.controller.util.Utils.mapDevice;
 import static java.util.Collections.emptyMap;
 import static org.springframework.http.HttpStatus.*;
 import static com.iot.devices.management.registry_service.controller.errors.AlertRulesException.*;
@@ -71,6 +76,39 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, CONFLICT);
     }
 
+    @ExceptionHandler(DeviceVersionConflictException.class)
+    public ResponseEntity<VersionConflictResponse<DeviceDto>> handleDeviceVersionConflictException(DeviceVersionConflictException ex, WebRequest request) {
+        final VersionConflictResponse<DeviceDto> response = VersionConflictResponse.of(
+                CONFLICT,
+                ex.getMessage(),
+                "Device was modified concurrently!",
+                URI.create(request.getDescription(false)),
+                mapDevice(ex.getCurrent()));
+        return new ResponseEntity<>(response, CONFLICT);
+    }
+
+    @ExceptionHandler(InvalidDeviceFilterException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidDeviceFilterException(InvalidDeviceFilterException ex, WebRequest request) {
+        final ErrorResponse response = ErrorResponse.of(
+                BAD_REQUEST,
+                ex.getMessage(),
+                "Invalid device filter!",
+                URI.create(request.getDescription(false)),
+                emptyMap());
+        return new ResponseEntity<>(response, BAD_REQUEST);
+    }
+
+    @ExceptionHandler(InvalidTelemetryRangeException.class)
+    public ResponseEntity<ErrorResponse> handleInvalidTelemetryRangeException(InvalidTelemetryRangeException ex, WebRequest request) {
+        final ErrorResponse response = ErrorResponse.of(
+                BAD_REQUEST,
+                ex.getMessage(),
+                "Invalid telemetry range!",
+                URI.create(request.getDescription(false)),
+                emptyMap());
+        return new ResponseEntity<>(response, BAD_REQUEST);
+    }
+
     @ExceptionHandler(AlertRuleNotFoundException.class)
     public ResponseEntity<ErrorResponse> handleAlertRuleNotFoundException(AlertRuleNotFoundException ex, WebRequest request) {
         final ErrorResponse response = ErrorResponse.of(
@@ -82,6 +120,17 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, NOT_FOUND);
     }
 
+    @ExceptionHandler(AlertRuleVersionConflictException.class)
+    public ResponseEntity<VersionConflictResponse<AlertRuleDto>> handleAlertRuleVersionConflictException(AlertRuleVersionConflictException ex, WebRequest request) {
+        final VersionConflictResponse<AlertRuleDto> response = VersionConflictResponse.of(
+                CONFLICT,
+                ex.getMessage(),
+                "Alert rule was modified concurrently!",
+                URI.create(request.getDescription(false)),
+                mapAlertRuleToDto(ex.getCurrent()));
+        return new ResponseEntity<>(response, CONFLICT);
+    }
+
     @ExceptionHandler(AlertRuleNotSentException.class)
     public ResponseEntity<ErrorResponse> handleAlertRuleNotSentException(AlertRuleNotSentException ex, WebRequest request) {
         final ErrorResponse response = ErrorResponse.of(
@@ -126,6 +175,17 @@ public class GlobalExceptionHandler extends ResponseEntityExceptionHandler {
         return new ResponseEntity<>(response, INTERNAL_SERVER_ERROR);
     }
 
+    @ExceptionHandler(PasswordHashingOverloadedException.class)
+    public ResponseEntity<ErrorResponse> handlePasswordHashingOverloadedException(PasswordHashingOverloadedException ex, WebRequest request) {
+        final ErrorResponse response = ErrorResponse.of(
+                SERVICE_UNAVAILABLE,
+                ex.getMessage(),
+                "Too many password checks, try again later!",
+                URI.create(request.getDescription(false)),
+                emptyMap());
+        return new ResponseEntity<>(response, SERVICE_UNAVAILABLE);
+    }
+
     @Override
     protected ResponseEntity<Object> handleMethodArgumentNotValid(MethodArgumentNotValidException ex, @NonNull HttpHeaders headers,
                                                                   @NonNull HttpStatusCode status, WebRequest request) {
@@ -0,0 +1,13 @@
+package com.iot.devices.management.registry_service.controller.util;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BulkCreateDevicesRequest(
+        @NotEmpty(message = "at least one device is required")
+        @Size(max = 10000, message = "at most 10000 devices can be created at once")
+        List<@Valid CreateDeviceRequest> devices) {
+}
@@ -0,0 +1,22 @@
+package com.iot.devices.management.registry_service.controller.util;
+
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static org.springframework.format.annotation.DateTimeFormat.ISO.DATE_TIME;
+
+public record DeviceListRequest(
+        DeviceType deviceType,
+        DeviceStatus status,
+        DeviceManufacturer manufacturer,
+        UUID ownerId,
+        @DateTimeFormat(iso = DATE_TIME) OffsetDateTime lastActiveFrom,
+        @DateTimeFormat(iso = DATE_TIME) OffsetDateTime lastActiveTo,
+        String cursor,
+        Integer limit) {
+}
@@ -20,5 +20,6 @@ public record PatchAlertRuleRequest(
         @Nullable Float thresholdValue,
         @Nullable SeverityLevel severity,
         @Nullable Boolean isEnabled,
-        @Nullable String username) {
+        @Nullable String username,
+        @Nullable Long version) {
 }
@@ -26,5 +26,6 @@ public record PatchDeviceRequest(
         @Nullable String firmwareVersion,
         @Nullable OffsetDateTime updatedAt,
         @Nullable Set<UUID> alertRulesToAdd,
-        @Nullable Set<UUID> alertRulesToRemove) {
+        @Nullable Set<UUID> alertRulesToRemove,
+        @Nullable Long version) {
 }
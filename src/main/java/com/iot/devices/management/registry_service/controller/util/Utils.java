@@ -1,10 +1,15 @@
 package com.iot.devices.management.registry_service.controller.util;
 
 import com.iot.devices.management.registry_service.controller.dto.AlertRuleDto;
+import com.iot.devices.management.registry_service.controller.dto.BulkDeviceResultDto;
 import com.iot.devices.management.registry_service.controller.dto.DeviceDto;
+import com.iot.devices.management.registry_service.controller.dto.TelemetryPointDto;
 import com.iot.devices.management.registry_service.controller.dto.UserDto;
 import com.iot.devices.management.registry_service.persistence.model.AlertRule;
+import com.iot.devices.management.registry_service.persistence.model.BulkRegistrationResult;
 import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceCursor;
+import com.iot.devices.management.registry_service.persistence.model.TelemetryPoint;
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.model.UserBase;
 import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
@@ -14,9 +19,13 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 import java.net.URI;
+import java.time.DateTimeException;
+import java.time.OffsetDateTime;
 import java.util.*;
 
+import static com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.InvalidDeviceFilterException;
 import static com.iot.devices.management.registry_service.persistence.model.enums.UserRole.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.stream.Collectors.toSet;
 
 @UtilityClass
@@ -35,6 +44,10 @@ public class Utils {
                 .orElse(true);
     }
 
+    public static boolean isRegularUser(Authentication auth) {
+        return USER.equals(getMinRoleLevel(auth));
+    }
+
     @SuppressWarnings({"BooleanMethodIsAlwaysInverted"})
     public static boolean hasPatchPermission(Authentication auth, User userToBePatched, PatchUserRequest request) {
         final UserRole authRole = getMinRoleLevel(auth);
@@ -66,7 +79,31 @@ public class Utils {
                 device.getDeviceManufacturer(), device.getModel(), device.getDeviceType(),
                 device.getLocation(), device.getLatitude(), device.getLongitude(), ownerId,
                 device.getStatus(), device.getLastActiveAt(), device.getFirmwareVersion(),
-                device.getCreatedAt(), device.getUpdatedAt(), device.getTelemetry());
+                device.getCreatedAt(), device.getUpdatedAt(), device.getTelemetry(), device.getVersion());
+    }
+
+    //cursor is opaque for clients, it only has to survive the round trip in a query parameter
+    public static String encodeCursor(DeviceCursor cursor) {
+        final String raw = cursor.getUpdatedAt() + "|" + cursor.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(UTF_8));
+    }
+
+    public static DeviceCursor decodeCursor(String cursor) {
+        try {
+            final String raw = new String(Base64.getUrlDecoder().decode(cursor), UTF_8);
+            final int separator = raw.indexOf('|');
+            return new DeviceCursor(OffsetDateTime.parse(raw.substring(0, separator)), UUID.fromString(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeException e) {
+            throw new InvalidDeviceFilterException("Cursor " + cursor + " is malformed");
+        }
+    }
+
+    public static BulkDeviceResultDto mapBulkResult(BulkRegistrationResult result) {
+        return new BulkDeviceResultDto(result.getIndex(), result.getSerialNumber(), result.getStatus(), result.getDeviceId(), result.getError());
+    }
+
+    public static TelemetryPointDto mapTelemetryPoint(TelemetryPoint point) {
+        return new TelemetryPointDto(point.getBucket(), point.getSamples(), point.getTelemetry());
     }
 
     public static UserDto mapUser(User saved) {
@@ -82,6 +119,7 @@ public class Utils {
 
     public static AlertRuleDto mapAlertRuleToDto(AlertRule dbRule) {
         return new AlertRuleDto(dbRule.getRuleId(), dbRule.getMetricType(),
-                dbRule.getThresholdType(), dbRule.getThresholdValue(), dbRule.getSeverity(), dbRule.isEnabled());
+                dbRule.getThresholdType(), dbRule.getThresholdValue(), dbRule.getSeverity(), dbRule.isEnabled(),
+                dbRule.getVersion());
     }
 }
@@ -0,0 +1,27 @@
+package com.iot.devices.management.registry_service.controller.util;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import org.springframework.http.HttpStatus;
+
+import java.net.URI;
+
+@Getter
+@ToString
+@RequiredArgsConstructor(staticName = "of")
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class VersionConflictResponse<T> {
+    @Schema(description = "HTTP status code")
+    private final HttpStatus status;
+    @Schema(description = "Error message")
+    private final String errorMessage;
+    @Schema(description = "Error detail")
+    private final String detail;
+    @Schema(description = "Error uri")
+    private final URI uri;
+    @Schema(description = "Current state, the patch can be retried with its version")
+    private final T current;
+}
@@ -5,19 +5,26 @@ import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 @Component
 @RequiredArgsConstructor
 public class KafkaConsumerHealthIndicator implements HealthIndicator {
 
-    private final AtomicBoolean kafkaConsumerStatusMonitor;
+    private final KafkaConsumerStatusMonitor kafkaConsumerStatusMonitor;
 
     @Override
     public Health health() {
-        return kafkaConsumerStatusMonitor.get()
-                ? Health.up().build()
-                : Health.down().withDetails(Map.of("kafkaConsumer", "partitions are not assigned")).build();
+        final Map<String, Boolean> assignments = kafkaConsumerStatusMonitor.getAssignments();
+        if (assignments.isEmpty()) {
+            return Health.down().withDetails(Map.of("kafkaConsumer", "partitions are not assigned")).build();
+        }
+        final Map<String, String> details = new LinkedHashMap<>(assignments.size());
+        assignments.forEach((consumerId, assigned) ->
+                details.put(consumerId, assigned ? "partitions are assigned" : "partitions are not assigned"));
+        return kafkaConsumerStatusMonitor.isAnyAssigned()
+                ? Health.up().withDetails(details).build()
+                : Health.down().withDetails(details).build();
     }
 }
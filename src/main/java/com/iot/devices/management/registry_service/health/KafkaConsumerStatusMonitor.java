@@ -0,0 +1,23 @@
+package com.iot.devices.management.registry_service.health;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+public class KafkaConsumerStatusMonitor {
+
+    private final ConcurrentMap<String, Boolean> assignedByConsumer = new ConcurrentHashMap<>();
+
+    public void setAssigned(String consumerId, boolean assigned) {
+        assignedByConsumer.put(consumerId, assigned);
+    }
+
+    public boolean isAnyAssigned() {
+        return assignedByConsumer.containsValue(true);
+    }
+
+    public Map<String, Boolean> getAssignments() {
+        return new TreeMap<>(assignedByConsumer);
+    }
+}
@@ -0,0 +1,114 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.Schema;
+import org.apache.avro.specific.SpecificData;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+
+import java.util.*;
+
+import static com.iot.devices.management.registry_service.persistence.OffsetTracker.*;
+
+//keeps one record per device across polls, newer non-null fields are merged over older ones like jsonb || does in the db
+@Slf4j
+class CoalescingBuffer {
+
+    private final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> recordsByPartition = new HashMap<>();
+    private final long flushIntervalMs;
+    private final int maxDevices;
+    private int size;
+    private long firstBufferedAtMs;
+
+    CoalescingBuffer(long flushIntervalMs, int maxDevices) {
+        this.flushIntervalMs = flushIntervalMs;
+        this.maxDevices = maxDevices;
+    }
+
+    int add(ConsumerRecords<String, SpecificRecord> records, long nowMs) {
+        int coalesced = 0;
+        for (TopicPartition partition : records.partitions()) {
+            final Map<String, ConsumerRecord<String, SpecificRecord>> buffered = recordsByPartition.computeIfAbsent(partition, p -> new HashMap<>());
+            for (ConsumerRecord<String, SpecificRecord> record : records.records(partition)) {
+                if (size == 0) {
+                    firstBufferedAtMs = nowMs;
+                }
+                final ConsumerRecord<String, SpecificRecord> previous = buffered.get(record.key());
+                if (previous == null) {
+                    buffered.put(record.key(), record);
+                    size++;
+                } else {
+                    buffered.put(record.key(), record.timestamp() >= previous.timestamp() ? merge(previous, record) : merge(record, previous));
+                    coalesced++;
+                }
+            }
+        }
+        return coalesced;
+    }
+
+    boolean isFlushDue(long nowMs) {
+        return size >= maxDevices || (size > 0 && nowMs - firstBufferedAtMs >= flushIntervalMs);
+    }
+
+    long msUntilFlush(long nowMs, long maxWaitMs) {
+        if (size == 0) {
+            return maxWaitMs;
+        }
+        return Math.max(0, Math.min(maxWaitMs, firstBufferedAtMs + flushIntervalMs - nowMs));
+    }
+
+    Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> drain() {
+        final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> drained = new HashMap<>(recordsByPartition);
+        drained.values().removeIf(Map::isEmpty);
+        clear();
+        return drained;
+    }
+
+    Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> drain(Collection<TopicPartition> partitions) {
+        final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> drained = new HashMap<>(partitions.size());
+        for (TopicPartition partition : partitions) {
+            final Map<String, ConsumerRecord<String, SpecificRecord>> records = recordsByPartition.remove(partition);
+            if (records != null && !records.isEmpty()) {
+                drained.put(partition, records);
+                size -= records.size();
+            }
+        }
+        return drained;
+    }
+
+    void clear() {
+        recordsByPartition.clear();
+        size = 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    static ConsumerRecord<String, SpecificRecord> merge(ConsumerRecord<String, SpecificRecord> older, ConsumerRecord<String, SpecificRecord> newer) {
+        final SpecificRecord value;
+        if (older.value().getClass() == newer.value().getClass()) {
+            final Schema schema = older.value().getSchema();
+            value = SpecificData.get().deepCopy(schema, older.value());
+            for (Schema.Field field : schema.getFields()) {
+                final Object newerValue = newer.value().get(field.pos());
+                if (newerValue != null) {
+                    value.put(field.pos(), newerValue);
+                }
+            }
+        } else {
+            log.warn("Device {} changed type from {} to {}, keeping newer record only",
+                    newer.key(), older.value().getSchema().getName(), newer.value().getSchema().getName());
+            value = newer.value();
+        }
+        final RecordHeaders headers = new RecordHeaders(newer.headers().toArray());
+        headers.remove(COALESCED_FROM_OFFSET_HEADER);
+        headers.add(COALESCED_FROM_OFFSET_HEADER, encodeOffset(Math.min(firstOffset(older), firstOffset(newer))));
+        return new ConsumerRecord<>(newer.topic(), newer.partition(), Math.max(older.offset(), newer.offset()),
+                newer.timestamp(), newer.timestampType(), newer.serializedKeySize(), newer.serializedValueSize(),
+                newer.key(), value, headers, newer.leaderEpoch());
+    }
+}
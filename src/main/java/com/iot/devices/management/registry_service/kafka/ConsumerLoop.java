@@ -0,0 +1,349 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import com.iot.devices.management.registry_service.health.KafkaConsumerStatusMonitor;
+import com.iot.devices.management.registry_service.kafka.properties.KafkaConsumerProperties;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.OffsetTracker;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.*;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.WakeupException;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.function.Function;
+
+import static java.time.temporal.ChronoUnit.MILLIS;
+
+@Slf4j
+class ConsumerLoop implements Runnable {
+
+    private final Collection<TopicPartition> partitions = new ArrayList<>();
+    private final Map<TopicPartition, PartitionPipeline> pipelines = new HashMap<>();
+    private volatile boolean isShutdown = false;
+    private volatile boolean isSubscribed = false;
+    private boolean isPausedByCircuitBreaker = false;
+
+    private final String consumerId;
+    private final KafkaConsumerProperties consumerProperties;
+    private final Function<Map<String, ConsumerRecord<String, SpecificRecord>>, Optional<OffsetAndMetadata>> persister;
+    private final KafkaConsumerStatusMonitor kafkaConsumerStatusMonitor;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
+    private final MeterRegistry meterRegistry;
+    private final KpiMetricLogger kpiMetricLogger;
+    private final CoalescingBuffer coalescingBuffer;
+
+    private KafkaConsumer<String, SpecificRecord> kafkaConsumer;
+    private KafkaClientMetrics kafkaClientMetrics;
+
+    ConsumerLoop(String consumerId, KafkaConsumerProperties consumerProperties,
+                 Function<Map<String, ConsumerRecord<String, SpecificRecord>>, Optional<OffsetAndMetadata>> persister,
+                 KafkaConsumerStatusMonitor kafkaConsumerStatusMonitor, DatabaseCircuitBreaker databaseCircuitBreaker,
+                 MeterRegistry meterRegistry, KpiMetricLogger kpiMetricLogger) {
+        this.consumerId = consumerId;
+        this.consumerProperties = consumerProperties;
+        this.persister = persister;
+        this.kafkaConsumerStatusMonitor = kafkaConsumerStatusMonitor;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.meterRegistry = meterRegistry;
+        this.kpiMetricLogger = kpiMetricLogger;
+        this.coalescingBuffer = consumerProperties.isCoalescingEnabled()
+                ? new CoalescingBuffer(consumerProperties.getCoalescingFlushIntervalMs(), consumerProperties.getCoalescingMaxDevices())
+                : null;
+        kafkaConsumerStatusMonitor.setAssigned(consumerId, false);
+    }
+
+    @Override
+    public void run() {
+        if (!isSubscribed) {
+            log.info("Subscribing {}...", consumerId);
+            subscribe();
+        }
+        while (!isShutdown) {
+            try {
+                pauseWhileDatabaseIsUnavailable();
+                final ConsumerRecords<String, SpecificRecord> records = kafkaConsumer.poll(Duration.of(getPollTimeoutMs(), MILLIS));
+                kpiMetricLogger.recordRecordsInOnePoll(records.count());
+                final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches = coalescingBuffer != null
+                        ? coalesce(records)
+                        : filterDeprecatedRecords(records);
+                if (consumerProperties.isPipelineEnabled()) {
+                    dispatchToPipelines(batches);
+                } else {
+                    persistSequentially(batches);
+                }
+            } catch (WakeupException e) {
+                log.info("Consumer poll woken up");
+                if (!isSubscribed) {
+                    log.error("Unexpected kafka consumer poll wakeup", e);
+                    throw e;
+                }
+            } catch (Exception e) {
+                log.error("Unexpected exception in consumer loop ", e);
+                closeConsumer();
+                if (!isSubscribed) {
+                    log.info("Subscribing {} after kafka consumer was closed...", consumerId);
+                    subscribe();
+                }
+            }
+        }
+        closePipelines();
+        log.info("Exited kafka consumer loop {}", consumerId);
+    }
+
+    void shutdown() {
+        isShutdown = true;
+    }
+
+    //polling continues with all partitions paused, so the consumer stays in the group while the breaker is open
+    private void pauseWhileDatabaseIsUnavailable() {
+        if (databaseCircuitBreaker.isOpen()) {
+            if (!isPausedByCircuitBreaker) {
+                log.warn("Database circuit breaker is open, pausing partitions of {}", consumerId);
+                isPausedByCircuitBreaker = true;
+            }
+            kafkaConsumer.pause(kafkaConsumer.assignment());
+        } else if (isPausedByCircuitBreaker) {
+            isPausedByCircuitBreaker = false;
+            final List<TopicPartition> partitionsToResume = kafkaConsumer.paused().stream()
+                    .filter(partition -> !pipelines.containsKey(partition) || !pipelines.get(partition).isFull())
+                    .toList();
+            log.info("Database circuit breaker is not open anymore, resuming partitions {}", partitionsToResume);
+            kafkaConsumer.resume(partitionsToResume);
+        }
+    }
+
+    private long getPollTimeoutMs() {
+        if (coalescingBuffer == null) {
+            return consumerProperties.getPollTimeoutMs();
+        }
+        return coalescingBuffer.msUntilFlush(System.currentTimeMillis(), consumerProperties.getPollTimeoutMs());
+    }
+
+    //buffered records are handed over only when the flush is due, so their offsets are committed after the flush which covers them
+    private Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> coalesce(ConsumerRecords<String, SpecificRecord> records) {
+        final long now = System.currentTimeMillis();
+        final int coalescedRecords = coalescingBuffer.add(records, now);
+        if (coalescedRecords > 0) {
+            kpiMetricLogger.incCoalescedRecords(coalescedRecords);
+        }
+        final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches = coalescingBuffer.isFlushDue(now)
+                ? coalescingBuffer.drain()
+                : Map.of();
+        kpiMetricLogger.recordCoalescingBufferSize(coalescingBuffer.size());
+        return batches;
+    }
+
+    private void persistSequentially(Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches) {
+        final Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = persistBatches(batches);
+        if (!offsetsToCommit.isEmpty()) {
+            kafkaConsumer.commitAsync(offsetsToCommit, getOffsetCommitCallback());
+        }
+    }
+
+    private Map<TopicPartition, OffsetAndMetadata> persistBatches(Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches) {
+        final Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = new HashMap<>(batches.size());
+        for (Map.Entry<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> entry : batches.entrySet()) {
+            final TopicPartition partition = entry.getKey();
+            final Optional<OffsetAndMetadata> offset = persister.apply(entry.getValue());
+            offset.ifPresent(o -> offsetsToCommit.put(partition, o));
+            OffsetTracker.unpersistedFrom(entry.getValue().values(), offset)
+                    .ifPresent(unpersistedOffset -> seekBack(partition, unpersistedOffset));
+        }
+        return offsetsToCommit;
+    }
+
+    private void dispatchToPipelines(Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches) {
+        for (Map.Entry<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> entry : batches.entrySet()) {
+            final TopicPartition partition = entry.getKey();
+            final PartitionPipeline pipeline = pipelines.computeIfAbsent(partition, this::createPipeline);
+            pipeline.submit(entry.getValue());
+            if (pipeline.isFull()) {
+                log.debug("In-flight queue of partition {} is full, pausing", partition);
+                kafkaConsumer.pause(List.of(partition));
+            }
+        }
+        final Set<TopicPartition> pausedPartitions = kafkaConsumer.paused();
+        final List<TopicPartition> partitionsToResume = new ArrayList<>(pausedPartitions.size());
+        final Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = new HashMap<>(pipelines.size());
+        for (Map.Entry<TopicPartition, PartitionPipeline> entry : pipelines.entrySet()) {
+            final PartitionPipeline pipeline = entry.getValue();
+            pipeline.throwIfFailed();
+            pipeline.takeCompletedOffset().ifPresent(o -> offsetsToCommit.put(entry.getKey(), o));
+            pipeline.takeUnpersistedOffset().ifPresent(unpersistedOffset -> seekBack(entry.getKey(), unpersistedOffset));
+            if (!isPausedByCircuitBreaker && !pipeline.isFull() && pausedPartitions.contains(entry.getKey())) {
+                partitionsToResume.add(entry.getKey());
+            }
+        }
+        if (!partitionsToResume.isEmpty()) {
+            log.debug("Resuming partitions {}", partitionsToResume);
+            kafkaConsumer.resume(partitionsToResume);
+        }
+        if (!offsetsToCommit.isEmpty()) {
+            kafkaConsumer.commitAsync(offsetsToCommit, getOffsetCommitCallback());
+        }
+    }
+
+    //only not persisted records are read again, without restarting the consumer
+    private void seekBack(TopicPartition partition, long offset) {
+        log.warn("Records of partition {} are not persisted from offset {}, seeking back", partition, offset);
+        kafkaConsumer.seek(partition, offset);
+    }
+
+    private PartitionPipeline createPipeline(TopicPartition partition) {
+        return new PartitionPipeline(partition, consumerProperties.getPipelineQueueCapacity(), persister);
+    }
+
+    private void flushRevokedPartitions(Collection<TopicPartition> revokedPartitions) {
+        if (coalescingBuffer == null) {
+            return;
+        }
+        final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches = coalescingBuffer.drain(revokedPartitions);
+        kpiMetricLogger.recordCoalescingBufferSize(coalescingBuffer.size());
+        if (batches.isEmpty()) {
+            return;
+        }
+        log.info("Flushing coalesced records of revoked partitions {}", batches.keySet());
+        if (consumerProperties.isPipelineEnabled()) {
+            batches.forEach((partition, recordById) -> pipelines.computeIfAbsent(partition, this::createPipeline).submit(recordById));
+        } else {
+            commitRevokedOffsets(persistBatches(batches));
+        }
+    }
+
+    private void drainRevokedPipelines(Collection<TopicPartition> revokedPartitions) {
+        final Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = new HashMap<>(revokedPartitions.size());
+        for (TopicPartition partition : revokedPartitions) {
+            final PartitionPipeline pipeline = pipelines.remove(partition);
+            if (pipeline != null) {
+                pipeline.close(consumerProperties.getExecutorTerminationTimeoutMs());
+                pipeline.takeCompletedOffset().ifPresent(o -> offsetsToCommit.put(partition, o));
+            }
+        }
+        commitRevokedOffsets(offsetsToCommit);
+    }
+
+    private void commitRevokedOffsets(Map<TopicPartition, OffsetAndMetadata> offsetsToCommit) {
+        if (!offsetsToCommit.isEmpty()) {
+            try {
+                kafkaConsumer.commitSync(offsetsToCommit);
+                log.info("Committed offsets of revoked partitions: {}", offsetsToCommit);
+            } catch (KafkaException e) {
+                log.error("Failed to commit offsets of revoked partitions: {}", offsetsToCommit, e);
+            }
+        }
+    }
+
+    private void closePipelines() {
+        pipelines.values().forEach(pipeline -> pipeline.close(consumerProperties.getExecutorTerminationTimeoutMs()));
+        pipelines.clear();
+    }
+
+    private void subscribe() {
+        final Properties properties = new Properties(consumerProperties.getProperties().size() + 1);
+        properties.putAll(consumerProperties.getProperties());
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG,
+                properties.getProperty(ConsumerConfig.CLIENT_ID_CONFIG, "registry-service") + "-" + consumerId);
+        kafkaConsumer = new KafkaConsumer<>(properties);
+        kafkaClientMetrics = new KafkaClientMetrics(kafkaConsumer);
+        kafkaClientMetrics.bindTo(meterRegistry);
+
+        kafkaConsumer.subscribe(List.of(consumerProperties.getTopic()), new ConsumerRebalanceListener() {
+            @Override
+            public void onPartitionsRevoked(Collection<TopicPartition> collection) {
+                log.info("Partitions revoked from {}", consumerId);
+                flushRevokedPartitions(collection);
+                drainRevokedPipelines(collection);
+                partitions.clear();
+                isSubscribed = false;
+                kafkaConsumerStatusMonitor.setAssigned(consumerId, false);
+            }
+
+            @Override
+            public void onPartitionsAssigned(Collection<TopicPartition> collection) {
+                log.info("Partitions assigned to {}: {}", consumerId, collection);
+                partitions.addAll(collection);
+                isSubscribed = true;
+                kafkaConsumerStatusMonitor.setAssigned(consumerId, !partitions.isEmpty());
+            }
+        });
+    }
+
+    static Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> filterDeprecatedRecords(ConsumerRecords<String, SpecificRecord> records) {
+        final Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> batches = new HashMap<>(records.partitions().size());
+        for (TopicPartition partition : records.partitions()) {
+            batches.put(partition, filterDeprecatedRecords(records.records(partition)));
+        }
+        return batches;
+    }
+
+    static Map<String, ConsumerRecord<String, SpecificRecord>> filterDeprecatedRecords(List<ConsumerRecord<String, SpecificRecord>> records) {
+        final Map<String, ConsumerRecord<String, SpecificRecord>> filteredRecords = new HashMap<>(records.size());
+        for (ConsumerRecord<String, SpecificRecord> record : records) {
+            filteredRecords.compute(record.key(), (k, v) -> {
+                if (v == null) {
+                    return record;
+                } else if (record.timestamp() > v.timestamp()) {
+                    log.debug("Current record is filtered as deprecated: {}", v.value());
+                    return record;
+                }
+                log.debug("New Record is filtered as deprecated: {}", record.value());
+                return v;
+            });
+        }
+        return filteredRecords;
+    }
+
+    private OffsetCommitCallback getOffsetCommitCallback() {
+        return (committedOffsets, ex) -> {
+            if (ex == null) {
+                log.info("Async commit successful for offsets: {}", committedOffsets);
+            } else {
+                log.error("Async commit failed for offsets: {}. Error: {}", committedOffsets, ex.getMessage());
+                if (ex instanceof KafkaException) {
+                    log.error("Kafka commit error: {}", ex.getMessage());
+                }
+            }
+        };
+    }
+
+    private void closeConsumer() {
+        try {
+            closePipelines();
+            if (coalescingBuffer != null) {
+                //not committed records are redelivered after resubscribe
+                coalescingBuffer.clear();
+                kpiMetricLogger.recordCoalescingBufferSize(0);
+            }
+            if (kafkaConsumer != null) {
+                if (isShutdown) {
+                    log.info("Kafka consumer poll wakeup...");
+                    kafkaConsumer.wakeup();
+                }
+                log.info("Closing kafka consumer {}", consumerId);
+                kafkaConsumer.close();
+                log.info("Kafka consumer {} is closed", consumerId);
+                if (kafkaClientMetrics != null) {
+                    log.warn("Closing kafka consumer metrics");
+                    kafkaClientMetrics.close();
+                    log.info("Kafka consumer metrics are closed");
+                }
+                isSubscribed = false;
+                isPausedByCircuitBreaker = false;
+                kafkaConsumerStatusMonitor.setAssigned(consumerId, false);
+            }
+            if (!isShutdown) {
+                log.info("Waiting {} ms before consumer restart", consumerProperties.getRestartTimeoutMs());
+                Thread.sleep(consumerProperties.getRestartTimeoutMs());
+            }
+        } catch (InterruptedException e) {
+            log.error("Failed to wait for consumer restart because thread was interrupted", e);
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -1,28 +1,30 @@
 package com.iot.devices.management.registry_service.kafka;
 
+import com.iot.devices.management.registry_service.health.KafkaConsumerStatusMonitor;
 import com.iot.devices.management.registry_service.kafka.properties.KafkaConsumerProperties;
 import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.OffsetTracker;
 import com.iot.devices.management.registry_service.persistence.ParallelDevicePatcher;
+import com.iot.devices.management.registry_service.persistence.TelemetryCopyIngestor;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
 import io.micrometer.core.instrument.MeterRegistry;
-import io.micrometer.core.instrument.binder.kafka.KafkaClientMetrics;
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecord;
-import org.apache.kafka.clients.consumer.*;
-import org.apache.kafka.common.KafkaException;
-import org.apache.kafka.common.TopicPartition;
-import org.apache.kafka.common.errors.WakeupException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.springframework.stereotype.Component;
 
-import java.time.Duration;
-import java.util.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.atomic.AtomicBoolean;
 
-import static java.time.temporal.ChronoUnit.MILLIS;
+import static java.lang.System.currentTimeMillis;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 @Slf4j
@@ -30,149 +32,54 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 @RequiredArgsConstructor
 public class KafkaConsumerRunner {
 
-    private final ExecutorService executorService = Executors.newSingleThreadExecutor();
-    private final Collection<TopicPartition> partitions = new ArrayList<>();
-    private volatile boolean isShutdown = false;
-    private volatile boolean isSubscribed = false;
+    private final List<ConsumerLoop> consumerLoops = new ArrayList<>();
 
     private final ParallelDevicePatcher parallelDevicePatcher;
+    private final TelemetryCopyIngestor telemetryCopyIngestor;
     private final KafkaConsumerProperties consumerProperties;
-    private final AtomicBoolean kafkaConsumerStatusMonitor;
+    private final KafkaConsumerStatusMonitor kafkaConsumerStatusMonitor;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
     private final MeterRegistry meterRegistry;
     private final KpiMetricLogger kpiMetricLogger;
 
-    private KafkaConsumer<String, SpecificRecord> kafkaConsumer;
-    private KafkaClientMetrics kafkaClientMetrics;
+    private ExecutorService executorService;
 
 
     @PostConstruct
     public void pollMessages() {
-        executorService.submit(this::runConsumer);
-    }
-
-    private void runConsumer() {
-        if (!isSubscribed) {
-            log.info("Subscribing...");
-            subscribe();
-        }
-        while (!isShutdown) {
-            try {
-                final ConsumerRecords<String, SpecificRecord> records = kafkaConsumer.poll(Duration.of(consumerProperties.getPollTimeoutMs(), MILLIS));
-                kpiMetricLogger.recordRecordsInOnePoll(records.count());
-                final Map<TopicPartition, OffsetAndMetadata> offsetsToCommit = new HashMap<>(partitions.size());
-                for (TopicPartition partition : records.partitions()) {
-                    final List<ConsumerRecord<String, SpecificRecord>> partitionRecords = records.records(partition);
-                    final Map<String, ConsumerRecord<String, SpecificRecord>> filteredRecordById = filterDeprecatedRecords(partitionRecords);
-                    final Optional<OffsetAndMetadata> offset = parallelDevicePatcher.patch(filteredRecordById);
-                    offset.ifPresent(o -> offsetsToCommit.put(partition, o));
-                }
-                if (!offsetsToCommit.isEmpty()) {
-                    kafkaConsumer.commitAsync(offsetsToCommit, getOffsetCommitCallback());
-                }
-            } catch (WakeupException e) {
-                log.info("Consumer poll woken up");
-                if (!isSubscribed) {
-                    log.error("Unexpected kafka consumer poll wakeup", e);
-                    throw e;
-                }
-            } catch (Exception e) {
-                log.error("Unexpected exception in consumer loop ", e);
-                closeConsumer();
-                if (!isSubscribed) {
-                    log.info("Subscribing after kafka consumer was closed...");
-                    subscribe();
-                }
-            }
+        final int concurrency = consumerProperties.getConcurrency();
+        log.info("Starting {} kafka consumer loops", concurrency);
+        executorService = Executors.newFixedThreadPool(concurrency, Thread.ofPlatform().name("kafka-consumer-", 0).factory());
+        for (int i = 0; i < concurrency; i++) {
+            final ConsumerLoop consumerLoop = new ConsumerLoop("consumer-" + i, consumerProperties, this::persist,
+                    kafkaConsumerStatusMonitor, databaseCircuitBreaker, meterRegistry, kpiMetricLogger);
+            consumerLoops.add(consumerLoop);
+            executorService.submit(consumerLoop);
         }
-        log.info("Exited kafka consumer loop");
     }
 
-    private void subscribe() {
-        final Properties properties = new Properties(consumerProperties.getProperties().size());
-        properties.putAll(consumerProperties.getProperties());
-        kafkaConsumer = new KafkaConsumer<>(properties);
-        kafkaClientMetrics = new KafkaClientMetrics(kafkaConsumer);
-        kafkaClientMetrics.bindTo(meterRegistry);
-
-        kafkaConsumer.subscribe(List.of(consumerProperties.getTopic()), new ConsumerRebalanceListener() {
-            @Override
-            public void onPartitionsRevoked(Collection<TopicPartition> collection) {
-                log.info("Partitions revoked");
-                partitions.clear();
-                isSubscribed = false;
-                kafkaConsumerStatusMonitor.set(false);
-            }
-
-            @Override
-            public void onPartitionsAssigned(Collection<TopicPartition> collection) {
-                log.info("Partitions assigned: {}", collection);
-                partitions.addAll(collection);
-                isSubscribed = true;
-                kafkaConsumerStatusMonitor.set(!partitions.isEmpty());
-            }
-        });
-    }
-
-    private Map<String, ConsumerRecord<String, SpecificRecord>> filterDeprecatedRecords(List<ConsumerRecord<String, SpecificRecord>> records) {
-        final Map<String, ConsumerRecord<String, SpecificRecord>> filteredRecords = new HashMap<>(records.size());
-        for (ConsumerRecord<String, SpecificRecord> record : records) {
-            filteredRecords.compute(record.key(), (k, v) -> {
-                if (v == null) {
-                    return record;
-                } else if (record.timestamp() > v.timestamp()) {
-                    log.debug("Current record is filtered as deprecated: {}", v.value());
-                    return record;
-                }
-                log.debug("New Record is filtered as deprecated: {}", record.value());
-                return v;
-            });
-        }
-        return filteredRecords;
-    }
-
-    private OffsetCommitCallback getOffsetCommitCallback() {
-        return (committedOffsets, ex) -> {
-            if (ex == null) {
-                log.info("Async commit successful for offsets: {}", committedOffsets);
-            } else {
-                log.error("Async commit failed for offsets: {}. Error: {}", committedOffsets, ex.getMessage());
-                if (ex instanceof KafkaException) {
-                    log.error("Kafka commit error: {}", ex.getMessage());
-                }
-            }
+    private Optional<OffsetAndMetadata> persist(Map<String, ConsumerRecord<String, SpecificRecord>> recordById) {
+        final Optional<OffsetAndMetadata> persistedOffset = switch (consumerProperties.getIngestMode()) {
+            case ROW -> parallelDevicePatcher.patch(recordById);
+            case COPY -> telemetryCopyIngestor.ingest(recordById);
         };
+        persistedOffset.ifPresent(offset -> recordEndToEndLatency(recordById, offset.offset()));
+        return persistedOffset;
     }
 
-    private void closeConsumer() {
-        try {
-            if (kafkaConsumer != null) {
-                if (isShutdown) {
-                    log.info("Kafka consumer poll wakeup...");
-                    kafkaConsumer.wakeup();
-                }
-                log.info("Closing kafka consumer");
-                kafkaConsumer.close();
-                log.info("Kafka consumer is closed");
-                if (kafkaClientMetrics != null) {
-                    log.warn("Closing kafka consumer metrics");
-                    kafkaClientMetrics.close();
-                    log.info("Kafka consumer metrics are closed");
-                }
-                isSubscribed = false;
-            }
-            if (!isShutdown) {
-                log.info("Waiting {} ms before consumer restart", consumerProperties.getRestartTimeoutMs());
-                Thread.sleep(consumerProperties.getRestartTimeoutMs());
+    //records at or after the persisted offset will be redelivered, so their latency is recorded on the next try
+    private void recordEndToEndLatency(Map<String, ConsumerRecord<String, SpecificRecord>> recordById, long persistedOffset) {
+        final long nowMs = currentTimeMillis();
+        for (ConsumerRecord<String, SpecificRecord> record : recordById.values()) {
+            if (OffsetTracker.firstOffset(record) < persistedOffset) {
+                kpiMetricLogger.recordEndToEndLatency(nowMs - record.timestamp());
             }
-        } catch (InterruptedException e) {
-            log.error("Failed to wait for consumer restart because thread was interrupted", e);
-            throw new RuntimeException(e);
         }
     }
 
     @PreDestroy
     private void shutdown() throws InterruptedException {
-        isShutdown = true;
+        consumerLoops.forEach(ConsumerLoop::shutdown);
         executorService.shutdown();
         if (!executorService.awaitTermination(consumerProperties.getExecutorTerminationTimeoutMs(), MILLISECONDS)) {
             executorService.shutdownNow();
@@ -0,0 +1,97 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import com.iot.devices.management.registry_service.persistence.OffsetTracker;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//persists batches of one partition in poll order on its own worker, only the poll thread submits batches and takes offsets
+@Slf4j
+class PartitionPipeline {
+
+    private final TopicPartition partition;
+    private final int queueCapacity;
+    private final Function<Map<String, ConsumerRecord<String, SpecificRecord>>, Optional<OffsetAndMetadata>> persister;
+    private final ExecutorService worker;
+    private final AtomicInteger inFlightBatches = new AtomicInteger();
+    private final AtomicReference<OffsetAndMetadata> completedOffset = new AtomicReference<>();
+    private volatile Exception failure;
+    private volatile long unpersistedOffset = -1;
+
+    PartitionPipeline(TopicPartition partition, int queueCapacity,
+                      Function<Map<String, ConsumerRecord<String, SpecificRecord>>, Optional<OffsetAndMetadata>> persister) {
+        this.partition = partition;
+        this.queueCapacity = queueCapacity;
+        this.persister = persister;
+        this.worker = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("partition-worker-" + partition).factory());
+    }
+
+    void submit(Map<String, ConsumerRecord<String, SpecificRecord>> recordById) {
+        inFlightBatches.incrementAndGet();
+        worker.execute(() -> {
+            try {
+                //batches after a failed one are skipped, so the committed offset never passes an unpersisted record
+                if (failure == null && unpersistedOffset < 0) {
+                    final Optional<OffsetAndMetadata> offset = persister.apply(recordById);
+                    offset.ifPresent(completedOffset::set);
+                    OffsetTracker.unpersistedFrom(recordById.values(), offset).ifPresent(o -> unpersistedOffset = o);
+                }
+            } catch (Exception e) {
+                log.error("Failed to persist batch of partition {}", partition, e);
+                failure = e;
+            } finally {
+                inFlightBatches.decrementAndGet();
+            }
+        });
+    }
+
+    boolean isFull() {
+        return inFlightBatches.get() >= queueCapacity;
+    }
+
+    Optional<OffsetAndMetadata> takeCompletedOffset() {
+        return Optional.ofNullable(completedOffset.getAndSet(null));
+    }
+
+    //returned once all batches submitted after the unpersisted one are skipped, so the partition can be read again from it
+    OptionalLong takeUnpersistedOffset() {
+        if (unpersistedOffset < 0 || inFlightBatches.get() > 0) {
+            return OptionalLong.empty();
+        }
+        final long offset = unpersistedOffset;
+        unpersistedOffset = -1;
+        return OptionalLong.of(offset);
+    }
+
+    void throwIfFailed() {
+        if (failure != null) {
+            throw new IllegalStateException("Worker of partition " + partition + " failed", failure);
+        }
+    }
+
+    void close(long terminationTimeoutMs) {
+        worker.shutdown();
+        try {
+            if (!worker.awaitTermination(terminationTimeoutMs, MILLISECONDS)) {
+                worker.shutdownNow();
+                log.warn("Worker of partition {} shutdown forced", partition);
+            }
+        } catch (InterruptedException e) {
+            worker.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
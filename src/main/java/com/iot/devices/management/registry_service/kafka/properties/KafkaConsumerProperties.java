@@ -1,5 +1,6 @@
 package com.iot.devices.management.registry_service.kafka.properties;
 
+import com.iot.devices.management.registry_service.persistence.IngestMode;
 import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
@@ -40,6 +41,27 @@ public class KafkaConsumerProperties {
     @Value("${" + PROPERTIES_PREFIX + ".executor-termination-timeout-ms}")
     private Long executorTerminationTimeoutMs;
 
+    @Value("${" + PROPERTIES_PREFIX + ".concurrency}")
+    private int concurrency;
+
+    @Value("${" + PROPERTIES_PREFIX + ".ingest-mode}")
+    private IngestMode ingestMode;
+
+    @Value("${" + PROPERTIES_PREFIX + ".pipeline.enabled}")
+    private boolean pipelineEnabled;
+
+    @Value("${" + PROPERTIES_PREFIX + ".pipeline.queue-capacity}")
+    private int pipelineQueueCapacity;
+
+    @Value("${" + PROPERTIES_PREFIX + ".coalescing.enabled}")
+    private boolean coalescingEnabled;
+
+    @Value("${" + PROPERTIES_PREFIX + ".coalescing.flush-interval-ms}")
+    private long coalescingFlushIntervalMs;
+
+    @Value("${" + PROPERTIES_PREFIX + ".coalescing.max-devices}")
+    private int coalescingMaxDevices;
+
     @PostConstruct
     private void logProperties() {
         log.info("kafka consumer properties: {}", this);
@@ -0,0 +1,148 @@
+package com.iot.devices.management.registry_service.mapping;
+
+import com.iot.devices.*;
+import lombok.experimental.UtilityClass;
+import org.springframework.lang.Nullable;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Instant;
+
+import static java.sql.Types.*;
+
+//binds avro fields straight onto DeviceTelemetryQueries.JDBC_* placeholders, without intermediate telemetry objects,
+//uuid parsing, Optional wrappers and OffsetDateTime conversions. Enum names are the constants held by the enums
+@UtilityClass
+public class AvroTelemetryBinder {
+
+    public static void bindDoorSensor(PreparedStatement ps, DoorSensor ds) throws SQLException {
+        int i = bindCommonParameters(ps, ds.getStatus(), ds.getFirmwareVersion(), ds.getLastUpdated(), true);
+        setEnumName(ps, i++, ds.getDoorState());
+        setBoolean(ps, i++, ds.getTamperAlert());
+        setEpochMillis(ps, i++, ds.getLastOpened());
+        setInt(ps, i++, ds.getBatteryLevel());
+        ps.setString(i, ds.getDeviceId());
+    }
+
+    public static void bindEnergyMeter(PreparedStatement ps, EnergyMeter em) throws SQLException {
+        int i = bindCommonParameters(ps, em.getStatus(), em.getFirmwareVersion(), em.getLastUpdated(), false);
+        setFloat(ps, i++, em.getVoltage());
+        setFloat(ps, i++, em.getCurrent());
+        setFloat(ps, i++, em.getPower());
+        setFloat(ps, i++, em.getEnergyConsumed());
+        ps.setString(i, em.getDeviceId());
+    }
+
+    public static void bindSmartLight(PreparedStatement ps, SmartLight sl) throws SQLException {
+        int i = bindCommonParameters(ps, sl.getStatus(), sl.getFirmwareVersion(), sl.getLastUpdated(), false);
+        setBoolean(ps, i++, sl.getIsOn());
+        setInt(ps, i++, sl.getBrightness());
+        setString(ps, i++, sl.getColor());
+        setEnumName(ps, i++, sl.getMode());
+        setFloat(ps, i++, sl.getPowerConsumption());
+        ps.setString(i, sl.getDeviceId());
+    }
+
+    public static void bindSmartPlug(PreparedStatement ps, SmartPlug sp) throws SQLException {
+        int i = bindCommonParameters(ps, sp.getStatus(), sp.getFirmwareVersion(), sp.getLastUpdated(), false);
+        setBoolean(ps, i++, sp.getIsOn());
+        setFloat(ps, i++, sp.getVoltage());
+        setFloat(ps, i++, sp.getCurrent());
+        setFloat(ps, i++, sp.getPowerUsage());
+        ps.setString(i, sp.getDeviceId());
+    }
+
+    public static void bindSoilMoistureSensor(PreparedStatement ps, SoilMoistureSensor sms) throws SQLException {
+        int i = bindCommonParameters(ps, sms.getStatus(), sms.getFirmwareVersion(), sms.getLastUpdated(), false);
+        setFloat(ps, i++, sms.getMoisturePercentage());
+        setFloat(ps, i++, sms.getSoilTemperature());
+        setInt(ps, i++, sms.getBatteryLevel());
+        ps.setString(i, sms.getDeviceId());
+    }
+
+    public static void bindTemperatureSensor(PreparedStatement ps, TemperatureSensor ts) throws SQLException {
+        int i = bindCommonParameters(ps, ts.getStatus(), ts.getFirmwareVersion(), ts.getLastUpdated(), true);
+        setFloat(ps, i++, ts.getTemperature());
+        setFloat(ps, i++, ts.getHumidity());
+        setFloat(ps, i++, ts.getPressure());
+        setEnumName(ps, i++, ts.getUnit());
+        ps.setString(i, ts.getDeviceId());
+    }
+
+    public static void bindThermostat(PreparedStatement ps, Thermostat t) throws SQLException {
+        int i = bindCommonParameters(ps, t.getStatus(), t.getFirmwareVersion(), t.getLastUpdated(), false);
+        setFloat(ps, i++, t.getCurrentTemperature());
+        setFloat(ps, i++, t.getTargetTemperature());
+        setFloat(ps, i++, t.getHumidity());
+        setEnumName(ps, i++, t.getMode());
+        ps.setString(i, t.getDeviceId());
+    }
+
+    //returns index of the first device specific parameter
+    private static int bindCommonParameters(PreparedStatement ps, @Nullable DeviceStatus status, @Nullable String firmwareVersion,
+                                            @Nullable Instant lastUpdated, boolean withLastActiveAt) throws SQLException {
+        int i = 1;
+        setEnumName(ps, i++, status);
+        if (withLastActiveAt) {
+            setEnumName(ps, i++, status);
+            setEpochMillis(ps, i++, lastUpdated);
+        }
+        setString(ps, i++, firmwareVersion);
+        setEpochMillis(ps, i++, lastUpdated);
+        return i;
+    }
+
+    private static void setEnumName(PreparedStatement ps, int index, @Nullable Enum<?> value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, VARCHAR);
+        } else {
+            ps.setString(index, value.name());
+        }
+    }
+
+    private static void setString(PreparedStatement ps, int index, @Nullable String value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, VARCHAR);
+        } else {
+            ps.setString(index, value);
+        }
+    }
+
+    private static void setFloat(PreparedStatement ps, int index, @Nullable Float value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, REAL);
+        } else {
+            ps.setFloat(index, value);
+        }
+    }
+
+    private static void setInt(PreparedStatement ps, int index, @Nullable Integer value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, INTEGER);
+        } else {
+            ps.setInt(index, value);
+        }
+    }
+
+    private static void setBoolean(PreparedStatement ps, int index, @Nullable Boolean value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, BOOLEAN);
+        } else {
+            ps.setBoolean(index, value);
+        }
+    }
+
+    //timestamps are bound as epoch millis and converted by postgres, so no Timestamp or OffsetDateTime is created per record
+    private static void setEpochMillis(PreparedStatement ps, int index, @Nullable Instant value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, BIGINT);
+        } else {
+            ps.setLong(index, value.toEpochMilli());
+        }
+    }
+
+    @FunctionalInterface
+    public interface StatementBinder<T> {
+        void bind(PreparedStatement ps, T telemetry) throws SQLException;
+    }
+}
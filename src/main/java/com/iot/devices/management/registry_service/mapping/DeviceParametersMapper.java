@@ -2,9 +2,14 @@ package com.iot.devices.management.registry_service.mapping;
 
 import com.iot.devices.*;
 import lombok.experimental.UtilityClass;
+import org.apache.avro.specific.SpecificRecord;
+import org.springframework.lang.Nullable;
 
+import java.time.Instant;
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
+import static com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus.ONLINE;
 import static java.time.ZoneOffset.UTC;
 import static java.util.Optional.ofNullable;
 
@@ -101,4 +106,71 @@ public class DeviceParametersMapper {
                 thermostat.getLastUpdated().atOffset(UTC)
         );
     }
+
+    public static TelemetryRow mapTelemetryRow(SpecificRecord record) {
+        return switch (record) {
+            case DoorSensor ds -> rowBuilder(record, ds.getDeviceId(), ds.getStatus(), ds.getFirmwareVersion(), ds.getLastUpdated())
+                    .lastActiveAt(getLastActiveAt(ofNullable(ds.getStatus()).map(Enum::name).orElse(null), ds.getLastUpdated().atOffset(UTC)))
+                    .doorState(ofNullable(ds.getDoorState()).map(Enum::name).orElse(null))
+                    .tamperAlert(ds.getTamperAlert())
+                    .lastOpened(ofNullable(ds.getLastOpened()).map(instant -> instant.atOffset(UTC)).orElse(null))
+                    .batteryLevel(ds.getBatteryLevel())
+                    .build();
+            case EnergyMeter em -> rowBuilder(record, em.getDeviceId(), em.getStatus(), em.getFirmwareVersion(), em.getLastUpdated())
+                    .voltage(em.getVoltage())
+                    .current(em.getCurrent())
+                    .power(em.getPower())
+                    .energyConsumed(em.getEnergyConsumed())
+                    .build();
+            case SmartLight sl -> rowBuilder(record, sl.getDeviceId(), sl.getStatus(), sl.getFirmwareVersion(), sl.getLastUpdated())
+                    .isOn(sl.getIsOn())
+                    .brightness(sl.getBrightness())
+                    .colour(sl.getColor())
+                    .mode(ofNullable(sl.getMode()).map(Enum::name).orElse(null))
+                    .powerConsumption(sl.getPowerConsumption())
+                    .build();
+            case SmartPlug sp -> rowBuilder(record, sp.getDeviceId(), sp.getStatus(), sp.getFirmwareVersion(), sp.getLastUpdated())
+                    .isOn(sp.getIsOn())
+                    .voltage(sp.getVoltage())
+                    .current(sp.getCurrent())
+                    .powerUsage(sp.getPowerUsage())
+                    .build();
+            case SoilMoistureSensor sms -> rowBuilder(record, sms.getDeviceId(), sms.getStatus(), sms.getFirmwareVersion(), sms.getLastUpdated())
+                    .moisturePercentage(sms.getMoisturePercentage())
+                    .soilTemperature(sms.getSoilTemperature())
+                    .batteryLevel(sms.getBatteryLevel())
+                    .build();
+            case TemperatureSensor ts -> rowBuilder(record, ts.getDeviceId(), ts.getStatus(), ts.getFirmwareVersion(), ts.getLastUpdated())
+                    .lastActiveAt(getLastActiveAt(ofNullable(ts.getStatus()).map(Enum::name).orElse(null), ts.getLastUpdated().atOffset(UTC)))
+                    .temperature(ts.getTemperature())
+                    .humidity(ts.getHumidity())
+                    .pressure(ts.getPressure())
+                    .unit(ofNullable(ts.getUnit()).map(Enum::name).orElse(null))
+                    .build();
+            case Thermostat t -> rowBuilder(record, t.getDeviceId(), t.getStatus(), t.getFirmwareVersion(), t.getLastUpdated())
+                    .currentTemperature(t.getCurrentTemperature())
+                    .targetTemperature(t.getTargetTemperature())
+                    .humidity(t.getHumidity())
+                    .mode(ofNullable(t.getMode()).map(Enum::name).orElse(null))
+                    .build();
+            default -> throw new IllegalArgumentException("Unknown device type detected");
+        };
+    }
+
+    private static TelemetryRow.TelemetryRowBuilder rowBuilder(SpecificRecord record, String deviceId, @Nullable DeviceStatus status,
+                                                               String firmwareVersion, Instant lastUpdated) {
+        return TelemetryRow.builder()
+                .id(UUID.fromString(deviceId))
+                .deviceType(record.getSchema().getName())
+                .status(ofNullable(status).map(Enum::name).orElse(null))
+                .firmwareVersion(firmwareVersion)
+                .lastUpdated(lastUpdated.atOffset(UTC));
+    }
+
+    public static OffsetDateTime getLastActiveAt(@Nullable String status, OffsetDateTime lastUpdated) {
+        if (status == null) {
+            return null;
+        }
+        return status.equals(ONLINE.name()) ? lastUpdated : null;
+    }
 }
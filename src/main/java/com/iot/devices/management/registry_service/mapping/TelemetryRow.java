@@ -0,0 +1,40 @@
+package com.iot.devices.management.registry_service.mapping;
+
+import lombok.Builder;
+import lombok.Value;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Value
+@Builder
+public class TelemetryRow {
+    UUID id;
+    String deviceType;
+    String status;
+    String firmwareVersion;
+    OffsetDateTime lastUpdated;
+    OffsetDateTime lastActiveAt;
+    String doorState;
+    Boolean tamperAlert;
+    OffsetDateTime lastOpened;
+    Integer batteryLevel;
+    Float voltage;
+    Float current;
+    Float power;
+    Float energyConsumed;
+    Boolean isOn;
+    Integer brightness;
+    String colour;
+    String mode;
+    Float powerConsumption;
+    Float powerUsage;
+    Float moisturePercentage;
+    Float soilTemperature;
+    Float temperature;
+    Float humidity;
+    Float pressure;
+    String unit;
+    Float currentTemperature;
+    Float targetTemperature;
+}
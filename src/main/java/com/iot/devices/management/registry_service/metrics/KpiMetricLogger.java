@@ -5,7 +5,28 @@ public interface KpiMetricLogger {
     void recordDeviceUpdatingTime(String deviceType, long l);
     void incSeveralUpdatedDevices(String deviceType);
     void incRetriesCount();
+    void recordRetryBackoff(long waitMs);
+    void recordDbCircuitBreakerState(int state);
+    void incDbCircuitBreakerRejectedCalls();
     void incNonRetriableErrorsCount(String errorName);
     void recordActiveThreadsInParallelPatcher(int activeThreadsCount);
+    void recordAdmissionPermitWait(long waitMs);
+    void recordAdmissionQueueDepth(int queueDepth);
+    void recordAdmissionLimit(int limit);
+    void incAdmissionDeferredTasks();
+    void incAdmissionRejectedTasks();
     void recordRecordsInOnePoll(int recordsCount);
+    void recordCopyIngest(int recordsCount, long timeMs);
+    void incCopyIngestFallbacks();
+    void incCoalescedRecords(int recordsCount);
+    void recordCoalescingBufferSize(int devicesCount);
+    void recordEndToEndLatency(long latencyMs);
+    void recordTelemetryBindingAllocation(String deviceType, long bytesPerRecord);
+    void recordTelemetryHistoryFlush(int recordsCount, long timeMs);
+    void incTelemetryHistoryDroppedRecords(String reason, int recordsCount);
+    void recordTelemetryHistoryQueueSize(int queueSize);
+    void incOptimisticLockConflicts(String entity);
+    void incOptimisticLockRetries(String entity);
+    void recordTokenReaperRun(int deletedTokens, long timeMs, long tableSizeBytes);
+    void recordLastLoginFlush(int usersCount, long flushLagMs);
 }
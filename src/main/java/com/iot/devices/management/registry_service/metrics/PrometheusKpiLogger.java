@@ -9,19 +9,47 @@ import org.springframework.stereotype.Component;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Component
 public class PrometheusKpiLogger implements KpiMetricLogger {
 
     private final AtomicInteger activeThreads = new AtomicInteger(0);
     private final AtomicInteger recordsInOnePoll = new AtomicInteger(0);
+    private final AtomicInteger coalescingBufferSize = new AtomicInteger(0);
+    private final AtomicInteger dbCircuitBreakerState = new AtomicInteger(0);
+    private final AtomicInteger admissionQueueDepth = new AtomicInteger(0);
+    private final AtomicInteger admissionLimit = new AtomicInteger(0);
+    private final AtomicInteger telemetryHistoryQueueSize = new AtomicInteger(0);
+    private final AtomicLong tokensTableSize = new AtomicLong(0);
     private final ConcurrentMap<String, Counter> notUpdatedDevicesCounters = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> severalUpdatedDevicesCounters = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, Counter> nonRetriableErrorsCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> telemetryHistoryDroppedRecordsCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> optimisticLockConflictsCounters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Counter> optimisticLockRetriesCounters = new ConcurrentHashMap<>();
     private final ConcurrentMap<String, DistributionSummary> deviceUpdatingTimeSummaries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, DistributionSummary> telemetryBindingAllocationSummaries = new ConcurrentHashMap<>();
 
     private final MeterRegistry meterRegistry;
     private final Counter retriesCounter;
+    private final DistributionSummary retryBackoffSummary;
+    private final Counter dbCircuitBreakerRejectedCallsCounter;
+    private final DistributionSummary admissionPermitWaitSummary;
+    private final Counter admissionDeferredTasksCounter;
+    private final Counter admissionRejectedTasksCounter;
+    private final Counter copyIngestedRecordsCounter;
+    private final Counter copyIngestFallbacksCounter;
+    private final Counter coalescedRecordsCounter;
+    private final DistributionSummary copyIngestTimeSummary;
+    private final DistributionSummary copyIngestThroughputSummary;
+    private final DistributionSummary endToEndLatencySummary;
+    private final Counter telemetryHistoryAppendedRecordsCounter;
+    private final DistributionSummary telemetryHistoryFlushTimeSummary;
+    private final Counter tokenReaperDeletedTokensCounter;
+    private final DistributionSummary tokenReaperRunTimeSummary;
+    private final DistributionSummary lastLoginFlushBatchSizeSummary;
+    private final DistributionSummary lastLoginFlushLagSummary;
 
     public PrometheusKpiLogger(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
@@ -30,12 +58,113 @@ public class PrometheusKpiLogger implements KpiMetricLogger {
                 .description("The number of retries during patching device")
                 .register(meterRegistry);
 
+        this.retryBackoffSummary = DistributionSummary.builder("rs_patch_retry_backoff_time")
+                .description("The time waited before retrying a failed patch")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.dbCircuitBreakerRejectedCallsCounter = Counter.builder("rs_db_circuit_breaker_rejected_calls_count")
+                .description("The number of patch attempts rejected because database circuit breaker is open")
+                .register(meterRegistry);
+
+        this.admissionPermitWaitSummary = DistributionSummary.builder("rs_patcher_admission_permit_wait_time")
+                .description("The time persist task waited for admission permit")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.admissionDeferredTasksCounter = Counter.builder("rs_patcher_admission_deferred_tasks_count")
+                .description("The number of persist tasks which had to wait for admission permit")
+                .register(meterRegistry);
+
+        this.admissionRejectedTasksCounter = Counter.builder("rs_patcher_admission_rejected_tasks_count")
+                .description("The number of persist tasks which did not get admission permit in time")
+                .register(meterRegistry);
+
+        this.copyIngestedRecordsCounter = Counter.builder("rs_copy_ingested_records_count")
+                .description("The number of records persisted through COPY staging ingest")
+                .register(meterRegistry);
+
+        this.copyIngestFallbacksCounter = Counter.builder("rs_copy_ingest_fallbacks_count")
+                .description("The number of COPY ingest batches which fell back to row-by-row patching")
+                .register(meterRegistry);
+
+        this.coalescedRecordsCounter = Counter.builder("rs_coalesced_records_count")
+                .description("The number of records merged into an already buffered record of the same device")
+                .register(meterRegistry);
+
+        this.copyIngestTimeSummary = DistributionSummary.builder("rs_copy_ingest_time")
+                .description("The time during which COPY ingest of one batch finished successfully")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.copyIngestThroughputSummary = DistributionSummary.builder("rs_copy_ingest_throughput")
+                .description("The number of records per second persisted by one COPY ingest batch")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.endToEndLatencySummary = DistributionSummary.builder("rs_end_to_end_latency")
+                .description("The time from producing telemetry record to having it persisted")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.telemetryHistoryAppendedRecordsCounter = Counter.builder("rs_telemetry_history_appended_records_count")
+                .description("The number of records appended to telemetry history")
+                .register(meterRegistry);
+
+        this.telemetryHistoryFlushTimeSummary = DistributionSummary.builder("rs_telemetry_history_flush_time")
+                .description("The time during which one batch was appended to telemetry history")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.tokenReaperDeletedTokensCounter = Counter.builder("rs_token_reaper_deleted_tokens_count")
+                .description("The number of expired and revoked tokens deleted by token reaper")
+                .register(meterRegistry);
+
+        this.tokenReaperRunTimeSummary = DistributionSummary.builder("rs_token_reaper_run_time")
+                .description("The time during which one token reaper run deleted all its batches")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.lastLoginFlushBatchSizeSummary = DistributionSummary.builder("rs_last_login_flush_batch_size")
+                .description("The number of users whose last login time was written by one update")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
+        this.lastLoginFlushLagSummary = DistributionSummary.builder("rs_last_login_flush_lag")
+                .description("The time between the oldest login of a batch and writing its last login time")
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .register(meterRegistry);
+
         Gauge.builder("rs_records_per_poll_gauge", recordsInOnePoll, AtomicInteger::get)
                 .description("The number of records received in one poll")
                 .register(meterRegistry);
 
+        Gauge.builder("rs_db_circuit_breaker_state", dbCircuitBreakerState, AtomicInteger::get)
+                .description("The state of database circuit breaker: 0 - closed, 1 - open, 2 - half open, 3 - disabled, 4 - forced open")
+                .register(meterRegistry);
+
+        Gauge.builder("rs_coalescing_buffer_devices", coalescingBufferSize, AtomicInteger::get)
+                .description("The number of devices currently waiting in coalescing buffer for flush")
+                .register(meterRegistry);
+
         Gauge.builder("rs_parallel_persister_active_threads", activeThreads, AtomicInteger::get)
-                .description("The number of threads currently executing tasks")
+                .description("The number of persist tasks currently in flight")
+                .register(meterRegistry);
+
+        Gauge.builder("rs_patcher_admission_queue_depth", admissionQueueDepth, AtomicInteger::get)
+                .description("The number of persist tasks waiting for admission permit")
+                .register(meterRegistry);
+
+        Gauge.builder("rs_patcher_admission_limit", admissionLimit, AtomicInteger::get)
+                .description("The current number of admission permits")
+                .register(meterRegistry);
+
+        Gauge.builder("rs_telemetry_history_queue_size", telemetryHistoryQueueSize, AtomicInteger::get)
+                .description("The number of records waiting to be appended to telemetry history")
+                .register(meterRegistry);
+
+        Gauge.builder("rs_tokens_table_size_bytes", tokensTableSize, AtomicLong::get)
+                .description("The total size of tokens table with its indexes after the last token reaper run")
                 .register(meterRegistry);
     }
 
@@ -75,6 +204,21 @@ public class PrometheusKpiLogger implements KpiMetricLogger {
         retriesCounter.increment();
     }
 
+    @Override
+    public void recordRetryBackoff(long waitMs) {
+        retryBackoffSummary.record(waitMs);
+    }
+
+    @Override
+    public void recordDbCircuitBreakerState(int state) {
+        dbCircuitBreakerState.set(state);
+    }
+
+    @Override
+    public void incDbCircuitBreakerRejectedCalls() {
+        dbCircuitBreakerRejectedCallsCounter.increment();
+    }
+
     @Override
     public void incNonRetriableErrorsCount(String errorName) {
         nonRetriableErrorsCounters.computeIfAbsent(errorName, (error) ->
@@ -90,8 +234,125 @@ public class PrometheusKpiLogger implements KpiMetricLogger {
         activeThreads.set(activeThreadsCount);
     }
 
+    @Override
+    public void recordAdmissionPermitWait(long waitMs) {
+        admissionPermitWaitSummary.record(waitMs);
+    }
+
+    @Override
+    public void recordAdmissionQueueDepth(int queueDepth) {
+        admissionQueueDepth.set(queueDepth);
+    }
+
+    @Override
+    public void recordAdmissionLimit(int limit) {
+        admissionLimit.set(limit);
+    }
+
+    @Override
+    public void incAdmissionDeferredTasks() {
+        admissionDeferredTasksCounter.increment();
+    }
+
+    @Override
+    public void incAdmissionRejectedTasks() {
+        admissionRejectedTasksCounter.increment();
+    }
+
     @Override
     public void recordRecordsInOnePoll(int recordsCount) {
         recordsInOnePoll.set(recordsCount);
     }
+
+    @Override
+    public void recordCopyIngest(int recordsCount, long timeMs) {
+        copyIngestedRecordsCounter.increment(recordsCount);
+        copyIngestTimeSummary.record(timeMs);
+        copyIngestThroughputSummary.record(recordsCount * 1000.0 / Math.max(timeMs, 1));
+    }
+
+    @Override
+    public void incCopyIngestFallbacks() {
+        copyIngestFallbacksCounter.increment();
+    }
+
+    @Override
+    public void incCoalescedRecords(int recordsCount) {
+        coalescedRecordsCounter.increment(recordsCount);
+    }
+
+    @Override
+    public void recordCoalescingBufferSize(int devicesCount) {
+        coalescingBufferSize.set(devicesCount);
+    }
+
+    @Override
+    public void recordEndToEndLatency(long latencyMs) {
+        endToEndLatencySummary.record(latencyMs);
+    }
+
+    @Override
+    public void recordTelemetryBindingAllocation(String deviceType, long bytesPerRecord) {
+        telemetryBindingAllocationSummaries.computeIfAbsent(deviceType, k ->
+                        DistributionSummary.builder("rs_telemetry_binding_allocated_bytes")
+                                .description("The number of bytes allocated per record while binding telemetry to jdbc parameters")
+                                .tag("deviceType", deviceType)
+                                .publishPercentiles(0.5, 0.9, 0.99)
+                                .register(meterRegistry))
+                .record(bytesPerRecord);
+    }
+
+    @Override
+    public void recordTelemetryHistoryFlush(int recordsCount, long timeMs) {
+        telemetryHistoryAppendedRecordsCounter.increment(recordsCount);
+        telemetryHistoryFlushTimeSummary.record(timeMs);
+    }
+
+    @Override
+    public void incTelemetryHistoryDroppedRecords(String reason, int recordsCount) {
+        telemetryHistoryDroppedRecordsCounters.computeIfAbsent(reason, (k) ->
+                        Counter.builder("rs_telemetry_history_dropped_records_count")
+                                .description("The number of records which were not appended to telemetry history")
+                                .tag("reason", k)
+                                .register(meterRegistry))
+                .increment(recordsCount);
+    }
+
+    @Override
+    public void recordTelemetryHistoryQueueSize(int queueSize) {
+        telemetryHistoryQueueSize.set(queueSize);
+    }
+
+    @Override
+    public void incOptimisticLockConflicts(String entity) {
+        optimisticLockConflictsCounters.computeIfAbsent(entity, (k) ->
+                        Counter.builder("rs_optimistic_lock_conflicts_count")
+                                .description("The number of patches which found the entity modified concurrently")
+                                .tag("entity", k)
+                                .register(meterRegistry))
+                .increment();
+    }
+
+    @Override
+    public void incOptimisticLockRetries(String entity) {
+        optimisticLockRetriesCounters.computeIfAbsent(entity, (k) ->
+                        Counter.builder("rs_optimistic_lock_retries_count")
+                                .description("The number of patches retried after a concurrent modification")
+                                .tag("entity", k)
+                                .register(meterRegistry))
+                .increment();
+    }
+
+    @Override
+    public void recordTokenReaperRun(int deletedTokens, long timeMs, long tableSizeBytes) {
+        tokenReaperDeletedTokensCounter.increment(deletedTokens);
+        tokenReaperRunTimeSummary.record(timeMs);
+        tokensTableSize.set(tableSizeBytes);
+    }
+
+    @Override
+    public void recordLastLoginFlush(int usersCount, long flushLagMs) {
+        lastLoginFlushBatchSizeSummary.record(usersCount);
+        lastLoginFlushLagSummary.record(flushLagMs);
+    }
 }
@@ -2,6 +2,7 @@ package com.iot.devices.management.registry_service.open.api.custom.annotations.
 
 import com.iot.devices.management.registry_service.controller.dto.AlertRuleDto;
 import com.iot.devices.management.registry_service.controller.util.ErrorResponse;
+import com.iot.devices.management.registry_service.controller.util.VersionConflictResponse;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.ExampleObject;
@@ -91,6 +92,30 @@ import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
                                 )
                         )
                 ),
+                @ApiResponse(
+                        responseCode = "409",
+                        description = "Patch is based on a stale version, current state is returned",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = VersionConflictResponse.class),
+                                examples = @ExampleObject(
+                                        name = "VersionConflictExample",
+                                        summary = "Modified concurrently",
+                                        value = """
+                                                {
+                                                    "status": 409,
+                                                    "errorMessage": "Alert rule with ruleId=1 was modified concurrently, current version: 4",
+                                                    "detail": "Alert rule was modified concurrently!",
+                                                    "uri": "/api/v1/alertRules",
+                                                    "current": {
+                                                        "ruleId": "1",
+                                                        "version": 4
+                                                    }
+                                                }
+                                                """
+                                )
+                        )
+                ),
                 @ApiResponse(
                         responseCode = "500",
                         description = "Internal Server Error",
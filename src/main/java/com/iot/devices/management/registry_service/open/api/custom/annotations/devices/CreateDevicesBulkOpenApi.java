@@ -0,0 +1,65 @@
+package com.iot.devices.management.registry_service.open.api.custom.annotations.devices;
+
+import com.iot.devices.management.registry_service.controller.dto.BulkCreateDevicesDto;
+import com.iot.devices.management.registry_service.controller.util.ErrorResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Operation(
+        summary = "Create devices in bulk",
+        description = "Creates up to 10000 devices in one transaction. Devices which are duplicates, reference unknown alert rules " +
+                "or belong to owners the caller has no permission to are rejected, the rest is created. " +
+                "Results are reported per device in request order",
+        responses = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "Bulk is processed, see status of every device",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = BulkCreateDevicesDto.class),
+                                examples = @ExampleObject(
+                                        name = "BulkCreateDevicesExample",
+                                        summary = "One device is created, one is a duplicate",
+                                        value = """
+                                                {
+                                                    "created": 1,
+                                                    "rejected": 1,
+                                                    "results": [
+                                                        {"index": 0, "serialNumber": "SN-1", "status": "CREATED", "deviceId": "4f1c7a54-8d0a-4c8e-9a55-3d2b1f0e6a11"},
+                                                        {"index": 1, "serialNumber": "SN-2", "status": "DUPLICATE", "error": "Device with serial number SN-2 already exists"}
+                                                    ]
+                                                }
+                                                """
+                                )
+                        )
+                ),
+                @ApiResponse(
+                        responseCode = "400",
+                        description = "Request is invalid",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = ErrorResponse.class))
+                ),
+                @ApiResponse(
+                        responseCode = "500",
+                        description = "Unable to create devices, nothing is created",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = ErrorResponse.class))
+                )
+        }
+)
+public @interface CreateDevicesBulkOpenApi {
+}
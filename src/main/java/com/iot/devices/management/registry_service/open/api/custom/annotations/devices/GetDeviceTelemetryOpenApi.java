@@ -0,0 +1,76 @@
+package com.iot.devices.management.registry_service.open.api.custom.annotations.devices;
+
+import com.iot.devices.management.registry_service.controller.dto.TelemetryPointDto;
+import com.iot.devices.management.registry_service.controller.util.ErrorResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Operation(
+        summary = "Get device telemetry history",
+        description = "Streams telemetry of the device within [from, to) downsampled to one line per step, " +
+                "step is either ISO-8601 (PT5M) or simple (5m) duration",
+        responses = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "Telemetry history is streamed, one json object per line",
+                        content = @Content(
+                                mediaType = APPLICATION_NDJSON_VALUE,
+                                schema = @Schema(implementation = TelemetryPointDto.class))
+                ),
+                @ApiResponse(
+                        responseCode = "400",
+                        description = "Range or step is invalid",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = ErrorResponse.class),
+                                examples = @ExampleObject(
+                                        name = "InvalidTelemetryRangeExample",
+                                        summary = "Too many steps requested",
+                                        value = """
+                                                {
+                                                    "status": 400,
+                                                    "errorMessage": "Range has 525600 steps, at most 10000 are allowed",
+                                                    "detail": "Invalid telemetry range!",
+                                                    "uri": "/api/v1/devices/1/telemetry
+                                                }
+                                                """
+                                )
+                        )
+                ),
+                @ApiResponse(
+                        responseCode = "404",
+                        description = "Device is not found",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = ErrorResponse.class),
+                                examples = @ExampleObject(
+                                        name = "DeviceNotFoundExample",
+                                        summary = "Device is not found",
+                                        value = """
+                                                {
+                                                    "status": 404,
+                                                    "errorMessage": "Device with id: 1 not found.",
+                                                    "detail": "Unable to find device!",
+                                                    "uri": "/api/v1/devices/1/telemetry
+                                                }
+                                                """
+                                )
+                        )
+                )
+        }
+)
+public @interface GetDeviceTelemetryOpenApi {
+}
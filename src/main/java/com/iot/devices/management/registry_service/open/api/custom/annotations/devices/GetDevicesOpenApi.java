@@ -0,0 +1,70 @@
+package com.iot.devices.management.registry_service.open.api.custom.annotations.devices;
+
+import com.iot.devices.management.registry_service.controller.dto.DeviceDto;
+import com.iot.devices.management.registry_service.controller.dto.DevicePageDto;
+import com.iot.devices.management.registry_service.controller.util.ErrorResponse;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.ExampleObject;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Operation(
+        summary = "List devices",
+        description = "Lists devices matching the filters, most recently updated first. " +
+                "Pages are chained with nextCursor, with Accept: application/x-ndjson all matching devices are streamed instead. " +
+                "Users only see their own devices",
+        responses = {
+                @ApiResponse(
+                        responseCode = "200",
+                        description = "Devices are found",
+                        content = {
+                                @Content(
+                                        mediaType = APPLICATION_JSON_VALUE,
+                                        schema = @Schema(implementation = DevicePageDto.class)),
+                                @Content(
+                                        mediaType = APPLICATION_NDJSON_VALUE,
+                                        schema = @Schema(implementation = DeviceDto.class))
+                        }
+                ),
+                @ApiResponse(
+                        responseCode = "400",
+                        description = "Filter, limit or cursor is invalid",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = ErrorResponse.class),
+                                examples = @ExampleObject(
+                                        name = "InvalidDeviceFilterExample",
+                                        summary = "Cursor is malformed",
+                                        value = """
+                                                {
+                                                    "status": 400,
+                                                    "errorMessage": "Cursor abc is malformed",
+                                                    "detail": "Invalid device filter!",
+                                                    "uri": "/api/v1/devices
+                                                }
+                                                """
+                                )
+                        )
+                ),
+                @ApiResponse(
+                        responseCode = "403",
+                        description = "User requested devices of another owner",
+                        content = @Content(
+                                mediaType = APPLICATION_JSON_VALUE,
+                                schema = @Schema(implementation = ErrorResponse.class))
+                )
+        }
+)
+public @interface GetDevicesOpenApi {
+}
@@ -0,0 +1,142 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//caps in-flight persist tasks by db connections, so virtual threads wait for a permit instead of hikari connection timeout
+@Slf4j
+@Component
+public class AdmissionController {
+
+    private static final String PROPERTIES_PREFIX = "parallel.patcher.admission";
+
+    private final boolean enabled;
+    private final boolean adaptive;
+    private final long adaptationIntervalMs;
+    private final long acquireTimeoutMs;
+    private final int maxPermits;
+    private final HikariDataSource hikariDataSource;
+    private final KpiMetricLogger kpiMetricLogger;
+    private final AdjustableSemaphore semaphore;
+    private final AtomicInteger limit;
+    private final AtomicLong nextAdaptationAtMs = new AtomicLong();
+
+    public AdmissionController(@Value("${" + PROPERTIES_PREFIX + ".enabled}") boolean enabled,
+                               @Value("${" + PROPERTIES_PREFIX + ".max.permits}") int maxPermits,
+                               @Value("${" + PROPERTIES_PREFIX + ".adaptive}") boolean adaptive,
+                               @Value("${" + PROPERTIES_PREFIX + ".adaptation.interval.ms}") long adaptationIntervalMs,
+                               @Value("${" + PROPERTIES_PREFIX + ".acquire.timeout.ms}") long acquireTimeoutMs,
+                               @Value("${parallel.patcher.threads.amount}") int threadsAmount,
+                               DataSource dataSource, KpiMetricLogger kpiMetricLogger) {
+        this.enabled = enabled;
+        this.adaptive = adaptive;
+        this.adaptationIntervalMs = adaptationIntervalMs;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.hikariDataSource = (dataSource instanceof HikariDataSource hikari) ? hikari : null;
+        this.maxPermits = resolveMaxPermits(maxPermits, threadsAmount);
+        this.kpiMetricLogger = kpiMetricLogger;
+        this.semaphore = new AdjustableSemaphore(this.maxPermits);
+        this.limit = new AtomicInteger(this.maxPermits);
+        kpiMetricLogger.recordAdmissionLimit(this.maxPermits);
+        log.info("Admission control enabled={}, maxPermits={}, adaptive={}", enabled, this.maxPermits, adaptive);
+    }
+
+    public void acquire() {
+        if (!enabled) {
+            return;
+        }
+        if (adaptive) {
+            adaptLimit();
+        }
+        if (semaphore.tryAcquire()) {
+            kpiMetricLogger.recordAdmissionPermitWait(0);
+            return;
+        }
+        kpiMetricLogger.incAdmissionDeferredTasks();
+        kpiMetricLogger.recordAdmissionQueueDepth(semaphore.getQueueLength() + 1);
+        final long startTimeMs = currentTimeMillis();
+        try {
+            if (!semaphore.tryAcquire(acquireTimeoutMs, MILLISECONDS)) {
+                kpiMetricLogger.incAdmissionRejectedTasks();
+                throw new RejectedExecutionException("No persist permit was available within " + acquireTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            kpiMetricLogger.incAdmissionRejectedTasks();
+            throw new RejectedExecutionException("Interrupted while waiting for persist permit", e);
+        } finally {
+            kpiMetricLogger.recordAdmissionQueueDepth(semaphore.getQueueLength());
+        }
+        kpiMetricLogger.recordAdmissionPermitWait(currentTimeMillis() - startTimeMs);
+    }
+
+    public void release() {
+        if (enabled) {
+            semaphore.release();
+        }
+    }
+
+    //shrinks the limit while threads are waiting for hikari connections and grows it back while all permits are in use
+    private void adaptLimit() {
+        final long nowMs = currentTimeMillis();
+        final long adaptationAtMs = nextAdaptationAtMs.get();
+        if (nowMs < adaptationAtMs || !nextAdaptationAtMs.compareAndSet(adaptationAtMs, nowMs + adaptationIntervalMs)) {
+            return;
+        }
+        final HikariPoolMXBean pool = (hikariDataSource != null) ? hikariDataSource.getHikariPoolMXBean() : null;
+        if (pool == null) {
+            return;
+        }
+        final int currentLimit = limit.get();
+        if (pool.getThreadsAwaitingConnection() > 0 && currentLimit > 1) {
+            semaphore.reducePermits(1);
+            limit.set(currentLimit - 1);
+            log.debug("Threads are waiting for db connections, admission limit is reduced to {}", currentLimit - 1);
+        } else if (pool.getThreadsAwaitingConnection() == 0 && semaphore.availablePermits() <= 0 && currentLimit < maxPermits) {
+            semaphore.release();
+            limit.set(currentLimit + 1);
+            log.debug("Db connections are available, admission limit is increased to {}", currentLimit + 1);
+        }
+        kpiMetricLogger.recordAdmissionLimit(limit.get());
+    }
+
+    private int resolveMaxPermits(int maxPermits, int threadsAmount) {
+        if (maxPermits > 0) {
+            return maxPermits;
+        }
+        if (hikariDataSource != null) {
+            return hikariDataSource.getMaximumPoolSize();
+        }
+        log.warn("Datasource is not hikari, admission permits are sized by threads amount {}", threadsAmount);
+        return threadsAmount;
+    }
+
+    int getLimit() {
+        return limit.get();
+    }
+
+    private static class AdjustableSemaphore extends Semaphore {
+
+        AdjustableSemaphore(int permits) {
+            super(permits, true);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.header.Header;
+
+import java.nio.ByteBuffer;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+//tracks persisted records of one partition batch, offsets are committed only up to the first record which is not persisted
+public class OffsetTracker {
+
+    //set on coalesced records, so the data merged from lower offsets is not committed before the record is persisted
+    public static final String COALESCED_FROM_OFFSET_HEADER = "coalesced-from-offset";
+
+    private final long baseOffset;
+    private final long endOffset;
+    private final BitSet pendingOffsets;
+
+    public OffsetTracker(Collection<ConsumerRecord<String, SpecificRecord>> records) {
+        this.baseOffset = records.isEmpty() ? 0 : firstOffset(records);
+        this.endOffset = records.isEmpty() ? 0 : endOffset(records);
+        this.pendingOffsets = new BitSet(Math.toIntExact(endOffset - baseOffset));
+        records.forEach(record -> pendingOffsets.set(index(record)));
+    }
+
+    public synchronized void complete(ConsumerRecord<String, SpecificRecord> record) {
+        pendingOffsets.clear(index(record));
+    }
+
+    public synchronized Optional<OffsetAndMetadata> committableOffset() {
+        final int firstPendingIndex = pendingOffsets.nextSetBit(0);
+        final long nextOffset = (firstPendingIndex < 0) ? endOffset : baseOffset + firstPendingIndex;
+        return (nextOffset > baseOffset) ? Optional.of(new OffsetAndMetadata(nextOffset)) : Optional.empty();
+    }
+
+    //offset to read the batch again from, if persisted offset does not cover all its records
+    public static OptionalLong unpersistedFrom(Collection<ConsumerRecord<String, SpecificRecord>> records,
+                                               Optional<OffsetAndMetadata> persistedOffset) {
+        if (records.isEmpty()) {
+            return OptionalLong.empty();
+        }
+        if (persistedOffset.isEmpty()) {
+            return OptionalLong.of(firstOffset(records));
+        }
+        final long offset = persistedOffset.get().offset();
+        return (offset < endOffset(records)) ? OptionalLong.of(offset) : OptionalLong.empty();
+    }
+
+    public static long firstOffset(ConsumerRecord<String, SpecificRecord> record) {
+        final Header header = record.headers().lastHeader(COALESCED_FROM_OFFSET_HEADER);
+        return (header != null) ? ByteBuffer.wrap(header.value()).getLong() : record.offset();
+    }
+
+    public static byte[] encodeOffset(long offset) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(offset).array();
+    }
+
+    private static long firstOffset(Collection<ConsumerRecord<String, SpecificRecord>> records) {
+        return records.stream()
+                .mapToLong(OffsetTracker::firstOffset)
+                .min()
+                .orElseThrow();
+    }
+
+    private static long endOffset(Collection<ConsumerRecord<String, SpecificRecord>> records) {
+        return records.stream()
+                .mapToLong(ConsumerRecord::offset)
+                .max()
+                .orElseThrow() + 1;
+    }
+
+    private int index(ConsumerRecord<String, SpecificRecord> record) {
+        return Math.toIntExact(firstOffset(record) - baseOffset);
+    }
+}
@@ -17,9 +17,13 @@ import java.sql.SQLRecoverableException;
 import java.sql.SQLTransientException;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Comparator.comparingLong;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 
 @Slf4j
 @Component
@@ -28,61 +32,175 @@ public class ParallelDevicePatcher {
     private static final String PROPERTIES_PREFIX = "parallel.patcher";
 
     private final ExecutorService executorService;
+    private final List<ExecutorService> lanes;
+    private final AtomicInteger inFlightTasks = new AtomicInteger();
     private final int executorTerminationTimeMs;
     private final DeadLetterProducer deadLetterProducer;
     private final RetriablePatcher retriablePatcher;
     private final KpiMetricLogger kpiMetricLogger;
-    private final boolean useVirtualThreads;
+    private final AdmissionController admissionController;
+    private final PatchMode patchMode;
 
     public ParallelDevicePatcher(@Value("${" + PROPERTIES_PREFIX + ".threads.amount}") int threadsAmount,
                                  @Value("${" + PROPERTIES_PREFIX + ".threads.virtual}") boolean useVirtualThreads,
                                  @Value("${" + PROPERTIES_PREFIX + ".executor.termination.time.ms}") int executorTerminationTimeMs,
-                                 DeadLetterProducer deadLetterProducer, RetriablePatcher retriablePatcher, KpiMetricLogger kpiMetricLogger) {
+                                 @Value("${" + PROPERTIES_PREFIX + ".mode}") PatchMode patchMode,
+                                 @Value("${" + PROPERTIES_PREFIX + ".lanes.amount}") int lanesAmount,
+                                 DeadLetterProducer deadLetterProducer, RetriablePatcher retriablePatcher, KpiMetricLogger kpiMetricLogger,
+                                 AdmissionController admissionController) {
+        checkArgument(patchMode != PatchMode.SHARDED || lanesAmount > 0,
+                "%s.lanes.amount must be positive in SHARDED mode, but is %s", PROPERTIES_PREFIX, lanesAmount);
         this.executorService = createExecutorService(threadsAmount, useVirtualThreads);
+        this.lanes = (patchMode == PatchMode.SHARDED) ? createLanes(lanesAmount) : List.of();
         this.executorTerminationTimeMs = executorTerminationTimeMs;
         this.deadLetterProducer = deadLetterProducer;
         this.retriablePatcher = retriablePatcher;
         this.kpiMetricLogger = kpiMetricLogger;
-        this.useVirtualThreads = useVirtualThreads;
+        this.admissionController = admissionController;
+        this.patchMode = patchMode;
     }
 
 
     public Optional<OffsetAndMetadata> patch(Map<String, ConsumerRecord<String, SpecificRecord>> recordById) {
-        final Set<OffsetAndMetadata> offsetsToCommit = new ConcurrentSkipListSet<>(comparingLong(OffsetAndMetadata::offset));
-        final List<CompletableFuture<Void>> futures = new ArrayList<>(recordById.size());
-        for (ConsumerRecord<String, SpecificRecord> record : sortRecordsByOffsets(recordById)) {
-            futures.add(CompletableFuture.runAsync(() -> {
-                final long newOffsetToReadFrom = record.offset() + 1;
-                try {
-                    retriablePatcher.patchWithRetries(record);
-                    offsetsToCommit.add(new OffsetAndMetadata(newOffsetToReadFrom));
-                } catch (SQLTransientException | SQLRecoverableException | TransientDataAccessException e) {
-                    log.error("Failed to update device {} after retries, offset={} will be retried after consumer restart",
-                            record.value(), record.offset(), e);
-                    throw new CompletionException(e);
-                } catch (NullPointerException | IllegalArgumentException | NonTransientDataAccessException e ) {
-                    deadLetterProducer.send(record.key(), record.value());
-                    log.error("Non-retriable error, failed to update {}, sending message to dead-letter-topic, offset={} will be committed",
-                            record.value(), record.offset(), e);
-                    offsetsToCommit.add(new OffsetAndMetadata(newOffsetToReadFrom));
-                    kpiMetricLogger.incNonRetriableErrorsCount(e.getClass().getSimpleName());
-                } catch (Exception e) {
-                    log.error("Failed to patch device", e);
-                    throw new CompletionException(e);
-                }
-            }, executorService));
+        final OffsetTracker offsetTracker = new OffsetTracker(recordById.values());
+        final List<ConsumerRecord<String, SpecificRecord>> sortedRecords = sortRecordsByOffsets(recordById);
+        final List<CompletableFuture<Void>> futures = switch (patchMode) {
+            case PARALLEL -> patchInParallel(sortedRecords, offsetTracker);
+            case BATCHED -> patchInBatches(sortedRecords, offsetTracker);
+            case SHARDED -> patchInLanes(sortedRecords, offsetTracker);
+        };
+        kpiMetricLogger.recordActiveThreadsInParallelPatcher(inFlightTasks.get());
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            //persisted records are not replayed, the first failed one and all after it are read again
+            log.warn("Not all records were persisted, offset is committed up to the first failed record", e);
         }
-        if (!useVirtualThreads) {
-            kpiMetricLogger.recordActiveThreadsInParallelPatcher(((ThreadPoolExecutor) executorService).getActiveCount());
+        return offsetTracker.committableOffset();
+    }
+
+    private List<CompletableFuture<Void>> patchInParallel(List<ConsumerRecord<String, SpecificRecord>> records,
+                                                          OffsetTracker offsetTracker) {
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, SpecificRecord> record : records) {
+            final CompletableFuture<Void> future = submit(() -> patchRecord(record, offsetTracker), executorService);
+            futures.add(future);
+            if (future.isCompletedExceptionally()) {
+                break;
+            }
+        }
+        return futures;
+    }
+
+    private List<CompletableFuture<Void>> patchInBatches(List<ConsumerRecord<String, SpecificRecord>> records,
+                                                         OffsetTracker offsetTracker) {
+        final Map<String, List<ConsumerRecord<String, SpecificRecord>>> recordsByType = records.stream()
+                .collect(groupingBy(record -> record.value().getSchema().getName(), LinkedHashMap::new, toList()));
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(recordsByType.size());
+        for (List<ConsumerRecord<String, SpecificRecord>> batch : recordsByType.values()) {
+            final CompletableFuture<Void> future = submit(() -> patchBatch(batch, offsetTracker), executorService);
+            futures.add(future);
+            if (future.isCompletedExceptionally()) {
+                break;
+            }
+        }
+        return futures;
+    }
+
+    //each device always lands on the same single-threaded lane, so its updates are applied in order without row lock races
+    private List<CompletableFuture<Void>> patchInLanes(List<ConsumerRecord<String, SpecificRecord>> records,
+                                                       OffsetTracker offsetTracker) {
+        final Map<Integer, List<ConsumerRecord<String, SpecificRecord>>> recordsByLane = records.stream()
+                .collect(groupingBy(record -> Math.floorMod(Objects.hashCode(record.key()), lanes.size()), TreeMap::new, toList()));
+        final List<CompletableFuture<Void>> futures = new ArrayList<>(recordsByLane.size());
+        for (Map.Entry<Integer, List<ConsumerRecord<String, SpecificRecord>>> entry : recordsByLane.entrySet()) {
+            final CompletableFuture<Void> future = submit(() -> patchLane(entry.getValue(), offsetTracker), lanes.get(entry.getKey()));
+            futures.add(future);
+            if (future.isCompletedExceptionally()) {
+                break;
+            }
+        }
+        return futures;
+    }
+
+    private void patchLane(List<ConsumerRecord<String, SpecificRecord>> records, OffsetTracker offsetTracker) {
+        records.stream()
+                .collect(groupingBy(record -> record.value().getSchema().getName(), LinkedHashMap::new, toList()))
+                .values()
+                .forEach(batch -> patchBatch(batch, offsetTracker));
+    }
+
+    //permits are taken on the polling thread, so no more tasks than permits are started at once
+    private CompletableFuture<Void> submit(Runnable task, Executor executor) {
+        try {
+            admissionController.acquire();
+        } catch (RejectedExecutionException e) {
+            log.error("Persist task was not admitted, remaining records will be retried after consumer restart", e);
+            return CompletableFuture.failedFuture(e);
+        }
+        inFlightTasks.incrementAndGet();
+        return CompletableFuture.runAsync(() -> {
+            try {
+                task.run();
+            } finally {
+                inFlightTasks.decrementAndGet();
+                admissionController.release();
+            }
+        }, executor);
+    }
+
+    private void patchBatch(List<ConsumerRecord<String, SpecificRecord>> batch, OffsetTracker offsetTracker) {
+        final String deviceType = batch.getFirst().value().getSchema().getName();
+        try {
+            retriablePatcher.patchBatchWithRetries(batch);
+            batch.forEach(offsetTracker::complete);
+        } catch (SQLTransientException | SQLRecoverableException | TransientDataAccessException e) {
+            log.error("Failed to update batch of {} {} devices after retries, records will be redelivered",
+                    batch.size(), deviceType, e);
+            throw new CompletionException(e);
+        } catch (NullPointerException | IllegalArgumentException | NonTransientDataAccessException e) {
+            //batch transaction is rolled back, so each record is patched separately to find and dead-letter the broken ones
+            log.warn("Non-retriable error in batch of {} {} devices, falling back to patching records one by one",
+                    batch.size(), deviceType, e);
+            batch.forEach(record -> patchRecord(record, offsetTracker));
+        } catch (Exception e) {
+            log.error("Failed to patch devices batch", e);
+            throw new CompletionException(e);
+        }
+    }
+
+    private void patchRecord(ConsumerRecord<String, SpecificRecord> record, OffsetTracker offsetTracker) {
+        try {
+            retriablePatcher.patchWithRetries(record);
+            offsetTracker.complete(record);
+        } catch (SQLTransientException | SQLRecoverableException | TransientDataAccessException e) {
+            log.error("Failed to update device {} after retries, offset={} will be redelivered",
+                    record.value(), record.offset(), e);
+            throw new CompletionException(e);
+        } catch (NullPointerException | IllegalArgumentException | NonTransientDataAccessException e ) {
+            deadLetterProducer.send(record.key(), record.value());
+            log.error("Non-retriable error, failed to update {}, sending message to dead-letter-topic, offset={} will be committed",
+                    record.value(), record.offset(), e);
+            offsetTracker.complete(record);
+            kpiMetricLogger.incNonRetriableErrorsCount(e.getClass().getSimpleName());
+        } catch (Exception e) {
+            log.error("Failed to patch device", e);
+            throw new CompletionException(e);
         }
-        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
-        return offsetsToCommit.stream().max(comparingLong(OffsetAndMetadata::offset));
     }
 
     private ExecutorService createExecutorService(int threadsAmount, boolean useVirtualThreads) {
         return (useVirtualThreads) ? Executors.newVirtualThreadPerTaskExecutor() : Executors.newFixedThreadPool(threadsAmount);
     }
 
+    private List<ExecutorService> createLanes(int lanesAmount) {
+        final List<ExecutorService> lanes = new ArrayList<>(lanesAmount);
+        for (int i = 0; i < lanesAmount; i++) {
+            lanes.add(Executors.newSingleThreadExecutor(Thread.ofPlatform().name("patcher-lane-" + i).factory()));
+        }
+        return lanes;
+    }
+
     private List<ConsumerRecord<String, SpecificRecord>> sortRecordsByOffsets(Map<String, ConsumerRecord<String, SpecificRecord>> recordById) {
         return recordById.values().stream()
                 .sorted(comparingLong(ConsumerRecord::offset))
@@ -90,7 +208,14 @@ public class ParallelDevicePatcher {
     }
 
     @PreDestroy
-    private void shutdown() throws InterruptedException {
+    void shutdown() throws InterruptedException {
+        lanes.forEach(ExecutorService::shutdown);
+        for (ExecutorService lane : lanes) {
+            if (!lane.awaitTermination(executorTerminationTimeMs, MILLISECONDS)) {
+                lane.shutdownNow();
+                log.info("Lane executor shutdown forced");
+            }
+        }
         executorService.shutdown();
         if (!executorService.awaitTermination(executorTerminationTimeMs, MILLISECONDS)) {
             executorService.shutdownNow();
@@ -0,0 +1,5 @@
+package com.iot.devices.management.registry_service.persistence;
+
+public enum PatchMode {
+    PARALLEL, BATCHED, SHARDED
+}
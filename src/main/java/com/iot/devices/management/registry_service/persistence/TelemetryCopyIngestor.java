@@ -0,0 +1,78 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.management.registry_service.mapping.TelemetryRow;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
+import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.UncheckedIOException;
+import java.util.*;
+
+import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.mapTelemetryRow;
+import static java.lang.System.currentTimeMillis;
+
+@Slf4j
+@Component
+public class TelemetryCopyIngestor {
+
+    private final TelemetryStorage storage;
+    private final DeviceService deviceService;
+    private final ParallelDevicePatcher parallelDevicePatcher;
+    private final TelemetryHistoryAppender telemetryHistoryAppender;
+    private final KpiMetricLogger kpiMetricLogger;
+
+    public TelemetryCopyIngestor(@Value("${persister.storage}") TelemetryStorage storage, DeviceService deviceService,
+                                 ParallelDevicePatcher parallelDevicePatcher, TelemetryHistoryAppender telemetryHistoryAppender,
+                                 KpiMetricLogger kpiMetricLogger) {
+        this.storage = storage;
+        this.deviceService = deviceService;
+        this.parallelDevicePatcher = parallelDevicePatcher;
+        this.telemetryHistoryAppender = telemetryHistoryAppender;
+        this.kpiMetricLogger = kpiMetricLogger;
+    }
+
+    public Optional<OffsetAndMetadata> ingest(Map<String, ConsumerRecord<String, SpecificRecord>> recordById) {
+        if (recordById.isEmpty()) {
+            return Optional.empty();
+        }
+        //staging table is merged into devices jsonb only, typed telemetry tables are written by upserts of the row path
+        if (storage == TelemetryStorage.COLUMNAR) {
+            return parallelDevicePatcher.patch(recordById);
+        }
+        try {
+            final List<TelemetryRow> rows = new ArrayList<>(recordById.size());
+            long maxOffset = -1;
+            for (ConsumerRecord<String, SpecificRecord> record : recordById.values()) {
+                rows.add(mapTelemetryRow(record.value()));
+                maxOffset = Math.max(maxOffset, record.offset());
+            }
+            final long startTimeMs = currentTimeMillis();
+            final Set<UUID> updatedDeviceIds = deviceService.copyTelemetries(rows);
+            kpiMetricLogger.recordCopyIngest(rows.size(), currentTimeMillis() - startTimeMs);
+            int i = 0;
+            for (ConsumerRecord<String, SpecificRecord> record : recordById.values()) {
+                final TelemetryRow row = rows.get(i++);
+                if (updatedDeviceIds.contains(row.getId())) {
+                    telemetryHistoryAppender.append(record.value());
+                } else {
+                    kpiMetricLogger.incNotUpdatedDevices(row.getDeviceType());
+                    log.warn("No device was updated by COPY ingest for {} id={}", row.getDeviceType(), row.getId());
+                }
+            }
+            log.info("Successfully ingested {} records via COPY, updated {} devices", rows.size(), updatedDeviceIds.size());
+            return Optional.of(new OffsetAndMetadata(maxOffset + 1));
+        } catch (NullPointerException | IllegalArgumentException | DataAccessException | UncheckedIOException e) {
+            //row path has its own retries and sends broken records to the dead-letter topic
+            log.warn("COPY ingest of {} records failed, falling back to row-by-row patching", recordById.size(), e);
+            kpiMetricLogger.incCopyIngestFallbacks();
+            return parallelDevicePatcher.patch(recordById);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.iot.devices.management.registry_service.persistence.history;
+
+import com.iot.devices.management.registry_service.mapping.TelemetryRow;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.mapTelemetryRow;
+import static java.lang.System.currentTimeMillis;
+
+//history is appended off the latest-value path: persisting threads only offer records to a bounded queue
+//and never wait for it, when the queue is full records are dropped from history and counted.
+//Records recorded out of [retention start, last partition created ahead] are dropped and counted as well
+@Slf4j
+@Component
+public class TelemetryHistoryAppender {
+
+    private final TelemetryHistoryProperties properties;
+    private final TelemetryHistoryRepository telemetryHistoryRepository;
+    private final KpiMetricLogger kpiMetricLogger;
+    private final BlockingQueue<SpecificRecord> queue;
+    private final Thread flusher;
+
+    private volatile boolean running = true;
+
+    public TelemetryHistoryAppender(TelemetryHistoryProperties properties, TelemetryHistoryRepository telemetryHistoryRepository,
+                                    KpiMetricLogger kpiMetricLogger) {
+        this.properties = properties;
+        this.telemetryHistoryRepository = telemetryHistoryRepository;
+        this.kpiMetricLogger = kpiMetricLogger;
+        this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+        this.flusher = properties.isEnabled() ? Thread.ofPlatform().name("telemetry-history-flusher").daemon().start(this::flushLoop) : null;
+    }
+
+    public void append(SpecificRecord telemetry) {
+        if (flusher == null) {
+            return;
+        }
+        if (!queue.offer(telemetry)) {
+            kpiMetricLogger.incTelemetryHistoryDroppedRecords("queue_full", 1);
+        }
+    }
+
+    //whatever was queued while the previous batch was copied goes into the next one, so batches grow with the load
+    private void flushLoop() {
+        final List<SpecificRecord> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                final SpecificRecord first = queue.poll(properties.getPollTimeoutMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                kpiMetricLogger.recordTelemetryHistoryQueueSize(queue.size());
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Telemetry history flusher is interrupted, {} records are not appended", queue.size());
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<SpecificRecord> batch) {
+        int outOfRange = 0;
+        try {
+            final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+            final OffsetDateTime from = today.minusDays(properties.getRetentionDays()).atStartOfDay().atOffset(ZoneOffset.UTC);
+            final OffsetDateTime to = today.plusDays(properties.getPartitionDaysAhead() + 1).atStartOfDay().atOffset(ZoneOffset.UTC);
+            final List<TelemetryRow> rows = new ArrayList<>(batch.size());
+            for (SpecificRecord record : batch) {
+                final TelemetryRow row = mapTelemetryRow(record);
+                if (isWithin(row.getLastUpdated(), from, to)) {
+                    rows.add(row);
+                } else {
+                    outOfRange++;
+                }
+            }
+            if (outOfRange > 0) {
+                kpiMetricLogger.incTelemetryHistoryDroppedRecords("out_of_range", outOfRange);
+            }
+            if (rows.isEmpty()) {
+                return;
+            }
+            final long startTimeMs = currentTimeMillis();
+            telemetryHistoryRepository.append(rows);
+            kpiMetricLogger.recordTelemetryHistoryFlush(rows.size(), currentTimeMillis() - startTimeMs);
+            log.debug("Appended {} records to telemetry history", rows.size());
+        } catch (RuntimeException e) {
+            //latest values are already persisted, history is best effort and the batch is not retried
+            kpiMetricLogger.incTelemetryHistoryDroppedRecords("flush_failed", batch.size() - outOfRange);
+            log.warn("Failed to append {} records to telemetry history", batch.size() - outOfRange, e);
+        }
+    }
+
+    //recorded_at is set by devices, rows out of the partitioned days would land in the default partition, which is never dropped.
+    //Once the default partition has rows of a day, the partition of that day can not be created anymore
+    private static boolean isWithin(OffsetDateTime recordedAt, OffsetDateTime from, OffsetDateTime to) {
+        return recordedAt != null && !recordedAt.isBefore(from) && recordedAt.isBefore(to);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join(properties.getPollTimeoutMs() * 10);
+        }
+    }
+}
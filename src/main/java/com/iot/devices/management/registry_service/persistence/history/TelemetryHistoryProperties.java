@@ -0,0 +1,55 @@
+package com.iot.devices.management.registry_service.persistence.history;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import static com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryProperties.PROPERTIES_PREFIX;
+
+
+@Slf4j
+@Getter
+@Setter
+@ToString
+@Configuration
+@ConfigurationProperties(PROPERTIES_PREFIX)
+@RequiredArgsConstructor
+public class TelemetryHistoryProperties {
+
+    final static String PROPERTIES_PREFIX = "telemetry.history";
+
+    @Value("${" + PROPERTIES_PREFIX + ".enabled}")
+    private boolean enabled;
+
+    @Value("${" + PROPERTIES_PREFIX + ".queue.capacity}")
+    private int queueCapacity;
+
+    @Value("${" + PROPERTIES_PREFIX + ".batch.size}")
+    private int batchSize;
+
+    @Value("${" + PROPERTIES_PREFIX + ".poll.timeout.ms}")
+    private long pollTimeoutMs;
+
+    @Value("${" + PROPERTIES_PREFIX + ".partitions.days.ahead}")
+    private int partitionDaysAhead;
+
+    @Value("${" + PROPERTIES_PREFIX + ".retention.days}")
+    private int retentionDays;
+
+    @Value("${" + PROPERTIES_PREFIX + ".query.fetch.size}")
+    private int fetchSize;
+
+    @Value("${" + PROPERTIES_PREFIX + ".query.max.points}")
+    private int maxPoints;
+
+    @PostConstruct
+    private void logProperties() {
+        log.info("Telemetry history properties: {}", this);
+    }
+}
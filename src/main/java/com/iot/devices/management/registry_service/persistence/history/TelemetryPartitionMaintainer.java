@@ -0,0 +1,72 @@
+package com.iot.devices.management.registry_service.persistence.history;
+
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+
+import static com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository.PARTITION_PREFIX;
+import static com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository.PARTITION_SUFFIX_FORMAT;
+
+//keeps daily partitions of the whole retention created, including days ahead, and drops whole partitions behind retention,
+//so no rows are ever deleted. The appender drops records out of these days, telemetry_history_default stays empty
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TelemetryPartitionMaintainer {
+
+    private final TelemetryHistoryProperties properties;
+    private final TelemetryHistoryRepository telemetryHistoryRepository;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        maintainPartitions();
+    }
+
+    @Scheduled(cron = "${telemetry.history.partitions.cron}", zone = "UTC")
+    public void maintainPartitions() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        final LocalDate oldestKeptDay = today.minusDays(properties.getRetentionDays());
+        createPartitions(oldestKeptDay, today.plusDays(properties.getPartitionDaysAhead()));
+        dropExpiredPartitions(oldestKeptDay);
+    }
+
+    //past days are created too, so history enabled today has a partition for every record the appender accepts
+    private void createPartitions(LocalDate firstDay, LocalDate lastDay) {
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)) {
+            try {
+                telemetryHistoryRepository.createPartition(day);
+            } catch (DataAccessException e) {
+                //fails when default partition already has rows of this day, they stay there
+                log.error("Unable to create telemetry history partition for {}", day, e);
+            }
+        }
+    }
+
+    private void dropExpiredPartitions(LocalDate oldestKeptDay) {
+        for (String partition : telemetryHistoryRepository.findPartitions()) {
+            final LocalDate day;
+            try {
+                day = LocalDate.parse(partition.substring(PARTITION_PREFIX.length()), PARTITION_SUFFIX_FORMAT);
+            } catch (DateTimeParseException e) {
+                log.warn("Skipping telemetry history partition with unexpected name {}", partition);
+                continue;
+            }
+            if (day.isBefore(oldestKeptDay)) {
+                telemetryHistoryRepository.dropPartition(partition);
+                log.info("Dropped telemetry history partition {}", partition);
+            }
+        }
+    }
+}
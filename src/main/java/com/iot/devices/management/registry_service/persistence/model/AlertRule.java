@@ -18,7 +18,6 @@ import static jakarta.persistence.GenerationType.AUTO;
 @Table(name = "alert_rules")
 @ToString
 @NoArgsConstructor
-@AllArgsConstructor
 public class AlertRule {
 
     @Id
@@ -49,4 +48,19 @@ public class AlertRule {
 
     @Column(name = "username")
     private String username;
+
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public AlertRule(UUID ruleId, MetricType metricType, ThresholdType thresholdType, Float thresholdValue,
+                     SeverityLevel severity, boolean isEnabled, String username) {
+        this.ruleId = ruleId;
+        this.metricType = metricType;
+        this.thresholdType = thresholdType;
+        this.thresholdValue = thresholdValue;
+        this.severity = severity;
+        this.isEnabled = isEnabled;
+        this.username = username;
+    }
 }
@@ -0,0 +1,15 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import com.iot.devices.management.registry_service.controller.util.CreateDeviceRequest;
+import lombok.*;
+
+//index is the position of the request in the bulk, results are reported by it
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class BulkDeviceRegistration {
+    private final int index;
+    private final CreateDeviceRequest request;
+    private final User owner;
+}
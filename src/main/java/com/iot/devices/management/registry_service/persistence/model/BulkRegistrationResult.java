@@ -0,0 +1,26 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import com.iot.devices.management.registry_service.persistence.model.enums.BulkRegistrationStatus;
+import lombok.*;
+
+import java.util.UUID;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class BulkRegistrationResult {
+    private final int index;
+    private final String serialNumber;
+    private final BulkRegistrationStatus status;
+    private final UUID deviceId;
+    private final String error;
+
+    public static BulkRegistrationResult created(int index, Device device) {
+        return new BulkRegistrationResult(index, device.getSerialNumber(), BulkRegistrationStatus.CREATED, device.getId(), null);
+    }
+
+    public static BulkRegistrationResult rejected(int index, String serialNumber, BulkRegistrationStatus status, String error) {
+        return new BulkRegistrationResult(index, serialNumber, status, null, error);
+    }
+}
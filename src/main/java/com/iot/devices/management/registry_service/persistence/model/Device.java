@@ -20,12 +20,14 @@ import static jakarta.persistence.GenerationType.AUTO;
 @Table(
         name = "devices",
         indexes = {
-                @Index(name = "devices_serial_number_key", columnList = "serial_number")
+                @Index(name = "devices_serial_number_key", columnList = "serial_number"),
+                @Index(name = "idx_devices_updated_at_id", columnList = "updated_at DESC, id DESC"),
+                @Index(name = "idx_devices_owner_updated_at_id", columnList = "owner_user_id, updated_at DESC, id DESC"),
+                @Index(name = "idx_devices_type_updated_at_id", columnList = "device_type, updated_at DESC, id DESC")
         }
 )
 @ToString(exclude = "owner")
 @NoArgsConstructor
-@AllArgsConstructor
 public class Device {
 
     @Id
@@ -85,4 +87,31 @@ public class Device {
     @JdbcTypeCode(SqlTypes.JSON)
     @Column(name = "telemetry", columnDefinition = "jsonb")
     private String telemetry;
+
+    //bumped by admin patches only, telemetry updates never touch it
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
+    public Device(UUID id, String name, String serialNumber, DeviceManufacturer deviceManufacturer, String model,
+                  DeviceType deviceType, String location, BigDecimal latitude, BigDecimal longitude, User owner,
+                  DeviceStatus status, OffsetDateTime lastActiveAt, String firmwareVersion, OffsetDateTime createdAt,
+                  OffsetDateTime updatedAt, String telemetry) {
+        this.id = id;
+        this.name = name;
+        this.serialNumber = serialNumber;
+        this.deviceManufacturer = deviceManufacturer;
+        this.model = model;
+        this.deviceType = deviceType;
+        this.location = location;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.owner = owner;
+        this.status = status;
+        this.lastActiveAt = lastActiveAt;
+        this.firmwareVersion = firmwareVersion;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.telemetry = telemetry;
+    }
 }
@@ -0,0 +1,20 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+//position of the last returned device, the next page starts right after it in (updated_at, id) descending order
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class DeviceCursor {
+    private final OffsetDateTime updatedAt;
+    private final UUID id;
+
+    public static DeviceCursor after(Device device) {
+        return new DeviceCursor(device.getUpdatedAt(), device.getId());
+    }
+}
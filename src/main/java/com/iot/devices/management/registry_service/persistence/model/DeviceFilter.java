@@ -0,0 +1,23 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+//every field is optional, null means the field is not filtered
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class DeviceFilter {
+    private final DeviceType deviceType;
+    private final DeviceStatus status;
+    private final DeviceManufacturer manufacturer;
+    private final UUID ownerId;
+    private final OffsetDateTime lastActiveFrom;
+    private final OffsetDateTime lastActiveTo;
+}
@@ -0,0 +1,30 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
+import lombok.*;
+
+import java.util.Optional;
+import java.util.UUID;
+
+//owner fields are null for a device without an owner, the device itself always exists
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class DeviceOwner {
+    private final UUID deviceId;
+    private final UUID ownerId;
+    private final String username;
+    private final UserRole userRole;
+
+    public static DeviceOwner of(Device device) {
+        final User owner = device.getOwner();
+        return owner == null
+                ? new DeviceOwner(device.getId(), null, null, null)
+                : new DeviceOwner(device.getId(), owner.getId(), owner.getUsername(), owner.getUserRole());
+    }
+
+    public Optional<UserProjection> getOwner() {
+        return ownerId == null ? Optional.empty() : Optional.of(new UserProjection(ownerId, username, userRole));
+    }
+}
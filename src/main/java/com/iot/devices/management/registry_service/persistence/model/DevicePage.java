@@ -0,0 +1,15 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import lombok.*;
+
+import java.util.List;
+
+//nextCursor is null on the last page
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class DevicePage {
+    private final List<Device> devices;
+    private final DeviceCursor nextCursor;
+}
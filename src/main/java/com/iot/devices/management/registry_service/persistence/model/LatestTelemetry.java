@@ -0,0 +1,19 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class LatestTelemetry {
+    private final DeviceStatus status;
+    private final OffsetDateTime lastActiveAt;
+    private final String firmwareVersion;
+    private final OffsetDateTime updatedAt;
+    private final String telemetry;
+}
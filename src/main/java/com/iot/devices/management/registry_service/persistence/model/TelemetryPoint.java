@@ -0,0 +1,16 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import lombok.*;
+
+import java.time.OffsetDateTime;
+
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class TelemetryPoint {
+    private final OffsetDateTime bucket;
+    private final long samples;
+    private final String telemetry;
+}
@@ -3,6 +3,7 @@ package com.iot.devices.management.registry_service.persistence.model;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.time.OffsetDateTime;
 import java.util.UUID;
 
 import static jakarta.persistence.GenerationType.AUTO;
@@ -20,8 +21,14 @@ public class Token {
     @Column(columnDefinition = "uuid", updatable = false, nullable = false)
     private UUID id;
 
-    @Column(unique = true)
-    public String token;
+    @Column(name = "token_hash", unique = true, nullable = false, length = 43)
+    public String tokenHash;
+
+    @Column(name = "expires_at", columnDefinition = "TIMESTAMP WITH TIME ZONE", nullable = false)
+    public OffsetDateTime expiresAt;
+
+    @Column(name = "issued_at", columnDefinition = "TIMESTAMP WITH TIME ZONE", nullable = false, updatable = false)
+    public OffsetDateTime issuedAt;
 
     public boolean revoked;
 
@@ -0,0 +1,18 @@
+package com.iot.devices.management.registry_service.persistence.model;
+
+import lombok.*;
+
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+@Getter
+@ToString
+@EqualsAndHashCode
+@RequiredArgsConstructor
+public class TokenState {
+    private final UUID id;
+    private final UUID userId;
+    private final String tokenHash;
+    private final boolean refresh;
+    private final OffsetDateTime issuedAt;
+}
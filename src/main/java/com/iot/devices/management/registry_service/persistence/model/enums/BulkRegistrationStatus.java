@@ -0,0 +1,5 @@
+package com.iot.devices.management.registry_service.persistence.model.enums;
+
+public enum BulkRegistrationStatus {
+    CREATED, DUPLICATE, FORBIDDEN, INVALID
+}
@@ -13,9 +13,37 @@ import java.util.UUID;
 
 public interface AlertRulesRepository extends JpaRepository<AlertRule, UUID> {
 
+    String PATCH_ALERT_RULE = """
+            UPDATE alert_rules SET
+            metric_type = COALESCE(CASE WHEN :metricType IS NULL THEN NULL ELSE CAST(:metricType AS VARCHAR) END::metric_types, metric_type),
+            threshold_type = COALESCE(CASE WHEN :thresholdType IS NULL THEN NULL ELSE CAST(:thresholdType AS VARCHAR) END::threshold_types, threshold_type),
+            threshold_value = COALESCE(:thresholdValue, threshold_value),
+            severity_level = COALESCE(CASE WHEN :severity IS NULL THEN NULL ELSE CAST(:severity AS VARCHAR) END::severity_levels, severity_level),
+            is_enabled = COALESCE(:isEnabled, is_enabled),
+            username = COALESCE(:username, username),
+            version = version + 1
+            WHERE rule_id = :ruleId AND version = :version
+            """;
+
     @Query("SELECT ar FROM AlertRule ar WHERE ar.username = :username")
     List<AlertRule> findAlertRulesByUsername(@Param("username") String username);
 
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = PATCH_ALERT_RULE, nativeQuery = true)
+    int patchAlertRule(@NonNull @Param("ruleId") UUID ruleId,
+                       @Param("version") long version,
+                       @Param("metricType") String metricType,
+                       @Param("thresholdType") String thresholdType,
+                       @Param("thresholdValue") Float thresholdValue,
+                       @Param("severity") String severity,
+                       @Param("isEnabled") Boolean isEnabled,
+                       @Param("username") String username);
+
+    //changing devices of a rule is a change of the rule, so concurrent patches of it conflict with each other
+    @Modifying
+    @Query("UPDATE AlertRule ar SET ar.version = ar.version + 1 WHERE ar.ruleId = :ruleId AND ar.version = :version")
+    int incrementVersion(@NonNull @Param("ruleId") UUID ruleId, @Param("version") long version);
+
     @Modifying
     @Query("DELETE FROM AlertRule ar WHERE ar.id = :id")
     int removeById(@NonNull @Param("id") UUID id);
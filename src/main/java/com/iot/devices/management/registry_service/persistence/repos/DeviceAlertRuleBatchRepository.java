@@ -0,0 +1,27 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.management.registry_service.persistence.model.DeviceAlertRuleKey;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+//links of new devices are plain inserts: saveAll() would merge every DeviceAlertRule because its id is assigned,
+//which costs a select per link before the insert
+@Repository
+@RequiredArgsConstructor
+public class DeviceAlertRuleBatchRepository {
+
+    private static final int BATCH_SIZE = 50;
+    private static final String INSERT_DEVICE_ALERT_RULE = "INSERT INTO devices_alert_rules (device_id, rule_id) VALUES (?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public void insertAll(List<DeviceAlertRuleKey> keys) {
+        jdbcTemplate.batchUpdate(INSERT_DEVICE_ALERT_RULE, keys, BATCH_SIZE, (ps, key) -> {
+            ps.setObject(1, key.getDeviceId());
+            ps.setObject(2, key.getRuleId());
+        });
+    }
+}
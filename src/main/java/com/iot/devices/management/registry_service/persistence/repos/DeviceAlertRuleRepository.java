@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
@@ -24,4 +25,7 @@ public interface DeviceAlertRuleRepository extends JpaRepository<DeviceAlertRule
     Set<DeviceAlertRule> findByAlertRule(AlertRule alertRule);
 
     Set<DeviceAlertRule> findAllByAlertRuleIn(List<AlertRule> alertRules);
+
+    @Query("SELECT dar.id FROM DeviceAlertRule dar WHERE dar.id.ruleId IN :ruleIds")
+    List<DeviceAlertRuleKey> findKeysByRuleIds(@Param("ruleIds") Collection<UUID> ruleIds);
 }
@@ -0,0 +1,174 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.management.registry_service.persistence.TelemetryStorage;
+import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceCursor;
+import com.iot.devices.management.registry_service.persistence.model.DeviceFilter;
+import com.iot.devices.management.registry_service.persistence.model.DevicePage;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static com.iot.devices.management.registry_service.persistence.repos.LatestTelemetryQueries.LATEST_TELEMETRY;
+
+//keyset pagination over (updated_at, id) descending: every page is an index range scan starting right after the cursor,
+//so page N costs the same as page 1. Filters on device_type and owner_user_id use their composite indexes,
+//the rest are checked on rows while walking the index in order.
+//With columnar storage ingest updates only the per type telemetry tables, so status, last_active_at, updated_at and
+//telemetry are taken from them and the page is sorted instead of read from the index
+@Repository
+public class DeviceListingRepository {
+
+    private static final String SELECT_DEVICES = """
+            SELECT id, name, serial_number, manufacturer, model, device_type, location_description, latitude, longitude,
+                   owner_user_id, status, last_active_at, firmware_version, created_at, updated_at, telemetry, version
+            FROM devices
+            WHERE updated_at IS NOT NULL
+            """;
+
+    private static final String SELECT_COLUMNAR_DEVICES = """
+            SELECT id, name, serial_number, manufacturer, model, device_type, location_description, latitude, longitude,
+                   owner_user_id, status, last_active_at, firmware_version, created_at, updated_at, telemetry, version
+            FROM (
+                SELECT d.id, d.name, d.serial_number, d.manufacturer, d.model, d.device_type, d.location_description,
+                       d.latitude, d.longitude, d.owner_user_id,
+                       COALESCE(l.status, d.status) AS status,
+                       COALESCE(l.last_active_at, d.last_active_at) AS last_active_at,
+                       COALESCE(l.firmware_version, d.firmware_version) AS firmware_version,
+                       d.created_at,
+                       COALESCE(l.updated_at, d.updated_at) AS updated_at,
+                       COALESCE(l.telemetry, CAST(d.telemetry AS text)) AS telemetry,
+                       d.version
+                FROM devices d
+                LEFT JOIN (
+            """ + LATEST_TELEMETRY + """
+                ) l ON l.device_id = d.id
+            ) devices
+            WHERE updated_at IS NOT NULL
+            """;
+
+    private static final RowMapper<Device> DEVICE_MAPPER = (rs, rowNum) -> {
+        final Device device = new Device(
+                rs.getObject("id", UUID.class),
+                rs.getString("name"),
+                rs.getString("serial_number"),
+                rs.getString("manufacturer") == null ? null : DeviceManufacturer.valueOf(rs.getString("manufacturer")),
+                rs.getString("model"),
+                DeviceType.valueOf(rs.getString("device_type")),
+                rs.getString("location_description"),
+                rs.getBigDecimal("latitude"),
+                rs.getBigDecimal("longitude"),
+                mapOwner(rs),
+                DeviceStatus.valueOf(rs.getString("status")),
+                rs.getObject("last_active_at", OffsetDateTime.class),
+                rs.getString("firmware_version"),
+                rs.getObject("created_at", OffsetDateTime.class),
+                rs.getObject("updated_at", OffsetDateTime.class),
+                rs.getString("telemetry"));
+        device.setVersion(rs.getLong("version"));
+        return device;
+    };
+
+    private final int maxPageSize;
+    private final int fetchSize;
+    private final String selectDevices;
+    private final JdbcTemplate jdbcTemplate;
+
+    public DeviceListingRepository(@Value("${device.listing.max.page.size}") int maxPageSize,
+                                   @Value("${device.listing.fetch.size}") int fetchSize,
+                                   @Value("${persister.storage}") TelemetryStorage storage,
+                                   JdbcTemplate jdbcTemplate) {
+        this.maxPageSize = maxPageSize;
+        this.fetchSize = fetchSize;
+        this.selectDevices = storage == TelemetryStorage.COLUMNAR ? SELECT_COLUMNAR_DEVICES : SELECT_DEVICES;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    //one extra row is read to find out whether there is a next page
+    public DevicePage findPage(DeviceFilter filter, @Nullable DeviceCursor cursor, int limit) {
+        final int pageSize = Math.min(limit, maxPageSize);
+        final List<Object> params = new ArrayList<>();
+        final String sql = buildQuery(selectDevices, filter, cursor, params) + " LIMIT ?";
+        params.add(pageSize + 1);
+        final List<Device> devices = jdbcTemplate.query(sql, DEVICE_MAPPER, params.toArray());
+        if (devices.size() <= pageSize) {
+            return new DevicePage(devices, null);
+        }
+        final List<Device> page = devices.subList(0, pageSize);
+        return new DevicePage(page, DeviceCursor.after(page.getLast()));
+    }
+
+    //has to be called inside a transaction, otherwise pgjdbc ignores fetch size and reads the whole result into memory
+    public void stream(DeviceFilter filter, @Nullable DeviceCursor cursor, Consumer<Device> consumer) {
+        final List<Object> params = new ArrayList<>();
+        final String sql = buildQuery(selectDevices, filter, cursor, params);
+        jdbcTemplate.query(connection -> {
+            final PreparedStatement ps = connection.prepareStatement(sql);
+            ps.setFetchSize(fetchSize);
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            return ps;
+        }, rs -> consumer.accept(DEVICE_MAPPER.mapRow(rs, rs.getRow())));
+    }
+
+    private static String buildQuery(String selectDevices, DeviceFilter filter, @Nullable DeviceCursor cursor,
+                                     List<Object> params) {
+        final StringBuilder sql = new StringBuilder(selectDevices);
+        if (filter.getDeviceType() != null) {
+            sql.append(" AND device_type = CAST(? AS device_types)");
+            params.add(filter.getDeviceType().name());
+        }
+        if (filter.getStatus() != null) {
+            sql.append(" AND status = CAST(? AS device_statuses)");
+            params.add(filter.getStatus().name());
+        }
+        if (filter.getManufacturer() != null) {
+            sql.append(" AND manufacturer = CAST(? AS device_manufacturers)");
+            params.add(filter.getManufacturer().name());
+        }
+        if (filter.getOwnerId() != null) {
+            sql.append(" AND owner_user_id = ?");
+            params.add(filter.getOwnerId());
+        }
+        if (filter.getLastActiveFrom() != null) {
+            sql.append(" AND last_active_at >= ?");
+            params.add(filter.getLastActiveFrom());
+        }
+        if (filter.getLastActiveTo() != null) {
+            sql.append(" AND last_active_at < ?");
+            params.add(filter.getLastActiveTo());
+        }
+        if (cursor != null) {
+            sql.append(" AND (updated_at, id) < (?, ?)");
+            params.add(cursor.getUpdatedAt());
+            params.add(cursor.getId());
+        }
+        return sql.append(" ORDER BY updated_at DESC, id DESC").toString();
+    }
+
+    private static User mapOwner(ResultSet rs) throws SQLException {
+        final UUID ownerId = rs.getObject("owner_user_id", UUID.class);
+        if (ownerId == null) {
+            return null;
+        }
+        final User owner = new User();
+        owner.setId(ownerId);
+        return owner;
+    }
+}
@@ -0,0 +1,264 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class DeviceTelemetryQueries {
+
+    public static final String UPDATE_DOOR_SENSOR_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            last_active_at = COALESCE(:lastActiveAt, last_active_at),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'doorState', to_jsonb(:doorState),
+                                'tamperAlert', to_jsonb(:tamperAlert),
+                                'lastOpened', to_jsonb(CAST(:lastOpened AS TIMESTAMP)),
+                                'batteryLevel', to_jsonb(:batteryLevel)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    public static final String UPDATE_ENERGY_METER_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'voltage', to_jsonb(:voltage),
+                                'current', to_jsonb(:current),
+                                'power', to_jsonb(:power),
+                                'energyConsumed', to_jsonb(:energyConsumed)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    public static final String UPDATE_SMART_LIGHT_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'isOn', to_jsonb(:isOn),
+                                'brightness', to_jsonb(:brightness),
+                                'colour', to_jsonb(:colour),
+                                'mode', to_jsonb(:mode),
+                                'powerConsumption', to_jsonb(:powerConsumption)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    public static final String UPDATE_SMART_PLUG_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'isOn', to_jsonb(:isOn),
+                                'voltage', to_jsonb(:voltage),
+                                'current', to_jsonb(:current),
+                                'powerUsage', to_jsonb(:powerUsage)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    public static final String UPDATE_SOIL_MOISTURE_SENSOR_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'moisturePercentage', to_jsonb(:moisturePercentage),
+                                'soilTemperature', to_jsonb(:soilTemperature),
+                                'batteryLevel', to_jsonb(:batteryLevel)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    public static final String UPDATE_TEMPERATURE_SENSOR_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            last_active_at = COALESCE(:lastActiveAt, last_active_at),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'temperature', to_jsonb(:temperature),
+                                'humidity', to_jsonb(:humidity),
+                                'pressure', to_jsonb(:pressure),
+                                'unit', to_jsonb(:unit)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    public static final String UPDATE_THERMOSTAT_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = COALESCE(:updatedAt, updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'currentTemperature', to_jsonb(:currentTemperature),
+                                'targetTemperature', to_jsonb(:targetTemperature),
+                                'humidity', to_jsonb(:humidity),
+                                'mode', to_jsonb(:mode)
+                            )
+                        )
+                    )
+            WHERE id = :id
+            """;
+
+    //positional variants bound by AvroTelemetryBinder, timestamps are passed as epoch millis
+    public static final String JDBC_UPDATE_DOOR_SENSOR_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            last_active_at = CASE WHEN ? = 'ONLINE' THEN TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond' ELSE last_active_at END,
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'doorState', to_jsonb(?),
+                                'tamperAlert', to_jsonb(?),
+                                'lastOpened', to_jsonb(CAST(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond' AS TIMESTAMP)),
+                                'batteryLevel', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+
+    public static final String JDBC_UPDATE_ENERGY_METER_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'voltage', to_jsonb(?),
+                                'current', to_jsonb(?),
+                                'power', to_jsonb(?),
+                                'energyConsumed', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+
+    public static final String JDBC_UPDATE_SMART_LIGHT_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'isOn', to_jsonb(?),
+                                'brightness', to_jsonb(?),
+                                'colour', to_jsonb(?),
+                                'mode', to_jsonb(?),
+                                'powerConsumption', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+
+    public static final String JDBC_UPDATE_SMART_PLUG_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'isOn', to_jsonb(?),
+                                'voltage', to_jsonb(?),
+                                'current', to_jsonb(?),
+                                'powerUsage', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+
+    public static final String JDBC_UPDATE_SOIL_MOISTURE_SENSOR_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'moisturePercentage', to_jsonb(?),
+                                'soilTemperature', to_jsonb(?),
+                                'batteryLevel', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+
+    public static final String JDBC_UPDATE_TEMPERATURE_SENSOR_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            last_active_at = CASE WHEN ? = 'ONLINE' THEN TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond' ELSE last_active_at END,
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'temperature', to_jsonb(?),
+                                'humidity', to_jsonb(?),
+                                'pressure', to_jsonb(?),
+                                'unit', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+
+    public static final String JDBC_UPDATE_THERMOSTAT_TELEMETRY = """
+            UPDATE devices SET
+            status = COALESCE(CAST(? AS device_statuses), status),
+            firmware_version = COALESCE(?, firmware_version),
+            updated_at = COALESCE(TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', updated_at),
+            telemetry = (telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'currentTemperature', to_jsonb(?),
+                                'targetTemperature', to_jsonb(?),
+                                'humidity', to_jsonb(?),
+                                'mode', to_jsonb(?)
+                            )
+                        )
+                    )
+            WHERE id = CAST(? AS uuid)
+            """;
+}
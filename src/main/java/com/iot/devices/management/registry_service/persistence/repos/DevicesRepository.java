@@ -1,6 +1,7 @@
 package com.iot.devices.management.registry_service.persistence.repos;
 
 import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceOwner;
 import jakarta.validation.constraints.NotBlank;
 import lombok.NonNull;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -9,38 +10,74 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
 import java.time.OffsetDateTime;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
+import static com.iot.devices.management.registry_service.persistence.repos.DeviceTelemetryQueries.*;
+
 @Repository
 public interface DevicesRepository extends JpaRepository<Device, UUID> {
 
+    //only columns an admin can edit are written, so concurrent telemetry updates of the same row are never overwritten
+    String PATCH_DEVICE = """
+            UPDATE devices SET
+            name = COALESCE(:name, name),
+            model = COALESCE(:model, model),
+            device_type = COALESCE(CASE WHEN :deviceType IS NULL THEN NULL ELSE CAST(:deviceType AS VARCHAR) END::device_types, device_type),
+            location_description = COALESCE(:location, location_description),
+            latitude = COALESCE(:latitude, latitude),
+            longitude = COALESCE(:longitude, longitude),
+            owner_user_id = COALESCE(CASE WHEN :ownerId IS NULL THEN NULL ELSE CAST(:ownerId AS VARCHAR) END::uuid, owner_user_id),
+            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
+            last_active_at = COALESCE(:lastActiveAt, last_active_at),
+            firmware_version = COALESCE(:firmwareVersion, firmware_version),
+            updated_at = :updatedAt,
+            version = version + 1
+            WHERE id = :id AND version = :version
+            """;
+
     Optional<Device> findBySerialNumber(@NonNull @NotBlank(message = "serial number is required") String serialNumber);
 
+    @Query("SELECT d FROM Device d LEFT JOIN FETCH d.owner WHERE d.id = :id")
+    Optional<Device> findWithOwnerById(@Param("id") UUID id);
+
+    @Query("""
+            SELECT new com.iot.devices.management.registry_service.persistence.model.DeviceOwner(d.id, u.id, u.username, u.userRole)
+            FROM Device d
+            LEFT JOIN d.owner u
+            WHERE d.id = :deviceId
+            """)
+    Optional<DeviceOwner> findDeviceOwner(@Param("deviceId") UUID deviceId);
+
+    @Query("SELECT d.serialNumber FROM Device d WHERE d.serialNumber IN :serialNumbers")
+    Set<String> findExistingSerialNumbers(@Param("serialNumbers") Collection<String> serialNumbers);
+
     @Modifying
     @Query("DELETE FROM Device d WHERE d.id = :id")
     int removeById(@NonNull @Param("id") UUID id);
 
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = PATCH_DEVICE, nativeQuery = true)
+    int patchDevice(@NonNull @Param("id") UUID id,
+                    @Param("version") long version,
+                    @Param("name") String name,
+                    @Param("model") String model,
+                    @Param("deviceType") String deviceType,
+                    @Param("location") String location,
+                    @Param("latitude") BigDecimal latitude,
+                    @Param("longitude") BigDecimal longitude,
+                    @Param("ownerId") String ownerId,
+                    @Param("status") String status,
+                    @Param("lastActiveAt") OffsetDateTime lastActiveAt,
+                    @Param("firmwareVersion") String firmwareVersion,
+                    @Param("updatedAt") OffsetDateTime updatedAt);
+
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            last_active_at = COALESCE(:lastActiveAt, last_active_at),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'doorState', to_jsonb(:doorState),
-                                'tamperAlert', to_jsonb(:tamperAlert),
-                                'lastOpened', to_jsonb(CAST(:lastOpened AS TIMESTAMP)),
-                                'batteryLevel', to_jsonb(:batteryLevel)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_DOOR_SENSOR_TELEMETRY, nativeQuery = true)
     int updateDoorSensorTelemetry(@NonNull @Param("id") UUID id,
                                   @Param("status") String status,
                                   @Param("lastActiveAt") OffsetDateTime lastActiveAt,
@@ -52,23 +89,7 @@ public interface DevicesRepository extends JpaRepository<Device, UUID> {
                                   @Param("lastOpened") OffsetDateTime lastOpened);
 
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'voltage', to_jsonb(:voltage),
-                                'current', to_jsonb(:current),
-                                'power', to_jsonb(:power),
-                                'energyConsumed', to_jsonb(:energyConsumed)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_ENERGY_METER_TELEMETRY, nativeQuery = true)
     int updateEnergyMeterTelemetry(@NonNull @Param("id") UUID id,
                                    @Param("status") String status,
                                    @Param("firmwareVersion") String firmwareVersion,
@@ -79,24 +100,7 @@ public interface DevicesRepository extends JpaRepository<Device, UUID> {
                                    @Param("energyConsumed") Float energyConsumed);
 
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'isOn', to_jsonb(:isOn),
-                                'brightness', to_jsonb(:brightness),
-                                'colour', to_jsonb(:colour),
-                                'mode', to_jsonb(:mode),
-                                'powerConsumption', to_jsonb(:powerConsumption)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_SMART_LIGHT_TELEMETRY, nativeQuery = true)
     int updateSmartLightTelemetry(@NonNull @Param("id") UUID id,
                                   @Param("status") String status,
                                   @Param("firmwareVersion") String firmwareVersion,
@@ -108,23 +112,7 @@ public interface DevicesRepository extends JpaRepository<Device, UUID> {
                                   @Param("powerConsumption") Float powerConsumption);
 
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'isOn', to_jsonb(:isOn),
-                                'voltage', to_jsonb(:voltage),
-                                'current', to_jsonb(:current),
-                                'powerUsage', to_jsonb(:powerUsage)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_SMART_PLUG_TELEMETRY, nativeQuery = true)
     int updateSmartPlugTelemetry(@NonNull @Param("id") UUID id,
                                  @Param("status") String status,
                                  @Param("firmwareVersion") String firmwareVersion,
@@ -135,22 +123,7 @@ public interface DevicesRepository extends JpaRepository<Device, UUID> {
                                  @Param("powerUsage") Float powerUsage);
 
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'moisturePercentage', to_jsonb(:moisturePercentage),
-                                'soilTemperature', to_jsonb(:soilTemperature),
-                                'batteryLevel', to_jsonb(:batteryLevel)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_SOIL_MOISTURE_SENSOR_TELEMETRY, nativeQuery = true)
     int updateSoilMoistureSensorTelemetry(@NonNull @Param("id") UUID id,
                                           @Param("status") String status,
                                           @Param("firmwareVersion") String firmwareVersion,
@@ -160,24 +133,7 @@ public interface DevicesRepository extends JpaRepository<Device, UUID> {
                                           @Param("batteryLevel") Integer batteryLevel);
 
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            last_active_at = COALESCE(:lastActiveAt, last_active_at),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'temperature', to_jsonb(:temperature),
-                                'humidity', to_jsonb(:humidity),
-                                'pressure', to_jsonb(:pressure),
-                                'unit', to_jsonb(:unit)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_TEMPERATURE_SENSOR_TELEMETRY, nativeQuery = true)
     int updateTemperatureSensorTelemetry(@NonNull @Param("id") UUID id,
                                          @Param("status") String status,
                                          @Param("lastActiveAt") OffsetDateTime lastActiveAt,
@@ -189,23 +145,7 @@ public interface DevicesRepository extends JpaRepository<Device, UUID> {
                                          @Param("unit") String unit);
 
     @Modifying
-    @Query(value = """
-            UPDATE devices SET
-            status = COALESCE(CASE WHEN :status IS NULL THEN NULL ELSE CAST(:status AS VARCHAR) END::device_statuses, status),
-            firmware_version = COALESCE(:firmwareVersion, firmware_version),
-            updated_at = COALESCE(:updatedAt, updated_at),
-            telemetry = (telemetry ||
-                        jsonb_strip_nulls(
-                            jsonb_build_object(
-                                'currentTemperature', to_jsonb(:currentTemperature),
-                                'targetTemperature', to_jsonb(:targetTemperature),
-                                'humidity', to_jsonb(:humidity),
-                                'mode', to_jsonb(:mode)
-                            )
-                        )
-                    )
-            WHERE id = :id
-            """, nativeQuery = true)
+    @Query(value = UPDATE_THERMOSTAT_TELEMETRY, nativeQuery = true)
     int updateThermostatTelemetry(@NonNull @Param("id") UUID id,
                                   @Param("status") String status,
                                   @Param("firmwareVersion") String firmwareVersion,
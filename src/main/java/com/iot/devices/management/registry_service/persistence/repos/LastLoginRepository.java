@@ -0,0 +1,41 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.util.Map;
+import java.util.UUID;
+
+//all buffered logins are one statement with two array parameters, so the statement is the same for any batch size.
+//A login time older than the stored one never overwrites it, another instance may have flushed a newer login first
+@Repository
+@RequiredArgsConstructor
+public class LastLoginRepository {
+
+    private static final String UPDATE_LAST_LOGIN = """
+            UPDATE users u SET last_login_at = to_timestamp(l.login_time_ms / 1000.0)
+            FROM unnest(?, ?) AS l(user_id, login_time_ms)
+            WHERE u.id = l.user_id AND (u.last_login_at IS NULL OR u.last_login_at < to_timestamp(l.login_time_ms / 1000.0))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public int updateAll(Map<UUID, Long> loginTimesMs) {
+        final UUID[] userIds = new UUID[loginTimesMs.size()];
+        final Long[] timesMs = new Long[loginTimesMs.size()];
+        int i = 0;
+        for (Map.Entry<UUID, Long> loginTime : loginTimesMs.entrySet()) {
+            userIds[i] = loginTime.getKey();
+            timesMs[i] = loginTime.getValue();
+            i++;
+        }
+        return jdbcTemplate.update(connection -> {
+            final PreparedStatement ps = connection.prepareStatement(UPDATE_LAST_LOGIN);
+            ps.setArray(1, connection.createArrayOf("uuid", userIds));
+            ps.setArray(2, connection.createArrayOf("bigint", timesMs));
+            return ps;
+        });
+    }
+}
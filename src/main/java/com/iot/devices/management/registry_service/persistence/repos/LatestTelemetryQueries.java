@@ -0,0 +1,248 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import lombok.experimental.UtilityClass;
+
+//upserts have the same placeholders order as DeviceTelemetryQueries.JDBC_*, so AvroTelemetryBinder binds both.
+//Only not indexed columns are updated and tables are created with free space in pages, so updates stay HOT.
+//Rows are inserted only for registered devices, unknown device id gives 0 updated rows like the devices update does
+@UtilityClass
+public class LatestTelemetryQueries {
+
+    public static final String UPSERT_DOOR_SENSOR_TELEMETRY = """
+            INSERT INTO door_sensor_telemetry AS t (device_id, status, last_active_at, firmware_version, updated_at,
+                                                    door_state, tamper_alert, last_opened, battery_level)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   CASE WHEN ? = 'ONLINE' THEN TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond' END,
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond', ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            last_active_at = COALESCE(EXCLUDED.last_active_at, t.last_active_at),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            door_state = COALESCE(EXCLUDED.door_state, t.door_state),
+            tamper_alert = COALESCE(EXCLUDED.tamper_alert, t.tamper_alert),
+            last_opened = COALESCE(EXCLUDED.last_opened, t.last_opened),
+            battery_level = COALESCE(EXCLUDED.battery_level, t.battery_level)
+            """;
+
+    public static final String UPSERT_ENERGY_METER_TELEMETRY = """
+            INSERT INTO energy_meter_telemetry AS t (device_id, status, firmware_version, updated_at,
+                                                     voltage, electric_current, power, energy_consumed)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, ?, ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            voltage = COALESCE(EXCLUDED.voltage, t.voltage),
+            electric_current = COALESCE(EXCLUDED.electric_current, t.electric_current),
+            power = COALESCE(EXCLUDED.power, t.power),
+            energy_consumed = COALESCE(EXCLUDED.energy_consumed, t.energy_consumed)
+            """;
+
+    public static final String UPSERT_SMART_LIGHT_TELEMETRY = """
+            INSERT INTO smart_light_telemetry AS t (device_id, status, firmware_version, updated_at,
+                                                    is_on, brightness, colour, mode, power_consumption)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, ?, ?, ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            is_on = COALESCE(EXCLUDED.is_on, t.is_on),
+            brightness = COALESCE(EXCLUDED.brightness, t.brightness),
+            colour = COALESCE(EXCLUDED.colour, t.colour),
+            mode = COALESCE(EXCLUDED.mode, t.mode),
+            power_consumption = COALESCE(EXCLUDED.power_consumption, t.power_consumption)
+            """;
+
+    public static final String UPSERT_SMART_PLUG_TELEMETRY = """
+            INSERT INTO smart_plug_telemetry AS t (device_id, status, firmware_version, updated_at,
+                                                   is_on, voltage, electric_current, power_usage)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, ?, ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            is_on = COALESCE(EXCLUDED.is_on, t.is_on),
+            voltage = COALESCE(EXCLUDED.voltage, t.voltage),
+            electric_current = COALESCE(EXCLUDED.electric_current, t.electric_current),
+            power_usage = COALESCE(EXCLUDED.power_usage, t.power_usage)
+            """;
+
+    public static final String UPSERT_SOIL_MOISTURE_SENSOR_TELEMETRY = """
+            INSERT INTO soil_moisture_sensor_telemetry AS t (device_id, status, firmware_version, updated_at,
+                                                             moisture_percentage, soil_temperature, battery_level)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            moisture_percentage = COALESCE(EXCLUDED.moisture_percentage, t.moisture_percentage),
+            soil_temperature = COALESCE(EXCLUDED.soil_temperature, t.soil_temperature),
+            battery_level = COALESCE(EXCLUDED.battery_level, t.battery_level)
+            """;
+
+    public static final String UPSERT_TEMPERATURE_SENSOR_TELEMETRY = """
+            INSERT INTO temperature_sensor_telemetry AS t (device_id, status, last_active_at, firmware_version, updated_at,
+                                                           temperature, humidity, pressure, unit)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   CASE WHEN ? = 'ONLINE' THEN TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond' END,
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, ?, ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            last_active_at = COALESCE(EXCLUDED.last_active_at, t.last_active_at),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            temperature = COALESCE(EXCLUDED.temperature, t.temperature),
+            humidity = COALESCE(EXCLUDED.humidity, t.humidity),
+            pressure = COALESCE(EXCLUDED.pressure, t.pressure),
+            unit = COALESCE(EXCLUDED.unit, t.unit)
+            """;
+
+    public static final String UPSERT_THERMOSTAT_TELEMETRY = """
+            INSERT INTO thermostat_telemetry AS t (device_id, status, firmware_version, updated_at,
+                                                   current_temperature, target_temperature, humidity, mode)
+            SELECT d.id,
+                   CAST(? AS device_statuses),
+                   ?,
+                   TIMESTAMPTZ 'epoch' + ? * INTERVAL '1 millisecond',
+                   ?, ?, ?, ?
+            FROM devices d WHERE d.id = CAST(? AS uuid)
+            ON CONFLICT (device_id) DO UPDATE SET
+            status = COALESCE(EXCLUDED.status, t.status),
+            firmware_version = COALESCE(EXCLUDED.firmware_version, t.firmware_version),
+            updated_at = COALESCE(EXCLUDED.updated_at, t.updated_at),
+            current_temperature = COALESCE(EXCLUDED.current_temperature, t.current_temperature),
+            target_temperature = COALESCE(EXCLUDED.target_temperature, t.target_temperature),
+            humidity = COALESCE(EXCLUDED.humidity, t.humidity),
+            mode = COALESCE(EXCLUDED.mode, t.mode)
+            """;
+
+    //telemetry is rendered with the same keys as the devices.telemetry jsonb, so DeviceDto looks the same for both storages
+    private static final String DOOR_SENSOR_TELEMETRY = """
+            SELECT device_id, status, last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'doorState', door_state,
+                       'tamperAlert', tamper_alert,
+                       'lastOpened', CAST(last_opened AS TIMESTAMP),
+                       'batteryLevel', battery_level
+                   ))::text AS telemetry
+            FROM door_sensor_telemetry
+            """;
+
+    public static final String SELECT_DOOR_SENSOR_TELEMETRY = DOOR_SENSOR_TELEMETRY + "WHERE device_id = ?";
+
+    private static final String ENERGY_METER_TELEMETRY = """
+            SELECT device_id, status, NULL AS last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'voltage', voltage,
+                       'current', electric_current,
+                       'power', power,
+                       'energyConsumed', energy_consumed
+                   ))::text AS telemetry
+            FROM energy_meter_telemetry
+            """;
+
+    public static final String SELECT_ENERGY_METER_TELEMETRY = ENERGY_METER_TELEMETRY + "WHERE device_id = ?";
+
+    private static final String SMART_LIGHT_TELEMETRY = """
+            SELECT device_id, status, NULL AS last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'isOn', is_on,
+                       'brightness', brightness,
+                       'colour', colour,
+                       'mode', mode,
+                       'powerConsumption', power_consumption
+                   ))::text AS telemetry
+            FROM smart_light_telemetry
+            """;
+
+    public static final String SELECT_SMART_LIGHT_TELEMETRY = SMART_LIGHT_TELEMETRY + "WHERE device_id = ?";
+
+    private static final String SMART_PLUG_TELEMETRY = """
+            SELECT device_id, status, NULL AS last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'isOn', is_on,
+                       'voltage', voltage,
+                       'current', electric_current,
+                       'powerUsage', power_usage
+                   ))::text AS telemetry
+            FROM smart_plug_telemetry
+            """;
+
+    public static final String SELECT_SMART_PLUG_TELEMETRY = SMART_PLUG_TELEMETRY + "WHERE device_id = ?";
+
+    private static final String SOIL_MOISTURE_SENSOR_TELEMETRY = """
+            SELECT device_id, status, NULL AS last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'moisturePercentage', moisture_percentage,
+                       'soilTemperature', soil_temperature,
+                       'batteryLevel', battery_level
+                   ))::text AS telemetry
+            FROM soil_moisture_sensor_telemetry
+            """;
+
+    public static final String SELECT_SOIL_MOISTURE_SENSOR_TELEMETRY = SOIL_MOISTURE_SENSOR_TELEMETRY + "WHERE device_id = ?";
+
+    private static final String TEMPERATURE_SENSOR_TELEMETRY = """
+            SELECT device_id, status, last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'temperature', temperature,
+                       'humidity', humidity,
+                       'pressure', pressure,
+                       'unit', unit
+                   ))::text AS telemetry
+            FROM temperature_sensor_telemetry
+            """;
+
+    public static final String SELECT_TEMPERATURE_SENSOR_TELEMETRY = TEMPERATURE_SENSOR_TELEMETRY + "WHERE device_id = ?";
+
+    private static final String THERMOSTAT_TELEMETRY = """
+            SELECT device_id, status, NULL AS last_active_at, firmware_version, updated_at,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'currentTemperature', current_temperature,
+                       'targetTemperature', target_temperature,
+                       'humidity', humidity,
+                       'mode', mode
+                   ))::text AS telemetry
+            FROM thermostat_telemetry
+            """;
+
+    public static final String SELECT_THERMOSTAT_TELEMETRY = THERMOSTAT_TELEMETRY + "WHERE device_id = ?";
+
+    //latest state of every device with telemetry, joined by the devices listing
+    public static final String LATEST_TELEMETRY = DOOR_SENSOR_TELEMETRY
+            + "UNION ALL\n" + ENERGY_METER_TELEMETRY
+            + "UNION ALL\n" + SMART_LIGHT_TELEMETRY
+            + "UNION ALL\n" + SMART_PLUG_TELEMETRY
+            + "UNION ALL\n" + SOIL_MOISTURE_SENSOR_TELEMETRY
+            + "UNION ALL\n" + TEMPERATURE_SENSOR_TELEMETRY
+            + "UNION ALL\n" + THERMOSTAT_TELEMETRY;
+}
@@ -0,0 +1,52 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.management.registry_service.persistence.TelemetryStorage;
+import com.iot.devices.management.registry_service.persistence.model.LatestTelemetry;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+import static com.iot.devices.management.registry_service.persistence.repos.LatestTelemetryQueries.*;
+
+@Repository
+public class LatestTelemetryRepository {
+
+    private static final RowMapper<LatestTelemetry> LATEST_TELEMETRY_MAPPER = (rs, rowNum) -> new LatestTelemetry(
+            rs.getString("status") == null ? null : DeviceStatus.valueOf(rs.getString("status")),
+            rs.getObject("last_active_at", OffsetDateTime.class),
+            rs.getString("firmware_version"),
+            rs.getObject("updated_at", OffsetDateTime.class),
+            rs.getString("telemetry"));
+
+    private final TelemetryStorage storage;
+    private final JdbcTemplate jdbcTemplate;
+
+    public LatestTelemetryRepository(@Value("${persister.storage}") TelemetryStorage storage, JdbcTemplate jdbcTemplate) {
+        this.storage = storage;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    //empty for jsonb storage or when no telemetry was received yet
+    public Optional<LatestTelemetry> findByDeviceId(UUID deviceId, DeviceType deviceType) {
+        if (storage != TelemetryStorage.COLUMNAR) {
+            return Optional.empty();
+        }
+        final String sql = switch (deviceType) {
+            case DOOR_SENSOR -> SELECT_DOOR_SENSOR_TELEMETRY;
+            case ENERGY_METER -> SELECT_ENERGY_METER_TELEMETRY;
+            case SMART_LIGHT -> SELECT_SMART_LIGHT_TELEMETRY;
+            case SMART_PLUG -> SELECT_SMART_PLUG_TELEMETRY;
+            case SOIL_MOISTURE_SENSOR -> SELECT_SOIL_MOISTURE_SENSOR_TELEMETRY;
+            case TEMPERATURE_SENSOR -> SELECT_TEMPERATURE_SENSOR_TELEMETRY;
+            case THERMOSTAT -> SELECT_THERMOSTAT_TELEMETRY;
+        };
+        return jdbcTemplate.query(sql, LATEST_TELEMETRY_MAPPER, deviceId).stream().findFirst();
+    }
+}
@@ -0,0 +1,97 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import org.springframework.lang.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.time.temporal.ChronoUnit.MICROS;
+
+//writes rows in the postgres binary COPY format: https://www.postgresql.org/docs/current/sql-copy.html#id-1.9.3.55.9.4
+class PgBinaryCopyWriter implements AutoCloseable {
+
+    private static final byte[] SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+    private static final int NULL_LENGTH = -1;
+
+    private final DataOutputStream out;
+
+    PgBinaryCopyWriter(OutputStream outputStream) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(outputStream, 65536));
+        out.write(SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    void startRow(int columnsCount) throws IOException {
+        out.writeShort(columnsCount);
+    }
+
+    void writeUuid(@Nullable UUID value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    void writeText(@Nullable String value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        final byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    void writeTimestamp(@Nullable OffsetDateTime value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(8);
+        out.writeLong(MICROS.between(POSTGRES_EPOCH, value.toInstant()));
+    }
+
+    void writeFloat(@Nullable Float value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(4);
+        out.writeFloat(value);
+    }
+
+    void writeInt(@Nullable Integer value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    void writeBoolean(@Nullable Boolean value) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        out.writeInt(1);
+        out.writeBoolean(value);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.writeShort(-1);
+        out.close();
+    }
+}
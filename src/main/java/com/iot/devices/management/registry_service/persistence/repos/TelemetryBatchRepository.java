@@ -0,0 +1,93 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.mapping.AvroTelemetryBinder;
+import com.iot.devices.management.registry_service.mapping.AvroTelemetryBinder.StatementBinder;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.TelemetryStorage;
+import com.sun.management.ThreadMXBean;
+import org.apache.avro.specific.SpecificRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.lang.management.ManagementFactory;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static com.iot.devices.management.registry_service.persistence.repos.DeviceTelemetryQueries.*;
+import static com.iot.devices.management.registry_service.persistence.repos.LatestTelemetryQueries.*;
+
+@Repository
+public class TelemetryBatchRepository {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final TelemetryStorage storage;
+    private final JdbcTemplate jdbcTemplate;
+    private final KpiMetricLogger kpiMetricLogger;
+
+    public TelemetryBatchRepository(@Value("${persister.storage}") TelemetryStorage storage,
+                                    JdbcTemplate jdbcTemplate, KpiMetricLogger kpiMetricLogger) {
+        this.storage = storage;
+        this.jdbcTemplate = jdbcTemplate;
+        this.kpiMetricLogger = kpiMetricLogger;
+    }
+
+    public int[] updateDoorSensorTelemetries(List<DoorSensor> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_DOOR_SENSOR_TELEMETRY, UPSERT_DOOR_SENSOR_TELEMETRY), telemetries, AvroTelemetryBinder::bindDoorSensor);
+    }
+
+    public int[] updateEnergyMeterTelemetries(List<EnergyMeter> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_ENERGY_METER_TELEMETRY, UPSERT_ENERGY_METER_TELEMETRY), telemetries, AvroTelemetryBinder::bindEnergyMeter);
+    }
+
+    public int[] updateSmartLightTelemetries(List<SmartLight> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_SMART_LIGHT_TELEMETRY, UPSERT_SMART_LIGHT_TELEMETRY), telemetries, AvroTelemetryBinder::bindSmartLight);
+    }
+
+    public int[] updateSmartPlugTelemetries(List<SmartPlug> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_SMART_PLUG_TELEMETRY, UPSERT_SMART_PLUG_TELEMETRY), telemetries, AvroTelemetryBinder::bindSmartPlug);
+    }
+
+    public int[] updateSoilMoistureSensorTelemetries(List<SoilMoistureSensor> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_SOIL_MOISTURE_SENSOR_TELEMETRY, UPSERT_SOIL_MOISTURE_SENSOR_TELEMETRY), telemetries, AvroTelemetryBinder::bindSoilMoistureSensor);
+    }
+
+    public int[] updateTemperatureSensorTelemetries(List<TemperatureSensor> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_TEMPERATURE_SENSOR_TELEMETRY, UPSERT_TEMPERATURE_SENSOR_TELEMETRY), telemetries, AvroTelemetryBinder::bindTemperatureSensor);
+    }
+
+    public int[] updateThermostatTelemetries(List<Thermostat> telemetries) {
+        return batchUpdate(sql(JDBC_UPDATE_THERMOSTAT_TELEMETRY, UPSERT_THERMOSTAT_TELEMETRY), telemetries, AvroTelemetryBinder::bindThermostat);
+    }
+
+    private String sql(String jsonbSql, String columnarSql) {
+        return storage == TelemetryStorage.COLUMNAR ? columnarSql : jsonbSql;
+    }
+
+    //one prepared statement is reused for the whole batch, only bytes allocated by binding are counted, not by driver addBatch()
+    private <T extends SpecificRecord> int[] batchUpdate(String sql, List<T> telemetries, StatementBinder<T> binder) {
+        final long[] allocatedBytes = new long[1];
+        final int[] updated = jdbcTemplate.batchUpdate(sql, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                final long allocatedBefore = THREAD_MX_BEAN.getCurrentThreadAllocatedBytes();
+                binder.bind(ps, telemetries.get(i));
+                allocatedBytes[0] += THREAD_MX_BEAN.getCurrentThreadAllocatedBytes() - allocatedBefore;
+            }
+
+            @Override
+            public int getBatchSize() {
+                return telemetries.size();
+            }
+        });
+        if (!telemetries.isEmpty()) {
+            kpiMetricLogger.recordTelemetryBindingAllocation(telemetries.getFirst().getSchema().getName(),
+                    allocatedBytes[0] / telemetries.size());
+        }
+        return updated;
+    }
+}
@@ -0,0 +1,158 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.management.registry_service.mapping.TelemetryRow;
+import com.iot.devices.management.registry_service.persistence.model.TelemetryPoint;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+@Repository
+@RequiredArgsConstructor
+public class TelemetryHistoryRepository {
+
+    public static final String PARTITION_PREFIX = "telemetry_history_p";
+    public static final DateTimeFormatter PARTITION_SUFFIX_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final int HISTORY_COLUMNS_COUNT = 27;
+
+    private static final String COPY_TO_HISTORY = """
+            COPY telemetry_history (device_id, device_type, recorded_at, status, firmware_version,
+            door_state, tamper_alert, last_opened, battery_level, voltage, electric_current, power, energy_consumed,
+            is_on, brightness, colour, mode, power_consumption, power_usage, moisture_percentage, soil_temperature,
+            temperature, humidity, pressure, unit, current_temperature, target_temperature)
+            FROM STDIN (FORMAT BINARY)
+            """;
+
+    //numeric fields are averaged within a bucket, the rest keep the newest non-null value of the bucket
+    private static final String SELECT_DOWNSAMPLED = """
+            SELECT date_bin(? * INTERVAL '1 millisecond', recorded_at, ?) AS bucket,
+                   count(*) AS samples,
+                   jsonb_strip_nulls(jsonb_build_object(
+                       'status', (array_agg(status ORDER BY recorded_at DESC) FILTER (WHERE status IS NOT NULL))[1],
+                       'doorState', (array_agg(door_state ORDER BY recorded_at DESC) FILTER (WHERE door_state IS NOT NULL))[1],
+                       'tamperAlert', bool_or(tamper_alert),
+                       'lastOpened', CAST(max(last_opened) AS TIMESTAMP),
+                       'batteryLevel', avg(battery_level),
+                       'voltage', avg(voltage),
+                       'current', avg(electric_current),
+                       'power', avg(power),
+                       'energyConsumed', max(energy_consumed),
+                       'isOn', (array_agg(is_on ORDER BY recorded_at DESC) FILTER (WHERE is_on IS NOT NULL))[1],
+                       'brightness', avg(brightness),
+                       'colour', (array_agg(colour ORDER BY recorded_at DESC) FILTER (WHERE colour IS NOT NULL))[1],
+                       'mode', (array_agg(mode ORDER BY recorded_at DESC) FILTER (WHERE mode IS NOT NULL))[1],
+                       'powerConsumption', avg(power_consumption),
+                       'powerUsage', avg(power_usage),
+                       'moisturePercentage', avg(moisture_percentage),
+                       'soilTemperature', avg(soil_temperature),
+                       'temperature', avg(temperature),
+                       'humidity', avg(humidity),
+                       'pressure', avg(pressure),
+                       'unit', (array_agg(unit ORDER BY recorded_at DESC) FILTER (WHERE unit IS NOT NULL))[1],
+                       'currentTemperature', avg(current_temperature),
+                       'targetTemperature', avg(target_temperature)
+                   ))::text AS telemetry
+            FROM telemetry_history
+            WHERE device_id = ? AND recorded_at >= ? AND recorded_at < ?
+            GROUP BY bucket
+            ORDER BY bucket
+            """;
+
+    private static final String SELECT_PARTITIONS = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = 'telemetry_history' AND c.relname LIKE 'telemetry_history_p%'
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long append(List<TelemetryRow> rows) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            try (PgBinaryCopyWriter writer = new PgBinaryCopyWriter(new PGCopyOutputStream(pgConnection, COPY_TO_HISTORY))) {
+                for (TelemetryRow row : rows) {
+                    writeRow(writer, row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to append " + rows.size() + " rows to telemetry history", e);
+            }
+            return (long) rows.size();
+        });
+    }
+
+    //has to be called inside a transaction, otherwise pgjdbc ignores fetch size and reads the whole result into memory
+    public void streamDownsampled(UUID deviceId, OffsetDateTime from, OffsetDateTime to, Duration step, int fetchSize,
+                                  Consumer<TelemetryPoint> consumer) {
+        jdbcTemplate.query(connection -> {
+            final PreparedStatement ps = connection.prepareStatement(SELECT_DOWNSAMPLED);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, step.toMillis());
+            ps.setObject(2, from);
+            ps.setObject(3, deviceId);
+            ps.setObject(4, from);
+            ps.setObject(5, to);
+            return ps;
+        }, rs -> consumer.accept(new TelemetryPoint(rs.getObject("bucket", OffsetDateTime.class), rs.getLong("samples"),
+                rs.getString("telemetry"))));
+    }
+
+    //daily partitions in UTC, the name is derived from the date only
+    public void createPartition(LocalDate day) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + PARTITION_PREFIX + day.format(PARTITION_SUFFIX_FORMAT) +
+                " PARTITION OF telemetry_history FOR VALUES FROM ('" + day + " 00:00:00+00') TO ('" + day.plusDays(1) + " 00:00:00+00')");
+    }
+
+    public List<String> findPartitions() {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class);
+    }
+
+    public void dropPartition(String partition) {
+        jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+    }
+
+    private void writeRow(PgBinaryCopyWriter writer, TelemetryRow row) throws IOException {
+        writer.startRow(HISTORY_COLUMNS_COUNT);
+        writer.writeUuid(row.getId());
+        writer.writeText(row.getDeviceType());
+        writer.writeTimestamp(row.getLastUpdated());
+        writer.writeText(row.getStatus());
+        writer.writeText(row.getFirmwareVersion());
+        writer.writeText(row.getDoorState());
+        writer.writeBoolean(row.getTamperAlert());
+        writer.writeTimestamp(row.getLastOpened());
+        writer.writeInt(row.getBatteryLevel());
+        writer.writeFloat(row.getVoltage());
+        writer.writeFloat(row.getCurrent());
+        writer.writeFloat(row.getPower());
+        writer.writeFloat(row.getEnergyConsumed());
+        writer.writeBoolean(row.getIsOn());
+        writer.writeInt(row.getBrightness());
+        writer.writeText(row.getColour());
+        writer.writeText(row.getMode());
+        writer.writeFloat(row.getPowerConsumption());
+        writer.writeFloat(row.getPowerUsage());
+        writer.writeFloat(row.getMoisturePercentage());
+        writer.writeFloat(row.getSoilTemperature());
+        writer.writeFloat(row.getTemperature());
+        writer.writeFloat(row.getHumidity());
+        writer.writeFloat(row.getPressure());
+        writer.writeText(row.getUnit());
+        writer.writeFloat(row.getCurrentTemperature());
+        writer.writeFloat(row.getTargetTemperature());
+    }
+}
@@ -0,0 +1,64 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.persistence.TelemetryStorage;
+import org.apache.avro.specific.SpecificRecord;
+import org.postgresql.PGStatement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+
+import static com.iot.devices.management.registry_service.mapping.AvroTelemetryBinder.*;
+import static com.iot.devices.management.registry_service.persistence.repos.DeviceTelemetryQueries.*;
+import static com.iot.devices.management.registry_service.persistence.repos.LatestTelemetryQueries.*;
+
+//single record updates without repository proxy and jpa transaction, each statement is committed by auto-commit.
+//sql text is constant per device type, so pgjdbc keeps one server-side prepared statement per type in each pooled connection
+@Repository
+public class TelemetryJdbcWriter {
+
+    private final TelemetryStorage storage;
+    private final JdbcTemplate jdbcTemplate;
+
+    public TelemetryJdbcWriter(@Value("${persister.storage}") TelemetryStorage storage, JdbcTemplate jdbcTemplate) {
+        this.storage = storage;
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public int update(SpecificRecord telemetry) {
+        return switch (telemetry) {
+            case DoorSensor ds -> update(sql(JDBC_UPDATE_DOOR_SENSOR_TELEMETRY, UPSERT_DOOR_SENSOR_TELEMETRY),
+                    ps -> bindDoorSensor(ps, ds));
+            case EnergyMeter em -> update(sql(JDBC_UPDATE_ENERGY_METER_TELEMETRY, UPSERT_ENERGY_METER_TELEMETRY),
+                    ps -> bindEnergyMeter(ps, em));
+            case SmartLight sl -> update(sql(JDBC_UPDATE_SMART_LIGHT_TELEMETRY, UPSERT_SMART_LIGHT_TELEMETRY),
+                    ps -> bindSmartLight(ps, sl));
+            case SmartPlug sp -> update(sql(JDBC_UPDATE_SMART_PLUG_TELEMETRY, UPSERT_SMART_PLUG_TELEMETRY),
+                    ps -> bindSmartPlug(ps, sp));
+            case SoilMoistureSensor sms -> update(sql(JDBC_UPDATE_SOIL_MOISTURE_SENSOR_TELEMETRY, UPSERT_SOIL_MOISTURE_SENSOR_TELEMETRY),
+                    ps -> bindSoilMoistureSensor(ps, sms));
+            case TemperatureSensor ts -> update(sql(JDBC_UPDATE_TEMPERATURE_SENSOR_TELEMETRY, UPSERT_TEMPERATURE_SENSOR_TELEMETRY),
+                    ps -> bindTemperatureSensor(ps, ts));
+            case Thermostat t -> update(sql(JDBC_UPDATE_THERMOSTAT_TELEMETRY, UPSERT_THERMOSTAT_TELEMETRY),
+                    ps -> bindThermostat(ps, t));
+            default -> throw new IllegalArgumentException("Unknown device type detected");
+        };
+    }
+
+    //only these statements are server-prepared from the first execution, the rest of the pool keeps the driver default
+    private int update(String sql, PreparedStatementSetter setter) {
+        return jdbcTemplate.update(connection -> {
+            final PreparedStatement ps = connection.prepareStatement(sql);
+            ps.unwrap(PGStatement.class).setPrepareThreshold(1);
+            setter.setValues(ps);
+            return ps;
+        });
+    }
+
+    private String sql(String jsonbSql, String columnarSql) {
+        return storage == TelemetryStorage.COLUMNAR ? columnarSql : jsonbSql;
+    }
+}
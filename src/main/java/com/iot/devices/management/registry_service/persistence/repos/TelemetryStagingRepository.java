@@ -0,0 +1,133 @@
+package com.iot.devices.management.registry_service.persistence.repos;
+
+import com.iot.devices.management.registry_service.mapping.TelemetryRow;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+@Repository
+@RequiredArgsConstructor
+public class TelemetryStagingRepository {
+
+    private static final int STAGING_COLUMNS_COUNT = 28;
+
+    private static final String COPY_TO_STAGING = """
+            COPY telemetry_staging (batch_id, device_id, status, firmware_version, last_updated, last_active_at,
+            door_state, tamper_alert, last_opened, battery_level, voltage, electric_current, power, energy_consumed,
+            is_on, brightness, colour, mode, power_consumption, power_usage, moisture_percentage, soil_temperature,
+            temperature, humidity, pressure, unit, current_temperature, target_temperature)
+            FROM STDIN (FORMAT BINARY)
+            """;
+
+    //DISTINCT ON keeps only the newest staged row per device, null telemetry fields are stripped so they do not overwrite stored values
+    private static final String MERGE_STAGING_INTO_DEVICES = """
+            UPDATE devices d SET
+            status = COALESCE(CAST(s.status AS device_statuses), d.status),
+            last_active_at = COALESCE(s.last_active_at, d.last_active_at),
+            firmware_version = COALESCE(s.firmware_version, d.firmware_version),
+            updated_at = COALESCE(s.last_updated, d.updated_at),
+            telemetry = (d.telemetry ||
+                        jsonb_strip_nulls(
+                            jsonb_build_object(
+                                'doorState', s.door_state,
+                                'tamperAlert', s.tamper_alert,
+                                'lastOpened', CAST(s.last_opened AS TIMESTAMP),
+                                'batteryLevel', s.battery_level,
+                                'voltage', s.voltage,
+                                'current', s.electric_current,
+                                'power', s.power,
+                                'energyConsumed', s.energy_consumed,
+                                'isOn', s.is_on,
+                                'brightness', s.brightness,
+                                'colour', s.colour,
+                                'mode', s.mode,
+                                'powerConsumption', s.power_consumption,
+                                'powerUsage', s.power_usage,
+                                'moisturePercentage', s.moisture_percentage,
+                                'soilTemperature', s.soil_temperature,
+                                'temperature', s.temperature,
+                                'humidity', s.humidity,
+                                'pressure', s.pressure,
+                                'unit', s.unit,
+                                'currentTemperature', s.current_temperature,
+                                'targetTemperature', s.target_temperature
+                            )
+                        )
+                    )
+            FROM (
+                SELECT DISTINCT ON (device_id) * FROM telemetry_staging
+                WHERE batch_id = ?
+                ORDER BY device_id, last_updated DESC
+            ) s
+            WHERE d.id = s.device_id
+            RETURNING d.id
+            """;
+
+    private static final String DELETE_STAGED_BATCH = "DELETE FROM telemetry_staging WHERE batch_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public long copyToStaging(UUID batchId, List<TelemetryRow> rows) {
+        return jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+            try (PgBinaryCopyWriter writer = new PgBinaryCopyWriter(new PGCopyOutputStream(pgConnection, COPY_TO_STAGING))) {
+                for (TelemetryRow row : rows) {
+                    writeRow(writer, batchId, row);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to copy telemetry batch " + batchId + " to staging table", e);
+            }
+            return (long) rows.size();
+        });
+    }
+
+    public Set<UUID> mergeStagedBatch(UUID batchId) {
+        return new HashSet<>(jdbcTemplate.queryForList(MERGE_STAGING_INTO_DEVICES, UUID.class, batchId));
+    }
+
+    public int deleteStagedBatch(UUID batchId) {
+        return jdbcTemplate.update(DELETE_STAGED_BATCH, batchId);
+    }
+
+    private void writeRow(PgBinaryCopyWriter writer, UUID batchId, TelemetryRow row) throws IOException {
+        writer.startRow(STAGING_COLUMNS_COUNT);
+        writer.writeUuid(batchId);
+        writer.writeUuid(row.getId());
+        writer.writeText(row.getStatus());
+        writer.writeText(row.getFirmwareVersion());
+        writer.writeTimestamp(row.getLastUpdated());
+        writer.writeTimestamp(row.getLastActiveAt());
+        writer.writeText(row.getDoorState());
+        writer.writeBoolean(row.getTamperAlert());
+        writer.writeTimestamp(row.getLastOpened());
+        writer.writeInt(row.getBatteryLevel());
+        writer.writeFloat(row.getVoltage());
+        writer.writeFloat(row.getCurrent());
+        writer.writeFloat(row.getPower());
+        writer.writeFloat(row.getEnergyConsumed());
+        writer.writeBoolean(row.getIsOn());
+        writer.writeInt(row.getBrightness());
+        writer.writeText(row.getColour());
+        writer.writeText(row.getMode());
+        writer.writeFloat(row.getPowerConsumption());
+        writer.writeFloat(row.getPowerUsage());
+        writer.writeFloat(row.getMoisturePercentage());
+        writer.writeFloat(row.getSoilTemperature());
+        writer.writeFloat(row.getTemperature());
+        writer.writeFloat(row.getHumidity());
+        writer.writeFloat(row.getPressure());
+        writer.writeText(row.getUnit());
+        writer.writeFloat(row.getCurrentTemperature());
+        writer.writeFloat(row.getTargetTemperature());
+    }
+}
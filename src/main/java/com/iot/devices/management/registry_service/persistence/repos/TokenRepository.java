@@ -1,23 +1,64 @@
 package com.iot.devices.management.registry_service.persistence.repos;
 
 import com.iot.devices.management.registry_service.persistence.model.Token;
+import com.iot.devices.management.registry_service.persistence.model.TokenState;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
-import java.util.List;
+import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 public interface TokenRepository extends JpaRepository<Token, UUID> {
 
-    @Query("SELECT t FROM Token t WHERE t.user.id = :id AND (t.expired = false AND t.revoked = false)")
-    List<Token> findAllValidTokenByUser(@Param("id") UUID userId);
+    Optional<Token> findByTokenHash(String tokenHash);
 
-    Optional<Token> findByToken(String token);
+    @Query("""
+            SELECT new com.iot.devices.management.registry_service.persistence.model.TokenState(t.id, t.user.id, t.tokenHash, t.refresh, t.issuedAt)
+            FROM Token t
+            WHERE t.expired = false AND t.revoked = false AND t.expiresAt > :now
+            """)
+    Stream<TokenState> streamAllValidTokens(@Param("now") OffsetDateTime now);
+
+    //bounded batches, so every run of the reaper holds row locks shortly. Expired tokens are found by a range scan
+    //of idx_tokens_expires_at and revoked ones by the partial idx_tokens_revoked, an OR of both would scan the table
+    @Modifying
+    @Query(value = """
+            DELETE FROM tokens WHERE id IN (
+                SELECT id FROM tokens WHERE expires_at < :now LIMIT :limit
+            )
+            """, nativeQuery = true)
+    int removeExpiredTokens(@Param("now") OffsetDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = """
+            DELETE FROM tokens WHERE id IN (
+                SELECT id FROM tokens WHERE revoked LIMIT :limit
+            )
+            """, nativeQuery = true)
+    int removeRevokedTokens(@Param("limit") int limit);
+
+    //delivered to listening instances when the transaction commits, payload is "<userId> <revokedAtMs>"
+    @Query(value = "SELECT 1 FROM pg_notify('token_revocations', CAST(:userId AS text) || ' ' || CAST(:revokedAtMs AS text))",
+            nativeQuery = true)
+    int notifyTokensRevoked(@Param("userId") UUID userId, @Param("revokedAtMs") long revokedAtMs);
+
+    @Query(value = "SELECT pg_total_relation_size('tokens')", nativeQuery = true)
+    long findTableSize();
 
     @Modifying
     @Query("DELETE FROM Token t WHERE t.user.id = :id")
     int removeAllByUserId(@Param("id") UUID userId);
+
+    //a revocation covers tokens issued before it, tokens issued meanwhile by any instance are kept
+    @Modifying
+    @Query("DELETE FROM Token t WHERE t.user.id = :id AND t.issuedAt < :revokedAt")
+    int removeAllByUserIdIssuedBefore(@Param("id") UUID userId, @Param("revokedAt") OffsetDateTime revokedAt);
+
+    @Modifying
+    @Query("UPDATE Token t SET t.expired = true, t.revoked = true WHERE t.user.id = :id AND t.revoked = false AND t.issuedAt < :revokedAt")
+    int revokeAllByUserIdIssuedBefore(@Param("id") UUID userId, @Param("revokedAt") OffsetDateTime revokedAt);
 }
@@ -1,7 +1,6 @@
 package com.iot.devices.management.registry_service.persistence.repos;
 
 import com.iot.devices.management.registry_service.persistence.model.User;
-import com.iot.devices.management.registry_service.persistence.model.UserProjection;
 import jakarta.validation.constraints.Email;
 import lombok.NonNull;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -10,7 +9,6 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.OffsetDateTime;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -25,15 +23,8 @@ public interface UsersRepository extends JpaRepository<User, UUID> {
     @Query("DELETE FROM User u WHERE u.id = :id")
     int removeById(@NonNull @Param("id") UUID id);
 
+    //the hash is compared, so a password changed meanwhile is not overwritten by a rehash of the previous one
     @Modifying
-    @Query("UPDATE User u SET u.lastLoginAt = :loginTime WHERE u.id = :id")
-    int updateLastLoginTime(@Param("id") UUID id, @Param("loginTime") OffsetDateTime loginTime);
-
-    @Query("""
-            SELECT new com.iot.devices.management.registry_service.persistence.model.UserProjection(u.id, u.username, u.userRole)
-            FROM User u
-            JOIN Device d ON u.id = d.owner.id
-            WHERE d.id = :deviceId
-            """)
-    Optional<UserProjection> findUserProjectionByDeviceId(@Param("deviceId") UUID deviceId);
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :currentHash")
+    int updatePasswordHash(@Param("id") UUID id, @Param("currentHash") String currentHash, @Param("newHash") String newHash);
 }
@@ -0,0 +1,60 @@
+package com.iot.devices.management.registry_service.persistence.retry;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+//process-wide breaker shared by all patcher threads and consumer loops, so a database brownout is seen by everyone at once
+@Slf4j
+@Component
+public class DatabaseCircuitBreaker {
+
+    private static final String CIRCUIT_BREAKER_NAME = "postgres";
+
+    private final CircuitBreaker circuitBreaker;
+    private final KpiMetricLogger kpiMetricLogger;
+
+    public DatabaseCircuitBreaker(CircuitBreakerRegistry circuitBreakerRegistry, KpiMetricLogger kpiMetricLogger) {
+        this.circuitBreaker = circuitBreakerRegistry.circuitBreaker(CIRCUIT_BREAKER_NAME);
+        this.kpiMetricLogger = kpiMetricLogger;
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Database circuit breaker state transition: {}", event.getStateTransition());
+            kpiMetricLogger.recordDbCircuitBreakerState(event.getStateTransition().getToState().getOrder());
+        });
+    }
+
+    public boolean tryAcquirePermission() {
+        if (circuitBreaker.tryAcquirePermission()) {
+            return true;
+        }
+        kpiMetricLogger.incDbCircuitBreakerRejectedCalls();
+        return false;
+    }
+
+    public void onSuccess(long startNanos) {
+        circuitBreaker.onSuccess(System.nanoTime() - startNanos, NANOSECONDS);
+    }
+
+    public void onError(long startNanos, Throwable throwable) {
+        circuitBreaker.onError(System.nanoTime() - startNanos, NANOSECONDS, throwable);
+    }
+
+    //non-retriable errors are caused by the record itself and say nothing about database health
+    public void releasePermission() {
+        circuitBreaker.releasePermission();
+    }
+
+    public boolean isOpen() {
+        final CircuitBreaker.State state = circuitBreaker.getState();
+        return state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    public CallNotPermittedException callNotPermitted() {
+        return CallNotPermittedException.createCallNotPermittedException(circuitBreaker);
+    }
+}
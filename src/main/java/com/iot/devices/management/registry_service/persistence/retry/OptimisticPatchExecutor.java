@@ -0,0 +1,51 @@
+package com.iot.devices.management.registry_service.persistence.retry;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+//every attempt runs in its own READ COMMITTED transaction, so a retried patch is applied on top of the committed concurrent one
+@Slf4j
+@Component
+public class OptimisticPatchExecutor {
+
+    private final int maxAttempts;
+    private final TransactionTemplate transactionTemplate;
+    private final KpiMetricLogger kpiMetricLogger;
+
+    public OptimisticPatchExecutor(@Value("${optimistic.patch.max.attempts}") int maxAttempts,
+                                   PlatformTransactionManager transactionManager, KpiMetricLogger kpiMetricLogger) {
+        this.maxAttempts = maxAttempts;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setIsolationLevel(TransactionDefinition.ISOLATION_READ_COMMITTED);
+        this.kpiMetricLogger = kpiMetricLogger;
+    }
+
+    //a patch with the version given by the client is never retried, the client decides on top of the current state
+    public <T> T execute(String entity, boolean retriable, Class<? extends RuntimeException> conflictType, Supplier<T> patch) {
+        int currentTry = 0;
+        while (true) {
+            currentTry++;
+            try {
+                return transactionTemplate.execute(status -> patch.get());
+            } catch (RuntimeException e) {
+                if (!conflictType.isInstance(e)) {
+                    throw e;
+                }
+                kpiMetricLogger.incOptimisticLockConflicts(entity);
+                if (!retriable || currentTry >= maxAttempts) {
+                    log.warn("Unable to patch {} on try {}/{}: {}", entity, currentTry, retriable ? maxAttempts : 1, e.getMessage());
+                    throw e;
+                }
+                kpiMetricLogger.incOptimisticLockRetries(entity);
+                log.info("Retrying patch of {} on try {}/{}: {}", entity, currentTry + 1, maxAttempts, e.getMessage());
+            }
+        }
+    }
+}
@@ -2,17 +2,24 @@ package com.iot.devices.management.registry_service.persistence.retry;
 
 import com.iot.devices.*;
 import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.TelemetryStorage;
+import com.iot.devices.management.registry_service.persistence.WriterMode;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
 import com.iot.devices.management.registry_service.persistence.services.DeviceService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.TransientDataAccessException;
 import org.springframework.stereotype.Component;
 
 import java.sql.SQLRecoverableException;
 import java.sql.SQLTransientException;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.*;
 import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.mapSmartPlug;
@@ -24,41 +31,104 @@ import static java.lang.Thread.sleep;
 
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class RetriablePatcher {
 
+    private final WriterMode writerMode;
+    private final TelemetryStorage storage;
     private final DeviceService deviceService;
+    private final TelemetryJdbcWriter telemetryJdbcWriter;
+    private final TelemetryHistoryAppender telemetryHistoryAppender;
     private final RetryProperties retryProperties;
+    private final DatabaseCircuitBreaker databaseCircuitBreaker;
     private final KpiMetricLogger kpiMetricLogger;
 
+    public RetriablePatcher(@Value("${persister.writer}") WriterMode writerMode,
+                            @Value("${persister.storage}") TelemetryStorage storage,
+                            DeviceService deviceService, TelemetryJdbcWriter telemetryJdbcWriter,
+                            TelemetryHistoryAppender telemetryHistoryAppender, RetryProperties retryProperties,
+                            DatabaseCircuitBreaker databaseCircuitBreaker, KpiMetricLogger kpiMetricLogger) {
+        this.writerMode = writerMode;
+        this.storage = storage;
+        this.deviceService = deviceService;
+        this.telemetryJdbcWriter = telemetryJdbcWriter;
+        this.telemetryHistoryAppender = telemetryHistoryAppender;
+        this.retryProperties = retryProperties;
+        this.databaseCircuitBreaker = databaseCircuitBreaker;
+        this.kpiMetricLogger = kpiMetricLogger;
+    }
+
     public void patchWithRetries(ConsumerRecord<String, SpecificRecord> record) throws Exception {
+        withRetries(currentTry -> persist(record, currentTry));
+    }
+
+    public void patchBatchWithRetries(List<ConsumerRecord<String, SpecificRecord>> records) throws Exception {
+        withRetries(currentTry -> persistBatch(records, currentTry));
+    }
+
+    private void withRetries(Attempt attempt) throws Exception {
         int currentTry = 0;
-        Exception lastException = null;
-        while (currentTry < retryProperties.getMaxAttempts()) {
+        long waitMs = 0;
+        while (true) {
+            currentTry++;
+            if (!databaseCircuitBreaker.tryAcquirePermission()) {
+                //every next attempt would be rejected as well, the record is redelivered once the paused consumer resumes
+                log.warn("Database circuit breaker does not permit persisting record on try {}", currentTry);
+                throw databaseCircuitBreaker.callNotPermitted();
+            }
+            final Exception lastException;
+            final long startNanos = System.nanoTime();
             try {
-                if (currentTry > 0) {
-                    sleep(Duration.ofMillis(retryProperties.getWaitDuration()));
-                }
-                persist(record, currentTry + 1);
+                attempt.run(currentTry);
+                databaseCircuitBreaker.onSuccess(startNanos);
                 return;
             } catch (TransientDataAccessException | SQLTransientException | SQLRecoverableException e) {
-                log.warn("Failed to persist record on try {}/{}. Waiting {} ms before next retry...",
-                        currentTry + 1, retryProperties.getMaxAttempts(), retryProperties.getWaitDuration());
-                kpiMetricLogger.incRetriesCount();
+                databaseCircuitBreaker.onError(startNanos, e);
                 lastException = e;
-                currentTry++;
+            } catch (Exception e) {
+                databaseCircuitBreaker.releasePermission();
+                throw e;
             }
+            final RetryProperties.Policy policy = retryProperties.getPolicy(lastException.getClass());
+            if (currentTry >= policy.getMaxAttempts()) {
+                log.error("All {} attempts to persist record failed.", currentTry, lastException);
+                throw lastException;
+            }
+            waitMs = nextWaitMs(policy, waitMs);
+            log.warn("Failed to persist record on try {}/{} due to {}. Waiting {} ms before next retry...",
+                    currentTry, policy.getMaxAttempts(), lastException.getClass().getSimpleName(), waitMs);
+            kpiMetricLogger.incRetriesCount();
+            kpiMetricLogger.recordRetryBackoff(waitMs);
+            sleep(Duration.ofMillis(waitMs));
         }
-        if (lastException != null) {
-            log.error("All {} attempts to persist record failed.", retryProperties.getMaxAttempts(), lastException);
-            throw lastException;
-        }
+    }
+
+    //decorrelated jitter, so threads failed at the same moment do not hit the database again in lockstep
+    private long nextWaitMs(RetryProperties.Policy policy, long previousWaitMs) {
+        final long baseMs = policy.getWaitDurationMs();
+        final long upperBoundMs = Math.max(baseMs, previousWaitMs * 3);
+        final long waitMs = upperBoundMs > baseMs ? ThreadLocalRandom.current().nextLong(baseMs, upperBoundMs + 1) : baseMs;
+        return Math.min(waitMs, retryProperties.getMaxWaitDuration());
     }
 
     private void persist(ConsumerRecord<String, SpecificRecord> record, int currentTry)
             throws TransientDataAccessException, SQLTransientException, SQLRecoverableException {
         final long startTimeMs = currentTimeMillis();
         final int updated = patchTelemetry(record.value());
+        recordUpdateResult(record, updated, currentTimeMillis() - startTimeMs, currentTry);
+    }
+
+    private void persistBatch(List<ConsumerRecord<String, SpecificRecord>> records, int currentTry)
+            throws TransientDataAccessException, SQLTransientException, SQLRecoverableException {
+        final long startTimeMs = currentTimeMillis();
+        final int[] updated = patchTelemetries(records);
+        //updating time is amortized over the batch, so it stays comparable with the per-record mode
+        final long elapsedMsPerRecord = (currentTimeMillis() - startTimeMs) / records.size();
+        for (int i = 0; i < records.size(); i++) {
+            recordUpdateResult(records.get(i), updated[i], elapsedMsPerRecord, currentTry);
+        }
+    }
+
+    private void recordUpdateResult(ConsumerRecord<String, SpecificRecord> record, int updated, long elapsedMs, int currentTry) {
         final String deviceType = record.value().getSchema().getName();
         switch (updated) {
             case 0 -> {
@@ -66,8 +136,9 @@ public class RetriablePatcher {
                 log.warn("No device was updated {}, offset={}, tryNum={}", record.value(), record.offset(), currentTry);
             }
             case 1 -> {
-                kpiMetricLogger.recordDeviceUpdatingTime(deviceType, currentTimeMillis() - startTimeMs);
+                kpiMetricLogger.recordDeviceUpdatingTime(deviceType, elapsedMs);
                 log.info("Successfully updated {} offset={}, tryNum={}", record.value(), record.offset(), currentTry);
+                telemetryHistoryAppender.append(record.value());
             }
             default -> {
                 kpiMetricLogger.incSeveralUpdatedDevices(deviceType);
@@ -77,6 +148,10 @@ public class RetriablePatcher {
     }
 
     private int patchTelemetry(SpecificRecord record) {
+        //repository queries only know the devices jsonb, typed telemetry tables are written by jdbc
+        if (writerMode == WriterMode.JDBC || storage == TelemetryStorage.COLUMNAR) {
+            return telemetryJdbcWriter.update(record);
+        }
         return switch (record) {
             case DoorSensor ds -> deviceService.patchDoorSensorTelemetry(mapDoorSensor(ds));
             case EnergyMeter em -> deviceService.patchEnergyMeterTelemetry(mapEnergyMeter(em));
@@ -88,4 +163,31 @@ public class RetriablePatcher {
             default -> throw new IllegalArgumentException("Unknown device type detected");
         };
     }
+
+    //all records in the batch are expected to be of the same device type, avro records are bound to jdbc parameters as they are
+    private int[] patchTelemetries(List<ConsumerRecord<String, SpecificRecord>> records) {
+        return switch (records.getFirst().value()) {
+            case DoorSensor ds -> deviceService.patchDoorSensorTelemetries(values(records, DoorSensor.class));
+            case EnergyMeter em -> deviceService.patchEnergyMeterTelemetries(values(records, EnergyMeter.class));
+            case SmartLight sl -> deviceService.patchSmartLightTelemetries(values(records, SmartLight.class));
+            case SmartPlug sp -> deviceService.patchSmartPlugTelemetries(values(records, SmartPlug.class));
+            case SoilMoistureSensor sms -> deviceService.patchSoilMoistureSensorTelemetries(values(records, SoilMoistureSensor.class));
+            case TemperatureSensor ts -> deviceService.patchTemperatureSensorTelemetries(values(records, TemperatureSensor.class));
+            case Thermostat t -> deviceService.patchThermostatTelemetries(values(records, Thermostat.class));
+            default -> throw new IllegalArgumentException("Unknown device type detected");
+        };
+    }
+
+    private static <R extends SpecificRecord> List<R> values(List<ConsumerRecord<String, SpecificRecord>> records, Class<R> type) {
+        final List<R> values = new ArrayList<>(records.size());
+        for (ConsumerRecord<String, SpecificRecord> record : records) {
+            values.add(type.cast(record.value()));
+        }
+        return values;
+    }
+
+    @FunctionalInterface
+    private interface Attempt {
+        void run(int currentTry) throws TransientDataAccessException, SQLTransientException, SQLRecoverableException;
+    }
 }
@@ -1,7 +1,9 @@
 package com.iot.devices.management.registry_service.persistence.retry;
 
 import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
+import lombok.NoArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.ToString;
@@ -10,6 +12,9 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import static com.iot.devices.management.registry_service.persistence.retry.RetryProperties.PROPERTIES_PREFIX;
 
 
@@ -30,6 +35,32 @@ public class RetryProperties {
     @Value("${" + PROPERTIES_PREFIX + ".wait.duration.ms}")
     private int waitDuration;
 
+    @Value("${" + PROPERTIES_PREFIX + ".max.wait.duration.ms}")
+    private int maxWaitDuration;
+
+    //keyed by fully qualified exception class name, the closest superclass policy is applied
+    private Map<String, Policy> policies = new HashMap<>();
+
+    public Policy getPolicy(Class<? extends Throwable> exceptionClass) {
+        for (Class<?> type = exceptionClass; type != null && type != Object.class; type = type.getSuperclass()) {
+            final Policy policy = policies.get(type.getName());
+            if (policy != null) {
+                return policy;
+            }
+        }
+        return new Policy(maxAttempts, waitDuration);
+    }
+
+    @Getter
+    @Setter
+    @ToString
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Policy {
+        private int maxAttempts;
+        private int waitDurationMs;
+    }
+
     @PostConstruct
     private void logProperties() {
         log.info("Retry properties: {}", this);
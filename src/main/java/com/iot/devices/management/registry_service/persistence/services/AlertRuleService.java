@@ -8,11 +8,12 @@ import com.iot.devices.management.registry_service.persistence.model.*;
 import com.iot.devices.management.registry_service.persistence.repos.AlertRulesRepository;
 import com.iot.devices.management.registry_service.persistence.repos.DeviceAlertRuleRepository;
 import com.iot.devices.management.registry_service.persistence.repos.DevicesRepository;
+import com.iot.devices.management.registry_service.persistence.retry.OptimisticPatchExecutor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.*;
@@ -30,10 +31,13 @@ import static com.iot.devices.management.registry_service.controller.errors.Aler
 @Transactional(readOnly = true)
 public class AlertRuleService {
 
+    private static final String ALERT_RULE_ENTITY = "alert_rule";
+
     private final AlertRulesRepository alertRulesRepository;
     private final DevicesRepository devicesRepository;
     private final DeviceAlertRuleRepository deviceAlertRuleRepository;
     private final AlertingRulesKafkaProducer alertRulesProducer;
+    private final OptimisticPatchExecutor optimisticPatchExecutor;
 
 
     @Transactional
@@ -55,25 +59,32 @@ public class AlertRuleService {
         }
     }
 
-    //dirty checking
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    //optimistic: the rule row is updated first, on condition of its version, and stays locked until commit
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public AlertRule patchAndSendMessage(PatchAlertRuleRequest request, @Nullable User user) {
+        return optimisticPatchExecutor.execute(ALERT_RULE_ENTITY, request.version() == null, AlertRuleVersionConflictException.class,
+                () -> patchVersionedAndSendMessage(request, user));
+    }
+
+    private AlertRule patchVersionedAndSendMessage(PatchAlertRuleRequest request, @Nullable User user) {
         try {
-            final Optional<AlertRule> alertRule = alertRulesRepository.findById(request.ruleId());
-            if (alertRule.isEmpty()) {
-                throw new AlertRuleNotFoundException(request.ruleId());
+            final AlertRule alertRule = findAlertRuleById(request.ruleId());
+            final long version = ofNullable(request.version()).orElse(alertRule.getVersion());
+            if (updateAlertRule(request, version, user) == 0) {
+                throw new AlertRuleVersionConflictException(findAlertRuleById(request.ruleId()));
             }
+            final AlertRule alertRulePatched = findAlertRuleById(request.ruleId());
             final StringBuilder sb = new StringBuilder();
             if (request.deviceIdsToAdd() != null && !request.deviceIdsToAdd().isEmpty()) {
                 final List<Device> devicesToBeAdded = loadDevices(request.deviceIdsToAdd());
-                final List<DeviceAlertRule> storedDevicesAlertRules = deviceAlertRuleRepository.saveAll(getDeviceAlertRules(devicesToBeAdded, alertRule.get()));
+                final List<DeviceAlertRule> storedDevicesAlertRules = deviceAlertRuleRepository.saveAll(getDeviceAlertRules(devicesToBeAdded, alertRulePatched));
                 if (storedDevicesAlertRules.isEmpty() || storedDevicesAlertRules.size() != request.deviceIdsToAdd().size()) {
                     throw new RuntimeException("Not all deviceAlertRules were saved");
                 }
                 sb.append(", added to devices").append(request.deviceIdsToAdd());
             }
             if (request.deviceIdsToRemove() != null && !request.deviceIdsToRemove().isEmpty()) {
-                final int removed = deviceAlertRuleRepository.removeAllByIds(getDeviceAlertRuleKeys(request.deviceIdsToRemove(), alertRule.get()));
+                final int removed = deviceAlertRuleRepository.removeAllByIds(getDeviceAlertRuleKeys(request.deviceIdsToRemove(), alertRulePatched));
                 if (removed == 0) {
                     log.warn("DeviceAlertRules were already removed for alertRuleId={}", request.ruleId());
                 }
@@ -82,11 +93,12 @@ public class AlertRuleService {
                 }
                 sb.append(", removed from devices").append(request.deviceIdsToRemove());
             }
-            final Set<DeviceAlertRule> deviceAlertRules = deviceAlertRuleRepository.findByAlertRule(alertRule.get());
-            final AlertRule alertRulePatched = patchAlertRule(request, alertRule.get(), user);
+            final Set<DeviceAlertRule> deviceAlertRules = deviceAlertRuleRepository.findByAlertRule(alertRulePatched);
             alertRulesProducer.sendTransactionally(Map.of(alertRulePatched, getDeviceIds(deviceAlertRules)), emptySet());
             log.info("AlertRule is updated{}", sb);
             return alertRulePatched;
+        } catch (AlertRuleVersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             log.warn("Unable to update AlertRule, request: {}", request, e);
             throw e;
@@ -172,14 +184,13 @@ public class AlertRuleService {
                 request.thresholdValue(), request.severity(), request.isEnabled(), getUsername(user));
     }
 
-    private AlertRule patchAlertRule(PatchAlertRuleRequest request, AlertRule alertRule, @Nullable User user) {
-        ofNullable(request.metricType()).ifPresent(alertRule::setMetricType);
-        ofNullable(request.thresholdType()).ifPresent(alertRule::setThresholdType);
-        ofNullable(request.thresholdValue()).ifPresent(alertRule::setThresholdValue);
-        ofNullable(request.severity()).ifPresent(alertRule::setSeverity);
-        ofNullable(request.isEnabled()).ifPresent(alertRule::setEnabled);
-        ofNullable(getUsername(user)).ifPresent(alertRule::setUsername);
-        return alertRule;
+    private int updateAlertRule(PatchAlertRuleRequest request, long version, @Nullable User user) {
+        return alertRulesRepository.patchAlertRule(request.ruleId(), version,
+                ofNullable(request.metricType()).map(Enum::name).orElse(null),
+                ofNullable(request.thresholdType()).map(Enum::name).orElse(null),
+                request.thresholdValue(),
+                ofNullable(request.severity()).map(Enum::name).orElse(null),
+                request.isEnabled(), getUsername(user));
     }
 
     private String getUsername(User user) {
@@ -1,30 +1,46 @@
 package com.iot.devices.management.registry_service.persistence.services;
 
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
+import com.iot.devices.DoorSensor;
+import com.iot.devices.EnergyMeter;
+import com.iot.devices.SmartLight;
+import com.iot.devices.SmartPlug;
+import com.iot.devices.SoilMoistureSensor;
+import com.iot.devices.TemperatureSensor;
+import com.iot.devices.Thermostat;
 import com.iot.devices.management.registry_service.alerts.DefaultAlertRulesProvider;
+import com.iot.devices.management.registry_service.cache.DeviceOwnerCache;
 import com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.DeviceNotFoundException;
 import com.iot.devices.management.registry_service.controller.util.CreateDeviceRequest;
 import com.iot.devices.management.registry_service.controller.util.PatchDeviceRequest;
 import com.iot.devices.management.registry_service.kafka.AlertingRulesKafkaProducer;
 import com.iot.devices.management.registry_service.mapping.*;
 import com.iot.devices.management.registry_service.persistence.model.*;
+import com.iot.devices.management.registry_service.persistence.model.enums.BulkRegistrationStatus;
 import com.iot.devices.management.registry_service.persistence.repos.AlertRulesRepository;
+import com.iot.devices.management.registry_service.persistence.repos.DeviceAlertRuleBatchRepository;
 import com.iot.devices.management.registry_service.persistence.repos.DeviceAlertRuleRepository;
+import com.iot.devices.management.registry_service.persistence.repos.DeviceListingRepository;
 import com.iot.devices.management.registry_service.persistence.repos.DevicesRepository;
+import com.iot.devices.management.registry_service.persistence.repos.LatestTelemetryRepository;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryBatchRepository;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryStagingRepository;
+import com.iot.devices.management.registry_service.persistence.retry.OptimisticPatchExecutor;
 import jakarta.validation.constraints.NotBlank;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
-import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Consumer;
 
-import static com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus.ONLINE;
+import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.getLastActiveAt;
 import static java.time.OffsetDateTime.now;
 import static java.util.Collections.*;
 import static java.util.Optional.ofNullable;
@@ -38,11 +54,21 @@ import static java.util.stream.Collectors.*;
 @Transactional(readOnly = true)
 public class DeviceService {
 
+    private static final int BULK_QUERY_CHUNK_SIZE = 1000;
+    private static final String DEVICE_ENTITY = "device";
+
     private final DevicesRepository devicesRepository;
     private final AlertRulesRepository alertRulesRepository;
     private final DeviceAlertRuleRepository deviceAlertRuleRepository;
     private final DefaultAlertRulesProvider alertRulesProvider;
     private final AlertingRulesKafkaProducer alertingRulesKafkaProducer;
+    private final TelemetryBatchRepository telemetryBatchRepository;
+    private final TelemetryStagingRepository telemetryStagingRepository;
+    private final LatestTelemetryRepository latestTelemetryRepository;
+    private final DeviceListingRepository deviceListingRepository;
+    private final DeviceAlertRuleBatchRepository deviceAlertRuleBatchRepository;
+    private final OptimisticPatchExecutor optimisticPatchExecutor;
+    private final DeviceOwnerCache deviceOwnerCache;
 
 
     @Transactional
@@ -84,23 +110,97 @@ public class DeviceService {
         }
     }
 
-    //dirty checking
-    @Transactional(isolation = Isolation.SERIALIZABLE)
+    //one transaction for the whole bulk: devices and new alert rules are inserted in jdbc batches on flush,
+    //links of devices to rules are batch inserted after that and all AlertRule messages go in one kafka transaction.
+    //Rejected items do not abort the bulk, they are reported in the results
+    @Transactional
+    public List<BulkRegistrationResult> saveAllAndSendMessage(List<BulkDeviceRegistration> registrations) {
+        try {
+            final List<BulkRegistrationResult> results = new ArrayList<>(registrations.size());
+            final Set<String> existingSerialNumbers = findExistingSerialNumbers(registrations);
+            final Map<UUID, AlertRule> alertRulesById = findRequestedAlertRules(registrations);
+            final Set<String> acceptedSerialNumbers = new HashSet<>();
+            final List<BulkDeviceRegistration> accepted = new ArrayList<>(registrations.size());
+            for (BulkDeviceRegistration registration : registrations) {
+                final CreateDeviceRequest request = registration.getRequest();
+                final Set<UUID> missingAlertRules = Sets.difference(getAlertRuleIds(request.alertRuleIds()), alertRulesById.keySet());
+                if (existingSerialNumbers.contains(request.serialNumber()) || !acceptedSerialNumbers.add(request.serialNumber())) {
+                    results.add(BulkRegistrationResult.rejected(registration.getIndex(), request.serialNumber(), BulkRegistrationStatus.DUPLICATE,
+                            "Device with serial number " + request.serialNumber() + " already exists"));
+                } else if (!missingAlertRules.isEmpty()) {
+                    results.add(BulkRegistrationResult.rejected(registration.getIndex(), request.serialNumber(), BulkRegistrationStatus.INVALID,
+                            "AlertRules not found " + missingAlertRules));
+                } else {
+                    accepted.add(registration);
+                }
+            }
+            final List<Device> savedDevices = devicesRepository.saveAll(accepted.stream()
+                    .map(registration -> mapNewDevice(registration.getRequest(), registration.getOwner()))
+                    .toList());
+
+            final Map<AlertRule, Set<UUID>> deviceIdsByAlertRule = new HashMap<>();
+            final List<AlertRule> standardRules = new ArrayList<>();
+            for (int i = 0; i < accepted.size(); i++) {
+                final BulkDeviceRegistration registration = accepted.get(i);
+                final Device device = savedDevices.get(i);
+                final Collection<AlertRule> deviceAlertRules;
+                if (!CollectionUtils.isEmpty(registration.getRequest().alertRuleIds())) {
+                    deviceAlertRules = registration.getRequest().alertRuleIds().stream().map(alertRulesById::get).toList();
+                } else if (registration.getOwner() != null) {
+                    deviceAlertRules = alertRulesProvider.getAlertRules(device.getDeviceType(), registration.getOwner());
+                    standardRules.addAll(deviceAlertRules);
+                } else {
+                    deviceAlertRules = emptyList();
+                }
+                deviceAlertRules.forEach(alertRule -> deviceIdsByAlertRule.computeIfAbsent(alertRule, k -> new HashSet<>()).add(device.getId()));
+                results.add(BulkRegistrationResult.created(registration.getIndex(), device));
+            }
+            alertRulesRepository.saveAll(standardRules);
+            devicesRepository.flush();
+
+            if (!deviceIdsByAlertRule.isEmpty()) {
+                deviceAlertRuleBatchRepository.insertAll(getDeviceAlertRuleKeys(deviceIdsByAlertRule));
+                addCurrentDevices(deviceIdsByAlertRule, alertRulesById);
+                alertingRulesKafkaProducer.sendTransactionally(deviceIdsByAlertRule, emptySet());
+            }
+            log.info("{} of {} devices are created in bulk with {} alertRules", savedDevices.size(), registrations.size(), deviceIdsByAlertRule.size());
+            return results;
+        } catch (Exception e) {
+            log.warn("Unable to create {} devices in bulk", registrations.size(), e);
+            throw new UnableToCreateDeviceException(e.getMessage(), e);
+        }
+    }
+
+    //optimistic: the device row is updated first, on condition of its version, and stays locked until commit,
+    //so concurrent patches of the same device wait for each other instead of failing on serialization
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Device patch(PatchDeviceRequest request, User user) {
+        return optimisticPatchExecutor.execute(DEVICE_ENTITY, request.version() == null, DeviceVersionConflictException.class,
+                () -> patchVersioned(request, user));
+    }
+
+    private Device patchVersioned(PatchDeviceRequest request, @Nullable User user) {
         try {
-            final Optional<Device> device = devicesRepository.findById(request.id());
-            if (device.isEmpty()) {
-                throw new DeviceNotFoundException(request.id());
+            final Device device = devicesRepository.findById(request.id())
+                    .orElseThrow(() -> new DeviceNotFoundException(request.id()));
+            final long version = ofNullable(request.version()).orElse(device.getVersion());
+            if (updateDevice(request, version, user) == 0) {
+                throw new DeviceVersionConflictException(devicesRepository.findById(request.id())
+                        .orElseThrow(() -> new DeviceNotFoundException(request.id())));
             }
+            deviceOwnerCache.evictAfterCommit(request.id());
+            final Device patchedDevice = devicesRepository.findById(request.id())
+                    .orElseThrow(() -> new DeviceNotFoundException(request.id()));
             final StringBuilder sb = new StringBuilder();
             if (!CollectionUtils.isEmpty(request.alertRulesToAdd()) || !CollectionUtils.isEmpty(request.alertRulesToRemove())) {
                 final List<AlertRule> alertRulesToBeChanged = alertRulesRepository.findAllById(getAlertRulesIdsWithChangedDevices(request));
+                incrementVersions(alertRulesToBeChanged, device);
                 final Set<DeviceAlertRule> currentDeviceAlertRules = deviceAlertRuleRepository.findAllByAlertRuleIn(alertRulesToBeChanged);
                 final Map<AlertRule, Set<UUID>> deviceIdsByAlertRuleForMessages = getDeviceIdsByAlertRule(currentDeviceAlertRules);
 
                 if (request.alertRulesToAdd() != null && !request.alertRulesToAdd().isEmpty()) {
                     final List<AlertRule> alertRulesToBeAddedToDevice = filterAlertRules(request.alertRulesToAdd(), alertRulesToBeChanged);
-                    final List<DeviceAlertRule> savedDevicesAlertRules = deviceAlertRuleRepository.saveAll(getDeviceAlertRules(device.get(), alertRulesToBeAddedToDevice));
+                    final List<DeviceAlertRule> savedDevicesAlertRules = deviceAlertRuleRepository.saveAll(getDeviceAlertRules(patchedDevice, alertRulesToBeAddedToDevice));
                     if (savedDevicesAlertRules.isEmpty() || savedDevicesAlertRules.size() != request.alertRulesToAdd().size()) {
                         throw new RuntimeException("Not all of deviceAlertRules were saved!");
                     }
@@ -127,9 +227,10 @@ public class DeviceService {
                 }
                 alertingRulesKafkaProducer.sendTransactionally(deviceIdsByAlertRuleForMessages, getAlertRuleIds(alertRulesToRemove));
             }
-            final Device patchedDevice = patchDevice(request, device.get(), user);
             log.info("Device is updated {}{}", patchedDevice, sb);
             return patchedDevice;
+        } catch (DeviceVersionConflictException e) {
+            throw e;
         } catch (Exception e) {
             log.warn("Unable to update Device, request: {}", request, e);
             throw new UnableToPatchDeviceException(e.getMessage(), e);
@@ -160,6 +261,7 @@ public class DeviceService {
                 alertingRulesKafkaProducer.sendTransactionally(deviceIdsByAlertRule, removedAlertRules);
             }
             final int removedDevice = devicesRepository.removeById(deviceId);
+            deviceOwnerCache.evictAfterCommit(deviceId);
             if (removedDevice == 0) {
                 log.warn("Device with id={} has already been removed", deviceId);
             } else {
@@ -221,12 +323,93 @@ public class DeviceService {
                 t.getCurrentTemperature(), t.getTargetTemperature(), t.getHumidity(), t.getMode());
     }
 
+    @Transactional
+    public int[] patchDoorSensorTelemetries(List<DoorSensor> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateDoorSensorTelemetries(telemetries);
+    }
+
+    @Transactional
+    public int[] patchEnergyMeterTelemetries(List<EnergyMeter> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateEnergyMeterTelemetries(telemetries);
+    }
+
+    @Transactional
+    public int[] patchSmartLightTelemetries(List<SmartLight> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateSmartLightTelemetries(telemetries);
+    }
+
+    @Transactional
+    public int[] patchSmartPlugTelemetries(List<SmartPlug> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateSmartPlugTelemetries(telemetries);
+    }
+
+    @Transactional
+    public int[] patchSoilMoistureSensorTelemetries(List<SoilMoistureSensor> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateSoilMoistureSensorTelemetries(telemetries);
+    }
+
+    @Transactional
+    public int[] patchTemperatureSensorTelemetries(List<TemperatureSensor> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateTemperatureSensorTelemetries(telemetries);
+    }
+
+    @Transactional
+    public int[] patchThermostatTelemetries(List<Thermostat> telemetries) {
+        logDebug(telemetries);
+        return telemetryBatchRepository.updateThermostatTelemetries(telemetries);
+    }
+
+    @Transactional
+    public Set<UUID> copyTelemetries(List<TelemetryRow> telemetries) {
+        final UUID batchId = UUID.randomUUID();
+        log.debug("Copying {} telemetries to staging, batchId={}", telemetries.size(), batchId);
+        telemetryStagingRepository.copyToStaging(batchId, telemetries);
+        final Set<UUID> updatedDeviceIds = telemetryStagingRepository.mergeStagedBatch(batchId);
+        telemetryStagingRepository.deleteStagedBatch(batchId);
+        return updatedDeviceIds;
+    }
+
     public Optional<Device> findBySerialNumber(@NonNull @NotBlank(message = "serial number is required") String serialNumber) {
         return devicesRepository.findBySerialNumber(serialNumber);
     }
 
     public Optional<Device> findByDeviceId(@NonNull @NotBlank(message = "device id is required") UUID id) {
-        return devicesRepository.findById(id);
+        return devicesRepository.findById(id).map(this::withLatestTelemetry);
+    }
+
+    //on a cache miss the owner is fetched with the device in one query, so the following owner lookup is a hit
+    public Optional<Device> findByDeviceIdWithOwner(@NonNull UUID id) {
+        if (deviceOwnerCache.get(id).isPresent()) {
+            return findByDeviceId(id);
+        }
+        final Optional<Device> device = devicesRepository.findWithOwnerById(id);
+        device.ifPresent(d -> deviceOwnerCache.put(DeviceOwner.of(d)));
+        return device.map(this::withLatestTelemetry);
+    }
+
+    public Optional<DeviceOwner> findDeviceOwner(@NonNull UUID deviceId) {
+        final Optional<DeviceOwner> cached = deviceOwnerCache.get(deviceId);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        final Optional<DeviceOwner> deviceOwner = devicesRepository.findDeviceOwner(deviceId);
+        deviceOwner.ifPresent(deviceOwnerCache::put);
+        return deviceOwner;
+    }
+
+    public DevicePage findDevices(DeviceFilter filter, @Nullable DeviceCursor cursor, int limit) {
+        return deviceListingRepository.findPage(filter, cursor, limit);
+    }
+
+    //transaction keeps the server-side cursor open while devices are written to the response
+    public void streamDevices(DeviceFilter filter, @Nullable DeviceCursor cursor, Consumer<Device> consumer) {
+        deviceListingRepository.stream(filter, cursor, consumer);
     }
 
     private void removeAlertRules(Set<AlertRule> alertRulesToRemove, UUID request) {
@@ -247,6 +430,43 @@ public class DeviceService {
         }
     }
 
+    private Set<String> findExistingSerialNumbers(List<BulkDeviceRegistration> registrations) {
+        final Set<String> serialNumbers = registrations.stream().map(r -> r.getRequest().serialNumber()).collect(toSet());
+        final Set<String> existing = new HashSet<>();
+        for (List<String> chunk : Iterables.partition(serialNumbers, BULK_QUERY_CHUNK_SIZE)) {
+            existing.addAll(devicesRepository.findExistingSerialNumbers(chunk));
+        }
+        return existing;
+    }
+
+    private Map<UUID, AlertRule> findRequestedAlertRules(List<BulkDeviceRegistration> registrations) {
+        final Set<UUID> alertRuleIds = registrations.stream()
+                .flatMap(r -> getAlertRuleIds(r.getRequest().alertRuleIds()).stream())
+                .collect(toSet());
+        final Map<UUID, AlertRule> alertRulesById = new HashMap<>();
+        for (List<UUID> chunk : Iterables.partition(alertRuleIds, BULK_QUERY_CHUNK_SIZE)) {
+            alertRulesRepository.findAllById(chunk).forEach(alertRule -> alertRulesById.put(alertRule.getRuleId(), alertRule));
+        }
+        return alertRulesById;
+    }
+
+    private List<DeviceAlertRuleKey> getDeviceAlertRuleKeys(Map<AlertRule, Set<UUID>> deviceIdsByAlertRule) {
+        return deviceIdsByAlertRule.entrySet().stream()
+                .flatMap(entry -> entry.getValue().stream().map(deviceId -> new DeviceAlertRuleKey(deviceId, entry.getKey().getRuleId())))
+                .toList();
+    }
+
+    //messages carry all devices of a rule, so devices which already had requested rules are added to the new ones
+    private void addCurrentDevices(Map<AlertRule, Set<UUID>> deviceIdsByAlertRule, Map<UUID, AlertRule> requestedAlertRules) {
+        for (List<UUID> chunk : Iterables.partition(requestedAlertRules.keySet(), BULK_QUERY_CHUNK_SIZE)) {
+            deviceAlertRuleRepository.findKeysByRuleIds(chunk).forEach(key ->
+                    deviceIdsByAlertRule.computeIfPresent(requestedAlertRules.get(key.getRuleId()), (k, v) -> {
+                        v.add(key.getDeviceId());
+                        return v;
+                    }));
+        }
+    }
+
     private Set<UUID> getAlertRuleIds(Collection<AlertRule> alertRules) {
         return alertRules.stream().map(AlertRule::getRuleId).collect(toSet());
     }
@@ -305,26 +525,47 @@ public class DeviceService {
                 now(), now(), null);
     }
 
-    private Device patchDevice(PatchDeviceRequest request, Device device, @Nullable User user) {
-        ofNullable(request.name()).ifPresent(device::setName);
-        ofNullable(request.model()).ifPresent(device::setModel);
-        ofNullable(request.deviceType()).ifPresent(device::setDeviceType);
-        ofNullable(request.location()).ifPresent(device::setLocation);
-        ofNullable(request.latitude()).ifPresent(device::setLatitude);
-        ofNullable(request.longitude()).ifPresent(device::setLongitude);
-        ofNullable(user).ifPresent(device::setOwner);
-        ofNullable(request.status()).ifPresent(device::setStatus);
-        ofNullable(request.lastActiveAt()).ifPresent(device::setLastActiveAt);
-        ofNullable(request.firmwareVersion()).ifPresent(device::setFirmwareVersion);
-        device.setUpdatedAt(now());
-        return device;
-    }
-
-    private static OffsetDateTime getLastActiveAt(@Nullable String status, OffsetDateTime lastUpdated) {
-        if (status == null) {
-            return null;
+    private int updateDevice(PatchDeviceRequest request, long version, @Nullable User user) {
+        return devicesRepository.patchDevice(request.id(), version, request.name(), request.model(),
+                ofNullable(request.deviceType()).map(Enum::name).orElse(null), request.location(),
+                request.latitude(), request.longitude(),
+                ofNullable(user).map(u -> u.getId().toString()).orElse(null),
+                ofNullable(request.status()).map(Enum::name).orElse(null), request.lastActiveAt(),
+                request.firmwareVersion(), now());
+    }
+
+    //in id order, so device patches sharing alert rules always lock them in the same order and never deadlock
+    private void incrementVersions(List<AlertRule> alertRules, Device device) {
+        final List<AlertRule> sortedAlertRules = alertRules.stream()
+                .sorted(Comparator.comparing(AlertRule::getRuleId))
+                .toList();
+        for (AlertRule alertRule : sortedAlertRules) {
+            if (alertRulesRepository.incrementVersion(alertRule.getRuleId(), alertRule.getVersion()) == 0) {
+                log.info("AlertRule with id={} was modified concurrently while patching deviceId={}", alertRule.getRuleId(), device.getId());
+                throw new DeviceVersionConflictException(device);
+            }
         }
-        return status.equals(ONLINE.name()) ? lastUpdated : null;
+    }
+
+    private Device withLatestTelemetry(Device device) {
+        return latestTelemetryRepository.findByDeviceId(device.getId(), device.getDeviceType())
+                .map(latestTelemetry -> withLatestTelemetry(device, latestTelemetry))
+                .orElse(device);
+    }
+
+    //detached copy, so the managed entity is never dirtied by values which live in the typed telemetry table
+    private Device withLatestTelemetry(Device device, LatestTelemetry latestTelemetry) {
+        final Device deviceWithTelemetry = new Device(device.getId(), device.getName(), device.getSerialNumber(),
+                device.getDeviceManufacturer(), device.getModel(), device.getDeviceType(),
+                device.getLocation(), device.getLatitude(), device.getLongitude(), device.getOwner(),
+                ofNullable(latestTelemetry.getStatus()).orElse(device.getStatus()),
+                ofNullable(latestTelemetry.getLastActiveAt()).orElse(device.getLastActiveAt()),
+                ofNullable(latestTelemetry.getFirmwareVersion()).orElse(device.getFirmwareVersion()),
+                device.getCreatedAt(),
+                ofNullable(latestTelemetry.getUpdatedAt()).orElse(device.getUpdatedAt()),
+                latestTelemetry.getTelemetry());
+        deviceWithTelemetry.setVersion(device.getVersion());
+        return deviceWithTelemetry;
     }
 
     private void logDebug(Object o) {
@@ -0,0 +1,45 @@
+package com.iot.devices.management.registry_service.persistence.services;
+
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryProperties;
+import com.iot.devices.management.registry_service.persistence.model.TelemetryPoint;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.InvalidTelemetryRangeException;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class TelemetryHistoryService {
+
+    private final TelemetryHistoryRepository telemetryHistoryRepository;
+    private final TelemetryHistoryProperties properties;
+
+    public void validateRange(OffsetDateTime from, OffsetDateTime to, Duration step) {
+        if (!from.isBefore(to)) {
+            throw new InvalidTelemetryRangeException("'from' has to be before 'to'");
+        }
+        if (step.toMillis() <= 0) {
+            throw new InvalidTelemetryRangeException("'step' has to be at least one millisecond");
+        }
+        final long points = Duration.between(from, to).toMillis() / step.toMillis();
+        if (points > properties.getMaxPoints()) {
+            throw new InvalidTelemetryRangeException("Range has " + points + " steps, at most " + properties.getMaxPoints() + " are allowed");
+        }
+    }
+
+    //transaction keeps the server-side cursor open while points are written to the response
+    public void streamDownsampled(UUID deviceId, OffsetDateTime from, OffsetDateTime to, Duration step, Consumer<TelemetryPoint> consumer) {
+        log.debug("Streaming telemetry history of deviceId={} from={} to={} step={}", deviceId, from, to, step);
+        telemetryHistoryRepository.streamDownsampled(deviceId, from, to, step, properties.getFetchSize(), consumer);
+    }
+}
@@ -1,32 +1,28 @@
 package com.iot.devices.management.registry_service.persistence.services;
 
+import com.iot.devices.management.registry_service.cache.DeviceOwnerCache;
+import com.iot.devices.management.registry_service.cache.UserCache;
 import com.iot.devices.management.registry_service.controller.errors.UserExceptions.UserNotFoundException;
 import com.iot.devices.management.registry_service.controller.util.CreateUserRequest;
 import com.iot.devices.management.registry_service.controller.util.PatchUserRequest;
 import com.iot.devices.management.registry_service.persistence.model.User;
-import com.iot.devices.management.registry_service.persistence.model.UserProjection;
 import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
 import com.iot.devices.management.registry_service.persistence.repos.UsersRepository;
+import com.iot.devices.management.registry_service.security.AuthenticatedTokenCache;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.CachePut;
-import org.springframework.cache.annotation.Cacheable;
-import org.springframework.cache.annotation.Caching;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.time.OffsetDateTime;
 import java.util.*;
 
 import static com.google.common.base.Preconditions.checkArgument;
-import static com.iot.devices.management.registry_service.cache.CacheConfig.USERS_CACHE;
 import static java.time.OffsetDateTime.now;
 import static java.util.Optional.ofNullable;
 
@@ -38,16 +34,18 @@ public class UserService {
 
     private final UsersRepository usersRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserCache userCache;
+    private final DeviceOwnerCache deviceOwnerCache;
+    private final AuthenticatedTokenCache authenticatedTokenCache;
 
-    @Cacheable(value = USERS_CACHE, sync = true)
     public Optional<User> findByEmail(@NonNull @NotBlank
                                       @Email(message = "Email must be valid")
                                       String email) {
-        return usersRepository.findByEmail(email);
+        return userCache.getByEmail(email, usersRepository::findByEmail);
     }
 
     public Optional<User> findByUsername(@NonNull @NotBlank String username) {
-        return usersRepository.findByUsername(username);
+        return userCache.getByUsername(username, usersRepository::findByUsername);
     }
 
     @Transactional
@@ -58,22 +56,33 @@ public class UserService {
 
     @Transactional
     public User save(User user) {
+        if (user.getId() != null) {
+            userCache.invalidateAfterCommit(user.getId());
+        }
         return usersRepository.save(user);
     }
 
     @Transactional
-    @Caching(put = {
-            @CachePut(value = USERS_CACHE, key = "#user.id"),
-            @CachePut(value = USERS_CACHE, key = "#user.email")
-    })
     public User patch(PatchUserRequest request, User user) {
-        final User patched = patchUser(request, user);
+        //the given user may be the cached instance shared with other requests and authenticated tokens,
+        //a patch which is rolled back must not change it, so the user is loaded by this transaction
+        final User loaded = usersRepository.findById(user.getId())
+                .orElseThrow(() -> new UserNotFoundException(user.getId()));
+        final String username = loaded.getUsername();
+        userCache.invalidateAfterCommit(loaded.getId());
+        final User patched = patchUser(request, loaded);
+        //username and role are a part of cached device owners and authenticated tokens
+        deviceOwnerCache.evictOwnerAfterCommit(loaded.getId());
+        authenticatedTokenCache.evictUserAfterCommit(username);
         return usersRepository.save(patched);
     }
 
-    @Cacheable(value = USERS_CACHE, sync = true)
     public Optional<User> findByUserId(@NonNull UUID id) {
-        return usersRepository.findById(id);
+        return userCache.getById(id, usersRepository::findById);
+    }
+
+    public List<User> findAllByUserIds(Collection<UUID> ids) {
+        return usersRepository.findAllById(ids);
     }
 
     public Page<User> findAll(Pageable pageable) {
@@ -85,26 +94,19 @@ public class UserService {
         final Optional<User> user = usersRepository.findById(id);
         if (user.isPresent()) {
             int removed = usersRepository.removeById(id);
-            evictUserCache(user.get().getId(), user.get().getEmail());
+            userCache.invalidateAfterCommit(id);
+            deviceOwnerCache.evictOwnerAfterCommit(id);
+            authenticatedTokenCache.evictUserAfterCommit(user.get().getUsername());
             return removed;
         }
         throw new UserNotFoundException(id);
     }
 
     @Transactional
-    public int updateLastLoginTime(UUID userId, OffsetDateTime loginTime) {
-        return usersRepository.updateLastLoginTime(userId, loginTime);
-    }
-
-    public Optional<UserProjection> getUserProjectionByDevice(UUID deviceId) {
-        return usersRepository.findUserProjectionByDeviceId(deviceId);
-    }
-
-    @Caching(evict = {
-            @CacheEvict(value = "usersCache", key = "#id"),
-            @CacheEvict(value = "usersCache", key = "#email")
-    })
-    private void evictUserCache(UUID id, String email) {
+    public int updatePasswordHash(User user, String currentHash, String newHash) {
+        final int updated = usersRepository.updatePasswordHash(user.getId(), currentHash, newHash);
+        userCache.invalidateAfterCommit(user.getId());
+        return updated;
     }
 
     private User mapNewUser(CreateUserRequest request, UserRole role) {
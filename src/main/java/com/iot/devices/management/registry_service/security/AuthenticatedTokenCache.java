@@ -0,0 +1,71 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.iot.devices.management.registry_service.cache.AfterCommit;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.lang.System.currentTimeMillis;
+
+//validated token -> user, so a hot token skips signature verification and both db lookups.
+//An entry never outlives the token, tokens of a user are evicted after commit when they are revoked or removed,
+//on other instances when the revocation is written. A lookup racing with that commit may cache the old state
+//until the entry expires
+@Slf4j
+@Component
+public class AuthenticatedTokenCache {
+
+    public static final String AUTHENTICATED_TOKEN_CACHE = "authenticatedTokenCache";
+
+    private final Cache<String, AuthenticatedToken> cache;
+
+    public AuthenticatedTokenCache(SecurityProperties securityProperties, ObjectProvider<MeterRegistry> meterRegistry) {
+        final long maxSize = securityProperties.getAuthenticationCacheMaxSize();
+        final Duration expiration = Duration.ofMillis(securityProperties.getAuthenticationCacheExpiration());
+        log.info("Creating authenticated token cache with maxSize={}, expiration={}", maxSize, expiration);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(Expiry.creating((String token, AuthenticatedToken authenticated) ->
+                        min(expiration, Duration.ofMillis(Math.max(0, authenticated.expiresAtMs() - currentTimeMillis())))))
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable(registry -> CaffeineCacheMetrics.monitor(registry, cache, AUTHENTICATED_TOKEN_CACHE));
+    }
+
+    public Optional<AuthenticatedToken> get(String token) {
+        return Optional.ofNullable(cache.getIfPresent(token));
+    }
+
+    public void put(String token, AuthenticatedToken authenticated) {
+        cache.put(token, authenticated);
+    }
+
+    public void evictUserAfterCommit(String username) {
+        AfterCommit.run(() -> cache.asMap().values().removeIf(authenticated ->
+                username.equals(authenticated.userDetails().getUsername())));
+    }
+
+    public void evictUser(UUID userId) {
+        cache.asMap().values().removeIf(authenticated ->
+                authenticated.userDetails() instanceof User user && userId.equals(user.getId()));
+    }
+
+    private static Duration min(Duration first, Duration second) {
+        return first.compareTo(second) <= 0 ? first : second;
+    }
+
+    //revoked is also cached, so a token which is not valid in db is not looked up again on every request
+    public record AuthenticatedToken(UserDetails userDetails, boolean revoked, long expiresAtMs) {
+    }
+}
@@ -1,6 +1,7 @@
 package com.iot.devices.management.registry_service.security;
 
-import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import com.iot.devices.management.registry_service.security.AuthenticatedTokenCache.AuthenticatedToken;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -17,6 +18,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Optional;
 
 import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 
@@ -31,7 +33,8 @@ public class JwtAuthentificationFilter extends OncePerRequestFilter {
 
     private final JwtService jwtService;
     private final UserDetailsService userDetailsService;
-    private final TokenRepository tokenRepository;
+    private final TokenStateStore tokenStateStore;
+    private final AuthenticatedTokenCache authenticatedTokenCache;
 
     @Override
     protected void doFilterInternal(@NonNull HttpServletRequest request,
@@ -48,32 +51,45 @@ public class JwtAuthentificationFilter extends OncePerRequestFilter {
             return;
         }
         final String jwt = authHeader.substring(TOKEN_BEGIN_INDEX);
-        final String username = jwtService.extractUsername(jwt);
-        if (username == null) {
-            log.info("No username is present in token: {}", jwt);
-            filterChain.doFilter(request, response);
-            return;
-        }
         if (SecurityContextHolder.getContext().getAuthentication() == null) {
-            final UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-            if (jwtService.isTokenValid(jwt, userDetails) && isTokenInDbMatch(jwt, username)) {
+            final Optional<AuthenticatedToken> authenticated = authenticatedTokenCache.get(jwt)
+                    .or(() -> authenticate(jwt));
+            if (authenticated.isPresent() && !authenticated.get().revoked()) {
+                final UserDetails userDetails = authenticated.get().userDetails();
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails, null, userDetails.getAuthorities());
                 authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authToken);
             }
         } else {
-            log.info("User with username: {} is already authenticated", username);
+            log.info("User with username: {} is already authenticated", SecurityContextHolder.getContext().getAuthentication().getName());
         }
         filterChain.doFilter(request, response);
     }
 
-    private boolean isTokenInDbMatch(String jwt, String username) {
-        return tokenRepository.findByToken(jwt)
-                .map(t -> !t.isExpired() && !t.isRevoked())
-                .orElseGet(() -> {
-                    log.info("No such valid token is present in db, username: {} token: {}", username, jwt);
-                    return false;
-                });
+    //claims are parsed and verified once per token, the outcome is cached whether the token is accepted or not valid in db
+    private Optional<AuthenticatedToken> authenticate(String jwt) {
+        final Optional<Claims> claims = jwtService.parseClaims(jwt);
+        if (claims.isEmpty()) {
+            return Optional.empty();
+        }
+        final String username = claims.get().getSubject();
+        if (username == null) {
+            log.info("No username is present in token: {}", jwt);
+            return Optional.empty();
+        }
+        final UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+        final boolean revoked = !jwtService.isTokenValid(claims.get(), userDetails) || !isTokenActive(jwt, username);
+        final AuthenticatedToken authenticated = new AuthenticatedToken(userDetails, revoked, claims.get().getExpiration().getTime());
+        authenticatedTokenCache.put(jwt, authenticated);
+        return Optional.of(authenticated);
+    }
+
+    private boolean isTokenActive(String jwt, String username) {
+        if (tokenStateStore.findActive(jwt).isPresent()) {
+            return true;
+        }
+        log.info("No such valid token is present, username: {} token: {}", username, jwt);
+        return false;
     }
 }
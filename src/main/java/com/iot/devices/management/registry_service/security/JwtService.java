@@ -6,10 +6,11 @@ import com.iot.devices.management.registry_service.persistence.model.Token;
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Service;
@@ -18,21 +19,42 @@ import org.springframework.transaction.annotation.Transactional;
 import javax.crypto.SecretKey;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.time.Instant;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.function.Function;
 
+import static java.lang.System.currentTimeMillis;
+import static java.time.ZoneOffset.UTC;
+
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class JwtService {
 
     private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     private final TokenRepository tokenRepository;
     private final SecurityProperties securityProperties;
+    private final AuthenticatedTokenCache authenticatedTokenCache;
+    private final TokenStateStore tokenStateStore;
+    private final SecretKey key;
+    private final JwtParser parser;
+
+    public JwtService(TokenRepository tokenRepository, SecurityProperties securityProperties,
+                      AuthenticatedTokenCache authenticatedTokenCache, TokenStateStore tokenStateStore) {
+        this.tokenRepository = tokenRepository;
+        this.securityProperties = securityProperties;
+        this.authenticatedTokenCache = authenticatedTokenCache;
+        this.tokenStateStore = tokenStateStore;
+        //the key is decoded and the parser is built once, both are immutable and thread-safe
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(securityProperties.getSecretKey()));
+        this.parser = Jwts.parser()
+                .verifyWith(key)
+                .build();
+    }
 
     @Transactional
     public AuthenticationResponse generateTokens(User user) {
@@ -41,6 +63,7 @@ public class JwtService {
         final List<Token> tokens = List.of(buildTokenEntity(user, accessToken, false),
                 buildTokenEntity(user, refreshToken, true));
         List<Token> savedTokens = tokenRepository.saveAll(tokens);
+        tokens.forEach(tokenStateStore::register);
         log.info("Tokens for userId: {}, were saved {}", user.getId(), savedTokens);
         return AuthenticationResponse.builder()
                 .accessToken(accessToken)
@@ -51,13 +74,17 @@ public class JwtService {
     @Transactional
     public AuthenticationResponse refreshToken(String currentRefreshToken, User user,
                                                OutputStream outputStream) throws IOException {
-        if (isTokenValid(currentRefreshToken, user)) {
-            revokeAllUserTokens(user);
+        final Claims claims = extractAllClaims(currentRefreshToken);
+        if (isTokenValid(claims, user)) {
+            tokenStateStore.revokeAllUserTokens(user.getId());
+            authenticatedTokenCache.evictUserAfterCommit(user.getUsername());
             final String accessToken = generateToken(user);
-            final String newRefreshToken = buildToken(new HashMap<>(), user, extractExpiration(currentRefreshToken));
+            //the new refresh token expires together with the current one
+            final String newRefreshToken = buildToken(new HashMap<>(), user, claims.getExpiration());
             final List<Token> tokens = List.of(buildTokenEntity(user, accessToken, false),
                     buildTokenEntity(user, newRefreshToken, true));
             List<Token> savedTokens = tokenRepository.saveAll(tokens);
+            tokens.forEach(tokenStateStore::register);
             log.info("Tokens for userId: {}, were refreshed {}", user.getId(), savedTokens);
             AuthenticationResponse authResponse = AuthenticationResponse.builder()
                     .accessToken(accessToken)
@@ -75,37 +102,34 @@ public class JwtService {
         return extractClaim(token, Claims::getSubject);
     }
 
-    private long extractExpiration(String currentRefreshToken) {
-        return extractClaim(currentRefreshToken, Claims::getExpiration).getTime();
+    //an expired token or a token with invalid signature is rejected by the parser
+    public Optional<Claims> parseClaims(String token) {
+        try {
+            return Optional.of(extractAllClaims(token));
+        } catch (JwtException | IllegalArgumentException e) {
+            log.info("Token is rejected: {}, token: {}", e.getMessage(), token);
+            return Optional.empty();
+        }
     }
 
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        final String username = extractUsername(token);
-        return (username.equals(userDetails.getUsername())) && !isTokenExpired(token, username);
+    public boolean isTokenValid(Claims claims, UserDetails userDetails) {
+        final String username = claims.getSubject();
+        return (username.equals(userDetails.getUsername())) && !isTokenExpired(claims, username);
     }
 
+    //only the hash of the token is stored, expires_at lets expired tokens be reaped without parsing them
     private Token buildTokenEntity(User user, String token, boolean isRefresh) {
         return Token.builder()
                 .user(user)
-                .token(token)
+                .tokenHash(TokenStateStore.hash(token))
+                .expiresAt(extractAllClaims(token).getExpiration().toInstant().atOffset(UTC))
+                .issuedAt(Instant.ofEpochMilli(tokenStateStore.nextTimestampMs()).atOffset(UTC))
                 .expired(false)
                 .revoked(false)
                 .refresh(isRefresh)
                 .build();
     }
 
-    private void revokeAllUserTokens(User user) {
-        final List<Token> validUserTokens = tokenRepository.findAllValidTokenByUser(user.getId());
-        if (validUserTokens.isEmpty()) {
-            return;
-        }
-        validUserTokens.forEach(token -> {
-            token.setExpired(true);
-            token.setRevoked(true);
-        });
-        tokenRepository.saveAll(validUserTokens);
-    }
-
     private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
         final Claims claims = extractAllClaims(token);
         return claimsResolver.apply(claims);
@@ -116,41 +140,33 @@ public class JwtService {
     }
 
     private String generateToken(Map<String, Object> claimsToAdd, UserDetails userDetails) {
-        return buildToken(claimsToAdd, userDetails, securityProperties.getJwtExpiration());
+        return buildToken(claimsToAdd, userDetails, new Date(currentTimeMillis() + securityProperties.getJwtExpiration()));
     }
 
     private String generateRefreshToken(UserDetails userDetails) {
-        return buildToken(new HashMap<>(), userDetails, securityProperties.getRefreshExpiration());
+        return buildToken(new HashMap<>(), userDetails, new Date(currentTimeMillis() + securityProperties.getRefreshExpiration()));
     }
 
-    private String buildToken(Map<String, Object> claimsToAdd, UserDetails userDetails, long expiration) {
+    private String buildToken(Map<String, Object> claimsToAdd, UserDetails userDetails, Date expiration) {
         return Jwts.builder()
                 .claims(claimsToAdd)
                 .subject(userDetails.getUsername())
-                .issuedAt(new Date(System.currentTimeMillis()))
-                .expiration(new Date(System.currentTimeMillis() + expiration))
-                .signWith(getKey())
+                .issuedAt(new Date(currentTimeMillis()))
+                .expiration(expiration)
+                .signWith(key)
                 .compact();
     }
 
-    private boolean isTokenExpired(String token, String username) {
-        boolean isExpired = extractClaim(token, Claims::getExpiration).before(new Date());
+    private boolean isTokenExpired(Claims claims, String username) {
+        boolean isExpired = claims.getExpiration().before(new Date());
         if (isExpired) {
-            log.info("Token is expired username: {}, token: {}", username, token);
+            log.info("Token is expired username: {}, expiration: {}", username, claims.getExpiration());
         }
         return isExpired;
     }
 
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getKey())
-                .build()
-                .parseSignedClaims(token)
+        return parser.parseSignedClaims(token)
                 .getPayload();
     }
-
-    private SecretKey getKey() {
-        byte[] keyBytes = Decoders.BASE64.decode(securityProperties.getSecretKey());
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
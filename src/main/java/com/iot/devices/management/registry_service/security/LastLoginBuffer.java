@@ -0,0 +1,76 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.LastLoginRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.lang.System.currentTimeMillis;
+
+//login only puts the login time into memory, the times are written by one multi-row update every flush interval.
+//Repeated logins of a user between flushes are one row, only the latest time is kept
+@Slf4j
+@Component
+public class LastLoginBuffer {
+
+    private final int batchSize;
+    private final LastLoginRepository lastLoginRepository;
+    private final KpiMetricLogger kpiMetricLogger;
+    private final Map<UUID, Long> pendingLoginTimesMs = new ConcurrentHashMap<>();
+
+    public LastLoginBuffer(@Value("${security.last-login.batch.size}") int batchSize,
+                           LastLoginRepository lastLoginRepository, KpiMetricLogger kpiMetricLogger) {
+        this.batchSize = batchSize;
+        this.lastLoginRepository = lastLoginRepository;
+        this.kpiMetricLogger = kpiMetricLogger;
+    }
+
+    public void record(UUID userId, long loginTimeMs) {
+        pendingLoginTimesMs.merge(userId, loginTimeMs, Math::max);
+    }
+
+    @Scheduled(fixedDelayString = "${security.last-login.flush.interval.ms}")
+    public void flush() {
+        final Map<UUID, Long> batch = new HashMap<>();
+        for (UUID userId : pendingLoginTimesMs.keySet()) {
+            //removed one by one, a login recorded meanwhile stays for the next flush
+            final Long loginTimeMs = pendingLoginTimesMs.remove(userId);
+            if (loginTimeMs != null) {
+                batch.put(userId, loginTimeMs);
+            }
+            if (batch.size() >= batchSize) {
+                write(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+    }
+
+    private void write(Map<UUID, Long> batch) {
+        final long oldestLoginTimeMs = batch.values().stream().mapToLong(Long::longValue).min().orElse(currentTimeMillis());
+        try {
+            final int updated = lastLoginRepository.updateAll(batch);
+            kpiMetricLogger.recordLastLoginFlush(batch.size(), currentTimeMillis() - oldestLoginTimeMs);
+            log.debug("Flushed last login time of {} users, updated={}", batch.size(), updated);
+        } catch (RuntimeException e) {
+            //put back unless a newer login was recorded meanwhile, the batch is retried on the next flush
+            batch.forEach((userId, loginTimeMs) -> pendingLoginTimesMs.merge(userId, loginTimeMs, Math::max));
+            log.warn("Failed to flush last login time of {} users", batch.size(), e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        flush();
+    }
+}
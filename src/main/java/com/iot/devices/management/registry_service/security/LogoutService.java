@@ -1,7 +1,6 @@
 package com.iot.devices.management.registry_service.security;
 
-import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
-import com.iot.devices.management.registry_service.persistence.model.Token;
+import com.iot.devices.management.registry_service.security.TokenStateStore.ActiveToken;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
@@ -10,7 +9,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.logout.LogoutHandler;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -22,10 +20,10 @@ import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 @RequiredArgsConstructor
 public class LogoutService implements LogoutHandler {
 
-    private final TokenRepository tokenRepository;
+    private final TokenStateStore tokenStateStore;
     private final JwtService jwtService;
+    private final AuthenticatedTokenCache authenticatedTokenCache;
 
-    @Transactional
     @Override
     public void logout(HttpServletRequest request, HttpServletResponse response, Authentication authentication) {
         final String authHeader = request.getHeader(AUTHORIZATION);
@@ -35,18 +33,15 @@ public class LogoutService implements LogoutHandler {
         }
         final String jwt = authHeader.substring(TOKEN_BEGIN_INDEX);
         final String username = jwtService.extractUsername(jwt);
-        final Optional<Token> token = tokenRepository.findByToken(jwt);
+        //tokens are removed from the index at once, so logout is effective before they are removed from db
+        final Optional<ActiveToken> token = tokenStateStore.findActive(jwt);
         if (token.isPresent()) {
-            if (token.get().isExpired() || token.get().isRevoked()) {
-                log.info("Token is already expired or has been revoked {}", jwt);
-                return;
-            }
             SecurityContextHolder.clearContext();
             log.info("Logout successful username: {}", username);
-            final int rows = tokenRepository.removeAllByUserId(token.get().getUser().getId());
-            log.info("{} tokens were removed for username: {}", rows, username);
+            tokenStateStore.removeAllUserTokens(token.get().userId());
+            authenticatedTokenCache.evictUserAfterCommit(username);
         } else {
-            log.warn("Unable to find token in db for username: {}, token: {}", username, jwt);
+            log.warn("Unable to find valid token for username: {}, token: {}", username, jwt);
         }
     }
 }
@@ -0,0 +1,82 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.controller.errors.PasswordHashingOverloadedException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//password hashing is cpu bound and takes tens of milliseconds, it runs on a few dedicated threads instead of request threads.
+//When hashing threads and queue are busy, requests are rejected at once, so a login storm can not take all the cpu
+@Slf4j
+@Component
+public class PasswordHashingExecutor {
+
+    private static final ThreadLocal<Boolean> HASHING_THREAD = ThreadLocal.withInitial(() -> false);
+
+    private final long timeoutMs;
+    private final ThreadPoolExecutor executor;
+
+    public PasswordHashingExecutor(PasswordHashingProperties properties) {
+        this.timeoutMs = properties.getHashingTimeoutMs();
+        final ThreadFactory threadFactory = Thread.ofPlatform().name("password-hashing-", 0).daemon().factory();
+        this.executor = new ThreadPoolExecutor(properties.getHashingThreads(), properties.getHashingThreads(), 0, MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getHashingQueueCapacity()),
+                task -> threadFactory.newThread(() -> {
+                    HASHING_THREAD.set(true);
+                    task.run();
+                }));
+    }
+
+    public <T> T execute(Supplier<T> hashing) {
+        if (HASHING_THREAD.get()) {
+            //a background rehash encodes on a hashing thread already
+            return hashing.get();
+        }
+        final Future<T> result;
+        try {
+            result = executor.submit(hashing::get);
+        } catch (RejectedExecutionException e) {
+            throw new PasswordHashingOverloadedException("Password hashing queue is full", e);
+        }
+        try {
+            return result.get(timeoutMs, MILLISECONDS);
+        } catch (TimeoutException e) {
+            //the timeout bounds only how long a request waits, bcrypt ignores interrupts and a started hashing runs
+            //to the end holding its thread. Capacity is bounded by the queue, cancel just skips a still queued hashing
+            result.cancel(false);
+            throw new PasswordHashingOverloadedException("Password hashing took more than " + timeoutMs + " ms", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new PasswordHashingOverloadedException("Interrupted while waiting for password hashing", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    //background work is dropped instead of queued behind logins when the queue is full
+    public boolean trySubmit(Runnable hashing) {
+        try {
+            executor.execute(hashing);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(timeoutMs, MILLISECONDS)) {
+            log.warn("Password hashing executor is not terminated in {} ms", timeoutMs);
+        }
+    }
+}
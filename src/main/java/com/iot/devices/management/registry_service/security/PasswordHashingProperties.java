@@ -0,0 +1,42 @@
+package com.iot.devices.management.registry_service.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import static com.iot.devices.management.registry_service.security.PasswordHashingProperties.PROPERTIES_PREFIX;
+
+@Slf4j
+@Getter
+@Setter
+@ToString
+@Configuration
+@ConfigurationProperties(PROPERTIES_PREFIX)
+@RequiredArgsConstructor
+public class PasswordHashingProperties {
+
+    final static String PROPERTIES_PREFIX = "security.password";
+
+    @Value("${" + PROPERTIES_PREFIX + ".bcrypt.strength}")
+    private int bcryptStrength;
+
+    @Value("${" + PROPERTIES_PREFIX + ".hashing.threads}")
+    private int hashingThreads;
+
+    @Value("${" + PROPERTIES_PREFIX + ".hashing.queue.capacity}")
+    private int hashingQueueCapacity;
+
+    @Value("${" + PROPERTIES_PREFIX + ".hashing.timeout.ms}")
+    private long hashingTimeoutMs;
+
+    @PostConstruct
+    private void logProperties() {
+        log.info("Password hashing properties: {}", this);
+    }
+}
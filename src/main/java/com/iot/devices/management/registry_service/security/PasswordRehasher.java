@@ -0,0 +1,42 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.services.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+//the raw password is known only right after a successful login, hashes with an outdated cost are re-encoded then.
+//It runs after the response on a hashing thread, a rehash which does not fit into the hashing queue waits for the next login
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PasswordRehasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingExecutor passwordHashingExecutor;
+    private final UserService userService;
+
+    public void rehashIfNeeded(User user, String rawPassword) {
+        final String currentHash = user.getPassword();
+        if (!passwordEncoder.upgradeEncoding(currentHash)) {
+            return;
+        }
+        final boolean submitted = passwordHashingExecutor.trySubmit(() -> rehash(user, currentHash, rawPassword));
+        if (!submitted) {
+            log.debug("Password rehash of user: {} is skipped, hashing queue is full", user.getUsername());
+        }
+    }
+
+    private void rehash(User user, String currentHash, String rawPassword) {
+        try {
+            final int updated = userService.updatePasswordHash(user, currentHash, passwordEncoder.encode(rawPassword));
+            if (updated == 1) {
+                log.info("Password hash of user: {} is upgraded", user.getUsername());
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to upgrade password hash of user: {}", user.getUsername(), e);
+        }
+    }
+}
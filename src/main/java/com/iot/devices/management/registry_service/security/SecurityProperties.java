@@ -32,6 +32,12 @@ public class SecurityProperties {
     @Value("${" + PROPERTIES_PREFIX + ".refresh-token.expiration}")
     private long refreshExpiration;
 
+    @Value("${" + PROPERTIES_PREFIX + ".authentication-cache.max-size}")
+    private long authenticationCacheMaxSize;
+
+    @Value("${" + PROPERTIES_PREFIX + ".authentication-cache.expiration}")
+    private long authenticationCacheExpiration;
+
     @PostConstruct
     private void logProperties() {
         log.info("security properties: {}", this);
@@ -0,0 +1,65 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.util.function.IntSupplier;
+
+import static java.lang.System.currentTimeMillis;
+
+//deletes expired and revoked tokens, so the tokens table and its indexes do not grow with every login.
+//Every batch is a separate transaction and one run is limited by the number of batches of expired and of revoked tokens,
+//the rest is left to the next run
+@Slf4j
+@Component
+public class TokenReaper {
+
+    private final TokenStoreProperties properties;
+    private final TokenRepository tokenRepository;
+    private final KpiMetricLogger kpiMetricLogger;
+    private final TransactionTemplate transactionTemplate;
+
+    public TokenReaper(TokenStoreProperties properties, TokenRepository tokenRepository, KpiMetricLogger kpiMetricLogger,
+                       PlatformTransactionManager transactionManager) {
+        this.properties = properties;
+        this.tokenRepository = tokenRepository;
+        this.kpiMetricLogger = kpiMetricLogger;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Scheduled(cron = "${security.token-store.reaper.cron}", zone = "UTC")
+    public void reap() {
+        final long startTimeMs = currentTimeMillis();
+        final OffsetDateTime now = OffsetDateTime.now();
+        int deleted = 0;
+        try {
+            deleted += deleteInBatches(() -> tokenRepository.removeExpiredTokens(now, properties.getReaperBatchSize()));
+            deleted += deleteInBatches(() -> tokenRepository.removeRevokedTokens(properties.getReaperBatchSize()));
+            final long tableSizeBytes = tokenRepository.findTableSize();
+            final long timeMs = currentTimeMillis() - startTimeMs;
+            kpiMetricLogger.recordTokenReaperRun(deleted, timeMs, tableSizeBytes);
+            log.info("Token reaper deleted {} tokens in {} ms, tokens table size={} bytes", deleted, timeMs, tableSizeBytes);
+        } catch (DataAccessException e) {
+            log.error("Token reaper failed after deleting {} tokens", deleted, e);
+        }
+    }
+
+    private int deleteInBatches(IntSupplier deleteBatch) {
+        int deleted = 0;
+        for (int i = 0; i < properties.getReaperMaxBatches(); i++) {
+            final Integer deletedInBatch = transactionTemplate.execute(status -> deleteBatch.getAsInt());
+            deleted += deletedInBatch;
+            if (deletedInBatch < properties.getReaperBatchSize()) {
+                break;
+            }
+        }
+        return deleted;
+    }
+}
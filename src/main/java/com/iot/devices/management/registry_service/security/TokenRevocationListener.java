@@ -0,0 +1,84 @@
+package com.iot.devices.management.registry_service.security;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//revocations written by any instance, this one too, are notified on commit. Tokens of the user issued before
+//the revocation are evicted from the index and the user from the authenticated token cache,
+//so a logout or refresh is effective on all instances once it is written to db.
+//The connection is held by the listener thread, notifications sent while it reconnects are applied by the next reconcile
+@Slf4j
+@Component
+public class TokenRevocationListener {
+
+    //notified by TokenRepository.notifyTokensRevoked
+    private static final String CHANNEL = "token_revocations";
+
+    private final TokenStoreProperties properties;
+    private final DataSource dataSource;
+    private final TokenStateStore tokenStateStore;
+    private final AuthenticatedTokenCache authenticatedTokenCache;
+    private final Thread listener;
+
+    private volatile boolean running = true;
+
+    public TokenRevocationListener(TokenStoreProperties properties, DataSource dataSource, TokenStateStore tokenStateStore,
+                                   AuthenticatedTokenCache authenticatedTokenCache) {
+        this.properties = properties;
+        this.dataSource = dataSource;
+        this.tokenStateStore = tokenStateStore;
+        this.authenticatedTokenCache = authenticatedTokenCache;
+        this.listener = Thread.ofPlatform().name("token-revocation-listener").daemon().start(this::listenLoop);
+    }
+
+    private void listenLoop() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.execute("LISTEN " + CHANNEL);
+                final PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                log.info("Listening for token revocations on channel {}", CHANNEL);
+                while (running) {
+                    final PGNotification[] notifications = pgConnection.getNotifications((int) properties.getPollTimeoutMs());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            final String[] revocation = notification.getParameter().split(" ");
+                            evict(UUID.fromString(revocation[0]), Long.parseLong(revocation[1]));
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                log.warn("Token revocations listener failed, reconnecting", e);
+                try {
+                    MILLISECONDS.sleep(properties.getPollTimeoutMs() * 10);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void evict(UUID userId, long revokedAtMs) {
+        tokenStateStore.evictUser(userId, revokedAtMs);
+        authenticatedTokenCache.evictUser(userId);
+        log.debug("Tokens of userId: {} are evicted after revocation", userId);
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        listener.join(properties.getPollTimeoutMs() * 10);
+    }
+}
@@ -0,0 +1,43 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static java.time.ZoneOffset.UTC;
+
+//only tokens issued before the revocation are revoked, so tokens issued meanwhile on any instance are kept.
+//Every instance is notified about a revocation when it is committed, see TokenRevocationListener
+@Component
+@RequiredArgsConstructor
+public class TokenRevocationWriter {
+
+    private final TokenRepository tokenRepository;
+
+    @Transactional
+    public int write(List<TokenRevocation> revocations) {
+        int rows = 0;
+        for (TokenRevocation revocation : revocations) {
+            rows += write(revocation);
+        }
+        return rows;
+    }
+
+    private int write(TokenRevocation revocation) {
+        final UUID userId = revocation.userId();
+        final OffsetDateTime revokedAt = Instant.ofEpochMilli(revocation.revokedAtMs()).atOffset(UTC);
+        tokenRepository.notifyTokensRevoked(userId, revocation.revokedAtMs());
+        return revocation.removed()
+                ? tokenRepository.removeAllByUserIdIssuedBefore(userId, revokedAt)
+                : tokenRepository.revokeAllByUserIdIssuedBefore(userId, revokedAt);
+    }
+
+    public record TokenRevocation(UUID userId, boolean removed, long revokedAtMs) {
+    }
+}
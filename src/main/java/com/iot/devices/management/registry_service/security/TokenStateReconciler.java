@@ -0,0 +1,49 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.persistence.model.TokenState;
+import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static java.lang.System.currentTimeMillis;
+
+//warms the token index on startup and periodically applies changes made by other instances:
+//valid db tokens are indexed, indexed tokens which are not valid in db anymore are evicted
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TokenStateReconciler {
+
+    private final TokenRepository tokenRepository;
+    private final TokenStateStore tokenStateStore;
+
+    @Transactional(readOnly = true)
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        reconcile();
+    }
+
+    @Transactional(readOnly = true)
+    @Scheduled(fixedDelayString = "${security.token-store.reconcile.interval.ms}",
+            initialDelayString = "${security.token-store.reconcile.interval.ms}")
+    public void reconcile() {
+        final long startedAtMs = currentTimeMillis();
+        final Set<String> validHashes = new HashSet<>();
+        try (Stream<TokenState> tokens = tokenRepository.streamAllValidTokens(OffsetDateTime.now())) {
+            tokens.forEach(token -> validHashes.add(tokenStateStore.reconcile(token)));
+        }
+        final int evicted = tokenStateStore.evictStale(validHashes, startedAtMs);
+        log.info("Token index is reconciled, valid tokens={}, evicted={}, took {} ms", validHashes.size(), evicted,
+                currentTimeMillis() - startedAtMs);
+    }
+}
@@ -0,0 +1,266 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.cache.AfterCommit;
+import com.iot.devices.management.registry_service.persistence.model.Token;
+import com.iot.devices.management.registry_service.persistence.model.TokenState;
+import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import com.iot.devices.management.registry_service.security.TokenRevocationWriter.TokenRevocation;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.System.currentTimeMillis;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+//active tokens are indexed in memory by SHA-256 of the token, so the tokens table is off the per-request path.
+//Issued tokens and revocations are applied to the index after commit, a revocation is written to db behind it,
+//in batches by a single thread, and other instances evict tokens of the user once it is written.
+//A revocation covers tokens issued before it. Its time is kept per user and a token issued earlier is never indexed
+//again, whether it is read from db before the revocation is written or streamed by a reconcile which started earlier
+@Slf4j
+@Component
+public class TokenStateStore {
+
+    private final TokenStoreProperties properties;
+    private final SecurityProperties securityProperties;
+    private final TokenRepository tokenRepository;
+    private final TokenRevocationWriter tokenRevocationWriter;
+    private final Map<String, ActiveToken> tokensByHash = new ConcurrentHashMap<>();
+    //per user tokens are only accessed inside compute, which makes indexing and revocation of a user atomic
+    private final Map<UUID, UserTokens> tokensByUser = new ConcurrentHashMap<>();
+    private final Map<UUID, PendingRevocation> pendingRevocations = new ConcurrentHashMap<>();
+    private final BlockingQueue<UUID> revokedUsers = new LinkedBlockingQueue<>();
+    private final AtomicLong lastTimestampMs = new AtomicLong();
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    public TokenStateStore(TokenStoreProperties properties, SecurityProperties securityProperties,
+                           TokenRepository tokenRepository, TokenRevocationWriter tokenRevocationWriter) {
+        this.properties = properties;
+        this.securityProperties = securityProperties;
+        this.tokenRepository = tokenRepository;
+        this.tokenRevocationWriter = tokenRevocationWriter;
+        this.writer = Thread.ofPlatform().name("token-revocation-writer").daemon().start(this::writeLoop);
+    }
+
+    public static String hash(String token) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    //issue and revocation times are unique and increasing on this instance, so a token issued right after
+    //a revocation, e.g. by the same refresh, is never taken as revoked by it
+    public long nextTimestampMs() {
+        return lastTimestampMs.updateAndGet(last -> Math.max(last + 1, currentTimeMillis()));
+    }
+
+    public void register(Token token) {
+        final ActiveToken activeToken = activeToken(token.getId(), token.getUser().getId(), token.isRefresh(), token.getIssuedAt());
+        AfterCommit.run(() -> index(token.getTokenHash(), activeToken));
+    }
+
+    public Optional<ActiveToken> findActive(String token) {
+        final String hash = hash(token);
+        final ActiveToken activeToken = tokensByHash.get(hash);
+        if (activeToken != null) {
+            return Optional.of(activeToken);
+        }
+        return tokenRepository.findByTokenHash(hash)
+                .filter(t -> !t.isExpired() && !t.isRevoked())
+                .map(t -> activeToken(t.getId(), t.getUser().getId(), t.isRefresh(), t.getIssuedAt()))
+                .filter(t -> index(hash, t));
+    }
+
+    //a rolled back refresh does not log the user out, the time is taken now, so tokens issued by the refresh are kept
+    public void revokeAllUserTokens(UUID userId) {
+        final long revokedAtMs = nextTimestampMs();
+        AfterCommit.run(() -> revoke(userId, false, revokedAtMs));
+    }
+
+    public void removeAllUserTokens(UUID userId) {
+        final long revokedAtMs = nextTimestampMs();
+        AfterCommit.run(() -> revoke(userId, true, revokedAtMs));
+    }
+
+    //revocation is written by any instance, valid tokens of the user are taken from db again.
+    //Tokens issued here from now on are later than the revocation, even if the clock of this instance is behind
+    void evictUser(UUID userId, long revokedAtMs) {
+        lastTimestampMs.accumulateAndGet(revokedAtMs, Math::max);
+        tokensByUser.compute(userId, (id, userTokens) -> {
+            final UserTokens tokens = userTokens == null ? new UserTokens() : userTokens;
+            evict(tokens, revokedAtMs);
+            return tokens;
+        });
+    }
+
+    //returns hash of the valid db token, which is indexed unless it is issued before a revocation of its user
+    String reconcile(TokenState token) {
+        final String hash = token.getTokenHash();
+        if (!tokensByHash.containsKey(hash)) {
+            index(hash, activeToken(token.getId(), token.getUserId(), token.isRefresh(), token.getIssuedAt()));
+        }
+        return hash;
+    }
+
+    //tokens indexed after the db was read are not evicted, they may be not committed yet.
+    //Tokens issued before a revocation expire within the refresh token lifetime, so older revocation times are dropped
+    int evictStale(Set<String> validHashes, long indexedBeforeMs) {
+        int evicted = 0;
+        for (Map.Entry<String, ActiveToken> entry : tokensByHash.entrySet()) {
+            if (entry.getValue().indexedAtMs() < indexedBeforeMs && !validHashes.contains(entry.getKey())) {
+                unindex(entry.getKey(), entry.getValue().userId());
+                evicted++;
+            }
+        }
+        final long expiredRevocationMs = currentTimeMillis() - securityProperties.getRefreshExpiration();
+        for (UUID userId : tokensByUser.keySet()) {
+            tokensByUser.computeIfPresent(userId, (id, tokens) ->
+                    tokens.hashes.isEmpty() && tokens.revokedAtMs < expiredRevocationMs ? null : tokens);
+        }
+        return evicted;
+    }
+
+    private boolean index(String hash, ActiveToken activeToken) {
+        final boolean[] indexed = {false};
+        tokensByUser.compute(activeToken.userId(), (userId, userTokens) -> {
+            final UserTokens tokens = userTokens == null ? new UserTokens() : userTokens;
+            if (activeToken.issuedAtMs() >= tokens.revokedAtMs) {
+                tokens.hashes.add(hash);
+                tokensByHash.put(hash, activeToken);
+                indexed[0] = true;
+            }
+            return tokens.hashes.isEmpty() && tokens.revokedAtMs == Long.MIN_VALUE ? null : tokens;
+        });
+        return indexed[0];
+    }
+
+    private void unindex(String hash, UUID userId) {
+        tokensByUser.computeIfPresent(userId, (id, tokens) -> {
+            tokens.hashes.remove(hash);
+            tokensByHash.remove(hash);
+            return tokens.hashes.isEmpty() && tokens.revokedAtMs == Long.MIN_VALUE ? null : tokens;
+        });
+    }
+
+    //the revocation is marked pending under the lock of the user, so it is written before the index can be changed again
+    private void revoke(UUID userId, boolean removed, long revokedAtMs) {
+        final int[] revoked = {0};
+        tokensByUser.compute(userId, (id, userTokens) -> {
+            final UserTokens tokens = userTokens == null ? new UserTokens() : userTokens;
+            revoked[0] = evict(tokens, revokedAtMs);
+            pendingRevocations.compute(userId, (key, pending) -> pending == null
+                    ? new PendingRevocation(removed, revokedAtMs)
+                    : new PendingRevocation(removed || pending.removed, Math.max(revokedAtMs, pending.revokedAtMs)));
+            return tokens;
+        });
+        revokedUsers.offer(userId);
+        log.info("{} tokens were {} for userId: {}", revoked[0], removed ? "removed" : "revoked", userId);
+    }
+
+    private int evict(UserTokens tokens, long revokedAtMs) {
+        tokens.revokedAtMs = Math.max(tokens.revokedAtMs, revokedAtMs);
+        int evicted = 0;
+        for (Iterator<String> hashes = tokens.hashes.iterator(); hashes.hasNext(); ) {
+            final String hash = hashes.next();
+            final ActiveToken activeToken = tokensByHash.get(hash);
+            if (activeToken == null || activeToken.issuedAtMs() < revokedAtMs) {
+                tokensByHash.remove(hash);
+                hashes.remove();
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    private static ActiveToken activeToken(UUID id, UUID userId, boolean refresh, OffsetDateTime issuedAt) {
+        return new ActiveToken(id, userId, refresh, issuedAt.toInstant().toEpochMilli(), currentTimeMillis());
+    }
+
+    private void writeLoop() {
+        final List<UUID> userIds = new ArrayList<>(properties.getBatchSize());
+        while (running || !revokedUsers.isEmpty()) {
+            try {
+                final UUID first = revokedUsers.poll(properties.getPollTimeoutMs(), MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                userIds.add(first);
+                revokedUsers.drainTo(userIds, properties.getBatchSize() - 1);
+                write(userIds);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.warn("Token revocation writer is interrupted, revocations of {} users are not written", pendingRevocations.size());
+                return;
+            } finally {
+                userIds.clear();
+            }
+        }
+    }
+
+    //a failed batch is retried, revocations are never dropped
+    private void write(List<UUID> userIds) throws InterruptedException {
+        while (true) {
+            final Map<UUID, PendingRevocation> written = new HashMap<>();
+            final List<TokenRevocation> revocations = new ArrayList<>();
+            for (UUID userId : userIds) {
+                final PendingRevocation pending = pendingRevocations.get(userId);
+                if (pending != null && written.putIfAbsent(userId, pending) == null) {
+                    revocations.add(new TokenRevocation(userId, pending.removed, pending.revokedAtMs));
+                }
+            }
+            if (revocations.isEmpty()) {
+                return;
+            }
+            try {
+                final int rows = tokenRevocationWriter.write(revocations);
+                //a revocation which came during the write is a new instance, it stays pending
+                written.forEach(pendingRevocations::remove);
+                log.debug("Written revocations of {} users, {} tokens", revocations.size(), rows);
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Failed to write revocations of {} users, retrying", revocations.size(), e);
+                MILLISECONDS.sleep(properties.getPollTimeoutMs());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(properties.getPollTimeoutMs() * 10);
+    }
+
+    public record ActiveToken(UUID id, UUID userId, boolean refresh, long issuedAtMs, long indexedAtMs) {
+    }
+
+    private static final class UserTokens {
+        private final Set<String> hashes = new HashSet<>();
+        private long revokedAtMs = Long.MIN_VALUE;
+    }
+
+    //compared by identity, so a revocation replaced during the write is not removed with the written one
+    private static final class PendingRevocation {
+        private final boolean removed;
+        private final long revokedAtMs;
+
+        private PendingRevocation(boolean removed, long revokedAtMs) {
+            this.removed = removed;
+            this.revokedAtMs = revokedAtMs;
+        }
+    }
+}
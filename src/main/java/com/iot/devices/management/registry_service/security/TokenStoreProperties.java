@@ -0,0 +1,45 @@
+package com.iot.devices.management.registry_service.security;
+
+import jakarta.annotation.PostConstruct;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import static com.iot.devices.management.registry_service.security.TokenStoreProperties.PROPERTIES_PREFIX;
+
+@Slf4j
+@Getter
+@Setter
+@ToString
+@Configuration
+@ConfigurationProperties(PROPERTIES_PREFIX)
+@RequiredArgsConstructor
+public class TokenStoreProperties {
+
+    final static String PROPERTIES_PREFIX = "security.token-store";
+
+    @Value("${" + PROPERTIES_PREFIX + ".batch.size}")
+    private int batchSize;
+
+    @Value("${" + PROPERTIES_PREFIX + ".poll.timeout.ms}")
+    private long pollTimeoutMs;
+
+    @Value("${" + PROPERTIES_PREFIX + ".reconcile.interval.ms}")
+    private long reconcileIntervalMs;
+
+    @Value("${" + PROPERTIES_PREFIX + ".reaper.batch.size}")
+    private int reaperBatchSize;
+
+    @Value("${" + PROPERTIES_PREFIX + ".reaper.max.batches}")
+    private int reaperMaxBatches;
+
+    @PostConstruct
+    private void logProperties() {
+        log.info("Token store properties: {}", this);
+    }
+}
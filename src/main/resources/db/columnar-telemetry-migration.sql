@@ -0,0 +1,138 @@
+-- Switches telemetry storage from devices.telemetry jsonb to typed latest telemetry tables (persister.storage: COLUMNAR).
+-- Apply while consumers are stopped, then restart them with COLUMNAR storage. Re-running is safe, existing rows are kept.
+-- Only primary keys are indexed and pages keep 30% free space, so telemetry updates are HOT and leave no dead index entries.
+
+CREATE TABLE IF NOT EXISTS door_sensor_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    last_active_at TIMESTAMP WITH TIME ZONE,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    door_state VARCHAR(20),
+    tamper_alert BOOLEAN,
+    last_opened TIMESTAMP WITH TIME ZONE,
+    battery_level INTEGER
+) WITH (fillfactor = 70);
+
+CREATE TABLE IF NOT EXISTS energy_meter_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    voltage REAL,
+    electric_current REAL,
+    power REAL,
+    energy_consumed REAL
+) WITH (fillfactor = 70);
+
+CREATE TABLE IF NOT EXISTS smart_light_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    is_on BOOLEAN,
+    brightness INTEGER,
+    colour VARCHAR(50),
+    mode VARCHAR(20),
+    power_consumption REAL
+) WITH (fillfactor = 70);
+
+CREATE TABLE IF NOT EXISTS smart_plug_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    is_on BOOLEAN,
+    voltage REAL,
+    electric_current REAL,
+    power_usage REAL
+) WITH (fillfactor = 70);
+
+CREATE TABLE IF NOT EXISTS soil_moisture_sensor_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    moisture_percentage REAL,
+    soil_temperature REAL,
+    battery_level INTEGER
+) WITH (fillfactor = 70);
+
+CREATE TABLE IF NOT EXISTS temperature_sensor_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    last_active_at TIMESTAMP WITH TIME ZONE,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    temperature REAL,
+    humidity REAL,
+    pressure REAL,
+    unit VARCHAR(20)
+) WITH (fillfactor = 70);
+
+CREATE TABLE IF NOT EXISTS thermostat_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    current_temperature REAL,
+    target_temperature REAL,
+    humidity REAL,
+    mode VARCHAR(20)
+) WITH (fillfactor = 70);
+
+INSERT INTO door_sensor_telemetry (device_id, status, last_active_at, firmware_version, updated_at,
+                                   door_state, tamper_alert, last_opened, battery_level)
+SELECT id, status, last_active_at, firmware_version, updated_at,
+       telemetry ->> 'doorState', (telemetry ->> 'tamperAlert')::boolean,
+       (telemetry ->> 'lastOpened')::timestamp, (telemetry ->> 'batteryLevel')::integer
+FROM devices WHERE device_type = 'DOOR_SENSOR' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
+
+INSERT INTO energy_meter_telemetry (device_id, status, firmware_version, updated_at,
+                                    voltage, electric_current, power, energy_consumed)
+SELECT id, status, firmware_version, updated_at,
+       (telemetry ->> 'voltage')::real, (telemetry ->> 'current')::real,
+       (telemetry ->> 'power')::real, (telemetry ->> 'energyConsumed')::real
+FROM devices WHERE device_type = 'ENERGY_METER' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
+
+INSERT INTO smart_light_telemetry (device_id, status, firmware_version, updated_at,
+                                   is_on, brightness, colour, mode, power_consumption)
+SELECT id, status, firmware_version, updated_at,
+       (telemetry ->> 'isOn')::boolean, (telemetry ->> 'brightness')::integer, telemetry ->> 'colour',
+       telemetry ->> 'mode', (telemetry ->> 'powerConsumption')::real
+FROM devices WHERE device_type = 'SMART_LIGHT' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
+
+INSERT INTO smart_plug_telemetry (device_id, status, firmware_version, updated_at,
+                                  is_on, voltage, electric_current, power_usage)
+SELECT id, status, firmware_version, updated_at,
+       (telemetry ->> 'isOn')::boolean, (telemetry ->> 'voltage')::real,
+       (telemetry ->> 'current')::real, (telemetry ->> 'powerUsage')::real
+FROM devices WHERE device_type = 'SMART_PLUG' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
+
+INSERT INTO soil_moisture_sensor_telemetry (device_id, status, firmware_version, updated_at,
+                                            moisture_percentage, soil_temperature, battery_level)
+SELECT id, status, firmware_version, updated_at,
+       (telemetry ->> 'moisturePercentage')::real, (telemetry ->> 'soilTemperature')::real,
+       (telemetry ->> 'batteryLevel')::integer
+FROM devices WHERE device_type = 'SOIL_MOISTURE_SENSOR' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
+
+INSERT INTO temperature_sensor_telemetry (device_id, status, last_active_at, firmware_version, updated_at,
+                                          temperature, humidity, pressure, unit)
+SELECT id, status, last_active_at, firmware_version, updated_at,
+       (telemetry ->> 'temperature')::real, (telemetry ->> 'humidity')::real,
+       (telemetry ->> 'pressure')::real, telemetry ->> 'unit'
+FROM devices WHERE device_type = 'TEMPERATURE_SENSOR' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
+
+INSERT INTO thermostat_telemetry (device_id, status, firmware_version, updated_at,
+                                  current_temperature, target_temperature, humidity, mode)
+SELECT id, status, firmware_version, updated_at,
+       (telemetry ->> 'currentTemperature')::real, (telemetry ->> 'targetTemperature')::real,
+       (telemetry ->> 'humidity')::real, telemetry ->> 'mode'
+FROM devices WHERE device_type = 'THERMOSTAT' AND telemetry IS NOT NULL
+ON CONFLICT (device_id) DO NOTHING;
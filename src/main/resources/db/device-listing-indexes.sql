@@ -0,0 +1,7 @@
+-- Indexes for keyset pagination of GET /api/v1/devices, ordered the same way as the listing query.
+-- Built concurrently so devices stay writable, run each statement outside of a transaction.
+-- Every telemetry update rewrites updated_at, so keep this set small: other filters are checked while walking these indexes.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_devices_updated_at_id ON devices (updated_at DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_devices_owner_updated_at_id ON devices (owner_user_id, updated_at DESC, id DESC);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_devices_type_updated_at_id ON devices (device_type, updated_at DESC, id DESC);
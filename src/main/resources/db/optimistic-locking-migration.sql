@@ -0,0 +1,6 @@
+-- Version columns for optimistic locking of device and alert rule patches.
+-- Adding a NOT NULL column with a constant default does not rewrite the tables, existing rows start at version 0.
+-- Telemetry updates never change the version, only PATCH /api/v1/devices and PATCH /api/v1/alertRules bump it.
+
+ALTER TABLE devices ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE alert_rules ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
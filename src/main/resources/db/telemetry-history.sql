@@ -0,0 +1,38 @@
+-- Append-only telemetry history (telemetry.history.enabled: true), partitioned by day of recorded_at in UTC.
+-- Daily partitions telemetry_history_pYYYYMMDD of the retention window and days ahead are created and dropped after
+-- retention by the service itself. The service drops records out of that window, the default partition only catches
+-- rows inserted by other means and is never dropped. Re-running is safe.
+
+CREATE TABLE IF NOT EXISTS telemetry_history (
+    device_id UUID NOT NULL,
+    device_type VARCHAR(30),
+    recorded_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    status VARCHAR(20),
+    firmware_version VARCHAR(50),
+    door_state VARCHAR(20),
+    tamper_alert BOOLEAN,
+    last_opened TIMESTAMP WITH TIME ZONE,
+    battery_level INTEGER,
+    voltage REAL,
+    electric_current REAL,
+    power REAL,
+    energy_consumed REAL,
+    is_on BOOLEAN,
+    brightness INTEGER,
+    colour VARCHAR(50),
+    mode VARCHAR(20),
+    power_consumption REAL,
+    power_usage REAL,
+    moisture_percentage REAL,
+    soil_temperature REAL,
+    temperature REAL,
+    humidity REAL,
+    pressure REAL,
+    unit VARCHAR(20),
+    current_temperature REAL,
+    target_temperature REAL
+) PARTITION BY RANGE (recorded_at);
+
+CREATE INDEX IF NOT EXISTS idx_telemetry_history_device_recorded_at ON telemetry_history (device_id, recorded_at);
+
+CREATE TABLE IF NOT EXISTS telemetry_history_default PARTITION OF telemetry_history DEFAULT;
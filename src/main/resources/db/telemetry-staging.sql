@@ -0,0 +1,36 @@
+-- Staging table for kafka consumer ingest-mode: COPY, batches are copied in by binary COPY, merged by one statement and deleted.
+-- Rows live only while their batch is ingested, so the table is unlogged and COPY does not write WAL for them.
+-- Without this table every COPY batch fails and falls back to row by row updates.
+
+CREATE UNLOGGED TABLE IF NOT EXISTS telemetry_staging (
+    batch_id UUID NOT NULL,
+    device_id UUID NOT NULL,
+    status VARCHAR(20),
+    firmware_version VARCHAR(50),
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_active_at TIMESTAMP WITH TIME ZONE,
+    door_state VARCHAR(20),
+    tamper_alert BOOLEAN,
+    last_opened TIMESTAMP WITH TIME ZONE,
+    battery_level INTEGER,
+    voltage REAL,
+    electric_current REAL,
+    power REAL,
+    energy_consumed REAL,
+    is_on BOOLEAN,
+    brightness INTEGER,
+    colour VARCHAR(50),
+    mode VARCHAR(20),
+    power_consumption REAL,
+    power_usage REAL,
+    moisture_percentage REAL,
+    soil_temperature REAL,
+    temperature REAL,
+    humidity REAL,
+    pressure REAL,
+    unit VARCHAR(20),
+    current_temperature REAL,
+    target_temperature REAL
+);
+
+CREATE INDEX IF NOT EXISTS idx_telemetry_staging_batch_id ON telemetry_staging (batch_id);
@@ -0,0 +1,21 @@
+-- Stores tokens by SHA-256 (base64url without padding, 43 chars) instead of the raw JWT and adds expires_at for token reaper.
+-- Old instances write raw tokens, run it while the service is stopped.
+-- Revoked tokens are never accepted again, they are deleted instead of being migrated.
+-- expires_at of existing tokens is taken from the exp claim of their payload.
+
+DELETE FROM tokens WHERE revoked OR expired;
+
+ALTER TABLE tokens ADD COLUMN IF NOT EXISTS token_hash VARCHAR(43);
+ALTER TABLE tokens ADD COLUMN IF NOT EXISTS expires_at TIMESTAMPTZ;
+
+UPDATE tokens SET
+    token_hash = rtrim(translate(encode(sha256(convert_to(token, 'UTF8')), 'base64'), '+/', '-_'), '='),
+    expires_at = to_timestamp((convert_from(decode(rpad(translate(split_part(token, '.', 2), '-_', '+/'),
+            ((length(split_part(token, '.', 2)) + 3) / 4) * 4, '='), 'base64'), 'UTF8')::jsonb ->> 'exp')::bigint);
+
+ALTER TABLE tokens ALTER COLUMN token_hash SET NOT NULL;
+ALTER TABLE tokens ALTER COLUMN expires_at SET NOT NULL;
+ALTER TABLE tokens ADD CONSTRAINT tokens_token_hash_key UNIQUE (token_hash);
+ALTER TABLE tokens DROP COLUMN token;
+
+CREATE INDEX IF NOT EXISTS idx_tokens_expires_at ON tokens (expires_at);
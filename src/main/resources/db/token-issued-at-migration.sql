@@ -0,0 +1,6 @@
+-- Adds issued_at to tokens, a revocation covers only tokens issued before it, so tokens issued meanwhile
+-- by another instance are kept. Existing tokens get the migration time, so any later revocation covers them.
+-- Old instances do not write issued_at, run it while the service is stopped.
+
+ALTER TABLE tokens ADD COLUMN IF NOT EXISTS issued_at TIMESTAMPTZ NOT NULL DEFAULT now();
+ALTER TABLE tokens ALTER COLUMN issued_at DROP DEFAULT;
@@ -0,0 +1,6 @@
+-- Index for revocations written behind by the token store, they update or delete all tokens of a user.
+-- Partial index for token reaper, it holds only revoked tokens which are waiting to be deleted.
+-- Built concurrently so tokens stay writable, run the statements outside of a transaction.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tokens_user_id ON tokens (user_id);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_tokens_revoked ON tokens (id) WHERE revoked;
@@ -0,0 +1,92 @@
+package com.iot.devices.management.registry_service.cache;
+
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static java.time.OffsetDateTime.now;
+import static org.junit.jupiter.api.Assertions.*;
+
+class UserCacheTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    UserCache userCache = new UserCache(10, 100, 10, meterRegistry);
+
+    UUID USER_ID = UUID.randomUUID();
+    User USER = user("jonndoe123", "someemail@gmail.com");
+
+    @Test
+    void userIsCachedByAllKeys() {
+        AtomicInteger loads = new AtomicInteger();
+        assertSame(USER, userCache.getByUsername("jonndoe123", username -> {
+            loads.incrementAndGet();
+            return Optional.of(USER);
+        }).orElseThrow());
+
+        assertSame(USER, userCache.getById(USER_ID, failingLoader()).orElseThrow());
+        assertSame(USER, userCache.getByEmail("someemail@gmail.com", failingLoader()).orElseThrow());
+        assertSame(USER, userCache.getByUsername("jonndoe123", failingLoader()).orElseThrow());
+        assertEquals(1, loads.get());
+        assertEquals(1, lookups("username", "miss"));
+        assertEquals(1, lookups("username", "hit"));
+        assertEquals(1, lookups("id", "hit"));
+        assertEquals(1, lookups("email", "hit"));
+    }
+
+    @Test
+    void invalidationDropsAllKeysOfUser() {
+        userCache.getById(USER_ID, id -> Optional.of(USER));
+        userCache.invalidateAfterCommit(USER_ID);
+        User patched = user("jonndoe123", "newemail@gmail.com");
+
+        assertSame(patched, userCache.getByUsername("jonndoe123", username -> Optional.of(patched)).orElseThrow());
+        assertTrue(userCache.getByEmail("someemail@gmail.com", email -> Optional.empty()).isEmpty());
+        assertSame(patched, userCache.getByEmail("newemail@gmail.com", failingLoader()).orElseThrow());
+        assertSame(patched, userCache.getById(USER_ID, failingLoader()).orElseThrow());
+    }
+
+    @Test
+    void userLoadedBeforeInvalidationIsNotCached() {
+        assertSame(USER, userCache.getById(USER_ID, id -> {
+            //the user is patched and committed while the old state is being loaded
+            userCache.invalidateAfterCommit(USER_ID);
+            return Optional.of(USER);
+        }).orElseThrow());
+
+        User patched = user("jonndoe123", "newemail@gmail.com");
+        assertSame(patched, userCache.getById(USER_ID, id -> Optional.of(patched)).orElseThrow());
+        assertEquals(2, lookups("id", "miss"));
+    }
+
+    @Test
+    void invalidationOfOtherUserDoesNotSkipLoadedUser() {
+        assertSame(USER, userCache.getById(USER_ID, id -> {
+            userCache.invalidateAfterCommit(UUID.randomUUID());
+            return Optional.of(USER);
+        }).orElseThrow());
+
+        assertSame(USER, userCache.getByEmail("someemail@gmail.com", failingLoader()).orElseThrow());
+        assertEquals(1, lookups("id", "miss"));
+    }
+
+    private User user(String username, String email) {
+        return new User(USER_ID, username, "John", "Doe", email, "+12345678", "St. Privet", "jwheknrmlear",
+                UserRole.USER, now(), now(), now(), new HashSet<>(), new ArrayList<>());
+    }
+
+    private <K> Function<K, Optional<User>> failingLoader() {
+        return key -> fail("User should be cached by " + key);
+    }
+
+    private double lookups(String key, String result) {
+        return meterRegistry.get("rs_user_cache_lookups_count").tag("key", key).tag("result", result).counter().count();
+    }
+}
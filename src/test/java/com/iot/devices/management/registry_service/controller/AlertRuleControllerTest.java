@@ -44,6 +44,7 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static com.iot.devices.management.registry_service.controller.errors.AlertRulesException.*;
 
@@ -59,7 +60,13 @@ import static com.iot.devices.management.registry_service.controller.errors.Aler
         SecurityConfig.class,
         JwtAuthentificationFilter.class,
         SecurityProperties.class,
-        LogoutService.class
+        LogoutService.class,
+        AuthenticatedTokenCache.class,
+        TokenStateStore.class,
+        TokenRevocationWriter.class,
+        TokenStoreProperties.class,
+        PasswordHashingExecutor.class,
+        PasswordHashingProperties.class
 })
 class AlertRuleControllerTest {
 
@@ -186,7 +193,7 @@ class AlertRuleControllerTest {
         UUID ruleId = randomUUID();
         UUID deviceId = randomUUID();
         PatchAlertRuleRequest request = new PatchAlertRuleRequest(ruleId, Set.of(deviceId), null, PERCENTAGE, LESS_THAN,
-                50f, CRITICAL, true, USER.getUsername());
+                50f, CRITICAL, true, USER.getUsername(), null);
 
         AlertRule alertRule = new AlertRule(ruleId, PERCENTAGE, LESS_THAN,
                 50f, CRITICAL, true, USER.getUsername());
@@ -210,7 +217,7 @@ class AlertRuleControllerTest {
         UUID ruleId = randomUUID();
         UUID deviceId = randomUUID();
         PatchAlertRuleRequest request = new PatchAlertRuleRequest(ruleId, Set.of(deviceId), null, PERCENTAGE, LESS_THAN,
-                50f, CRITICAL, true, USER.getUsername());
+                50f, CRITICAL, true, USER.getUsername(), null);
 
         AlertRule alertRule = new AlertRule(ruleId, PERCENTAGE, LESS_THAN,
                 50f, CRITICAL, true, USER.getUsername());
@@ -228,6 +235,32 @@ class AlertRuleControllerTest {
         verify(userService).findByUsername(USER.getUsername());
     }
 
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void patchAlertRuleVersionConflict() throws Exception {
+        UUID ruleId = randomUUID();
+        PatchAlertRuleRequest request = new PatchAlertRuleRequest(ruleId, null, null, null, null,
+                null, WARNING, null, USER.getUsername(), 1L);
+
+        AlertRule currentAlertRule = new AlertRule(ruleId, PERCENTAGE, LESS_THAN,
+                50f, CRITICAL, true, USER.getUsername());
+        currentAlertRule.setVersion(2L);
+
+        when(userService.findByUsername(USER.getUsername())).thenReturn(Optional.of(USER));
+        when(alertRuleService.patchAndSendMessage(request, USER)).thenThrow(new AlertRuleVersionConflictException(currentAlertRule));
+
+        String content = new ObjectMapper().writeValueAsString(request);
+        mockMvc.perform(patch("/api/v1/alertRules")
+                        .contentType(APPLICATION_JSON)
+                        .content(content))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.current.severity").value(CRITICAL.name()))
+                .andExpect(jsonPath("$.current.version").value(2));
+
+        verify(alertRuleService).patchAndSendMessage(request, USER);
+        verify(userService).findByUsername(USER.getUsername());
+    }
+
     @WithMockUser(username = "some_username", roles = "USER")
     @Test
     void deleteAlertRuleToMyUser() throws Exception {
@@ -1,7 +1,7 @@
 package com.iot.devices.management.registry_service.controller;
 
 import com.iot.devices.management.registry_service.controller.errors.GlobalExceptionHandler;
-import com.iot.devices.management.registry_service.persistence.model.Token;
+import com.iot.devices.management.registry_service.controller.errors.PasswordHashingOverloadedException;
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
 import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
@@ -21,7 +21,6 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
-import java.time.OffsetDateTime;
 import java.util.*;
 
 import static com.iot.devices.management.registry_service.security.JwtAuthentificationFilter.TOKEN_PREFIX;
@@ -45,7 +44,13 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         AppConfig.class,
         JwtAuthentificationFilter.class,
         SecurityProperties.class,
-        LogoutService.class
+        LogoutService.class,
+        AuthenticatedTokenCache.class,
+        TokenStateStore.class,
+        TokenRevocationWriter.class,
+        TokenStoreProperties.class,
+        PasswordHashingExecutor.class,
+        PasswordHashingProperties.class
 })
 class AuthenticationControllerTest {
 
@@ -60,10 +65,14 @@ class AuthenticationControllerTest {
     AuthenticationManager authenticationManager;
     @MockitoBean
     TokenRepository tokenRepository;
+    @MockitoBean
+    LastLoginBuffer lastLoginBuffer;
+    @MockitoBean
+    PasswordRehasher passwordRehasher;
 
     @AfterEach
     void tearDown() {
-        verifyNoMoreInteractions(userService, tokenRepository, authenticationManager);
+        verifyNoMoreInteractions(userService, tokenRepository, authenticationManager, lastLoginBuffer, passwordRehasher);
     }
 
     String username = "testUser";
@@ -93,10 +102,7 @@ class AuthenticationControllerTest {
         headers.add(AUTHORIZATION, TOKEN_PREFIX + jwt);
 
         when(userService.findByUsername(username)).thenReturn(Optional.of(USER));
-        when(tokenRepository.findByToken(anyString())).thenReturn(Optional.of(Token.builder()
-                .token(jwt).user(USER).revoked(false).expired(false).refresh(false).build()));
-        when(tokenRepository.removeAllByUserId(any())).thenReturn(2);
-        when(userService.updateLastLoginTime(eq(USER_ID), any(OffsetDateTime.class))).thenReturn(1);
+        when(tokenRepository.removeAllByUserIdIssuedBefore(any(), any())).thenReturn(2);
         mockMvc.perform(post("/api/v1/authentication/login")
                         .contentType(APPLICATION_JSON)
                         .content(json))
@@ -110,9 +116,11 @@ class AuthenticationControllerTest {
         verify(userService).findByUsername(any());
         verify(authenticationManager).authenticate(any());
         verify(tokenRepository, times(2)).saveAll(anyList());
-        verify(userService).updateLastLoginTime(eq(USER_ID), any(OffsetDateTime.class));
-        verify(tokenRepository).findByToken(anyString());
-        verify(tokenRepository).removeAllByUserId(any());
+        verify(lastLoginBuffer).record(eq(USER_ID), anyLong());
+        verify(passwordRehasher).rehashIfNeeded(USER, passwordHash);
+        //issued tokens are indexed, so logout does not look them up in db and removes them from db behind
+        verify(tokenRepository, timeout(5000)).removeAllByUserIdIssuedBefore(eq(USER_ID), any());
+        verify(tokenRepository).notifyTokensRevoked(eq(USER_ID), anyLong());
     }
 
     @Test
@@ -130,4 +138,20 @@ class AuthenticationControllerTest {
                 .andExpect(status().isForbidden());
         verify(authenticationManager).authenticate(any());
     }
-}
\ No newline at end of file
+
+    @Test
+    void loginWhenPasswordHashingIsOverloaded() throws Exception {
+        String json = """
+            {
+              "username": "%s",
+              "password"  : "%s"
+            }
+            """.formatted(username, passwordHash);
+        when(authenticationManager.authenticate(any())).thenThrow(new PasswordHashingOverloadedException("Password hashing queue is full"));
+        mockMvc.perform(post("/api/v1/authentication/login")
+                        .contentType(APPLICATION_JSON)
+                        .content(json))
+                .andExpect(status().isServiceUnavailable());
+        verify(authenticationManager).authenticate(any());
+    }
+}
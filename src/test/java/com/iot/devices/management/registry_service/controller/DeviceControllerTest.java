@@ -1,10 +1,17 @@
 package com.iot.devices.management.registry_service.controller;
 
 import com.google.common.collect.ImmutableSet;
+import com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.DeviceVersionConflictException;
 import com.iot.devices.management.registry_service.controller.errors.GlobalExceptionHandler;
 import com.iot.devices.management.registry_service.controller.util.CreateDeviceRequest;
 import com.iot.devices.management.registry_service.controller.util.PatchDeviceRequest;
+import com.iot.devices.management.registry_service.persistence.model.BulkRegistrationResult;
 import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceCursor;
+import com.iot.devices.management.registry_service.persistence.model.DeviceFilter;
+import com.iot.devices.management.registry_service.persistence.model.DeviceOwner;
+import com.iot.devices.management.registry_service.persistence.model.DevicePage;
+import com.iot.devices.management.registry_service.persistence.model.TelemetryPoint;
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.model.UserProjection;
 import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
@@ -13,6 +20,7 @@ import com.iot.devices.management.registry_service.persistence.model.enums.Devic
 import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
 import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
 import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.services.TelemetryHistoryService;
 import com.iot.devices.management.registry_service.persistence.services.UserService;
 import com.iot.devices.management.registry_service.security.*;
 import org.jetbrains.annotations.NotNull;
@@ -26,20 +34,33 @@ import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.testcontainers.shaded.com.google.common.collect.ImmutableList;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
+import static com.iot.devices.management.registry_service.controller.util.Utils.encodeCursor;
 import static java.time.OffsetDateTime.now;
+import static org.hamcrest.Matchers.containsString;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @ActiveProfiles("test")
@@ -53,7 +74,13 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         AppConfig.class,
         JwtAuthentificationFilter.class,
         SecurityProperties.class,
-        LogoutService.class
+        LogoutService.class,
+        AuthenticatedTokenCache.class,
+        TokenStateStore.class,
+        TokenRevocationWriter.class,
+        TokenStoreProperties.class,
+        PasswordHashingExecutor.class,
+        PasswordHashingProperties.class
 })
 class DeviceControllerTest {
 
@@ -66,6 +93,8 @@ class DeviceControllerTest {
     UserService userService;
     @MockitoBean
     TokenRepository tokenRepository;
+    @MockitoBean
+    TelemetryHistoryService telemetryHistoryService;
 
     String name = "Living Room Temperature Sensor";
     String serialNumber = "SN-8754-XYZ";
@@ -114,7 +143,7 @@ class DeviceControllerTest {
 
     @AfterEach
     void tearDown() {
-        verifyNoMoreInteractions(userService, deviceService, tokenRepository);
+        verifyNoMoreInteractions(userService, deviceService, tokenRepository, telemetryHistoryService);
     }
 
     @WithMockUser(username = "some_username", roles = "USER")
@@ -276,6 +305,35 @@ class DeviceControllerTest {
         verify(userService).findByUserId(USER.getId());
     }
 
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void patchDeviceVersionConflict() throws Exception {
+        String filledJson = """
+                {
+                  "id": "%s",
+                  "firmwareVersion": "1.58.5v",
+                  "ownerId": "%s",
+                  "version": 3
+                }
+                """.formatted(DEVICE.getId(), ownerId);
+        Device currentDevice = new Device(DEVICE.getId(), name, serialNumber,
+                DeviceManufacturer.valueOf(manufacturer), model, DeviceType.valueOf(deviceType),
+                location, new BigDecimal(latitude), new BigDecimal(longitude), null,
+                DeviceStatus.valueOf(status), now(), "1.60.0v", now(), now(), "{}");
+        currentDevice.setVersion(4L);
+        when(userService.findByUserId(UUID.fromString(ownerId))).thenReturn(Optional.of(USER));
+        when(deviceService.patch(any(PatchDeviceRequest.class), any(User.class)))
+                .thenThrow(new DeviceVersionConflictException(currentDevice));
+        mockMvc.perform(patch("/api/v1/devices")
+                        .contentType(APPLICATION_JSON)
+                        .content(filledJson))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.current.version").value(4))
+                .andExpect(jsonPath("$.current.firmwareVersion").value("1.60.0v"));
+        verify(deviceService).patch(argThat(request -> request.version() == 3L), any(User.class));
+        verify(userService).findByUserId(USER.getId());
+    }
+
     @WithMockUser(username = "some_username", roles = "ADMIN")
     @Test
     void patchDeviceWithoutUser() throws Exception {
@@ -304,56 +362,211 @@ class DeviceControllerTest {
     @Test
     void getDevice() throws Exception {
         DEVICE.setOwner(USER);
-        when(deviceService.findByDeviceId(any())).thenReturn(Optional.of(DEVICE));
-        when(userService.getUserProjectionByDevice(DEVICE.getId())).thenReturn(Optional.of(getUserProjection()));
+        when(deviceService.findByDeviceIdWithOwner(any())).thenReturn(Optional.of(DEVICE));
+        when(deviceService.findDeviceOwner(DEVICE.getId())).thenReturn(Optional.of(getDeviceOwner()));
         mockMvc.perform(get("/api/v1/devices/" + DEVICE.getId())
                         .contentType(APPLICATION_JSON))
                 .andExpect(status().isOk());
-        verify(deviceService).findByDeviceId(any());
-        verify(userService).getUserProjectionByDevice(any());
+        verify(deviceService).findByDeviceIdWithOwner(any());
+        verify(deviceService).findDeviceOwner(any());
     }
 
     @WithMockUser(username = "some_username", roles = "ADMIN")
     @Test
     void getDeviceAdmin() throws Exception {
-        when(deviceService.findByDeviceId(any())).thenReturn(Optional.of(DEVICE));
-        when(userService.getUserProjectionByDevice(DEVICE.getId())).thenReturn(Optional.of(getUserProjection()));
+        when(deviceService.findByDeviceIdWithOwner(any())).thenReturn(Optional.of(DEVICE));
+        when(deviceService.findDeviceOwner(DEVICE.getId())).thenReturn(Optional.of(getDeviceOwner()));
         mockMvc.perform(get("/api/v1/devices/" + DEVICE.getId())
                         .contentType(APPLICATION_JSON))
                 .andExpect(status().isOk());
-        verify(deviceService).findByDeviceId(any());
-        verify(userService).getUserProjectionByDevice(any());
+        verify(deviceService).findByDeviceIdWithOwner(any());
+        verify(deviceService).findDeviceOwner(any());
     }
 
     @WithMockUser(username = "some_username", roles = "USER")
     @Test
     void deleteDevice() throws Exception {
         DEVICE.setOwner(USER);
-        when(deviceService.findByDeviceId(any())).thenReturn(Optional.of(DEVICE));
         when(deviceService.removeById(any(), eq(USER))).thenReturn(1);
-        when(userService.getUserProjectionByDevice(DEVICE.getId())).thenReturn(Optional.of(getUserProjection()));
+        when(deviceService.findDeviceOwner(DEVICE.getId())).thenReturn(Optional.of(getDeviceOwner()));
         mockMvc.perform(delete("/api/v1/devices/" + DEVICE.getId())
                         .contentType(APPLICATION_JSON))
                 .andExpect(status().isNoContent());
         verify(deviceService).removeById(any(), eq(getUserProjection()));
-        verify(deviceService).findByDeviceId(any());
-        verify(userService).getUserProjectionByDevice(any());
+        verify(deviceService).findDeviceOwner(any());
+    }
+
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void createDevicesBulk() throws Exception {
+        final String otherOwnerId = UUID.randomUUID().toString();
+        final String bulkJson = "{\"devices\": [" + filledJson + ", " + json.formatted(name, "SN-OTHER", manufacturer,
+                model, deviceType, location, latitude, longitude, otherOwnerId, status, lastActiveAt, firmwareVersion) + "]}";
+        when(userService.findAllByUserIds(any())).thenReturn(List.of(USER));
+        when(deviceService.saveAllAndSendMessage(any())).thenReturn(List.of(BulkRegistrationResult.created(0, DEVICE)));
+        mockMvc.perform(post("/api/v1/devices/bulk")
+                        .contentType(APPLICATION_JSON)
+                        .content(bulkJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[0].deviceId").value(DEVICE.getId().toString()))
+                .andExpect(jsonPath("$.results[1].status").value("FORBIDDEN"))
+                .andExpect(jsonPath("$.results[1].serialNumber").value("SN-OTHER"));
+        verify(userService).findAllByUserIds(Set.of(USER.getId(), UUID.fromString(otherOwnerId)));
+        verify(deviceService).saveAllAndSendMessage(argThat(registrations -> registrations.size() == 1
+                && registrations.getFirst().getIndex() == 0 && registrations.getFirst().getOwner() == USER));
+    }
+
+    @WithMockUser(username = "some_username", roles = "ADMIN")
+    @Test
+    void createDevicesBulkEmpty() throws Exception {
+        mockMvc.perform(post("/api/v1/devices/bulk")
+                        .contentType(APPLICATION_JSON)
+                        .content("{\"devices\": []}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void getDevicesOfUser() throws Exception {
+        final DevicePage page = new DevicePage(List.of(DEVICE), DeviceCursor.after(DEVICE));
+        when(userService.findByUsername("some_username")).thenReturn(Optional.of(USER));
+        when(deviceService.findDevices(any(), isNull(), eq(1))).thenReturn(page);
+        mockMvc.perform(get("/api/v1/devices")
+                        .param("deviceType", deviceType)
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.devices[0].id").value(DEVICE.getId().toString()))
+                .andExpect(jsonPath("$.nextCursor").value(encodeCursor(DeviceCursor.after(DEVICE))));
+        verify(userService).findByUsername("some_username");
+        verify(deviceService).findDevices(new DeviceFilter(DeviceType.valueOf(deviceType), null, null, USER.getId(), null, null), null, 1);
+    }
+
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void getDevicesOfAnotherOwner() throws Exception {
+        when(userService.findByUsername("some_username")).thenReturn(Optional.of(USER));
+        mockMvc.perform(get("/api/v1/devices")
+                        .param("ownerId", UUID.randomUUID().toString()))
+                .andExpect(status().isForbidden());
+        verify(userService).findByUsername("some_username");
+    }
+
+    @WithMockUser(username = "some_username", roles = "ADMIN")
+    @Test
+    void getDevicesAdminNextPage() throws Exception {
+        final DeviceCursor cursor = DeviceCursor.after(DEVICE);
+        when(deviceService.findDevices(any(), eq(cursor), eq(100))).thenReturn(new DevicePage(List.of(), null));
+        mockMvc.perform(get("/api/v1/devices")
+                        .param("status", status)
+                        .param("cursor", encodeCursor(cursor)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.devices").isEmpty())
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+        verify(deviceService).findDevices(new DeviceFilter(null, DeviceStatus.valueOf(status), null, null, null, null), cursor, 100);
+    }
+
+    @WithMockUser(username = "some_username", roles = "ADMIN")
+    @Test
+    void getDevicesWithMalformedCursor() throws Exception {
+        mockMvc.perform(get("/api/v1/devices")
+                        .param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @WithMockUser(username = "some_username", roles = "ADMIN")
+    @Test
+    void streamDevices() throws Exception {
+        doAnswer(invocation -> {
+            Consumer<Device> consumer = invocation.getArgument(2);
+            consumer.accept(DEVICE);
+            return null;
+        }).when(deviceService).streamDevices(any(), isNull(), any());
+        MvcResult result = mockMvc.perform(get("/api/v1/devices")
+                        .accept(APPLICATION_NDJSON)
+                        .param("manufacturer", manufacturer))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"id\":\"" + DEVICE.getId() + "\"")));
+        verify(deviceService).streamDevices(eq(new DeviceFilter(null, null, DeviceManufacturer.valueOf(manufacturer), null, null, null)),
+                isNull(), any());
+    }
+
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void getTelemetryHistory() throws Exception {
+        final OffsetDateTime from = OffsetDateTime.parse("2025-06-25T00:00:00Z");
+        final OffsetDateTime to = OffsetDateTime.parse("2025-06-25T01:00:00Z");
+        when(deviceService.findDeviceOwner(DEVICE.getId())).thenReturn(Optional.of(getDeviceOwner()));
+        doAnswer(invocation -> {
+            Consumer<TelemetryPoint> consumer = invocation.getArgument(4);
+            consumer.accept(new TelemetryPoint(from, 3, "{\"temperature\":21.5}"));
+            consumer.accept(new TelemetryPoint(from.plusMinutes(5), 1, "{\"temperature\":22.0}"));
+            return null;
+        }).when(telemetryHistoryService).streamDownsampled(eq(DEVICE.getId()), eq(from), eq(to), eq(Duration.ofMinutes(5)), any());
+
+        MvcResult result = mockMvc.perform(get("/api/v1/devices/" + DEVICE.getId() + "/telemetry")
+                        .param("from", from.toString())
+                        .param("to", to.toString())
+                        .param("step", "5m"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(APPLICATION_NDJSON))
+                .andExpect(content().string(containsString("\"samples\":3,\"telemetry\":{\"temperature\":21.5}}\n")))
+                .andExpect(content().string(containsString("\"samples\":1,\"telemetry\":{\"temperature\":22.0}}\n")));
+        verify(deviceService).findDeviceOwner(any());
+        verify(telemetryHistoryService).validateRange(from, to, Duration.ofMinutes(5));
+        verify(telemetryHistoryService).streamDownsampled(eq(DEVICE.getId()), eq(from), eq(to), eq(Duration.ofMinutes(5)), any());
+    }
+
+    @WithMockUser(username = "some_username", roles = "ADMIN")
+    @Test
+    void getTelemetryHistoryInvalidStep() throws Exception {
+        when(deviceService.findDeviceOwner(DEVICE.getId())).thenReturn(Optional.of(getDeviceOwner()));
+        mockMvc.perform(get("/api/v1/devices/" + DEVICE.getId() + "/telemetry")
+                        .param("from", "2025-06-25T00:00:00Z")
+                        .param("to", "2025-06-25T01:00:00Z")
+                        .param("step", "five minutes"))
+                .andExpect(status().isBadRequest());
+        verify(deviceService).findDeviceOwner(any());
+    }
+
+    @WithMockUser(username = "some_username", roles = "USER")
+    @Test
+    void getTelemetryHistoryOfMissingDevice() throws Exception {
+        when(deviceService.findDeviceOwner(any())).thenReturn(Optional.empty());
+        mockMvc.perform(get("/api/v1/devices/" + DEVICE.getId() + "/telemetry")
+                        .param("from", "2025-06-25T00:00:00Z")
+                        .param("to", "2025-06-25T01:00:00Z")
+                        .param("step", "PT5M"))
+                .andExpect(status().isNotFound());
+        verify(deviceService).findDeviceOwner(any());
     }
 
     private @NotNull UserProjection getUserProjection() {
         return new UserProjection(USER.getId(), USER.getUsername(), USER.getUserRole());
     }
 
+    private @NotNull DeviceOwner getDeviceOwner() {
+        return new DeviceOwner(DEVICE.getId(), USER.getId(), USER.getUsername(), USER.getUserRole());
+    }
+
     @WithMockUser(username = "some_username", roles = "ADMIN")
     @Test
     void deleteDeviceAdmin() throws Exception {
-        when(deviceService.findByDeviceId(any())).thenReturn(Optional.of(DEVICE));
+        when(deviceService.findDeviceOwner(DEVICE.getId())).thenReturn(Optional.of(new DeviceOwner(DEVICE.getId(), null, null, null)));
         when(deviceService.removeById(any(), isNull())).thenReturn(1);
         mockMvc.perform(delete("/api/v1/devices/" + DEVICE.getId())
                         .contentType(APPLICATION_JSON))
                 .andExpect(status().isNoContent());
         verify(deviceService).removeById(any(), isNull());
-        verify(deviceService).findByDeviceId(any());
-        verify(userService).getUserProjectionByDevice(any());
+        verify(deviceService).findDeviceOwner(any());
     }
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.iot.devices.management.registry_service.controller;
 import com.iot.devices.management.registry_service.controller.errors.GlobalExceptionHandler;
 import com.iot.devices.management.registry_service.controller.util.CreateUserRequest;
 import com.iot.devices.management.registry_service.controller.util.PatchUserRequest;
+import com.iot.devices.management.registry_service.persistence.model.Token;
 import com.iot.devices.management.registry_service.persistence.model.User;
 import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
 import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
@@ -26,10 +27,12 @@ import java.util.HashSet;
 import java.util.Optional;
 import java.util.UUID;
 
+import static com.iot.devices.management.registry_service.security.JwtAuthentificationFilter.TOKEN_PREFIX;
 import static java.time.OffsetDateTime.now;
 import static org.hibernate.internal.util.collections.CollectionHelper.listOf;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
 import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -48,12 +51,22 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
         AppConfig.class,
         JwtAuthentificationFilter.class,
         SecurityProperties.class,
-        LogoutService.class
+        LogoutService.class,
+        AuthenticatedTokenCache.class,
+        TokenStateStore.class,
+        TokenRevocationWriter.class,
+        TokenStoreProperties.class,
+        PasswordHashingExecutor.class,
+        PasswordHashingProperties.class
 })
 class UserControllerTest {
 
     @Autowired
     MockMvc mockMvc;
+    @Autowired
+    JwtService jwtService;
+    @Autowired
+    TokenStateStore tokenStateStore;
 
     @MockitoBean
     UserService userService;
@@ -263,6 +276,44 @@ class UserControllerTest {
         verifyNoMoreInteractions(userService);
     }
 
+    @Test
+    void getMeWithCachedToken() throws Exception {
+        String jwt = jwtService.generateTokens(USER).getAccessToken();
+        when(userService.findByUsername(username)).thenReturn(Optional.of(USER));
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/v1/users/me")
+                            .header(AUTHORIZATION, TOKEN_PREFIX + jwt)
+                            .contentType(APPLICATION_JSON))
+                    .andExpect(status().isOk());
+        }
+        //user is loaded by the filter only for the first request, the controller loads it for both,
+        //the issued token is indexed, so it is not looked up in db
+        verify(userService, times(3)).findByUsername(username);
+        verify(tokenRepository).saveAll(anyList());
+    }
+
+    @Test
+    void getMeWithRevokedToken() throws Exception {
+        User revokedUser = new User(UUID.randomUUID(), "revoked_user", firstName, lastName, "revoked@gmail.com", phone,
+                address, passwordHash, UserRole.USER, now(), now(), now(), new HashSet<>(), new ArrayList<>());
+        String jwt = jwtService.generateTokens(revokedUser).getAccessToken();
+        tokenStateStore.revokeAllUserTokens(revokedUser.getId());
+        verify(tokenRepository, timeout(5000)).revokeAllByUserIdIssuedBefore(eq(revokedUser.getId()), any());
+        verify(tokenRepository).notifyTokensRevoked(eq(revokedUser.getId()), anyLong());
+        when(userService.findByUsername(revokedUser.getUsername())).thenReturn(Optional.of(revokedUser));
+        when(tokenRepository.findByTokenHash(TokenStateStore.hash(jwt))).thenReturn(Optional.of(Token.builder()
+                .tokenHash(TokenStateStore.hash(jwt)).user(revokedUser).revoked(true).expired(true).refresh(false).build()));
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/v1/users/me")
+                            .header(AUTHORIZATION, TOKEN_PREFIX + jwt)
+                            .contentType(APPLICATION_JSON))
+                    .andExpect(status().isForbidden());
+        }
+        verify(userService).findByUsername(revokedUser.getUsername());
+        verify(tokenRepository).findByTokenHash(TokenStateStore.hash(jwt));
+        verify(tokenRepository).saveAll(anyList());
+    }
+
     @WithMockUser(roles = "ADMIN", username = "jonndoe123")
     @Test
     void findByEmail() throws Exception {
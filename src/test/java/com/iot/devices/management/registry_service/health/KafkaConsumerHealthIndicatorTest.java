@@ -0,0 +1,40 @@
+package com.iot.devices.management.registry_service.health;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.Status;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KafkaConsumerHealthIndicatorTest {
+
+    KafkaConsumerStatusMonitor statusMonitor = new KafkaConsumerStatusMonitor();
+    KafkaConsumerHealthIndicator healthIndicator = new KafkaConsumerHealthIndicator(statusMonitor);
+
+    @Test
+    void downWhenNoConsumerIsStarted() {
+        assertEquals(Status.DOWN, healthIndicator.health().getStatus());
+    }
+
+    @Test
+    void upWhenAnyConsumerHasPartitions() {
+        statusMonitor.setAssigned("consumer-0", false);
+        statusMonitor.setAssigned("consumer-1", true);
+
+        Health health = healthIndicator.health();
+
+        assertEquals(Status.UP, health.getStatus());
+        assertEquals("partitions are not assigned", health.getDetails().get("consumer-0"));
+        assertEquals("partitions are assigned", health.getDetails().get("consumer-1"));
+    }
+
+    @Test
+    void downWhenAllConsumersLostPartitions() {
+        statusMonitor.setAssigned("consumer-0", true);
+        statusMonitor.setAssigned("consumer-1", true);
+        statusMonitor.setAssigned("consumer-0", false);
+        statusMonitor.setAssigned("consumer-1", false);
+
+        assertEquals(Status.DOWN, healthIndicator.health().getStatus());
+    }
+}
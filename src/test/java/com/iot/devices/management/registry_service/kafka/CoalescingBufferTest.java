@@ -0,0 +1,117 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import com.iot.devices.management.registry_service.persistence.OffsetTracker;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoalescingBufferTest {
+
+    private static final String TOPIC = "iot-devices-data";
+    private static final TopicPartition PARTITION_0 = new TopicPartition(TOPIC, 0);
+    private static final TopicPartition PARTITION_1 = new TopicPartition(TOPIC, 1);
+
+    CoalescingBuffer coalescingBuffer = new CoalescingBuffer(500, 3);
+
+    @Test
+    void partialUpdatesAreMergedIntoNewestRecord() {
+        String deviceId = UUID.randomUUID().toString();
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat thermostat1 = new Thermostat(deviceId, 21.0f, 24.0f, 40.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+        Thermostat thermostat2 = new Thermostat(deviceId, 22.0f, null, null,
+                null, DeviceStatus.ONLINE, "2.123v", nowTime.plusSeconds(1));
+
+        assertEquals(0, coalescingBuffer.add(poll(PARTITION_0, record(0, 3, 1000, thermostat1)), 0));
+        assertEquals(1, coalescingBuffer.add(poll(PARTITION_0, record(0, 4, 2000, thermostat2)), 100));
+
+        assertEquals(1, coalescingBuffer.size());
+        Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> drained = coalescingBuffer.drain();
+        ConsumerRecord<String, SpecificRecord> merged = drained.get(PARTITION_0).get(deviceId);
+        Thermostat expected = new Thermostat(deviceId, 22.0f, 24.0f, 40.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime.plusSeconds(1));
+        assertEquals(expected, merged.value());
+        assertEquals(4, merged.offset());
+        assertEquals(3, OffsetTracker.firstOffset(merged));
+        assertEquals(0, coalescingBuffer.size());
+    }
+
+    @Test
+    void lateRecordDoesNotOverrideNewerFields() {
+        String deviceId = UUID.randomUUID().toString();
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat newer = new Thermostat(deviceId, 22.0f, null, 40.0f,
+                ThermostatMode.HEAT, DeviceStatus.ONLINE, "2.123v", nowTime.plusSeconds(1));
+        Thermostat older = new Thermostat(deviceId, 21.0f, 24.0f, 35.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+
+        coalescingBuffer.add(poll(PARTITION_0, record(0, 5, 2000, newer), record(0, 6, 1000, older)), 0);
+
+        ConsumerRecord<String, SpecificRecord> merged = coalescingBuffer.drain().get(PARTITION_0).get(deviceId);
+        Thermostat expected = new Thermostat(deviceId, 22.0f, 24.0f, 40.0f,
+                ThermostatMode.HEAT, DeviceStatus.ONLINE, "2.123v", nowTime.plusSeconds(1));
+        assertEquals(expected, merged.value());
+        assertEquals(6, merged.offset());
+        assertEquals(5, OffsetTracker.firstOffset(merged));
+    }
+
+    @Test
+    void flushIsDueOnTimeOrSize() {
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        assertFalse(coalescingBuffer.isFlushDue(10_000));
+        assertEquals(2000, coalescingBuffer.msUntilFlush(10_000, 2000));
+
+        coalescingBuffer.add(poll(PARTITION_0, record(0, 0, 1000, thermostat(nowTime))), 1000);
+        assertFalse(coalescingBuffer.isFlushDue(1200));
+        assertEquals(300, coalescingBuffer.msUntilFlush(1200, 2000));
+        assertTrue(coalescingBuffer.isFlushDue(1500));
+
+        coalescingBuffer.add(poll(PARTITION_1, record(1, 0, 1000, thermostat(nowTime)), record(1, 1, 1000, thermostat(nowTime))), 1200);
+        assertTrue(coalescingBuffer.isFlushDue(1200));
+    }
+
+    @Test
+    void onlyRevokedPartitionsAreDrained() {
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        coalescingBuffer.add(poll(PARTITION_0, record(0, 0, 1000, thermostat(nowTime))), 0);
+        coalescingBuffer.add(poll(PARTITION_1, record(1, 0, 1000, thermostat(nowTime))), 0);
+
+        Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> drained = coalescingBuffer.drain(List.of(PARTITION_1));
+
+        assertEquals(1, drained.size());
+        assertTrue(drained.containsKey(PARTITION_1));
+        assertEquals(1, coalescingBuffer.size());
+        assertTrue(coalescingBuffer.drain().containsKey(PARTITION_0));
+    }
+
+    private static Thermostat thermostat(Instant lastUpdated) {
+        return new Thermostat(UUID.randomUUID().toString(), 21.0f, 24.0f, 40.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", lastUpdated);
+    }
+
+    private static ConsumerRecord<String, SpecificRecord> record(int partition, long offset, long timestamp, Thermostat thermostat) {
+        return new ConsumerRecord<>(TOPIC, partition, offset, timestamp, TimestampType.CREATE_TIME, 0, 0,
+                thermostat.getDeviceId(), thermostat, new RecordHeaders(), Optional.empty());
+    }
+
+    @SafeVarargs
+    private static ConsumerRecords<String, SpecificRecord> poll(TopicPartition partition, ConsumerRecord<String, SpecificRecord>... records) {
+        return new ConsumerRecords<>(Map.of(partition, List.of(records)));
+    }
+}
@@ -0,0 +1,67 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterDeprecatedRecordsBenchmark {
+
+    private static final String TOPIC = "iot-devices-data";
+
+    @Param({"500", "5000"})
+    int recordsCount;
+
+    //how many records of the same device are in one poll
+    @Param({"1", "10"})
+    int updatesPerDevice;
+
+    @Param({"1", "6"})
+    int partitionsCount;
+
+    ConsumerRecords<String, SpecificRecord> records;
+
+    @Setup
+    public void setUp() {
+        final Map<TopicPartition, List<ConsumerRecord<String, SpecificRecord>>> recordsByPartition = new HashMap<>();
+        final String[] deviceIds = new String[Math.max(1, recordsCount / updatesPerDevice)];
+        for (int i = 0; i < deviceIds.length; i++) {
+            deviceIds[i] = UUID.randomUUID().toString();
+        }
+        final Instant nowTime = Instant.now();
+        final Random random = new Random(42);
+        for (int offset = 0; offset < recordsCount; offset++) {
+            final String deviceId = deviceIds[random.nextInt(deviceIds.length)];
+            final int partition = Math.floorMod(deviceId.hashCode(), partitionsCount);
+            final Thermostat thermostat = new Thermostat(deviceId, 21.0f, 24.0f, 40.0f,
+                    ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime.plusMillis(offset));
+            //timestamps are shuffled a bit, so both branches of the filter are taken
+            final long timestamp = nowTime.toEpochMilli() + offset + random.nextInt(50);
+            recordsByPartition.computeIfAbsent(new TopicPartition(TOPIC, partition), p -> new ArrayList<>())
+                    .add(new ConsumerRecord<>(TOPIC, partition, offset, timestamp, TimestampType.CREATE_TIME, 0, 0,
+                            deviceId, thermostat, new RecordHeaders(), Optional.empty()));
+        }
+        records = new ConsumerRecords<>(recordsByPartition);
+    }
+
+    @Benchmark
+    public Map<TopicPartition, Map<String, ConsumerRecord<String, SpecificRecord>>> filterDeprecatedRecords() {
+        return ConsumerLoop.filterDeprecatedRecords(records);
+    }
+}
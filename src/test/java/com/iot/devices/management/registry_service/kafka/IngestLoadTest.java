@@ -0,0 +1,348 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.RegistryServiceApplication;
+import com.iot.devices.management.registry_service.kafka.properties.KafkaConsumerProperties;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.OffsetSpec;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.iot.devices.DoorState.OPEN;
+import static java.util.stream.Collectors.toMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//mvn -Pload-test test -Dload.devices=10000 -Dload.records=1000000 -Dload.rate=20000 [-Dparallel.patcher.mode=BATCHED ...]
+@Slf4j
+@Tag("load")
+@ActiveProfiles("test")
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@SpringBootTest(classes = {
+        RegistryServiceApplication.class,
+        IngestLoadTest.TestPersistenceConfig.class
+}, properties = {
+        "spring.jpa.show-sql=false",
+        "logging.level.com.iot.devices.management.registry_service=WARN",
+        "kafka.consumer.concurrency=${load.consumers:3}",
+        "kafka.consumer.poll-timeout-ms=200"
+})
+@TestPropertySource("classpath:application-test.yaml")
+@Testcontainers
+class IngestLoadTest {
+
+    private static final String TOPIC = "iot-devices-data";
+    private static final int PARTITIONS = Integer.getInteger("load.partitions", 6);
+    private static final DeviceType[] DEVICE_TYPES = DeviceType.values();
+
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+    @MockitoBean
+    AlertingRulesKafkaProducer alertingRulesKafkaProducer;
+    @MockitoBean
+    DeadLetterProducer deadLetterProducer;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+    @Autowired
+    MeterRegistry meterRegistry;
+    @Autowired
+    KafkaConsumerProperties consumerProperties;
+    @Autowired
+    KafkaProducerProperties producerProperties;
+
+    @Value("${load.devices:10000}")
+    int devicesCount;
+    @Value("${load.records:1000000}")
+    long recordsCount;
+    @Value("${load.rate:20000}")
+    int recordsPerSecond;
+    @Value("${load.drain.timeout.minutes:30}")
+    long drainTimeoutMinutes;
+
+    @Container
+    static KafkaContainer kafkaContainer = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.9.0"));
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+            .withInitScript("schema.sql");
+
+    @DynamicPropertySource
+    static void registerProperties(DynamicPropertyRegistry registry) {
+        registry.add("kafka.consumer.properties.bootstrap.servers", kafkaContainer::getBootstrapServers);
+        registry.add("kafka.producer.test.properties.bootstrap.servers", kafkaContainer::getBootstrapServers);
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    //topic has to exist with all partitions before consumers subscribe, otherwise it is auto-created with one
+    @BeforeAll
+    static void createTopic() throws ExecutionException, InterruptedException {
+        try (AdminClient adminClient = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaContainer.getBootstrapServers()))) {
+            adminClient.createTopics(List.of(new NewTopic(TOPIC, PARTITIONS, (short) 1))).all().get();
+        }
+    }
+
+    @Test
+    void sustainedIngest() throws Exception {
+        final List<UUID> deviceIds = seedDevices();
+        final AtomicLong maxLag = new AtomicLong();
+        final long startNanos = System.nanoTime();
+        try (AdminClient adminClient = AdminClient.create(Map.of(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, kafkaContainer.getBootstrapServers()))) {
+            final Thread lagSampler = Thread.ofPlatform().name("lag-sampler").daemon().start(() -> sampleLag(adminClient, maxLag));
+            produce(deviceIds);
+            final long producedNanos = System.nanoTime();
+            log.warn("Produced {} records in {} ms", recordsCount, TimeUnit.NANOSECONDS.toMillis(producedNanos - startNanos));
+
+            final long deadlineNanos = producedNanos + TimeUnit.MINUTES.toNanos(drainTimeoutMinutes);
+            long lag = consumerLag(adminClient);
+            while (lag > 0 && System.nanoTime() < deadlineNanos) {
+                Thread.sleep(200);
+                lag = consumerLag(adminClient);
+            }
+            final long elapsedNanos = System.nanoTime() - startNanos;
+            lagSampler.interrupt();
+
+            final String report = report(elapsedNanos, maxLag.get(), lag);
+            log.warn("Ingest load test report:\n{}", report);
+            writeReport(report);
+
+            assertEquals(0, lag, "Consumers did not catch up within " + drainTimeoutMinutes + " minutes");
+            assertEquals(devicesCount, jdbcTemplate.queryForObject(
+                    "SELECT count(*) FROM devices WHERE telemetry <> '{}'::jsonb", Integer.class));
+        }
+    }
+
+    private List<UUID> seedDevices() {
+        final List<UUID> deviceIds = new ArrayList<>(devicesCount);
+        for (int i = 0; i < devicesCount; i++) {
+            deviceIds.add(UUID.randomUUID());
+        }
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO devices (id, name, serial_number, manufacturer, device_type, status, telemetry)
+                        VALUES (?, ?, ?, 'BOSCH', CAST(? AS device_types), 'OFFLINE', '{}')
+                        """, deviceIds, 1000, (ps, id) -> {
+                    ps.setObject(1, id);
+                    ps.setString(2, "load-test-device");
+                    ps.setString(3, id.toString());
+                    ps.setString(4, deviceType(id).name());
+                });
+        log.warn("Seeded {} devices", devicesCount);
+        return deviceIds;
+    }
+
+    //records are sent asynchronously and paced against the schedule, so producer hiccups are caught up instead of lowering the rate
+    private void produce(List<UUID> deviceIds) {
+        final Properties properties = new Properties();
+        properties.putAll(producerProperties.getProperties());
+        properties.put(ProducerConfig.LINGER_MS_CONFIG, "10");
+        properties.put(ProducerConfig.BATCH_SIZE_CONFIG, "262144");
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(1) / recordsPerSecond;
+        final Random random = new Random(42);
+        try (KafkaProducer<String, SpecificRecord> producer = new KafkaProducer<>(properties)) {
+            final long startNanos = System.nanoTime();
+            for (long i = 0; i < recordsCount; i++) {
+                final long delayNanos = startNanos + i * intervalNanos - System.nanoTime();
+                if (delayNanos > 0) {
+                    LockSupport.parkNanos(delayNanos);
+                }
+                final UUID deviceId = deviceIds.get(random.nextInt(deviceIds.size()));
+                producer.send(new ProducerRecord<>(TOPIC, deviceId.toString(), telemetry(deviceId, random)), (metadata, e) -> {
+                    if (e != null) {
+                        log.error("Failed to send load test record", e);
+                    }
+                });
+            }
+            producer.flush();
+        }
+    }
+
+    private void sampleLag(AdminClient adminClient, AtomicLong maxLag) {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                maxLag.accumulateAndGet(consumerLag(adminClient), Math::max);
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                log.warn("Failed to sample consumer lag", e);
+            }
+        }
+    }
+
+    private long consumerLag(AdminClient adminClient) throws ExecutionException, InterruptedException {
+        final String groupId = consumerProperties.getProperties().get("group.id");
+        final Map<TopicPartition, OffsetAndMetadata> committedOffsets = adminClient.listConsumerGroupOffsets(groupId)
+                .partitionsToOffsetAndMetadata().get();
+        final Map<TopicPartition, OffsetSpec> latestOffsetsRequest = new HashMap<>();
+        for (int partition = 0; partition < PARTITIONS; partition++) {
+            latestOffsetsRequest.put(new TopicPartition(TOPIC, partition), OffsetSpec.latest());
+        }
+        long lag = 0;
+        for (var latestOffset : adminClient.listOffsets(latestOffsetsRequest).all().get().entrySet()) {
+            final OffsetAndMetadata committed = committedOffsets.get(latestOffset.getKey());
+            lag += latestOffset.getValue().offset() - ((committed != null) ? committed.offset() : 0);
+        }
+        return lag;
+    }
+
+    private String report(long elapsedNanos, long maxLag, long finalLag) {
+        final double elapsedSec = elapsedNanos / 1_000_000_000.0;
+        final Map<String, String> report = new LinkedHashMap<>();
+        report.put("records", String.valueOf(recordsCount));
+        report.put("devices", String.valueOf(devicesCount));
+        report.put("target.rate.records.per.sec", String.valueOf(recordsPerSecond));
+        report.put("sustained.rate.records.per.sec", String.format("%.0f", recordsCount / elapsedSec));
+        report.put("elapsed.sec", String.format("%.1f", elapsedSec));
+        report.put("consumer.lag.max", String.valueOf(maxLag));
+        report.put("consumer.lag.final", String.valueOf(finalLag));
+        final DistributionSummary endToEndLatency = meterRegistry.find("rs_end_to_end_latency").summary();
+        if (endToEndLatency != null) {
+            final Map<Double, Double> percentiles = percentiles(endToEndLatency.takeSnapshot());
+            report.put("end.to.end.latency.p50.ms", String.format("%.0f", percentiles.getOrDefault(0.5, Double.NaN)));
+            report.put("end.to.end.latency.p99.ms", String.format("%.0f", percentiles.getOrDefault(0.99, Double.NaN)));
+        }
+        report.put("db.time.per.record.ms", String.format("%.3f", dbTimePerRecordMs()));
+        report.put("retries", String.format("%.0f", counter("rs_patch_retries_count")));
+        final StringBuilder reportBuilder = new StringBuilder();
+        report.forEach((key, value) -> reportBuilder.append(key).append('=').append(value).append('\n'));
+        return reportBuilder.toString();
+    }
+
+    //row modes record updating time per device type, copy ingest records it per batch
+    private double dbTimePerRecordMs() {
+        double totalTimeMs = 0;
+        long records = 0;
+        for (DistributionSummary summary : meterRegistry.find("rs_device_updating_time").summaries()) {
+            totalTimeMs += summary.totalAmount();
+            records += summary.count();
+        }
+        final DistributionSummary copyIngestTime = meterRegistry.find("rs_copy_ingest_time").summary();
+        if (copyIngestTime != null && copyIngestTime.count() > 0) {
+            totalTimeMs += copyIngestTime.totalAmount();
+            records += (long) counter("rs_copy_ingested_records_count");
+        }
+        return (records > 0) ? totalTimeMs / records : Double.NaN;
+    }
+
+    private double counter(String name) {
+        return Optional.ofNullable(meterRegistry.find(name).counter())
+                .map(Counter::count)
+                .orElse(0.0);
+    }
+
+    private static Map<Double, Double> percentiles(HistogramSnapshot snapshot) {
+        return Arrays.stream(snapshot.percentileValues())
+                .collect(toMap(ValueAtPercentile::percentile, ValueAtPercentile::value));
+    }
+
+    private static void writeReport(String report) throws IOException {
+        final Path reportPath = Path.of("target", "load-test", "ingest-report-" + Instant.now().toEpochMilli() + ".properties");
+        Files.createDirectories(reportPath.getParent());
+        try (Writer writer = Files.newBufferedWriter(reportPath)) {
+            writer.write(report);
+        }
+        log.warn("Ingest load test report is written to {}", reportPath.toAbsolutePath());
+    }
+
+    private static DeviceType deviceType(UUID deviceId) {
+        return DEVICE_TYPES[Math.floorMod(deviceId.hashCode(), DEVICE_TYPES.length)];
+    }
+
+    private static SpecificRecord telemetry(UUID deviceId, Random random) {
+        final String id = deviceId.toString();
+        final Instant now = Instant.now();
+        final DeviceStatus status = random.nextInt(10) == 0 ? DeviceStatus.OFFLINE : DeviceStatus.ONLINE;
+        return switch (deviceType(deviceId)) {
+            case DOOR_SENSOR -> new DoorSensor(id, OPEN, random.nextInt(100), false, status, now, "1.0.2v", now);
+            case ENERGY_METER -> EnergyMeter.newBuilder()
+                    .setDeviceId(id)
+                    .setStatus(status)
+                    .setLastUpdated(now)
+                    .setVoltage(220 + random.nextFloat() * 10)
+                    .setCurrent(random.nextFloat() * 16)
+                    .setPower(random.nextFloat() * 3500)
+                    .setEnergyConsumed(random.nextFloat() * 10000)
+                    .build();
+            case SMART_LIGHT -> SmartLight.newBuilder()
+                    .setDeviceId(id)
+                    .setStatus(status)
+                    .setLastUpdated(now)
+                    .setIsOn(random.nextBoolean())
+                    .setBrightness(random.nextInt(100))
+                    .setColor("green")
+                    .setMode(SmartLightMode.AMBIENT)
+                    .build();
+            case SMART_PLUG -> new SmartPlug(id, random.nextBoolean(), 230f, random.nextFloat() * 16, random.nextFloat() * 100,
+                    status, "1.0.2v", now);
+            case SOIL_MOISTURE_SENSOR -> SoilMoistureSensor.newBuilder()
+                    .setDeviceId(id)
+                    .setStatus(status)
+                    .setLastUpdated(now)
+                    .setMoisturePercentage(random.nextFloat() * 100)
+                    .setSoilTemperature(15 + random.nextFloat() * 10)
+                    .setBatteryLevel(random.nextInt(100))
+                    .build();
+            case TEMPERATURE_SENSOR -> TemperatureSensor.newBuilder()
+                    .setDeviceId(id)
+                    .setStatus(status)
+                    .setLastUpdated(now)
+                    .setTemperature(18 + random.nextFloat() * 10)
+                    .setUnit(TempUnit.C)
+                    .build();
+            case THERMOSTAT -> new Thermostat(id, 18 + random.nextFloat() * 10, 24.0f, random.nextFloat() * 100,
+                    ThermostatMode.COOL, status, "2.123v", now);
+        };
+    }
+
+    @Configuration
+    @EnableJpaRepositories(basePackages = "com.iot.devices.management.registry_service.persistence.repos")
+    @EntityScan(basePackages = "com.iot.devices.management.registry_service.persistence.model")
+    static class TestPersistenceConfig {}
+}
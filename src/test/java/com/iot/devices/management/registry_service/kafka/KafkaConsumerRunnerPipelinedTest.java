@@ -0,0 +1,156 @@
+package com.iot.devices.management.registry_service.kafka;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.health.HealthConfig;
+import com.iot.devices.management.registry_service.kafka.properties.KafkaConsumerProperties;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.ParallelDevicePatcher;
+import com.iot.devices.management.registry_service.persistence.TelemetryCopyIngestor;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.*;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.KafkaContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.iot.devices.DoorState.OPEN;
+import static java.lang.Thread.sleep;
+import static java.util.stream.Collectors.toMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.*;
+
+@Slf4j
+@ActiveProfiles("test")
+@SpringBootTest(
+        classes = {
+                KafkaConsumerRunner.class,
+                KafkaConsumerConfig.class,
+                TestKafkaProducer.class,
+                KafkaProducerProperties.class,
+                KafkaConsumerProperties.class,
+                HealthConfig.class,
+                SimpleMeterRegistry.class,
+                MockClock.class
+        },
+        properties = {
+                "kafka.consumer.pipeline.enabled=true",
+                "kafka.consumer.pipeline.queue-capacity=1"
+        })
+@Testcontainers
+class KafkaConsumerRunnerPipelinedTest {
+
+    @MockitoBean
+    ParallelDevicePatcher parallelDevicePatcher;
+    @MockitoBean
+    TelemetryCopyIngestor telemetryCopyIngestor;
+    @MockitoBean
+    KpiMetricLogger kpiMetricLogger;
+    @MockitoBean
+    DatabaseCircuitBreaker databaseCircuitBreaker;
+
+    @Autowired
+    TestKafkaProducer kafkaProducer;
+
+    @Captor
+    ArgumentCaptor<Map<String, ConsumerRecord<String, SpecificRecord>>> recordsCaptor;
+
+    @Container
+    static KafkaContainer kafkaContainer = new KafkaContainer(DockerImageName.parse("confluentinc/cp-kafka:7.9.0"));
+
+    @DynamicPropertySource
+    static void kafkaProps(DynamicPropertyRegistry registry) {
+        registry.add("kafka.consumer.properties.bootstrap.servers", kafkaContainer::getBootstrapServers);
+        registry.add("kafka.producer.test.properties.bootstrap.servers", kafkaContainer::getBootstrapServers);
+    }
+
+    @BeforeAll
+    static void start() {
+        kafkaContainer.start();
+    }
+
+    @AfterAll
+    static void close() {
+        kafkaContainer.close();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reset(parallelDevicePatcher);
+    }
+
+    @Test
+    void slowPersistenceDoesNotLoseMessages() {
+        when(parallelDevicePatcher.patch(anyMap())).thenAnswer(x -> {
+            sleep(500);
+            Map<String, ConsumerRecord<String, SpecificRecord>> records = x.getArgument(0);
+            return records.values().stream()
+                    .map(ConsumerRecord::offset)
+                    .max(Long::compare)
+                    .map(offset -> new OffsetAndMetadata(offset + 1));
+        });
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        List<SpecificRecord> sentMessages = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            String deviceId = UUID.randomUUID().toString();
+            Thermostat thermostat = new Thermostat(deviceId, 20f + i, 24.0f, 10.0f,
+                    ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+            kafkaProducer.sendMessage(thermostat, deviceId);
+            sentMessages.add(thermostat);
+        }
+
+        verify(parallelDevicePatcher, timeout(10000).atLeast(1)).patch(argThat(records ->
+                records.containsKey(((Thermostat) sentMessages.getLast()).getDeviceId())));
+        verify(parallelDevicePatcher, atLeast(1)).patch(recordsCaptor.capture());
+
+        Map<String, SpecificRecord> recordsById = recordsCaptor.getAllValues().stream()
+                .map(Map::values)
+                .flatMap(Collection::stream)
+                .collect(toMap(ConsumerRecord::key, ConsumerRecord::value, (a, b) -> b));
+        for (SpecificRecord sentMessage : sentMessages) {
+            assertEquals(sentMessage, recordsById.get(((Thermostat) sentMessage).getDeviceId()));
+        }
+    }
+
+    @Test
+    void failedBatchIsRedeliveredAfterRestart() {
+        String deviceId = UUID.randomUUID().toString();
+        AtomicBoolean failed = new AtomicBoolean();
+        when(parallelDevicePatcher.patch(anyMap())).thenAnswer(x -> {
+            Map<String, ConsumerRecord<String, SpecificRecord>> records = x.getArgument(0);
+            if (records.containsKey(deviceId) && failed.compareAndSet(false, true)) {
+                throw new RuntimeException("Something bad happened");
+            }
+            return records.values().stream()
+                    .map(ConsumerRecord::offset)
+                    .max(Long::compare)
+                    .map(offset -> new OffsetAndMetadata(offset + 1));
+        });
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DoorSensor doorSensor = new DoorSensor(deviceId, OPEN, 85, false,
+                DeviceStatus.OFFLINE, nowTime, "1.0.2v", nowTime);
+        kafkaProducer.sendMessage(doorSensor, deviceId);
+
+        verify(parallelDevicePatcher, timeout(30000).atLeast(2)).patch(argThat(records -> records.containsKey(deviceId)));
+    }
+}
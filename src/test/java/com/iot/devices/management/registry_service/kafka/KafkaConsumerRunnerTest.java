@@ -5,11 +5,14 @@ import com.iot.devices.management.registry_service.health.HealthConfig;
 import com.iot.devices.management.registry_service.kafka.properties.KafkaConsumerProperties;
 import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
 import com.iot.devices.management.registry_service.persistence.ParallelDevicePatcher;
+import com.iot.devices.management.registry_service.persistence.TelemetryCopyIngestor;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
 import io.micrometer.core.instrument.MockClock;
 import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
 import org.junit.jupiter.api.*;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
@@ -54,7 +57,11 @@ class KafkaConsumerRunnerTest {
     @MockitoBean
     ParallelDevicePatcher parallelDevicePatcher;
     @MockitoBean
+    TelemetryCopyIngestor telemetryCopyIngestor;
+    @MockitoBean
     KpiMetricLogger kpiMetricLogger;
+    @MockitoBean
+    DatabaseCircuitBreaker databaseCircuitBreaker;
 
     @Autowired
     KafkaConsumerProperties consumerProperties;
@@ -90,6 +97,8 @@ class KafkaConsumerRunnerTest {
 
     @Test
     void successfulMessageTransfer() {
+        when(parallelDevicePatcher.patch(anyMap())).thenAnswer(x -> persistedOffset(x.getArgument(0)));
+
         String deviceId1 = UUID.randomUUID().toString();
         String deviceId2 = UUID.randomUUID().toString();
         String deviceId3 = UUID.randomUUID().toString();
@@ -133,7 +142,8 @@ class KafkaConsumerRunnerTest {
         when(parallelDevicePatcher.patch(anyMap())).thenThrow(
                 new RuntimeException("Something bad happened 1"),
                 new RuntimeException("Something bad happened 2"),
-                new RuntimeException("Something bad happened 3"));
+                new RuntimeException("Something bad happened 3"))
+                .thenAnswer(x -> persistedOffset(x.getArgument(0)));
 
         Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
         DoorSensor doorSensor = new DoorSensor(deviceId1, OPEN, 85, false,
@@ -162,4 +172,11 @@ class KafkaConsumerRunnerTest {
         assertEquals(thermostat, messageById.get(deviceId2));
         assertEquals(smartPlug, messageById.get(deviceId3));
     }
+
+    private static Optional<OffsetAndMetadata> persistedOffset(Map<String, ConsumerRecord<String, SpecificRecord>> records) {
+        return records.values().stream()
+                .map(ConsumerRecord::offset)
+                .max(Long::compare)
+                .map(offset -> new OffsetAndMetadata(offset + 1));
+    }
 }
\ No newline at end of file
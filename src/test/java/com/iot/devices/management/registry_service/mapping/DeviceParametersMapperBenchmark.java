@@ -0,0 +1,64 @@
+package com.iot.devices.management.registry_service.mapping;
+
+import com.iot.devices.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static com.iot.devices.DoorState.OPEN;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeviceParametersMapperBenchmark {
+
+    DoorSensor doorSensor;
+    SmartPlug smartPlug;
+    Thermostat thermostat;
+    ByteBuffer serializedThermostat;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Instant nowTime = Instant.now();
+        doorSensor = new DoorSensor(UUID.randomUUID().toString(), OPEN, 85, false,
+                DeviceStatus.ONLINE, nowTime, "1.0.2v", nowTime);
+        smartPlug = new SmartPlug(UUID.randomUUID().toString(), true, 230f, 227f, 99f,
+                DeviceStatus.MAINTENANCE, null, nowTime);
+        thermostat = new Thermostat(UUID.randomUUID().toString(), 21.0f, 24.0f, 40.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+        serializedThermostat = thermostat.toByteBuffer();
+    }
+
+    @Benchmark
+    public DoorSensorTelemetry mapDoorSensor() {
+        return DeviceParametersMapper.mapDoorSensor(doorSensor);
+    }
+
+    @Benchmark
+    public SmartPlugTelemetry mapSmartPlug() {
+        return DeviceParametersMapper.mapSmartPlug(smartPlug);
+    }
+
+    @Benchmark
+    public ThermostatTelemetry mapThermostat() {
+        return DeviceParametersMapper.mapThermostat(thermostat);
+    }
+
+    @Benchmark
+    public TelemetryRow mapTelemetryRow() {
+        return DeviceParametersMapper.mapTelemetryRow(thermostat);
+    }
+
+    //whole avro-to-telemetry path of one record as the consumer sees it, without schema registry lookup
+    @Benchmark
+    public ThermostatTelemetry deserializeAndMapThermostat() throws IOException {
+        return DeviceParametersMapper.mapThermostat(Thermostat.fromByteBuffer(serializedThermostat.duplicate()));
+    }
+}
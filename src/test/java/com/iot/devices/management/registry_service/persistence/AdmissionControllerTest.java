@@ -0,0 +1,70 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class AdmissionControllerTest {
+
+    HikariDataSource dataSource = mock(HikariDataSource.class);
+    HikariPoolMXBean pool = mock(HikariPoolMXBean.class);
+    KpiMetricLogger kpiMetricLogger = mock(KpiMetricLogger.class);
+
+    @BeforeEach
+    void setUp() {
+        when(dataSource.getMaximumPoolSize()).thenReturn(2);
+        when(dataSource.getHikariPoolMXBean()).thenReturn(pool);
+    }
+
+    @Test
+    void permitsAreSizedByHikariPool() {
+        AdmissionController admissionController = new AdmissionController(true, 0, false, 0, 50, 10, dataSource, kpiMetricLogger);
+
+        admissionController.acquire();
+        admissionController.acquire();
+        assertThrows(RejectedExecutionException.class, admissionController::acquire);
+        admissionController.release();
+        admissionController.acquire();
+
+        verify(kpiMetricLogger).recordAdmissionLimit(2);
+        verify(kpiMetricLogger, times(3)).recordAdmissionPermitWait(0);
+        verify(kpiMetricLogger).incAdmissionDeferredTasks();
+        verify(kpiMetricLogger).incAdmissionRejectedTasks();
+    }
+
+    @Test
+    void limitFollowsThreadsAwaitingConnection() {
+        AdmissionController admissionController = new AdmissionController(true, 0, true, 0, 50, 10, dataSource, kpiMetricLogger);
+
+        when(pool.getThreadsAwaitingConnection()).thenReturn(3);
+        admissionController.acquire();
+        assertEquals(1, admissionController.getLimit());
+        assertThrows(RejectedExecutionException.class, admissionController::acquire);
+        assertEquals(1, admissionController.getLimit());
+
+        when(pool.getThreadsAwaitingConnection()).thenReturn(0);
+        admissionController.acquire();
+        assertEquals(2, admissionController.getLimit());
+    }
+
+    @Test
+    void disabledControllerAdmitsEverything() {
+        AdmissionController admissionController = new AdmissionController(false, 1, true, 0, 50, 10, dataSource, kpiMetricLogger);
+
+        for (int i = 0; i < 5; i++) {
+            admissionController.acquire();
+        }
+
+        verify(kpiMetricLogger).recordAdmissionLimit(1);
+        verifyNoMoreInteractions(kpiMetricLogger);
+        verifyNoInteractions(pool);
+    }
+}
@@ -0,0 +1,70 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+import static com.iot.devices.management.registry_service.persistence.OffsetTracker.COALESCED_FROM_OFFSET_HEADER;
+import static com.iot.devices.management.registry_service.persistence.OffsetTracker.encodeOffset;
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffsetTrackerTest {
+
+    @Test
+    void offsetStopsAtFirstPendingRecord() {
+        ConsumerRecord<String, SpecificRecord> record1 = record(5);
+        ConsumerRecord<String, SpecificRecord> record2 = record(8);
+        ConsumerRecord<String, SpecificRecord> record3 = record(9);
+        OffsetTracker offsetTracker = new OffsetTracker(List.of(record1, record2, record3));
+
+        assertTrue(offsetTracker.committableOffset().isEmpty());
+
+        offsetTracker.complete(record3);
+        assertTrue(offsetTracker.committableOffset().isEmpty());
+
+        offsetTracker.complete(record1);
+        assertEquals(8, offsetTracker.committableOffset().orElseThrow().offset());
+
+        offsetTracker.complete(record2);
+        assertEquals(10, offsetTracker.committableOffset().orElseThrow().offset());
+    }
+
+    @Test
+    void coalescedRecordHoldsOffsetsItWasMergedFrom() {
+        ConsumerRecord<String, SpecificRecord> record1 = record(3);
+        ConsumerRecord<String, SpecificRecord> coalesced = record(7);
+        coalesced.headers().add(COALESCED_FROM_OFFSET_HEADER, encodeOffset(4));
+        OffsetTracker offsetTracker = new OffsetTracker(List.of(record1, coalesced));
+
+        offsetTracker.complete(record1);
+
+        assertEquals(4, offsetTracker.committableOffset().orElseThrow().offset());
+        assertEquals(OptionalLong.of(4), OffsetTracker.unpersistedFrom(List.of(record1, coalesced), offsetTracker.committableOffset()));
+    }
+
+    @Test
+    void unpersistedOffsetIsFoundOnlyForGaps() {
+        List<ConsumerRecord<String, SpecificRecord>> records = List.of(record(2), record(6));
+
+        assertEquals(OptionalLong.of(2), OffsetTracker.unpersistedFrom(records, Optional.empty()));
+        assertEquals(OptionalLong.of(6), OffsetTracker.unpersistedFrom(records, Optional.of(new OffsetAndMetadata(6))));
+        assertTrue(OffsetTracker.unpersistedFrom(records, Optional.of(new OffsetAndMetadata(7))).isEmpty());
+        assertTrue(OffsetTracker.unpersistedFrom(List.of(), Optional.empty()).isEmpty());
+    }
+
+    private static ConsumerRecord<String, SpecificRecord> record(long offset) {
+        Thermostat thermostat = new Thermostat(UUID.randomUUID().toString(), 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", Instant.now());
+        return new ConsumerRecord<>("topic", 0, offset, thermostat.getDeviceId(), thermostat);
+    }
+}
@@ -0,0 +1,178 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.kafka.DeadLetterProducer;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
+import com.iot.devices.management.registry_service.persistence.retry.RetriablePatcher;
+import com.iot.devices.management.registry_service.persistence.retry.RetryProperties;
+import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static com.iot.devices.DoorState.CLOSED;
+import static com.iot.devices.DoorState.OPEN;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+
+@Slf4j
+@ActiveProfiles("test")
+@SpringBootTest(
+        classes = {
+                ParallelDevicePatcher.class,
+                RetriablePatcher.class,
+                RetryProperties.class,
+                DatabaseCircuitBreaker.class,
+                TestCircuitBreakerConfig.class
+        },
+        properties = {
+                "parallel.patcher.mode=BATCHED",
+                "logging.level.com.iot.devices.management.registry_service.persistence=DEBUG"
+        })
+class ParallelDevicePatcherBatchedModeTest {
+
+    public static final String TOPIC = "topic";
+
+    @MockitoBean
+    DeadLetterProducer deadLetterProducer;
+    @MockitoBean
+    DeviceService deviceService;
+    @MockitoBean
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    @MockitoBean
+    TelemetryHistoryAppender telemetryHistoryAppender;
+    @MockitoBean
+    KpiMetricLogger kpiMetricLogger;
+    @MockitoBean
+    AdmissionController admissionController;
+
+    @Autowired
+    ParallelDevicePatcher parallelDevicePatcher;
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(deviceService, deadLetterProducer, kpiMetricLogger);
+    }
+
+    @Test
+    void recordsArePatchedInOneBatchPerDeviceType() {
+        when(deviceService.patchDoorSensorTelemetries(anyList())).thenReturn(new int[]{1, 1});
+        when(deviceService.patchThermostatTelemetries(anyList())).thenReturn(new int[]{1});
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DoorSensor doorSensor1 = new DoorSensor(UUID.randomUUID().toString(), OPEN, 85, false,
+                DeviceStatus.OFFLINE, nowTime, "1.0.2v", nowTime);
+        DoorSensor doorSensor2 = new DoorSensor(UUID.randomUUID().toString(), CLOSED, 40, true,
+                DeviceStatus.ONLINE, nowTime, "1.0.3v", nowTime);
+        Thermostat thermostat = new Thermostat(UUID.randomUUID().toString(), 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(3);
+        recordsById.put(doorSensor1.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 0, doorSensor1.getDeviceId(), doorSensor1));
+        recordsById.put(thermostat.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 1, thermostat.getDeviceId(), thermostat));
+        recordsById.put(doorSensor2.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 2, doorSensor2.getDeviceId(), doorSensor2));
+
+        Optional<OffsetAndMetadata> offsetToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetToCommit.isPresent());
+        assertEquals(3, offsetToCommit.get().offset());
+        verify(deviceService).patchDoorSensorTelemetries(argThat(telemetries -> telemetries.size() == 2));
+        verify(deviceService).patchThermostatTelemetries(argThat(telemetries -> telemetries.size() == 1));
+        verify(kpiMetricLogger, times(2)).recordDeviceUpdatingTime(eq(DoorSensor.class.getSimpleName()), anyLong());
+        verify(kpiMetricLogger).recordDeviceUpdatingTime(eq(Thermostat.class.getSimpleName()), anyLong());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+    }
+
+    @Test
+    void notUpdatedDevicesAreCountedPerRecord() {
+        when(deviceService.patchSmartPlugTelemetries(anyList())).thenReturn(new int[]{1, 0});
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        SmartPlug smartPlug1 = new SmartPlug(UUID.randomUUID().toString(), true, 230f, 227f, 99f,
+                DeviceStatus.MAINTENANCE, null, nowTime);
+        SmartPlug smartPlug2 = new SmartPlug(UUID.randomUUID().toString(), false, 220f, 0f, 0f,
+                DeviceStatus.OFFLINE, null, nowTime);
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(2);
+        recordsById.put(smartPlug1.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 10, smartPlug1.getDeviceId(), smartPlug1));
+        recordsById.put(smartPlug2.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 11, smartPlug2.getDeviceId(), smartPlug2));
+
+        Optional<OffsetAndMetadata> offsetToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetToCommit.isPresent());
+        assertEquals(12, offsetToCommit.get().offset());
+        verify(deviceService).patchSmartPlugTelemetries(anyList());
+        verify(kpiMetricLogger).recordDeviceUpdatingTime(eq(SmartPlug.class.getSimpleName()), anyLong());
+        verify(kpiMetricLogger).incNotUpdatedDevices(SmartPlug.class.getSimpleName());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+    }
+
+    @Test
+    void nonRetriableBatchErrorFallsBackToPerRecordPatching() {
+        when(deviceService.patchDoorSensorTelemetries(anyList())).thenThrow(new DataIntegrityViolationException("some error"));
+        when(deviceService.patchDoorSensorTelemetry(any()))
+                .thenReturn(1)
+                .thenThrow(new DataIntegrityViolationException("some error"));
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DoorSensor doorSensor1 = new DoorSensor(UUID.randomUUID().toString(), OPEN, 85, false,
+                DeviceStatus.OFFLINE, nowTime, "1.0.2v", nowTime);
+        DoorSensor doorSensor2 = new DoorSensor(UUID.randomUUID().toString(), CLOSED, 40, true,
+                DeviceStatus.ONLINE, nowTime, "1.0.3v", nowTime);
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(2);
+        recordsById.put(doorSensor1.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 0, doorSensor1.getDeviceId(), doorSensor1));
+        recordsById.put(doorSensor2.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 1, doorSensor2.getDeviceId(), doorSensor2));
+
+        Optional<OffsetAndMetadata> offsetToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetToCommit.isPresent());
+        assertEquals(2, offsetToCommit.get().offset());
+        verify(deviceService).patchDoorSensorTelemetries(anyList());
+        verify(deviceService, times(2)).patchDoorSensorTelemetry(any());
+        verify(kpiMetricLogger).recordDeviceUpdatingTime(eq(DoorSensor.class.getSimpleName()), anyLong());
+        verify(kpiMetricLogger).incNonRetriableErrorsCount(DataIntegrityViolationException.class.getSimpleName());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+        verify(deadLetterProducer).send(doorSensor2.getDeviceId(), doorSensor2);
+    }
+
+    @Test
+    void transientBatchErrorLeavesOffsetUncommitted() {
+        when(deviceService.patchThermostatTelemetries(anyList())).thenThrow(new QueryTimeoutException("some error"));
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat thermostat = new Thermostat(UUID.randomUUID().toString(), 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(1);
+        recordsById.put(thermostat.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 0, thermostat.getDeviceId(), thermostat));
+
+        Optional<OffsetAndMetadata> offsetToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetToCommit.isEmpty());
+
+        verify(deviceService, times(5)).patchThermostatTelemetries(anyList());
+        verify(kpiMetricLogger, times(4)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).recordRetryBackoff(anyLong());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+    }
+}
@@ -0,0 +1,115 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.mapping.DeviceParametersMapper;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.metrics.PrometheusKpiLogger;
+import com.iot.devices.management.registry_service.persistence.retry.RetriablePatcher;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.record.TimestampType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.iot.devices.DoorState.OPEN;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ParallelDevicePatcherBenchmark {
+
+    private static final String TOPIC = "iot-devices-data";
+    private static final int THREADS_AMOUNT = 16;
+    private static final int LANES_AMOUNT = 8;
+
+    @Param({"PARALLEL", "BATCHED", "SHARDED"})
+    PatchMode patchMode;
+
+    @Param({"false", "true"})
+    boolean virtualThreads;
+
+    @Param({"100", "1000"})
+    int recordsCount;
+
+    //simulated db round trip of one statement or batch, 0 measures pure scheduling overhead
+    @Param({"0", "500"})
+    long dbLatencyMicros;
+
+    ParallelDevicePatcher parallelDevicePatcher;
+    Map<String, ConsumerRecord<String, SpecificRecord>> recordById;
+
+    @Setup
+    public void setUp() {
+        final KpiMetricLogger kpiMetricLogger = new PrometheusKpiLogger(new SimpleMeterRegistry());
+        final AdmissionController admissionController = new AdmissionController(false, THREADS_AMOUNT, false,
+                1000, 1000, THREADS_AMOUNT, null, kpiMetricLogger);
+        parallelDevicePatcher = new ParallelDevicePatcher(THREADS_AMOUNT, virtualThreads, 1000, patchMode, LANES_AMOUNT,
+                null, new StubRetriablePatcher(dbLatencyMicros), kpiMetricLogger, admissionController);
+        recordById = createRecords(recordsCount);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        parallelDevicePatcher.shutdown();
+    }
+
+    @Benchmark
+    public Optional<OffsetAndMetadata> patch() {
+        return parallelDevicePatcher.patch(recordById);
+    }
+
+    private static Map<String, ConsumerRecord<String, SpecificRecord>> createRecords(int recordsCount) {
+        final Instant nowTime = Instant.now();
+        final Map<String, ConsumerRecord<String, SpecificRecord>> recordById = new HashMap<>(recordsCount);
+        for (int offset = 0; offset < recordsCount; offset++) {
+            final String deviceId = UUID.randomUUID().toString();
+            final SpecificRecord telemetry = switch (offset % 3) {
+                case 0 -> new DoorSensor(deviceId, OPEN, 85, false, DeviceStatus.ONLINE, nowTime, "1.0.2v", nowTime);
+                case 1 -> new SmartPlug(deviceId, true, 230f, 227f, 99f, DeviceStatus.ONLINE, "1.0.2v", nowTime);
+                default -> new Thermostat(deviceId, 21.0f, 24.0f, 40.0f, ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+            };
+            recordById.put(deviceId, new ConsumerRecord<>(TOPIC, 0, offset, nowTime.toEpochMilli(), TimestampType.CREATE_TIME,
+                    0, 0, deviceId, telemetry, new RecordHeaders(), Optional.empty()));
+        }
+        return recordById;
+    }
+
+    //maps records like the real patcher does and parks for the db round trip instead of calling the database
+    private static class StubRetriablePatcher extends RetriablePatcher {
+
+        private final long dbLatencyNanos;
+
+        StubRetriablePatcher(long dbLatencyMicros) {
+            super(WriterMode.JDBC, TelemetryStorage.JSONB, null, null, null, null, null, null);
+            this.dbLatencyNanos = TimeUnit.MICROSECONDS.toNanos(dbLatencyMicros);
+        }
+
+        @Override
+        public void patchWithRetries(ConsumerRecord<String, SpecificRecord> record) {
+            DeviceParametersMapper.mapTelemetryRow(record.value());
+            simulateRoundTrip();
+        }
+
+        @Override
+        public void patchBatchWithRetries(List<ConsumerRecord<String, SpecificRecord>> records) {
+            records.forEach(record -> DeviceParametersMapper.mapTelemetryRow(record.value()));
+            simulateRoundTrip();
+        }
+
+        private void simulateRoundTrip() {
+            if (dbLatencyNanos > 0) {
+                LockSupport.parkNanos(dbLatencyNanos);
+            }
+        }
+    }
+}
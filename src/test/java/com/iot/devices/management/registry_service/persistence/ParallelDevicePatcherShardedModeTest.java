@@ -0,0 +1,135 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.kafka.DeadLetterProducer;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
+import com.iot.devices.management.registry_service.persistence.retry.RetriablePatcher;
+import com.iot.devices.management.registry_service.persistence.retry.RetryProperties;
+import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.iot.devices.DoorState.OPEN;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+
+@Slf4j
+@ActiveProfiles("test")
+@SpringBootTest(
+        classes = {
+                ParallelDevicePatcher.class,
+                RetriablePatcher.class,
+                RetryProperties.class,
+                DatabaseCircuitBreaker.class,
+                TestCircuitBreakerConfig.class
+        },
+        properties = {
+                "parallel.patcher.mode=SHARDED",
+                "parallel.patcher.lanes.amount=4",
+                "logging.level.com.iot.devices.management.registry_service.persistence=DEBUG"
+        })
+class ParallelDevicePatcherShardedModeTest {
+
+    public static final String TOPIC = "topic";
+    public static final int LANES_AMOUNT = 4;
+
+    @MockitoBean
+    DeadLetterProducer deadLetterProducer;
+    @MockitoBean
+    DeviceService deviceService;
+    @MockitoBean
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    @MockitoBean
+    TelemetryHistoryAppender telemetryHistoryAppender;
+    @MockitoBean
+    KpiMetricLogger kpiMetricLogger;
+    @MockitoBean
+    AdmissionController admissionController;
+
+    @Autowired
+    ParallelDevicePatcher parallelDevicePatcher;
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(deviceService, deadLetterProducer, kpiMetricLogger);
+    }
+
+    @Test
+    void devicesArePatchedOnTheirLanes() {
+        Map<String, String> laneByDeviceId = new ConcurrentHashMap<>();
+        when(deviceService.patchDoorSensorTelemetries(anyList())).thenAnswer(x -> {
+            List<DoorSensor> telemetries = x.getArgument(0);
+            telemetries.forEach(telemetry -> laneByDeviceId.put(telemetry.getDeviceId(), Thread.currentThread().getName()));
+            int[] updated = new int[telemetries.size()];
+            Arrays.fill(updated, 1);
+            return updated;
+        });
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(10);
+        for (int i = 0; i < 10; i++) {
+            DoorSensor doorSensor = new DoorSensor(UUID.randomUUID().toString(), OPEN, 85, false,
+                    DeviceStatus.ONLINE, nowTime, "1.0.2v", nowTime);
+            recordsById.put(doorSensor.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, i, doorSensor.getDeviceId(), doorSensor));
+        }
+
+        Optional<OffsetAndMetadata> offsetToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetToCommit.isPresent());
+        assertEquals(10, offsetToCommit.get().offset());
+        assertEquals(10, laneByDeviceId.size());
+        for (String deviceId : recordsById.keySet()) {
+            assertEquals("patcher-lane-" + Math.floorMod(deviceId.hashCode(), LANES_AMOUNT), laneByDeviceId.get(deviceId));
+        }
+        int usedLanes = new HashSet<>(laneByDeviceId.values()).size();
+        verify(deviceService, times(usedLanes)).patchDoorSensorTelemetries(anyList());
+        verify(kpiMetricLogger, times(10)).recordDeviceUpdatingTime(eq(DoorSensor.class.getSimpleName()), anyLong());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+    }
+
+    @Test
+    void transientLaneErrorLeavesOffsetUncommitted() {
+        when(deviceService.patchThermostatTelemetries(anyList())).thenThrow(new QueryTimeoutException("some error"));
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat thermostat = new Thermostat(UUID.randomUUID().toString(), 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(1);
+        recordsById.put(thermostat.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 0, thermostat.getDeviceId(), thermostat));
+
+        Optional<OffsetAndMetadata> offsetToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetToCommit.isEmpty());
+
+        verify(deviceService, times(5)).patchThermostatTelemetries(anyList());
+        verify(kpiMetricLogger, times(4)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).recordRetryBackoff(anyLong());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+    }
+
+    @Test
+    void shardedModeRequiresLanes() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDevicePatcher(2, false, 1000, PatchMode.SHARDED, 0,
+                deadLetterProducer, mock(RetriablePatcher.class), kpiMetricLogger, admissionController));
+    }
+}
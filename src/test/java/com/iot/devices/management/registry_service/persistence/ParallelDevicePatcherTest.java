@@ -3,9 +3,12 @@ package com.iot.devices.management.registry_service.persistence;
 import com.iot.devices.*;
 import com.iot.devices.management.registry_service.kafka.DeadLetterProducer;
 import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
 import com.iot.devices.management.registry_service.persistence.retry.RetriablePatcher;
 import com.iot.devices.management.registry_service.persistence.retry.RetryProperties;
 import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -26,7 +29,6 @@ import java.sql.SQLTransientException;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
-import java.util.concurrent.CompletionException;
 
 import static com.iot.devices.DoorState.OPEN;
 import static java.lang.Thread.sleep;
@@ -41,7 +43,9 @@ import static org.mockito.Mockito.*;
         classes = {
                 ParallelDevicePatcher.class,
                 RetriablePatcher.class,
-                RetryProperties.class
+                RetryProperties.class,
+                DatabaseCircuitBreaker.class,
+                TestCircuitBreakerConfig.class
         },
         properties = {"logging.level.com.iot.devices.management.registry_service.persistence=DEBUG"})
 class ParallelDevicePatcherTest {
@@ -54,7 +58,13 @@ class ParallelDevicePatcherTest {
     @MockitoBean
     DeviceService deviceService;
     @MockitoBean
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    @MockitoBean
+    TelemetryHistoryAppender telemetryHistoryAppender;
+    @MockitoBean
     KpiMetricLogger kpiMetricLogger;
+    @MockitoBean
+    AdmissionController admissionController;
 
     @Autowired
     ParallelDevicePatcher parallelDevicePatcher;
@@ -234,6 +244,7 @@ class ParallelDevicePatcherTest {
         verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
         verify(kpiMetricLogger, times(3)).recordDeviceUpdatingTime(anyString(), anyLong());
         verify(kpiMetricLogger, times(3)).incRetriesCount();
+        verify(kpiMetricLogger, times(3)).recordRetryBackoff(anyLong());
     }
 
     @Test
@@ -263,15 +274,52 @@ class ParallelDevicePatcherTest {
         recordsById.put(deviceId2, record2);
         recordsById.put(deviceId3, record3);
 
-        CompletionException exception = Assertions.assertThrows(CompletionException.class, () -> parallelDevicePatcher.patch(recordsById));
-        assertInstanceOf(QueryTimeoutException.class, exception.getCause());
+        Optional<OffsetAndMetadata> offsetsToCommit = parallelDevicePatcher.patch(recordsById);
 
+        assertTrue(offsetsToCommit.isEmpty());
         verify(deviceService, times(5)).patchDoorSensorTelemetry(any());
         verify(deviceService).patchThermostatTelemetry(any());
         verify(deviceService).patchSmartPlugTelemetry(any());
         verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(3);
         verify(kpiMetricLogger, times(2)).recordDeviceUpdatingTime(anyString(), anyLong());
-        verify(kpiMetricLogger, times(5)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).recordRetryBackoff(anyLong());
+    }
+
+    @Test
+    void offsetIsCommittedUpToFailedRecord() {
+        when(deviceService.patchDoorSensorTelemetry(any())).thenThrow(new QueryTimeoutException("some error"));
+
+        String deviceId1 = UUID.randomUUID().toString();
+        String deviceId2 = UUID.randomUUID().toString();
+        String deviceId3 = UUID.randomUUID().toString();
+
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat thermostat = new Thermostat(deviceId1, 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+
+        DoorSensor doorSensor = new DoorSensor(deviceId2, OPEN, 85, false,
+                DeviceStatus.OFFLINE, nowTime, "1.0.2v", nowTime);
+
+        SmartPlug smartPlug = new SmartPlug(deviceId3, true, 230f, 227f, 99f,
+                DeviceStatus.MAINTENANCE, null, nowTime.minus(5, ChronoUnit.MINUTES));
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(3);
+        recordsById.put(deviceId1, new ConsumerRecord<>(TOPIC, 0, 10, KEY, thermostat));
+        recordsById.put(deviceId2, new ConsumerRecord<>(TOPIC, 0, 12, KEY, doorSensor));
+        recordsById.put(deviceId3, new ConsumerRecord<>(TOPIC, 0, 15, KEY, smartPlug));
+
+        Optional<OffsetAndMetadata> offsetsToCommit = parallelDevicePatcher.patch(recordsById);
+
+        assertTrue(offsetsToCommit.isPresent());
+        assertEquals(12, offsetsToCommit.get().offset());
+        verify(deviceService, times(5)).patchDoorSensorTelemetry(any());
+        verify(deviceService).patchThermostatTelemetry(any());
+        verify(deviceService).patchSmartPlugTelemetry(any());
+        verify(kpiMetricLogger).recordActiveThreadsInParallelPatcher(anyInt());
+        verify(kpiMetricLogger, times(2)).recordDeviceUpdatingTime(anyString(), anyLong());
+        verify(kpiMetricLogger, times(4)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).recordRetryBackoff(anyLong());
     }
 
     @Test
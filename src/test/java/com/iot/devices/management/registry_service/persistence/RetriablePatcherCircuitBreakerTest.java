@@ -0,0 +1,93 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.DoorSensor;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
+import com.iot.devices.management.registry_service.persistence.retry.RetriablePatcher;
+import com.iot.devices.management.registry_service.persistence.retry.RetryProperties;
+import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.dao.TransientDataAccessException;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static com.iot.devices.DoorState.OPEN;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class RetriablePatcherCircuitBreakerTest {
+
+    DeviceService deviceService = mock(DeviceService.class);
+    KpiMetricLogger kpiMetricLogger = mock(KpiMetricLogger.class);
+    DatabaseCircuitBreaker databaseCircuitBreaker;
+    RetriablePatcher retriablePatcher;
+
+    @BeforeEach
+    void setUp() {
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(2)
+                .minimumNumberOfCalls(2)
+                .failureRateThreshold(50)
+                .waitDurationInOpenState(Duration.ofMinutes(1))
+                .recordExceptions(TransientDataAccessException.class)
+                .build());
+        databaseCircuitBreaker = new DatabaseCircuitBreaker(circuitBreakerRegistry, kpiMetricLogger);
+
+        RetryProperties retryProperties = new RetryProperties();
+        retryProperties.setMaxAttempts(4);
+        retryProperties.setWaitDuration(1);
+        retryProperties.setMaxWaitDuration(5);
+        retriablePatcher = new RetriablePatcher(WriterMode.JPA, TelemetryStorage.JSONB, deviceService, mock(TelemetryJdbcWriter.class),
+                mock(TelemetryHistoryAppender.class), retryProperties, databaseCircuitBreaker, kpiMetricLogger);
+    }
+
+    @Test
+    void openBreakerRejectsAttemptsWithoutQueryingDatabase() {
+        when(deviceService.patchDoorSensorTelemetry(any())).thenThrow(new QueryTimeoutException("database is down"));
+
+        assertThrows(CallNotPermittedException.class, () -> retriablePatcher.patchWithRetries(doorSensorRecord()));
+
+        assertTrue(databaseCircuitBreaker.isOpen());
+        verify(deviceService, times(2)).patchDoorSensorTelemetry(any());
+        verify(kpiMetricLogger).recordDbCircuitBreakerState(CircuitBreaker.State.OPEN.getOrder());
+        //the open breaker fails the record at once instead of waiting out the remaining attempts
+        verify(kpiMetricLogger).incDbCircuitBreakerRejectedCalls();
+        verify(kpiMetricLogger, times(2)).incRetriesCount();
+        verify(kpiMetricLogger, times(2)).recordRetryBackoff(anyLong());
+    }
+
+    @Test
+    void nonRetriableErrorsDoNotOpenBreaker() {
+        when(deviceService.patchDoorSensorTelemetry(any())).thenThrow(new IllegalArgumentException("broken record"));
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(IllegalArgumentException.class, () -> retriablePatcher.patchWithRetries(doorSensorRecord()));
+        }
+
+        assertFalse(databaseCircuitBreaker.isOpen());
+        verify(deviceService, times(3)).patchDoorSensorTelemetry(any());
+        verifyNoInteractions(kpiMetricLogger);
+    }
+
+    private static ConsumerRecord<String, SpecificRecord> doorSensorRecord() {
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DoorSensor doorSensor = new DoorSensor(UUID.randomUUID().toString(), OPEN, 85, false,
+                DeviceStatus.OFFLINE, nowTime, "1.0.2v", nowTime);
+        return new ConsumerRecord<>("topic", 0, 0, doorSensor.getDeviceId(), doorSensor);
+    }
+}
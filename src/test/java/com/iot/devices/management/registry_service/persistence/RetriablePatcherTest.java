@@ -3,9 +3,12 @@ package com.iot.devices.management.registry_service.persistence;
 import com.iot.devices.*;
 import com.iot.devices.management.registry_service.mapping.DoorSensorTelemetry;
 import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import com.iot.devices.management.registry_service.persistence.retry.DatabaseCircuitBreaker;
 import com.iot.devices.management.registry_service.persistence.retry.RetriablePatcher;
 import com.iot.devices.management.registry_service.persistence.retry.RetryProperties;
 import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.avro.specific.SpecificRecord;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
@@ -15,6 +18,7 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.bean.override.mockito.MockitoBean;
 
@@ -32,7 +36,9 @@ import static org.mockito.Mockito.*;
 @SpringBootTest(
         classes = {
                 RetriablePatcher.class,
-                RetryProperties.class
+                RetryProperties.class,
+                DatabaseCircuitBreaker.class,
+                TestCircuitBreakerConfig.class
         }, properties = {"logging.level.com.iot.devices.management.registry_service.persistence=DEBUG"})
 class RetriablePatcherTest {
 
@@ -42,6 +48,10 @@ class RetriablePatcherTest {
     @MockitoBean
     DeviceService deviceService;
     @MockitoBean
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    @MockitoBean
+    TelemetryHistoryAppender telemetryHistoryAppender;
+    @MockitoBean
     KpiMetricLogger kpiMetricLogger;
 
     @Autowired
@@ -72,7 +82,9 @@ class RetriablePatcherTest {
         retriablePatcher.patchWithRetries(record1);
         verify(deviceService, times(4)).patchDoorSensorTelemetry(any());
         verify(kpiMetricLogger, times(3)).incRetriesCount();
+        verify(kpiMetricLogger, times(3)).recordRetryBackoff(anyLong());
         verify(kpiMetricLogger).recordDeviceUpdatingTime(anyString(), anyLong());
+        verify(telemetryHistoryAppender).append(doorSensor);
     }
 
     @Test
@@ -92,7 +104,26 @@ class RetriablePatcherTest {
         ConsumerRecord<String, SpecificRecord> record = new ConsumerRecord<>(TOPIC, 0, 0, KEY, doorSensor);
         Assertions.assertThrows(RuntimeException.class, () -> retriablePatcher.patchWithRetries(record));
         verify(deviceService, times(5)).patchDoorSensorTelemetry(any());
-        verify(kpiMetricLogger, times(5)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).incRetriesCount();
+        verify(kpiMetricLogger, times(4)).recordRetryBackoff(anyLong());
+        verifyNoInteractions(telemetryHistoryAppender);
+    }
+
+    @Test
+    void exceptionPolicyLimitsAttempts() {
+        when(deviceService.patchDoorSensorTelemetry(any(DoorSensorTelemetry.class)))
+                .thenThrow(new TransientDataAccessResourceException("some test error"));
+
+        String deviceId1 = UUID.randomUUID().toString();
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DoorSensor doorSensor = new DoorSensor(deviceId1, OPEN, 85, false,
+                DeviceStatus.OFFLINE, nowTime, "1.0.2v", nowTime);
+
+        ConsumerRecord<String, SpecificRecord> record = new ConsumerRecord<>(TOPIC, 0, 0, KEY, doorSensor);
+        Assertions.assertThrows(TransientDataAccessResourceException.class, () -> retriablePatcher.patchWithRetries(record));
+        verify(deviceService, times(2)).patchDoorSensorTelemetry(any());
+        verify(kpiMetricLogger).incRetriesCount();
+        verify(kpiMetricLogger).recordRetryBackoff(10);
     }
 
     @Test
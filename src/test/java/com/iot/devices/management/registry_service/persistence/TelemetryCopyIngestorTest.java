@@ -0,0 +1,105 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.services.DeviceService;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryHistoryAppender;
+import org.apache.avro.specific.SpecificRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+
+import static com.iot.devices.DoorState.OPEN;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ActiveProfiles("test")
+@SpringBootTest(classes = TelemetryCopyIngestor.class)
+class TelemetryCopyIngestorTest {
+
+    public static final String TOPIC = "topic";
+
+    @MockitoBean
+    DeviceService deviceService;
+    @MockitoBean
+    ParallelDevicePatcher parallelDevicePatcher;
+    @MockitoBean
+    TelemetryHistoryAppender telemetryHistoryAppender;
+    @MockitoBean
+    KpiMetricLogger kpiMetricLogger;
+
+    @Autowired
+    TelemetryCopyIngestor telemetryCopyIngestor;
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(deviceService, parallelDevicePatcher, kpiMetricLogger);
+    }
+
+    @Test
+    void recordsAreCopiedInOneBatch() {
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        DoorSensor doorSensor = new DoorSensor(UUID.randomUUID().toString(), OPEN, 85, false,
+                DeviceStatus.ONLINE, nowTime, "1.0.2v", nowTime);
+        Thermostat thermostat = new Thermostat(UUID.randomUUID().toString(), 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+        when(deviceService.copyTelemetries(anyList())).thenReturn(Set.of(UUID.fromString(doorSensor.getDeviceId())));
+
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = new HashMap<>(2);
+        recordsById.put(doorSensor.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 7, doorSensor.getDeviceId(), doorSensor));
+        recordsById.put(thermostat.getDeviceId(), new ConsumerRecord<>(TOPIC, 0, 3, thermostat.getDeviceId(), thermostat));
+
+        Optional<OffsetAndMetadata> offsetToCommit = telemetryCopyIngestor.ingest(recordsById);
+
+        assertTrue(offsetToCommit.isPresent());
+        assertEquals(8, offsetToCommit.get().offset());
+        verify(deviceService).copyTelemetries(argThat(rows -> rows.size() == 2));
+        verify(kpiMetricLogger).recordCopyIngest(eq(2), anyLong());
+        verify(kpiMetricLogger).incNotUpdatedDevices(Thermostat.class.getSimpleName());
+    }
+
+    @Test
+    void failedCopyFallsBackToRowPatching() {
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat thermostat = new Thermostat(UUID.randomUUID().toString(), 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = Map.of(thermostat.getDeviceId(),
+                new ConsumerRecord<>(TOPIC, 0, 3, thermostat.getDeviceId(), thermostat));
+        when(deviceService.copyTelemetries(anyList())).thenThrow(new QueryTimeoutException("some error"));
+        when(parallelDevicePatcher.patch(recordsById)).thenReturn(Optional.of(new OffsetAndMetadata(4)));
+
+        Optional<OffsetAndMetadata> offsetToCommit = telemetryCopyIngestor.ingest(recordsById);
+
+        assertEquals(Optional.of(new OffsetAndMetadata(4)), offsetToCommit);
+        verify(deviceService).copyTelemetries(anyList());
+        verify(kpiMetricLogger).incCopyIngestFallbacks();
+        verify(parallelDevicePatcher).patch(recordsById);
+    }
+
+    @Test
+    void unknownDeviceIdFallsBackToRowPatching() {
+        Instant nowTime = Instant.now().truncatedTo(ChronoUnit.MILLIS);
+        Thermostat thermostat = new Thermostat("not-a-uuid", 26.6f, 24.0f, 10.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", nowTime);
+        Map<String, ConsumerRecord<String, SpecificRecord>> recordsById = Map.of(thermostat.getDeviceId(),
+                new ConsumerRecord<>(TOPIC, 0, 3, thermostat.getDeviceId(), thermostat));
+        when(parallelDevicePatcher.patch(recordsById)).thenReturn(Optional.of(new OffsetAndMetadata(4)));
+
+        Optional<OffsetAndMetadata> offsetToCommit = telemetryCopyIngestor.ingest(recordsById);
+
+        assertEquals(Optional.of(new OffsetAndMetadata(4)), offsetToCommit);
+        verify(kpiMetricLogger).incCopyIngestFallbacks();
+        verify(parallelDevicePatcher).patch(recordsById);
+    }
+}
@@ -0,0 +1,146 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//thermostat telemetry updates merged into devices jsonb vs upserted into thermostat_telemetry.
+//Besides UPDATE latency, write amplification of every iteration is reported as secondary results: wal bytes per update,
+//hot and all updates, dead tuples and table size, autovacuum is off so dead tuples are not cleaned up during the measurement
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TelemetryStorageBenchmark {
+
+    private static final int DEVICES_AMOUNT = 1000;
+
+    @Param({"JSONB", "COLUMNAR"})
+    TelemetryStorage storage;
+
+    PostgreSQLContainer<?> postgreSQLContainer;
+    ConfigurableApplicationContext context;
+    JdbcTemplate jdbcTemplate;
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    List<String> deviceIds;
+
+    @Setup
+    public void setUp() {
+        postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                .withInitScript("schema.sql")
+                .withCommand("postgres", "-c", "autovacuum=off");
+        postgreSQLContainer.start();
+        context = new SpringApplicationBuilder(BenchmarkPersistenceConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                        "spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                        "spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                        "persister.storage=" + storage)
+                .run();
+        jdbcTemplate = context.getBean(JdbcTemplate.class);
+        telemetryJdbcWriter = context.getBean(TelemetryJdbcWriter.class);
+
+        deviceIds = new ArrayList<>(DEVICES_AMOUNT);
+        for (int i = 0; i < DEVICES_AMOUNT; i++) {
+            deviceIds.add(UUID.randomUUID().toString());
+        }
+        jdbcTemplate.batchUpdate("""
+                        INSERT INTO devices (id, name, serial_number, manufacturer, device_type, status, telemetry)
+                        VALUES (CAST(? AS uuid), 'benchmark-thermostat', ?, 'BOSCH', 'THERMOSTAT', 'OFFLINE', '{}')
+                        """, deviceIds, DEVICES_AMOUNT, (ps, id) -> {
+                    ps.setString(1, id);
+                    ps.setString(2, id);
+                });
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        postgreSQLContainer.stop();
+    }
+
+    @Benchmark
+    public int update(WriteAmplification writeAmplification) {
+        writeAmplification.updates++;
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        final Thermostat thermostat = new Thermostat(deviceIds.get(random.nextInt(DEVICES_AMOUNT)),
+                random.nextFloat(15f, 30f), 21.0f, random.nextFloat(30f, 60f),
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", Instant.now());
+        return telemetryJdbcWriter.update(thermostat);
+    }
+
+    //counted per iteration, so they are printed and stored in the json result next to the update latency
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WriteAmplification {
+        public long updates;
+        public long walBytesPerUpdate;
+        public long hotUpdates;
+        public long allUpdates;
+        public long deadTuples;
+        public long tableSizeBytes;
+
+        String startWalLsn;
+        long startHotUpdates;
+        long startAllUpdates;
+
+        @Setup(Level.Iteration)
+        public void start(TelemetryStorageBenchmark benchmark) {
+            updates = 0;
+            startWalLsn = benchmark.jdbcTemplate.queryForObject("SELECT pg_current_wal_lsn()::text", String.class);
+            final Map<String, Object> stats = benchmark.tableStats();
+            startHotUpdates = ((Number) stats.get("n_tup_hot_upd")).longValue();
+            startAllUpdates = ((Number) stats.get("n_tup_upd")).longValue();
+        }
+
+        @TearDown(Level.Iteration)
+        public void finish(TelemetryStorageBenchmark benchmark) throws InterruptedException {
+            //statistics are flushed by backends asynchronously
+            Thread.sleep(1000);
+            final long walBytes = benchmark.jdbcTemplate.queryForObject(
+                    "SELECT pg_wal_lsn_diff(pg_current_wal_lsn(), CAST(? AS pg_lsn))::bigint", Long.class, startWalLsn);
+            final Map<String, Object> stats = benchmark.tableStats();
+            walBytesPerUpdate = updates == 0 ? 0 : walBytes / updates;
+            hotUpdates = ((Number) stats.get("n_tup_hot_upd")).longValue() - startHotUpdates;
+            allUpdates = ((Number) stats.get("n_tup_upd")).longValue() - startAllUpdates;
+            deadTuples = ((Number) stats.get("n_dead_tup")).longValue();
+            tableSizeBytes = ((Number) stats.get("total_size")).longValue();
+        }
+    }
+
+    Map<String, Object> tableStats() {
+        final String table = storage == TelemetryStorage.COLUMNAR ? "thermostat_telemetry" : "devices";
+        return jdbcTemplate.queryForMap("""
+                SELECT n_tup_upd, n_tup_hot_upd, n_dead_tup, pg_total_relation_size(relid) AS total_size
+                FROM pg_stat_user_tables WHERE relname = ?
+                """, table);
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @Import(TelemetryJdbcWriter.class)
+    static class BenchmarkPersistenceConfig {
+    }
+}
@@ -0,0 +1,100 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import com.iot.devices.management.registry_service.persistence.repos.DevicesRepository;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+//single thermostat update through the jpa repository in a transaction vs the same update through TelemetryJdbcWriter
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class TelemetryWriterBenchmark {
+
+    PostgreSQLContainer<?> postgreSQLContainer;
+    ConfigurableApplicationContext context;
+    DevicesRepository devicesRepository;
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    TransactionTemplate transactionTemplate;
+    UUID deviceId;
+    Thermostat thermostat;
+
+    @Setup
+    public void setUp() {
+        postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+                .withInitScript("schema.sql");
+        postgreSQLContainer.start();
+        context = new SpringApplicationBuilder(BenchmarkPersistenceConfig.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=" + postgreSQLContainer.getJdbcUrl(),
+                        "spring.datasource.username=" + postgreSQLContainer.getUsername(),
+                        "spring.datasource.password=" + postgreSQLContainer.getPassword(),
+                        "spring.jpa.hibernate.ddl-auto=none",
+                        "persister.storage=JSONB")
+                .run();
+        devicesRepository = context.getBean(DevicesRepository.class);
+        telemetryJdbcWriter = context.getBean(TelemetryJdbcWriter.class);
+        transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+        deviceId = UUID.randomUUID();
+        context.getBean(JdbcTemplate.class).update("""
+                INSERT INTO devices (id, name, serial_number, manufacturer, device_type, status, telemetry)
+                VALUES (?, 'benchmark-thermostat', ?, 'BOSCH', 'THERMOSTAT', 'OFFLINE', '{}')
+                """, deviceId, deviceId.toString());
+        thermostat = new Thermostat(deviceId.toString(), 21.0f, 24.0f, 40.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", Instant.now());
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+        postgreSQLContainer.stop();
+    }
+
+    @Benchmark
+    public Integer jpaRepository() {
+        return transactionTemplate.execute(status -> devicesRepository.updateThermostatTelemetry(deviceId,
+                thermostat.getStatus().name(), thermostat.getFirmwareVersion(),
+                OffsetDateTime.ofInstant(thermostat.getLastUpdated(), ZoneOffset.UTC),
+                thermostat.getCurrentTemperature(), thermostat.getTargetTemperature(),
+                thermostat.getHumidity(), thermostat.getMode().name()));
+    }
+
+    @Benchmark
+    public int jdbcWriter() {
+        return telemetryJdbcWriter.update(thermostat);
+    }
+
+    @Configuration
+    @EnableAutoConfiguration
+    @EnableJpaRepositories(basePackageClasses = DevicesRepository.class)
+    @EntityScan(basePackages = "com.iot.devices.management.registry_service.persistence.model")
+    @Import(TelemetryJdbcWriter.class)
+    static class BenchmarkPersistenceConfig {
+    }
+}
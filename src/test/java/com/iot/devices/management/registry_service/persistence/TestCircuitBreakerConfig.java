@@ -0,0 +1,17 @@
+package com.iot.devices.management.registry_service.persistence;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+@TestConfiguration
+public class TestCircuitBreakerConfig {
+
+    //failures of one test must not open the breaker for the next tests sharing the context
+    @Bean
+    public CircuitBreakerRegistry circuitBreakerRegistry() {
+        final CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        circuitBreakerRegistry.circuitBreaker("postgres").transitionToDisabledState();
+        return circuitBreakerRegistry;
+    }
+}
@@ -0,0 +1,52 @@
+package com.iot.devices.management.registry_service.persistence.history;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TelemetryHistoryAppenderTest {
+
+    TelemetryHistoryRepository telemetryHistoryRepository = mock(TelemetryHistoryRepository.class);
+    KpiMetricLogger kpiMetricLogger = mock(KpiMetricLogger.class);
+
+    @Test
+    void recordsOutOfPartitionedDaysAreDropped() throws InterruptedException {
+        TelemetryHistoryProperties properties = new TelemetryHistoryProperties();
+        properties.setEnabled(true);
+        properties.setQueueCapacity(10);
+        properties.setBatchSize(10);
+        properties.setPollTimeoutMs(50);
+        properties.setPartitionDaysAhead(3);
+        properties.setRetentionDays(30);
+        TelemetryHistoryAppender appender = new TelemetryHistoryAppender(properties, telemetryHistoryRepository, kpiMetricLogger);
+        Instant nowTime = Instant.now();
+
+        appender.append(thermostat(nowTime));
+        appender.append(thermostat(nowTime.minus(40, ChronoUnit.DAYS)));
+        appender.append(thermostat(nowTime.plus(10, ChronoUnit.DAYS)));
+        appender.shutdown();
+
+        ArgumentCaptor<Integer> outOfRange = ArgumentCaptor.forClass(Integer.class);
+        verify(kpiMetricLogger, atLeastOnce()).incTelemetryHistoryDroppedRecords(eq("out_of_range"), outOfRange.capture());
+        assertEquals(2, outOfRange.getAllValues().stream().mapToInt(Integer::intValue).sum());
+        verify(telemetryHistoryRepository).append(argThat(rows -> rows.size() == 1));
+        verify(telemetryHistoryRepository, atMost(1)).append(anyList());
+    }
+
+    private static Thermostat thermostat(Instant lastUpdated) {
+        return new Thermostat(UUID.randomUUID().toString(), 21.0f, 24.0f, 40.0f,
+                ThermostatMode.COOL, DeviceStatus.ONLINE, "2.123v", lastUpdated);
+    }
+}
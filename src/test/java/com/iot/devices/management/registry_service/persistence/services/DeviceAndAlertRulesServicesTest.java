@@ -2,6 +2,9 @@ package com.iot.devices.management.registry_service.persistence.services;
 
 import com.iot.devices.management.registry_service.RegistryServiceApplication;
 import com.iot.devices.management.registry_service.alerts.DefaultAlertRulesProvider;
+import com.iot.devices.management.registry_service.cache.DeviceOwnerCache;
+import com.iot.devices.management.registry_service.controller.errors.AlertRulesException.AlertRuleVersionConflictException;
+import com.iot.devices.management.registry_service.controller.errors.DeviceExceptions.DeviceVersionConflictException;
 import com.iot.devices.management.registry_service.controller.util.CreateAlertRuleRequest;
 import com.iot.devices.management.registry_service.controller.util.CreateDeviceRequest;
 import com.iot.devices.management.registry_service.controller.util.PatchAlertRuleRequest;
@@ -9,8 +12,12 @@ import com.iot.devices.management.registry_service.controller.util.PatchDeviceRe
 import com.iot.devices.management.registry_service.kafka.AlertingRulesKafkaProducer;
 import com.iot.devices.management.registry_service.kafka.properties.AlertingRulesKafkaProducerProperties;
 import com.iot.devices.management.registry_service.persistence.model.AlertRule;
+import com.iot.devices.management.registry_service.persistence.model.BulkDeviceRegistration;
+import com.iot.devices.management.registry_service.persistence.model.BulkRegistrationResult;
 import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceOwner;
 import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.model.enums.BulkRegistrationStatus;
 import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
 import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
 import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
@@ -82,6 +89,10 @@ public class DeviceAndAlertRulesServicesTest {
     AlertRulesRepository alertRulesRepository;
     @Autowired
     AlertRuleService alertRuleService;
+    @Autowired
+    DevicesRepository devicesRepository;
+    @Autowired
+    DeviceOwnerCache deviceOwnerCache;
 
     @Container
     static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
@@ -232,6 +243,130 @@ public class DeviceAndAlertRulesServicesTest {
         assertEquals(0, alertRulesRepository.findAlertRulesByUsername(username).size());
     }
 
+    @Test
+    void testBulkDeviceCreation() throws InterruptedException {
+        User user = usersRepository.findByUsername(username).orElseThrow();
+        CreateDeviceRequest first = bulkRequest("SN-BULK-1", user, ImmutableSet.of());
+        CreateDeviceRequest second = bulkRequest("SN-BULK-2", user, ImmutableSet.of());
+        CreateDeviceRequest duplicate = bulkRequest("SN-BULK-1", user, ImmutableSet.of());
+        CreateDeviceRequest unknownRule = bulkRequest("SN-BULK-3", user, ImmutableSet.of(UUID.randomUUID()));
+
+        List<BulkRegistrationResult> results = deviceService.saveAllAndSendMessage(List.of(
+                new BulkDeviceRegistration(0, first, user),
+                new BulkDeviceRegistration(1, second, user),
+                new BulkDeviceRegistration(2, duplicate, user),
+                new BulkDeviceRegistration(3, unknownRule, user)));
+
+        Map<Integer, BulkRegistrationResult> resultsByIndex = new HashMap<>();
+        results.forEach(result -> resultsByIndex.put(result.getIndex(), result));
+        assertEquals(BulkRegistrationStatus.CREATED, resultsByIndex.get(0).getStatus());
+        assertEquals(BulkRegistrationStatus.CREATED, resultsByIndex.get(1).getStatus());
+        assertEquals(BulkRegistrationStatus.DUPLICATE, resultsByIndex.get(2).getStatus());
+        assertEquals(BulkRegistrationStatus.INVALID, resultsByIndex.get(3).getStatus());
+
+        UUID firstDeviceId = resultsByIndex.get(0).getDeviceId();
+        assertTrue(devicesRepository.findById(firstDeviceId).isPresent());
+        assertTrue(devicesRepository.findBySerialNumber("SN-BULK-3").isEmpty());
+        assertEquals(24, alertRulesRepository.findAlertRulesByUsername(username).size());
+        assertEquals(12, deviceAlertRuleRepository.findAllByDeviceId(firstDeviceId).size());
+        assertEquals(12, deviceAlertRuleRepository.findAllByDeviceId(resultsByIndex.get(1).getDeviceId()).size());
+        sleep(1000);
+        assertEquals(24, messagesByKey.size());
+        messagesByKey.clear();
+
+        List<BulkRegistrationResult> repeatedResults = deviceService.saveAllAndSendMessage(List.of(new BulkDeviceRegistration(0, first, user)));
+        assertEquals(BulkRegistrationStatus.DUPLICATE, repeatedResults.getFirst().getStatus());
+    }
+
+    private CreateDeviceRequest bulkRequest(String serialNumber, User owner, Set<UUID> alertRuleIds) {
+        return new CreateDeviceRequest(name, serialNumber, manufacturer, model, DeviceType.valueOf(deviceType),
+                location, new BigDecimal(latitude), new BigDecimal(longitude), owner.getId(),
+                DeviceStatus.valueOf(status), now(), firmwareVersion, alertRuleIds);
+    }
+
+    @Test
+    void testOptimisticPatches() {
+        User user = usersRepository.findByUsername(username).orElseThrow();
+        Device device = devicesRepository.save(new Device(null, name, "SN-VERSIONED-1", manufacturer, model,
+                DeviceType.valueOf(deviceType), location, new BigDecimal(latitude), new BigDecimal(longitude), user,
+                DeviceStatus.valueOf(status), now(), firmwareVersion, now(), now(), "{}"));
+        assertEquals(0L, device.getVersion());
+
+        Device patchedDevice = deviceService.patch(PatchDeviceRequest.builder()
+                .id(device.getId())
+                .name("Kitchen Temperature Sensor")
+                .version(0L)
+                .build(), null);
+        assertEquals("Kitchen Temperature Sensor", patchedDevice.getName());
+        assertEquals(1L, patchedDevice.getVersion());
+        assertEquals(user.getId(), patchedDevice.getOwner().getId());
+
+        DeviceVersionConflictException deviceConflict = assertThrows(DeviceVersionConflictException.class,
+                () -> deviceService.patch(PatchDeviceRequest.builder()
+                        .id(device.getId())
+                        .name("Bedroom Temperature Sensor")
+                        .version(0L)
+                        .build(), null));
+        assertEquals(1L, deviceConflict.getCurrent().getVersion());
+        assertEquals("Kitchen Temperature Sensor", deviceConflict.getCurrent().getName());
+
+        Device patchedWithoutVersion = deviceService.patch(PatchDeviceRequest.builder()
+                .id(device.getId())
+                .model("BME680")
+                .build(), null);
+        assertEquals("Kitchen Temperature Sensor", patchedWithoutVersion.getName());
+        assertEquals("BME680", patchedWithoutVersion.getModel());
+        assertEquals(2L, patchedWithoutVersion.getVersion());
+
+        AlertRule alertRule = alertRulesRepository.save(new AlertRule(null, PRESSURE, LESS_THAN, 10f, INFO, true, username));
+        AlertRule patchedAlertRule = alertRuleService.patchAndSendMessage(PatchAlertRuleRequest.builder()
+                .ruleId(alertRule.getRuleId())
+                .severity(WARNING)
+                .version(0L)
+                .build(), user);
+        assertEquals(WARNING, patchedAlertRule.getSeverity());
+        assertEquals(1L, patchedAlertRule.getVersion());
+
+        AlertRuleVersionConflictException alertRuleConflict = assertThrows(AlertRuleVersionConflictException.class,
+                () -> alertRuleService.patchAndSendMessage(PatchAlertRuleRequest.builder()
+                        .ruleId(alertRule.getRuleId())
+                        .severity(CRITICAL)
+                        .version(0L)
+                        .build(), user));
+        assertEquals(WARNING, alertRuleConflict.getCurrent().getSeverity());
+        assertEquals(1L, alertRuleConflict.getCurrent().getVersion());
+        devicesRepository.deleteById(device.getId());
+    }
+
+    @Test
+    void testDeviceOwnerCache() {
+        User user = usersRepository.findByUsername(username).orElseThrow();
+        Device device = devicesRepository.save(new Device(null, name, "SN-OWNER-CACHE-1", manufacturer, model,
+                DeviceType.valueOf(deviceType), location, new BigDecimal(latitude), new BigDecimal(longitude), user,
+                DeviceStatus.valueOf(status), now(), firmwareVersion, now(), now(), "{}"));
+        assertTrue(deviceOwnerCache.get(device.getId()).isEmpty());
+
+        Optional<Device> foundDevice = deviceService.findByDeviceIdWithOwner(device.getId());
+        assertTrue(foundDevice.isPresent());
+        DeviceOwner cachedOwner = deviceOwnerCache.get(device.getId()).orElseThrow();
+        assertEquals(user.getId(), cachedOwner.getOwnerId());
+        assertEquals(username, cachedOwner.getUsername());
+        assertEquals(cachedOwner, deviceService.findDeviceOwner(device.getId()).orElseThrow());
+
+        deviceService.patch(PatchDeviceRequest.builder()
+                .id(device.getId())
+                .name("Kitchen Temperature Sensor")
+                .build(), null);
+        assertTrue(deviceOwnerCache.get(device.getId()).isEmpty());
+        assertEquals(user.getId(), deviceService.findDeviceOwner(device.getId()).orElseThrow().getOwnerId());
+        assertTrue(deviceOwnerCache.get(device.getId()).isPresent());
+
+        assertEquals(1, deviceService.removeById(device.getId(), user));
+        assertTrue(deviceOwnerCache.get(device.getId()).isEmpty());
+        assertTrue(deviceService.findDeviceOwner(device.getId()).isEmpty());
+        assertTrue(deviceOwnerCache.get(device.getId()).isEmpty());
+    }
+
     @Test
     void testAlertRulesCrudOperations() throws InterruptedException {
         Optional<User> user = usersRepository.findByUsername(username);
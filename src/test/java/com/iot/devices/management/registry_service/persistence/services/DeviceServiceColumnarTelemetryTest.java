@@ -0,0 +1,226 @@
+package com.iot.devices.management.registry_service.persistence.services;
+
+import com.iot.devices.*;
+import com.iot.devices.management.registry_service.RegistryServiceApplication;
+import com.iot.devices.management.registry_service.kafka.AlertingRulesKafkaProducer;
+import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceFilter;
+import com.iot.devices.management.registry_service.persistence.model.DevicePage;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import com.iot.devices.management.registry_service.persistence.repos.DevicesRepository;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryJdbcWriter;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.*;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.shaded.com.fasterxml.jackson.core.type.TypeReference;
+import org.testcontainers.shaded.com.fasterxml.jackson.databind.ObjectMapper;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus.ONLINE;
+import static java.time.OffsetDateTime.now;
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@SpringBootTest(classes = {
+        RegistryServiceApplication.class,
+        DeviceServiceColumnarTelemetryTest.TestPersistenceConfig.class
+})
+@TestPropertySource(locations = "classpath:application-test.yaml", properties = "persister.storage=COLUMNAR")
+@Testcontainers
+class DeviceServiceColumnarTelemetryTest {
+
+    @Autowired
+    DeviceService deviceService;
+    @Autowired
+    DevicesRepository devicesRepository;
+    @Autowired
+    TelemetryJdbcWriter telemetryJdbcWriter;
+    @Autowired
+    EntityManager entityManager;
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+    @MockitoBean
+    AlertingRulesKafkaProducer alertingRulesKafkaProducer;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+            .withInitScript("schema.sql");
+
+    @DynamicPropertySource
+    static void registerPgProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    @Test
+    void doorSensorUpsert() throws IOException {
+        Device device = saveDevice(DeviceType.DOOR_SENSOR);
+        final Instant now = now().toInstant();
+        DoorSensor doorSensor1 = DoorSensor.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setStatus(com.iot.devices.DeviceStatus.ONLINE)
+                .setFirmwareVersion("v2.1.1")
+                .setLastUpdated(now)
+                .setDoorState(DoorState.OPEN)
+                .setBatteryLevel(90)
+                .build();
+
+        assertEquals(1, telemetryJdbcWriter.update(doorSensor1));
+        Device updatedDevice = getUpdatedDevice(device, now, "v2.1.1", ONLINE);
+        assertEquals(now.truncatedTo(MILLIS), updatedDevice.getLastActiveAt().toInstant());
+
+        Map<String, Object> telemetry = readTelemetry(updatedDevice);
+        assertEquals(DoorState.OPEN.name(), telemetry.get("doorState"));
+        assertEquals(90, telemetry.get("batteryLevel"));
+
+        final Instant now2 = now.plusMillis(10);
+        DoorSensor doorSensor2 = DoorSensor.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setLastUpdated(now2)
+                .setDoorState(DoorState.CLOSED)
+                .setTamperAlert(true)
+                .build();
+
+        assertEquals(1, telemetryJdbcWriter.update(doorSensor2));
+        Device updatedDevice2 = getUpdatedDevice(device, now2, "v2.1.1", ONLINE);
+        assertEquals(now.truncatedTo(MILLIS), updatedDevice2.getLastActiveAt().toInstant());
+
+        Map<String, Object> telemetry2 = readTelemetry(updatedDevice2);
+        assertEquals(DoorState.CLOSED.name(), telemetry2.get("doorState"));
+        assertEquals(true, telemetry2.get("tamperAlert"));
+        assertEquals(90, telemetry2.get("batteryLevel"));
+    }
+
+    @Test
+    void thermostatBatchUpsert() throws IOException {
+        Device device = saveDevice(DeviceType.THERMOSTAT);
+        final Instant now = now().toInstant();
+        Thermostat thermostat1 = Thermostat.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setStatus(com.iot.devices.DeviceStatus.ONLINE)
+                .setFirmwareVersion("v2.1.1")
+                .setLastUpdated(now)
+                .setTargetTemperature(18.5f)
+                .build();
+
+        final Instant now2 = now.plusMillis(10);
+        Thermostat thermostat2 = Thermostat.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setLastUpdated(now2)
+                .setCurrentTemperature(19.7f)
+                .setMode(ThermostatMode.COOL)
+                .build();
+
+        Thermostat unknownThermostat = Thermostat.newBuilder()
+                .setDeviceId(UUID.randomUUID().toString())
+                .setLastUpdated(now2)
+                .setCurrentTemperature(19.7f)
+                .build();
+
+        int[] affectedRows = deviceService.patchThermostatTelemetries(List.of(thermostat1, thermostat2, unknownThermostat));
+        assertArrayEquals(new int[]{1, 1, 0}, affectedRows);
+        Device updatedDevice = getUpdatedDevice(device, now2, "v2.1.1", ONLINE);
+
+        Map<String, Object> telemetry = readTelemetry(updatedDevice);
+        assertEquals(19.7, (double) telemetry.get("currentTemperature"), 0.001);
+        assertEquals(18.5, (double) telemetry.get("targetTemperature"), 0.001);
+        assertEquals(ThermostatMode.COOL.name(), telemetry.get("mode"));
+        assertFalse(telemetry.containsKey("humidity"));
+
+        //devices row keeps registration values, telemetry lives in the typed table only
+        Device storedDevice = devicesRepository.findById(device.getId()).orElseThrow();
+        assertEquals(DeviceStatus.OFFLINE, storedDevice.getStatus());
+        assertEquals("{}", storedDevice.getTelemetry());
+    }
+
+    @Test
+    void listingReadsTypedTelemetry() throws IOException {
+        Device device = saveDevice(DeviceType.THERMOSTAT);
+        Device deviceWithoutTelemetry = saveDevice(DeviceType.SMART_PLUG);
+        final Instant now = now().plusMinutes(1).toInstant();
+        Thermostat thermostat = Thermostat.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setStatus(com.iot.devices.DeviceStatus.ONLINE)
+                .setFirmwareVersion("v2.1.1")
+                .setLastUpdated(now)
+                .setCurrentTemperature(19.7f)
+                .build();
+        assertEquals(1, telemetryJdbcWriter.update(thermostat));
+
+        DevicePage onlinePage = deviceService.findDevices(new DeviceFilter(null, ONLINE, null, null, null, null), null, 10);
+        assertEquals(1, onlinePage.getDevices().size());
+        Device listedDevice = onlinePage.getDevices().getFirst();
+        assertEquals(device.getId(), listedDevice.getId());
+        assertEquals("v2.1.1", listedDevice.getFirmwareVersion());
+        assertEquals(now.truncatedTo(MILLIS), listedDevice.getUpdatedAt().toInstant());
+        assertEquals(19.7, (double) readTelemetry(listedDevice).get("currentTemperature"), 0.001);
+
+        DevicePage allPage = deviceService.findDevices(new DeviceFilter(null, null, null, null, null, null), null, 10);
+        assertEquals(List.of(device.getId(), deviceWithoutTelemetry.getId()),
+                allPage.getDevices().stream().map(Device::getId).toList());
+        assertEquals("{}", allPage.getDevices().getLast().getTelemetry());
+    }
+
+    @Test
+    void deviceWithoutTelemetry() {
+        Device device = saveDevice(DeviceType.SMART_PLUG);
+        entityManager.clear();
+
+        Device foundDevice = deviceService.findByDeviceId(device.getId()).orElseThrow();
+        assertEquals(DeviceStatus.OFFLINE, foundDevice.getStatus());
+        assertEquals("v2.1.0", foundDevice.getFirmwareVersion());
+        assertEquals("{}", foundDevice.getTelemetry());
+    }
+
+    private Device saveDevice(DeviceType deviceType) {
+        return devicesRepository.save(new Device(null, "Columnar " + deviceType, "SN-" + UUID.randomUUID(),
+                DeviceManufacturer.BOSCH, "BME280", deviceType, "Living Room",
+                new BigDecimal("50.450100"), new BigDecimal("30.523400"), null,
+                DeviceStatus.OFFLINE, now(), "v2.1.0", now(), now(), "{}"));
+    }
+
+    private Device getUpdatedDevice(Device device, Instant now, String firmwareVersion, DeviceStatus status) {
+        entityManager.clear();
+        Device updatedDevice = deviceService.findByDeviceId(device.getId()).orElseThrow();
+        assertEquals(status, updatedDevice.getStatus());
+        assertEquals(now.truncatedTo(MILLIS), updatedDevice.getUpdatedAt().toInstant());
+        assertEquals(firmwareVersion, updatedDevice.getFirmwareVersion());
+        return updatedDevice;
+    }
+
+    private Map<String, Object> readTelemetry(Device updatedDevice) throws IOException {
+        return objectMapper.readValue(updatedDevice.getTelemetry(), new TypeReference<>() {});
+    }
+
+    @Configuration
+    @EnableJpaRepositories(basePackages = "com.iot.devices.management.registry_service.persistence.repos")
+    @EntityScan(basePackages = "com.iot.devices.management.registry_service.persistence.model")
+    static class TestPersistenceConfig {}
+}
@@ -0,0 +1,138 @@
+package com.iot.devices.management.registry_service.persistence.services;
+
+import com.iot.devices.management.registry_service.RegistryServiceApplication;
+import com.iot.devices.management.registry_service.kafka.AlertingRulesKafkaProducer;
+import com.iot.devices.management.registry_service.persistence.model.Device;
+import com.iot.devices.management.registry_service.persistence.model.DeviceCursor;
+import com.iot.devices.management.registry_service.persistence.model.DeviceFilter;
+import com.iot.devices.management.registry_service.persistence.model.DevicePage;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceManufacturer;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus;
+import com.iot.devices.management.registry_service.persistence.model.enums.DeviceType;
+import com.iot.devices.management.registry_service.persistence.repos.DevicesRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.*;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.math.BigDecimal;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static java.time.temporal.ChronoUnit.MILLIS;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@SpringBootTest(classes = {
+        RegistryServiceApplication.class,
+        DeviceServiceListingTest.TestPersistenceConfig.class
+})
+@TestPropertySource("classpath:application-test.yaml")
+@Testcontainers
+class DeviceServiceListingTest {
+
+    @Autowired
+    DeviceService deviceService;
+    @Autowired
+    DevicesRepository devicesRepository;
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+    @MockitoBean
+    AlertingRulesKafkaProducer alertingRulesKafkaProducer;
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+            .withInitScript("schema.sql");
+
+    @DynamicPropertySource
+    static void registerPgProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    @Test
+    void keysetPagination() {
+        final OffsetDateTime now = OffsetDateTime.now().truncatedTo(MILLIS);
+        final List<UUID> expectedIds = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            //two devices per timestamp, so the id tie-breaker is exercised
+            expectedIds.add(saveDevice(DeviceType.THERMOSTAT, DeviceStatus.ONLINE, now.minusSeconds(i / 2)).getId());
+        }
+        saveDevice(DeviceType.SMART_PLUG, DeviceStatus.ONLINE, now.plusSeconds(1));
+        final DeviceFilter filter = new DeviceFilter(DeviceType.THERMOSTAT, null, null, null, null, null);
+
+        final List<UUID> listedIds = new ArrayList<>();
+        DeviceCursor cursor = null;
+        int pages = 0;
+        do {
+            final DevicePage page = deviceService.findDevices(filter, cursor, 2);
+            page.getDevices().forEach(device -> listedIds.add(device.getId()));
+            cursor = page.getNextCursor();
+            pages++;
+        } while (cursor != null);
+
+        assertEquals(3, pages);
+        assertEquals(5, listedIds.size());
+        assertEquals(expectedIds.size(), listedIds.stream().distinct().count());
+        assertTrue(listedIds.containsAll(expectedIds));
+    }
+
+    @Test
+    void filters() {
+        final OffsetDateTime now = OffsetDateTime.now().truncatedTo(MILLIS);
+        final Device offline = saveDevice(DeviceType.DOOR_SENSOR, DeviceStatus.OFFLINE, now);
+        saveDevice(DeviceType.DOOR_SENSOR, DeviceStatus.ONLINE, now);
+
+        final DevicePage page = deviceService.findDevices(new DeviceFilter(null, DeviceStatus.OFFLINE, DeviceManufacturer.BOSCH,
+                null, now.minusMinutes(1), now.plusMinutes(1)), null, 10);
+        assertEquals(1, page.getDevices().size());
+        assertEquals(offline.getId(), page.getDevices().getFirst().getId());
+        assertNull(page.getNextCursor());
+
+        final DevicePage emptyPage = deviceService.findDevices(new DeviceFilter(null, null, null,
+                null, now.plusMinutes(1), now.plusMinutes(2)), null, 10);
+        assertTrue(emptyPage.getDevices().isEmpty());
+    }
+
+    @Test
+    void streamFromCursor() {
+        final OffsetDateTime now = OffsetDateTime.now().truncatedTo(MILLIS);
+        final Device newest = saveDevice(DeviceType.SMART_LIGHT, DeviceStatus.ONLINE, now);
+        final Device middle = saveDevice(DeviceType.SMART_LIGHT, DeviceStatus.ONLINE, now.minusSeconds(1));
+        final Device oldest = saveDevice(DeviceType.SMART_LIGHT, DeviceStatus.ONLINE, now.minusSeconds(2));
+
+        final List<UUID> streamedIds = new ArrayList<>();
+        deviceService.streamDevices(new DeviceFilter(DeviceType.SMART_LIGHT, null, null, null, null, null),
+                DeviceCursor.after(newest), device -> streamedIds.add(device.getId()));
+
+        assertEquals(List.of(middle.getId(), oldest.getId()), streamedIds);
+    }
+
+    private Device saveDevice(DeviceType deviceType, DeviceStatus status, OffsetDateTime updatedAt) {
+        return devicesRepository.save(new Device(null, "Listed " + deviceType, "SN-" + UUID.randomUUID(),
+                DeviceManufacturer.BOSCH, "BME280", deviceType, "Living Room",
+                new BigDecimal("50.450100"), new BigDecimal("30.523400"), null,
+                status, updatedAt, "v2.1.0", updatedAt, updatedAt, "{}"));
+    }
+
+    @Configuration
+    @EnableJpaRepositories(basePackages = "com.iot.devices.management.registry_service.persistence.repos")
+    @EntityScan(basePackages = "com.iot.devices.management.registry_service.persistence.model")
+    static class TestPersistenceConfig {}
+}
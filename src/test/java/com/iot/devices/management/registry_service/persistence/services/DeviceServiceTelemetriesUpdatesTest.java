@@ -44,8 +44,11 @@ import java.math.BigDecimal;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.*;
 import static com.iot.devices.management.registry_service.persistence.model.enums.DeviceStatus.*;
@@ -436,6 +439,118 @@ class DeviceServiceTelemetriesUpdatesTest {
         assertEquals(mode.name(), telemetry2.get("mode"));
     }
 
+    @Test
+    void thermostatBatchUpdate() throws IOException {
+        Device device = getDeviceFromDb();
+        final Instant now = now().toInstant();
+        String firmwareVersion = "v2.1.1";
+        float targetTemperature = 18.5f;
+        Thermostat thermostat1 = Thermostat.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setStatus(com.iot.devices.DeviceStatus.ONLINE)
+                .setFirmwareVersion(firmwareVersion)
+                .setLastUpdated(now)
+                .setTargetTemperature(targetTemperature)
+                .build();
+
+        final Instant now2 = now.plusMillis(10);
+        float currentTemperature2 = 19.7f;
+        Thermostat thermostat2 = Thermostat.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setLastUpdated(now2)
+                .setCurrentTemperature(currentTemperature2)
+                .build();
+
+        Thermostat unknownThermostat = Thermostat.newBuilder()
+                .setDeviceId(UUID.randomUUID().toString())
+                .setLastUpdated(now2)
+                .setCurrentTemperature(currentTemperature2)
+                .build();
+
+        int[] affectedRows = deviceService.patchThermostatTelemetries(List.of(thermostat1, thermostat2, unknownThermostat));
+        assertArrayEquals(new int[]{1, 1, 0}, affectedRows);
+        Device updatedDevice = verifyAndGetUpdatedDevice(affectedRows[1], device, now2, firmwareVersion, ONLINE);
+
+        Map<String, Object> telemetry = readTelemetry(updatedDevice);
+        assertEquals(currentTemperature2, (double) telemetry.get("currentTemperature"), 0.001);
+        assertEquals(targetTemperature, (double) telemetry.get("targetTemperature"), 0.001);
+    }
+
+    @Test
+    void doorSensorBatchUpdate() throws IOException {
+        Device device = getDeviceFromDb();
+        final Instant now = now().toInstant();
+        String firmwareVersion = "v2.1.1";
+        Instant lastOpened = now.minus(5, SECONDS);
+        DoorSensor doorSensor1 = DoorSensor.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setStatus(com.iot.devices.DeviceStatus.ONLINE)
+                .setFirmwareVersion(firmwareVersion)
+                .setLastUpdated(now)
+                .setLastOpened(lastOpened)
+                .setDoorState(DoorState.OPEN)
+                .build();
+
+        final Instant now2 = now.plusMillis(10);
+        int batteryLevel = 76;
+        DoorSensor doorSensor2 = DoorSensor.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setLastUpdated(now2)
+                .setDoorState(DoorState.CLOSED)
+                .setTamperAlert(true)
+                .setBatteryLevel(batteryLevel)
+                .build();
+
+        int[] affectedRows = deviceService.patchDoorSensorTelemetries(List.of(doorSensor1, doorSensor2));
+        assertArrayEquals(new int[]{1, 1}, affectedRows);
+        Device updatedDevice = verifyAndGetUpdatedDevice(affectedRows[1], device, now2, firmwareVersion, ONLINE);
+        assertEquals(now.truncatedTo(MILLIS), updatedDevice.getLastActiveAt().toInstant());
+
+        Map<String, Object> telemetry = readTelemetry(updatedDevice);
+        assertEquals(DoorState.CLOSED.name(), telemetry.get("doorState"));
+        assertEquals(lastOpened.atOffset(ZoneOffset.UTC).truncatedTo(MILLIS),
+                LocalDateTime.parse((String) telemetry.get("lastOpened")).atOffset(ZoneOffset.UTC).truncatedTo(MILLIS));
+        assertTrue((Boolean) telemetry.get("tamperAlert"));
+        assertEquals(batteryLevel, telemetry.get("batteryLevel"));
+    }
+
+    @Test
+    void copyTelemetriesUpdate() throws IOException {
+        Device device = getDeviceFromDb();
+        final Instant now = now().toInstant().truncatedTo(MILLIS);
+        String firmwareVersion = "v2.1.1";
+        float temperature = 21.4f;
+        TemperatureSensor temperatureSensor1 = TemperatureSensor.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setStatus(com.iot.devices.DeviceStatus.ONLINE)
+                .setFirmwareVersion(firmwareVersion)
+                .setLastUpdated(now.minusSeconds(1))
+                .setTemperature(12.0f)
+                .build();
+        TemperatureSensor temperatureSensor2 = TemperatureSensor.newBuilder()
+                .setDeviceId(device.getId().toString())
+                .setLastUpdated(now)
+                .setTemperature(temperature)
+                .setUnit(TempUnit.C)
+                .build();
+        TemperatureSensor unknownTemperatureSensor = TemperatureSensor.newBuilder()
+                .setDeviceId(UUID.randomUUID().toString())
+                .setLastUpdated(now)
+                .setTemperature(temperature)
+                .build();
+
+        Set<UUID> updatedDeviceIds = deviceService.copyTelemetries(List.of(mapTelemetryRow(temperatureSensor1),
+                mapTelemetryRow(temperatureSensor2), mapTelemetryRow(unknownTemperatureSensor)));
+
+        assertEquals(Set.of(device.getId()), updatedDeviceIds);
+        Device updatedDevice = verifyAndGetUpdatedDevice(updatedDeviceIds.size(), device, now, "v2.1.0", OFFLINE);
+
+        Map<String, Object> telemetry = readTelemetry(updatedDevice);
+        assertEquals(temperature, (double) telemetry.get("temperature"), 0.001);
+        assertEquals(TempUnit.C.name(), telemetry.get("unit"));
+        assertFalse(telemetry.containsKey("humidity"));
+    }
+
     private Device getDeviceFromDb() {
         Page<User> userPage = usersRepository.findAll(PageRequest.of(0, 1));
         Optional<User> userOptional = userPage.stream().findFirst();
@@ -0,0 +1,162 @@
+package com.iot.devices.management.registry_service.persistence.services;
+
+import com.iot.devices.DeviceStatus;
+import com.iot.devices.Thermostat;
+import com.iot.devices.ThermostatMode;
+import com.iot.devices.management.registry_service.RegistryServiceApplication;
+import com.iot.devices.management.registry_service.kafka.AlertingRulesKafkaProducer;
+import com.iot.devices.management.registry_service.persistence.history.TelemetryPartitionMaintainer;
+import com.iot.devices.management.registry_service.persistence.model.TelemetryPoint;
+import com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.*;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.shaded.com.fasterxml.jackson.core.type.TypeReference;
+import org.testcontainers.shaded.com.fasterxml.jackson.databind.ObjectMapper;
+import org.testcontainers.utility.DockerImageName;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static com.iot.devices.management.registry_service.mapping.DeviceParametersMapper.mapTelemetryRow;
+import static com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository.PARTITION_PREFIX;
+import static com.iot.devices.management.registry_service.persistence.repos.TelemetryHistoryRepository.PARTITION_SUFFIX_FORMAT;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@SpringBootTest(classes = {
+        RegistryServiceApplication.class,
+        TelemetryHistoryServiceTest.TestPersistenceConfig.class
+})
+@TestPropertySource(locations = "classpath:application-test.yaml", properties = "telemetry.history.enabled=true")
+@Testcontainers
+class TelemetryHistoryServiceTest {
+
+    @Autowired
+    TelemetryHistoryService telemetryHistoryService;
+    @Autowired
+    TelemetryHistoryRepository telemetryHistoryRepository;
+    @Autowired
+    TelemetryPartitionMaintainer telemetryPartitionMaintainer;
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+    @MockitoBean
+    AlertingRulesKafkaProducer alertingRulesKafkaProducer;
+
+    ObjectMapper objectMapper = new ObjectMapper();
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+            .withInitScript("schema.sql");
+
+    @DynamicPropertySource
+    static void registerPgProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    @Test
+    void partitionsAreCreatedAheadOnStartup() {
+        final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        final List<String> partitions = telemetryHistoryRepository.findPartitions();
+        for (int i = 0; i <= 3; i++) {
+            assertTrue(partitions.contains(partitionName(today.plusDays(i))));
+        }
+    }
+
+    @Test
+    void expiredPartitionsAreDropped() {
+        final LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        telemetryHistoryRepository.createPartition(today.minusDays(31));
+        telemetryHistoryRepository.createPartition(today.minusDays(30));
+
+        telemetryPartitionMaintainer.maintainPartitions();
+
+        final List<String> partitions = telemetryHistoryRepository.findPartitions();
+        assertFalse(partitions.contains(partitionName(today.minusDays(31))));
+        assertTrue(partitions.contains(partitionName(today.minusDays(30))));
+        assertTrue(partitions.contains(partitionName(today)));
+    }
+
+    @Test
+    void downsampledHistory() throws IOException {
+        final UUID deviceId = UUID.randomUUID();
+        final OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC).truncatedTo(DAYS);
+        telemetryHistoryRepository.append(List.of(
+                mapTelemetryRow(thermostat(deviceId, from.plusMinutes(1), 20f, ThermostatMode.HEAT)),
+                mapTelemetryRow(thermostat(deviceId, from.plusMinutes(3), 22f, ThermostatMode.COOL)),
+                mapTelemetryRow(thermostat(deviceId, from.plusMinutes(7), 25f, ThermostatMode.HEAT)),
+                mapTelemetryRow(thermostat(UUID.randomUUID(), from.plusMinutes(2), 30f, ThermostatMode.HEAT)),
+                mapTelemetryRow(thermostat(deviceId, from.plusMinutes(20), 30f, ThermostatMode.HEAT))));
+
+        final List<TelemetryPoint> points = new ArrayList<>();
+        telemetryHistoryService.streamDownsampled(deviceId, from, from.plusMinutes(10), Duration.ofMinutes(5), points::add);
+
+        assertEquals(2, points.size());
+        assertEquals(from.toInstant(), points.get(0).getBucket().toInstant());
+        assertEquals(2, points.get(0).getSamples());
+        final Map<String, Object> firstBucket = readTelemetry(points.get(0));
+        assertEquals(21.0, ((Number) firstBucket.get("currentTemperature")).doubleValue(), 0.001);
+        assertEquals(ThermostatMode.COOL.name(), firstBucket.get("mode"));
+        assertEquals(DeviceStatus.ONLINE.name(), firstBucket.get("status"));
+        assertFalse(firstBucket.containsKey("humidity"));
+
+        assertEquals(from.plusMinutes(5).toInstant(), points.get(1).getBucket().toInstant());
+        assertEquals(1, points.get(1).getSamples());
+        assertEquals(25.0, ((Number) readTelemetry(points.get(1)).get("currentTemperature")).doubleValue(), 0.001);
+    }
+
+    @Test
+    void rangeValidation() {
+        final OffsetDateTime from = OffsetDateTime.now(ZoneOffset.UTC);
+        assertThrows(RuntimeException.class, () -> telemetryHistoryService.validateRange(from, from, Duration.ofMinutes(1)));
+        assertThrows(RuntimeException.class, () -> telemetryHistoryService.validateRange(from, from.plusDays(1), Duration.ZERO));
+        assertThrows(RuntimeException.class, () -> telemetryHistoryService.validateRange(from, from.plusDays(30), Duration.ofMinutes(1)));
+        assertDoesNotThrow(() -> telemetryHistoryService.validateRange(from, from.plusDays(1), Duration.ofMinutes(5)));
+    }
+
+    private static Thermostat thermostat(UUID deviceId, OffsetDateTime recordedAt, float currentTemperature, ThermostatMode mode) {
+        return Thermostat.newBuilder()
+                .setDeviceId(deviceId.toString())
+                .setStatus(DeviceStatus.ONLINE)
+                .setLastUpdated(recordedAt.toInstant())
+                .setCurrentTemperature(currentTemperature)
+                .setMode(mode)
+                .build();
+    }
+
+    private static String partitionName(LocalDate day) {
+        return PARTITION_PREFIX + day.format(PARTITION_SUFFIX_FORMAT);
+    }
+
+    private Map<String, Object> readTelemetry(TelemetryPoint point) throws IOException {
+        return objectMapper.readValue(point.getTelemetry(), new TypeReference<>() {});
+    }
+
+    @Configuration
+    @EnableJpaRepositories(basePackages = "com.iot.devices.management.registry_service.persistence.repos")
+    @EntityScan(basePackages = "com.iot.devices.management.registry_service.persistence.model")
+    static class TestPersistenceConfig {}
+}
@@ -0,0 +1,51 @@
+package com.iot.devices.management.registry_service.persistence.services;
+
+import com.iot.devices.management.registry_service.cache.DeviceOwnerCache;
+import com.iot.devices.management.registry_service.cache.UserCache;
+import com.iot.devices.management.registry_service.controller.util.PatchUserRequest;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
+import com.iot.devices.management.registry_service.persistence.repos.UsersRepository;
+import com.iot.devices.management.registry_service.security.AuthenticatedTokenCache;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.UUID;
+
+import static java.time.OffsetDateTime.now;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UserServiceTest {
+
+    UsersRepository usersRepository = mock(UsersRepository.class);
+    PasswordEncoder passwordEncoder = mock(PasswordEncoder.class);
+    UserService userService = new UserService(usersRepository, passwordEncoder, mock(UserCache.class),
+            mock(DeviceOwnerCache.class), mock(AuthenticatedTokenCache.class));
+
+    UUID USER_ID = UUID.randomUUID();
+
+    @Test
+    void failedPatchDoesNotChangeCachedUser() {
+        User cachedUser = user();
+        when(usersRepository.findById(USER_ID)).thenReturn(Optional.of(user()));
+        when(passwordEncoder.matches(any(), any())).thenReturn(false);
+        PatchUserRequest request = new PatchUserRequest("jonndoe123", "renamed", null, null, null, null, null,
+                "wrongPassword", "newPassword", "newPassword", UserRole.ADMIN);
+
+        assertThrows(IllegalStateException.class, () -> userService.patch(request, cachedUser));
+
+        assertEquals("jonndoe123", cachedUser.getUsername());
+        assertEquals(UserRole.USER, cachedUser.getUserRole());
+        verify(usersRepository, never()).save(any());
+    }
+
+    private User user() {
+        return new User(USER_ID, "jonndoe123", "John", "Doe", "someemail@gmail.com", "+12345678", "St. Privet",
+                "jwheknrmlear", UserRole.USER, now(), now(), now(), new HashSet<>(), new ArrayList<>());
+    }
+}
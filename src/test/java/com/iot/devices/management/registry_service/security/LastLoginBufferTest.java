@@ -0,0 +1,72 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.metrics.KpiMetricLogger;
+import com.iot.devices.management.registry_service.persistence.repos.LastLoginRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.Map;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.*;
+
+class LastLoginBufferTest {
+
+    LastLoginRepository lastLoginRepository = mock(LastLoginRepository.class);
+    KpiMetricLogger kpiMetricLogger = mock(KpiMetricLogger.class);
+    LastLoginBuffer lastLoginBuffer = new LastLoginBuffer(2, lastLoginRepository, kpiMetricLogger);
+
+    UUID USER_ID_1 = UUID.randomUUID();
+    UUID USER_ID_2 = UUID.randomUUID();
+    UUID USER_ID_3 = UUID.randomUUID();
+
+    @AfterEach
+    void tearDown() {
+        verifyNoMoreInteractions(lastLoginRepository, kpiMetricLogger);
+    }
+
+    @Test
+    void latestLoginOfUserIsFlushed() {
+        lastLoginBuffer.record(USER_ID_1, 2000);
+        lastLoginBuffer.record(USER_ID_1, 1000);
+        lastLoginBuffer.record(USER_ID_2, 1500);
+        when(lastLoginRepository.updateAll(anyMap())).thenReturn(2);
+
+        lastLoginBuffer.flush();
+        lastLoginBuffer.flush();
+
+        verify(lastLoginRepository).updateAll(Map.of(USER_ID_1, 2000L, USER_ID_2, 1500L));
+        verify(kpiMetricLogger).recordLastLoginFlush(eq(2), anyLong());
+    }
+
+    @Test
+    void loginsAreFlushedInBatches() {
+        lastLoginBuffer.record(USER_ID_1, 1000);
+        lastLoginBuffer.record(USER_ID_2, 1000);
+        lastLoginBuffer.record(USER_ID_3, 1000);
+        when(lastLoginRepository.updateAll(anyMap())).thenReturn(2, 1);
+
+        lastLoginBuffer.flush();
+
+        verify(lastLoginRepository, times(2)).updateAll(anyMap());
+        verify(kpiMetricLogger).recordLastLoginFlush(eq(2), anyLong());
+        verify(kpiMetricLogger).recordLastLoginFlush(eq(1), anyLong());
+    }
+
+    @Test
+    void failedFlushIsRetriedWithNewerLogin() {
+        lastLoginBuffer.record(USER_ID_1, 1000);
+        when(lastLoginRepository.updateAll(anyMap())).thenThrow(new QueryTimeoutException("timeout")).thenReturn(1);
+
+        lastLoginBuffer.flush();
+        lastLoginBuffer.record(USER_ID_1, 3000);
+        lastLoginBuffer.flush();
+
+        verify(lastLoginRepository).updateAll(Map.of(USER_ID_1, 1000L));
+        verify(lastLoginRepository).updateAll(Map.of(USER_ID_1, 3000L));
+        verify(kpiMetricLogger).recordLastLoginFlush(eq(1), anyLong());
+    }
+}
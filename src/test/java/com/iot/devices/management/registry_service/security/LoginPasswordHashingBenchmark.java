@@ -0,0 +1,65 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.controller.errors.PasswordHashingOverloadedException;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import java.util.concurrent.TimeUnit;
+
+//login throughput by bcrypt cost: 16 request threads check passwords through the bounded hashing executor,
+//so the result is logins per second the service can verify with the given number of hashing threads.
+//Rejected logins are counted separately, they are what clients see as 503 under this load
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(16)
+@Fork(1)
+public class LoginPasswordHashingBenchmark {
+
+    private static final String PASSWORD = "jwheknrmlear";
+
+    @Param({"8", "10", "12"})
+    int strength;
+
+    @Param({"4"})
+    int hashingThreads;
+
+    PasswordHashingExecutor passwordHashingExecutor;
+    BoundedPasswordEncoder passwordEncoder;
+    String passwordHash;
+
+    @Setup
+    public void setUp() {
+        final PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setBcryptStrength(strength);
+        properties.setHashingThreads(hashingThreads);
+        properties.setHashingQueueCapacity(64);
+        properties.setHashingTimeoutMs(5000);
+        passwordHashingExecutor = new PasswordHashingExecutor(properties);
+        passwordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(strength), passwordHashingExecutor);
+        passwordHash = passwordEncoder.encode(PASSWORD);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        passwordHashingExecutor.shutdown();
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Rejections {
+        public long rejected;
+    }
+
+    @Benchmark
+    public boolean login(Rejections rejections) {
+        try {
+            return passwordEncoder.matches(PASSWORD, passwordHash);
+        } catch (PasswordHashingOverloadedException e) {
+            rejections.rejected++;
+            return false;
+        }
+    }
+}
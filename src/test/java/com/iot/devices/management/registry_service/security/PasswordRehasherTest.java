@@ -0,0 +1,83 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.controller.errors.PasswordHashingOverloadedException;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.services.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class PasswordRehasherTest {
+
+    UserService userService = mock(UserService.class);
+    User user = mock(User.class);
+    PasswordHashingExecutor passwordHashingExecutor;
+    PasswordEncoder passwordEncoder;
+    PasswordRehasher passwordRehasher;
+
+    @BeforeEach
+    void setUp() {
+        PasswordHashingProperties properties = new PasswordHashingProperties();
+        properties.setBcryptStrength(5);
+        properties.setHashingThreads(1);
+        properties.setHashingQueueCapacity(1);
+        properties.setHashingTimeoutMs(5000);
+        passwordHashingExecutor = new PasswordHashingExecutor(properties);
+        passwordEncoder = new BoundedPasswordEncoder(new BCryptPasswordEncoder(properties.getBcryptStrength()), passwordHashingExecutor);
+        passwordRehasher = new PasswordRehasher(passwordEncoder, passwordHashingExecutor, userService);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        passwordHashingExecutor.shutdown();
+    }
+
+    @Test
+    void outdatedHashIsRehashedBehind() {
+        String outdatedHash = new BCryptPasswordEncoder(4).encode("password");
+        when(user.getPassword()).thenReturn(outdatedHash);
+        when(userService.updatePasswordHash(any(), any(), any())).thenReturn(1);
+
+        passwordRehasher.rehashIfNeeded(user, "password");
+
+        verify(userService, timeout(5000)).updatePasswordHash(eq(user), eq(outdatedHash), argThat(newHash ->
+                newHash.startsWith("$2a$05$") && passwordEncoder.matches("password", newHash)));
+    }
+
+    @Test
+    void currentHashIsNotRehashed() {
+        when(user.getPassword()).thenReturn(passwordEncoder.encode("password"));
+
+        passwordRehasher.rehashIfNeeded(user, "password");
+
+        verifyNoInteractions(userService);
+    }
+
+    @Test
+    void hashingIsRejectedWhenQueueIsFull() {
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(passwordHashingExecutor.trySubmit(() -> awaitQuietly(release)));
+        assertTrue(passwordHashingExecutor.trySubmit(() -> awaitQuietly(release)));
+
+        assertThrows(PasswordHashingOverloadedException.class, () -> passwordEncoder.matches("password", "$2a$05$hash"));
+        assertFalse(passwordHashingExecutor.trySubmit(() -> {}));
+        release.countDown();
+    }
+
+    private void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
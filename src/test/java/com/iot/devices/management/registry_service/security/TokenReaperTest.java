@@ -0,0 +1,103 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.RegistryServiceApplication;
+import com.iot.devices.management.registry_service.kafka.AlertingRulesKafkaProducer;
+import com.iot.devices.management.registry_service.persistence.model.Token;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.model.enums.UserRole;
+import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import com.iot.devices.management.registry_service.persistence.repos.UsersRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.domain.EntityScan;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.*;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.shaded.com.google.common.collect.ImmutableList;
+import org.testcontainers.shaded.com.google.common.collect.ImmutableSet;
+import org.testcontainers.utility.DockerImageName;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static java.time.OffsetDateTime.now;
+import static org.junit.jupiter.api.Assertions.*;
+
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@SpringBootTest(classes = {
+        RegistryServiceApplication.class,
+        TokenReaperTest.TestPersistenceConfig.class
+})
+@TestPropertySource(locations = "classpath:application-test.yaml", properties = "security.token-store.reaper.batch.size=2")
+@Testcontainers
+class TokenReaperTest {
+
+    @Autowired
+    TokenReaper tokenReaper;
+    @Autowired
+    TokenRepository tokenRepository;
+    @Autowired
+    UsersRepository usersRepository;
+    @MockitoBean
+    PasswordEncoder passwordEncoder;
+    @MockitoBean
+    AlertingRulesKafkaProducer alertingRulesKafkaProducer;
+
+    @Container
+    static PostgreSQLContainer<?> postgreSQLContainer = new PostgreSQLContainer<>(DockerImageName.parse("postgres:17.5"))
+            .withInitScript("schema.sql");
+
+    @DynamicPropertySource
+    static void registerPgProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgreSQLContainer::getJdbcUrl);
+        registry.add("spring.datasource.username", postgreSQLContainer::getUsername);
+        registry.add("spring.datasource.password", postgreSQLContainer::getPassword);
+    }
+
+    @Test
+    void expiredAndRevokedTokensAreDeletedInBatches() {
+        User user = usersRepository.save(new User(null, "reaped_user", "John", "Doe", "reaped@gmail.com", "+12345679",
+                "St. Privet", "jwheknrmlear", UserRole.USER, now(), now(), now(), ImmutableSet.of(), ImmutableList.of()));
+        tokenRepository.saveAll(List.of(
+                token(user, now().minusDays(2), false),
+                token(user, now().minusMinutes(1), false),
+                token(user, now().minusSeconds(1), false),
+                token(user, now().plusDays(1), true),
+                token(user, now().plusDays(1), false)));
+
+        tokenReaper.reap();
+
+        List<Token> tokens = tokenRepository.findAll();
+        assertEquals(1, tokens.size());
+        assertFalse(tokens.getFirst().isRevoked());
+        assertTrue(tokens.getFirst().getExpiresAt().isAfter(now()));
+    }
+
+    private Token token(User user, OffsetDateTime expiresAt, boolean revoked) {
+        return Token.builder()
+                .user(user)
+                .tokenHash(TokenStateStore.hash(UUID.randomUUID().toString()))
+                .expiresAt(expiresAt)
+                .issuedAt(expiresAt.minusDays(7))
+                .revoked(revoked)
+                .expired(revoked)
+                .refresh(false)
+                .build();
+    }
+
+    @Configuration
+    @EnableJpaRepositories(basePackages = "com.iot.devices.management.registry_service.persistence.repos")
+    @EntityScan(basePackages = "com.iot.devices.management.registry_service.persistence.model")
+    static class TestPersistenceConfig {}
+}
@@ -0,0 +1,192 @@
+package com.iot.devices.management.registry_service.security;
+
+import com.iot.devices.management.registry_service.persistence.model.Token;
+import com.iot.devices.management.registry_service.persistence.model.TokenState;
+import com.iot.devices.management.registry_service.persistence.model.User;
+import com.iot.devices.management.registry_service.persistence.repos.TokenRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.lang.System.currentTimeMillis;
+import static java.time.ZoneOffset.UTC;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class TokenStateStoreTest {
+
+    TokenRepository tokenRepository = mock(TokenRepository.class);
+    TokenRevocationWriter tokenRevocationWriter = mock(TokenRevocationWriter.class);
+    TokenStateStore tokenStateStore;
+
+    UUID USER_ID = UUID.randomUUID();
+    User USER = mock(User.class);
+
+    @BeforeEach
+    void setUp() {
+        TokenStoreProperties properties = new TokenStoreProperties();
+        properties.setBatchSize(10);
+        properties.setPollTimeoutMs(200);
+        SecurityProperties securityProperties = new SecurityProperties();
+        securityProperties.setRefreshExpiration(86400000);
+        tokenStateStore = new TokenStateStore(properties, securityProperties, tokenRepository, tokenRevocationWriter);
+        when(USER.getId()).thenReturn(USER_ID);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        tokenStateStore.shutdown();
+    }
+
+    @Test
+    void revokedTokensAreWrittenBehind() {
+        Token oldToken = token("old-token");
+        tokenStateStore.register(oldToken);
+        assertTrue(tokenStateStore.findActive("old-token").isPresent());
+
+        tokenStateStore.revokeAllUserTokens(USER_ID);
+        Token newToken = token("new-token");
+        tokenStateStore.register(newToken);
+
+        assertTrue(tokenStateStore.findActive("old-token").isEmpty());
+        assertTrue(tokenStateStore.findActive("new-token").isPresent());
+        //only tokens issued before the revocation are revoked in db
+        verify(tokenRevocationWriter, timeout(5000)).write(argThat(revocations -> revocations.size() == 1
+                && revocations.getFirst().userId().equals(USER_ID)
+                && !revocations.getFirst().removed()
+                && revocations.getFirst().revokedAtMs() > issuedAtMs(oldToken)
+                && revocations.getFirst().revokedAtMs() < issuedAtMs(newToken)));
+        verify(tokenRepository).findByTokenHash(TokenStateStore.hash("old-token"));
+    }
+
+    @Test
+    void revokedTokenIsNotTakenFromDbUntilRevocationIsWritten() {
+        when(tokenRevocationWriter.write(any())).thenThrow(new IllegalStateException("db is down")).thenReturn(1);
+        Token token = token("some-token");
+        tokenStateStore.register(token);
+        when(tokenRepository.findByTokenHash(TokenStateStore.hash("some-token"))).thenReturn(Optional.of(token));
+
+        tokenStateStore.removeAllUserTokens(USER_ID);
+        assertTrue(tokenStateStore.findActive("some-token").isEmpty());
+
+        verify(tokenRevocationWriter, timeout(5000).times(2)).write(argThat(revocations -> revocations.size() == 1
+                && revocations.getFirst().userId().equals(USER_ID)
+                && revocations.getFirst().removed()));
+    }
+
+    @Test
+    void tokenReadFromDbDuringLogoutIsNotIndexed() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int i = 0; i < 200; i++) {
+                String jwt = "concurrent-token-" + i;
+                Token token = token(jwt);
+                //db has the token as valid until the revocation is written
+                when(tokenRepository.findByTokenHash(TokenStateStore.hash(jwt))).thenReturn(Optional.of(token));
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> lookup = executor.submit(() -> {
+                    barrier.await();
+                    return tokenStateStore.findActive(jwt);
+                });
+                Future<?> logout = executor.submit(() -> {
+                    barrier.await();
+                    tokenStateStore.removeAllUserTokens(USER_ID);
+                    return null;
+                });
+                lookup.get();
+                logout.get();
+
+                assertTrue(tokenStateStore.findActive(jwt).isEmpty(), "Logged out token is active: " + jwt);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void tokenStreamedBeforeRevocationIsNotIndexedOnReconcile() {
+        Token token = token("logged-out-token");
+        TokenState streamed = new TokenState(token.getId(), USER_ID, token.getTokenHash(), false, token.getIssuedAt());
+
+        tokenStateStore.removeAllUserTokens(USER_ID);
+        verify(tokenRevocationWriter, timeout(5000)).write(anyList());
+        tokenStateStore.reconcile(streamed);
+
+        assertTrue(tokenStateStore.findActive("logged-out-token").isEmpty());
+    }
+
+    @Test
+    void revocationOfRolledBackTransactionIsNotApplied() {
+        tokenStateStore.register(token("kept-token"));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            tokenStateStore.revokeAllUserTokens(USER_ID);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertTrue(tokenStateStore.findActive("kept-token").isPresent());
+        verifyNoInteractions(tokenRevocationWriter);
+    }
+
+    @Test
+    void tokensIssuedBeforeRevocationOfOtherInstanceAreEvicted() {
+        Token revokedToken = token("revoked-elsewhere");
+        tokenStateStore.register(revokedToken);
+        long revokedAtMs = tokenStateStore.nextTimestampMs();
+        Token issuedAfter = token("issued-after-revocation");
+        //the notification came before this instance reads the written revocation from db
+        when(tokenRepository.findByTokenHash(TokenStateStore.hash("revoked-elsewhere"))).thenReturn(Optional.of(revokedToken));
+        when(tokenRepository.findByTokenHash(TokenStateStore.hash("issued-after-revocation"))).thenReturn(Optional.of(issuedAfter));
+
+        tokenStateStore.evictUser(USER_ID, revokedAtMs);
+
+        assertTrue(tokenStateStore.findActive("revoked-elsewhere").isEmpty());
+        assertTrue(tokenStateStore.findActive("issued-after-revocation").isPresent());
+        verifyNoInteractions(tokenRevocationWriter);
+    }
+
+    @Test
+    void staleTokensAreEvictedOnReconcile() {
+        Token revokedElsewhere = token("revoked-elsewhere");
+        tokenStateStore.register(revokedElsewhere);
+        UUID otherUserId = UUID.randomUUID();
+        String validHash = tokenStateStore.reconcile(new TokenState(UUID.randomUUID(), otherUserId,
+                TokenStateStore.hash("issued-elsewhere"), false, OffsetDateTime.now()));
+
+        assertEquals(1, tokenStateStore.evictStale(Set.of(validHash), currentTimeMillis() + 1));
+        assertTrue(tokenStateStore.findActive("issued-elsewhere").isPresent());
+        assertTrue(tokenStateStore.findActive("revoked-elsewhere").isEmpty());
+        verify(tokenRepository).findByTokenHash(TokenStateStore.hash("revoked-elsewhere"));
+    }
+
+    private long issuedAtMs(Token token) {
+        return token.getIssuedAt().toInstant().toEpochMilli();
+    }
+
+    private Token token(String token) {
+        return Token.builder()
+                .id(UUID.randomUUID())
+                .tokenHash(TokenStateStore.hash(token))
+                .expiresAt(OffsetDateTime.now().plusDays(1))
+                .issuedAt(Instant.ofEpochMilli(tokenStateStore.nextTimestampMs()).atOffset(UTC))
+                .user(USER)
+                .revoked(false)
+                .expired(false)
+                .refresh(false)
+                .build();
+    }
+}
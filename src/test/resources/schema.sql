@@ -38,6 +38,7 @@ CREATE TABLE devices (
     created_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
     updated_at TIMESTAMP WITH TIME ZONE DEFAULT NOW(),
     telemetry JSONB,
+    version BIGINT NOT NULL DEFAULT 0,
     CONSTRAINT fk_owner_user
         FOREIGN KEY (owner_user_id)
         REFERENCES users (id)
@@ -45,6 +46,10 @@ CREATE TABLE devices (
         ON UPDATE CASCADE
 );
 
+CREATE INDEX idx_devices_updated_at_id ON devices (updated_at DESC, id DESC);
+CREATE INDEX idx_devices_owner_updated_at_id ON devices (owner_user_id, updated_at DESC, id DESC);
+CREATE INDEX idx_devices_type_updated_at_id ON devices (device_type, updated_at DESC, id DESC);
+
 CREATE TABLE alert_rules(
 	rule_id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
 	metric_type metric_types NOT NULL,
@@ -52,7 +57,8 @@ CREATE TABLE alert_rules(
 	threshold_value FLOAT,
 	severity_level severity_levels NOT NULL,
 	is_enabled BOOLEAN NOT NULL,
-	username VARCHAR(50)
+	username VARCHAR(50),
+	version BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE devices_alert_rules (
@@ -65,7 +71,9 @@ CREATE TABLE devices_alert_rules (
 
 CREATE TABLE tokens (
 	id UUID primary key default gen_random_uuid(),
-	token VARCHAR(255) not null,
+	token_hash VARCHAR(43) not null unique,
+	expires_at TIMESTAMPTZ not null,
+	issued_at TIMESTAMPTZ not null,
 	revoked BOOLEAN,
 	expired BOOLEAN,
 	user_id UUID,
@@ -75,4 +83,154 @@ CREATE TABLE tokens (
         REFERENCES users (id)
         ON DELETE CASCADE
         ON UPDATE CASCADE
-);
\ No newline at end of file
+);
+
+CREATE INDEX idx_tokens_user_id ON tokens (user_id);
+CREATE INDEX idx_tokens_expires_at ON tokens (expires_at);
+CREATE INDEX idx_tokens_revoked ON tokens (id) WHERE revoked;
+
+CREATE UNLOGGED TABLE telemetry_staging (
+    batch_id UUID NOT NULL,
+    device_id UUID NOT NULL,
+    status VARCHAR(20),
+    firmware_version VARCHAR(50),
+    last_updated TIMESTAMP WITH TIME ZONE NOT NULL,
+    last_active_at TIMESTAMP WITH TIME ZONE,
+    door_state VARCHAR(20),
+    tamper_alert BOOLEAN,
+    last_opened TIMESTAMP WITH TIME ZONE,
+    battery_level INTEGER,
+    voltage REAL,
+    electric_current REAL,
+    power REAL,
+    energy_consumed REAL,
+    is_on BOOLEAN,
+    brightness INTEGER,
+    colour VARCHAR(50),
+    mode VARCHAR(20),
+    power_consumption REAL,
+    power_usage REAL,
+    moisture_percentage REAL,
+    soil_temperature REAL,
+    temperature REAL,
+    humidity REAL,
+    pressure REAL,
+    unit VARCHAR(20),
+    current_temperature REAL,
+    target_temperature REAL
+);
+
+CREATE INDEX idx_telemetry_staging_batch_id ON telemetry_staging (batch_id);
+
+CREATE TABLE door_sensor_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    last_active_at TIMESTAMP WITH TIME ZONE,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    door_state VARCHAR(20),
+    tamper_alert BOOLEAN,
+    last_opened TIMESTAMP WITH TIME ZONE,
+    battery_level INTEGER
+) WITH (fillfactor = 70);
+
+CREATE TABLE energy_meter_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    voltage REAL,
+    electric_current REAL,
+    power REAL,
+    energy_consumed REAL
+) WITH (fillfactor = 70);
+
+CREATE TABLE smart_light_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    is_on BOOLEAN,
+    brightness INTEGER,
+    colour VARCHAR(50),
+    mode VARCHAR(20),
+    power_consumption REAL
+) WITH (fillfactor = 70);
+
+CREATE TABLE smart_plug_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    is_on BOOLEAN,
+    voltage REAL,
+    electric_current REAL,
+    power_usage REAL
+) WITH (fillfactor = 70);
+
+CREATE TABLE soil_moisture_sensor_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    moisture_percentage REAL,
+    soil_temperature REAL,
+    battery_level INTEGER
+) WITH (fillfactor = 70);
+
+CREATE TABLE temperature_sensor_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    last_active_at TIMESTAMP WITH TIME ZONE,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    temperature REAL,
+    humidity REAL,
+    pressure REAL,
+    unit VARCHAR(20)
+) WITH (fillfactor = 70);
+
+CREATE TABLE thermostat_telemetry (
+    device_id UUID PRIMARY KEY REFERENCES devices (id) ON DELETE CASCADE,
+    status device_statuses,
+    firmware_version VARCHAR(50),
+    updated_at TIMESTAMP WITH TIME ZONE,
+    current_temperature REAL,
+    target_temperature REAL,
+    humidity REAL,
+    mode VARCHAR(20)
+) WITH (fillfactor = 70);
+
+CREATE TABLE telemetry_history (
+    device_id UUID NOT NULL,
+    device_type VARCHAR(30),
+    recorded_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    status VARCHAR(20),
+    firmware_version VARCHAR(50),
+    door_state VARCHAR(20),
+    tamper_alert BOOLEAN,
+    last_opened TIMESTAMP WITH TIME ZONE,
+    battery_level INTEGER,
+    voltage REAL,
+    electric_current REAL,
+    power REAL,
+    energy_consumed REAL,
+    is_on BOOLEAN,
+    brightness INTEGER,
+    colour VARCHAR(50),
+    mode VARCHAR(20),
+    power_consumption REAL,
+    power_usage REAL,
+    moisture_percentage REAL,
+    soil_temperature REAL,
+    temperature REAL,
+    humidity REAL,
+    pressure REAL,
+    unit VARCHAR(20),
+    current_temperature REAL,
+    target_temperature REAL
+) PARTITION BY RANGE (recorded_at);
+
+CREATE INDEX idx_telemetry_history_device_recorded_at ON telemetry_history (device_id, recorded_at);
+
+CREATE TABLE telemetry_history_default PARTITION OF telemetry_history DEFAULT;